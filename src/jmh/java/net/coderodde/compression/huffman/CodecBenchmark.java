@@ -0,0 +1,133 @@
+package net.coderodde.compression.huffman;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class benchmarks each stage of the single-block codec over the corpora
+ * of {@link Corpus}. Every benchmark reports, besides the operations per 
+ * second, the secondary result {@code megabytes}: the rate of the input text 
+ * covered per second, that is, MB/s. Run with the gc profiler 
+ * ({@code -prof gc}) to see the bytes allocated per operation in 
+ * {@code gc.alloc.rate.norm}.
+ * <p>
+ * The inputs of each stage are prepared once per trial from the outputs of
+ * the previous stages, so that each benchmark measures its stage only.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    /**
+     * Counts the megabytes of input text processed.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0.0;
+        }
+    }
+
+    @Param({ "UNIFORM", "SKEWED", "ENGLISH", "REPEATED", "BINARY" })
+    public Corpus corpus;
+
+    @Param({ "1048576" })
+    public int size;
+
+    private byte[] text;
+    private double textMegabytes;
+    private FrequencyTable frequencyTable;
+    private HuffmanTree tree;
+    private CanonicalHuffmanCode code;
+    private BitString encodedText;
+    private byte[] serializedData;
+    private HuffmanDeserializer.Result deserializedData;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        text = corpus.generate(size);
+        textMegabytes = text.length / 1e6;
+        frequencyTable = new ByteCountComputer().computeFrequencyTable(text);
+        tree = new HuffmanTree(frequencyTable);
+        code = new CanonicalHuffmanCode(tree);
+        encodedText = new HuffmanEncoder().encode(code.getCodeTable(), 
+                                                  frequencyTable, 
+                                                  text, 
+                                                  0, 
+                                                  text.length);
+        serializedData = new HuffmanSerializer().serialize(code, encodedText);
+        deserializedData = 
+                new HuffmanDeserializer().deserialize(serializedData);
+    }
+
+    @Benchmark
+    public FrequencyTable countBytes(Throughput throughput) {
+        throughput.megabytes += textMegabytes;
+        return new ByteCountComputer().computeFrequencyTable(text);
+    }
+
+    @Benchmark
+    public HuffmanTree buildTree(Throughput throughput) {
+        throughput.megabytes += textMegabytes;
+        return new HuffmanTree(frequencyTable);
+    }
+
+    @Benchmark
+    public Map<Byte, BitString> inferEncodingMap(Throughput throughput) {
+        throughput.megabytes += textMegabytes;
+        return tree.inferEncodingMap();
+    }
+
+    @Benchmark
+    public BitString encode(Throughput throughput) {
+        throughput.megabytes += textMegabytes;
+        return new HuffmanEncoder().encode(code.getCodeTable(),
+                                           frequencyTable,
+                                           text,
+                                           0,
+                                           text.length);
+    }
+
+    @Benchmark
+    public byte[] serialize(Throughput throughput) {
+        throughput.megabytes += textMegabytes;
+        return new HuffmanSerializer().serialize(code, encodedText);
+    }
+
+    @Benchmark
+    public HuffmanDeserializer.Result deserialize(Throughput throughput) {
+        throughput.megabytes += textMegabytes;
+        return new HuffmanDeserializer().deserialize(serializedData);
+    }
+
+    @Benchmark
+    public byte[] decode(Throughput throughput) {
+        throughput.megabytes += textMegabytes;
+        return new HuffmanDecoder().decode(deserializedData);
+    }
+}
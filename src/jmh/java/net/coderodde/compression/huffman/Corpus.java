@@ -0,0 +1,217 @@
+package net.coderodde.compression.huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This enumeration lists the corpora the benchmarks run over. Each corpus is
+ * generated deterministically, so that the results of different runs are
+ * comparable.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public enum Corpus {
+
+    /**
+     * Uniformly random bytes. Nothing to compress; every code word is about
+     * eight bits long.
+     */
+    UNIFORM {
+        @Override
+        byte[] generate(int size, Random random) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            return data;
+        }
+    },
+
+    /**
+     * Bytes following the geometric distribution: byte {@code i} occurs with
+     * the probability of {@code 2^-(i + 1)}, which yields the longest code
+     * words.
+     */
+    SKEWED {
+        @Override
+        byte[] generate(int size, Random random) {
+            byte[] data = new byte[size];
+
+            for (int i = 0; i != size; ++i) {
+                data[i] = (byte) Integer.numberOfTrailingZeros(
+                        random.nextInt() | Integer.MIN_VALUE);
+            }
+
+            return data;
+        }
+    },
+
+    /**
+     * English-like text: sentences of common English words drawn with the
+     * frequencies given by Zipf's law.
+     */
+    ENGLISH {
+        @Override
+        byte[] generate(int size, Random random) {
+            double[] cumulativeWeights = new double[WORDS.length];
+            double totalWeight = 0.0;
+
+            for (int i = 0; i != WORDS.length; ++i) {
+                totalWeight += 1.0 / (i + 1);
+                cumulativeWeights[i] = totalWeight;
+            }
+
+            StringBuilder sb = new StringBuilder(size + 32);
+            boolean sentenceStart = true;
+
+            while (sb.length() < size) {
+                int index = Arrays.binarySearch(
+                        cumulativeWeights, 
+                        random.nextDouble() * totalWeight);
+                String word = WORDS[index < 0 ? -index - 1 : index];
+
+                if (sentenceStart) {
+                    sb.append(Character.toUpperCase(word.charAt(0)))
+                      .append(word, 1, word.length());
+                    sentenceStart = false;
+                } else {
+                    sb.append(word);
+                }
+
+                int punctuation = random.nextInt(16);
+
+                if (punctuation == 0) {
+                    sb.append(". ");
+                    sentenceStart = true;
+                } else if (punctuation == 1) {
+                    sb.append(", ");
+                } else if (punctuation == 2 && random.nextInt(8) == 0) {
+                    sb.append(".\n");
+                    sentenceStart = true;
+                } else {
+                    sb.append(' ');
+                }
+            }
+
+            return Arrays.copyOf(sb.toString().getBytes(), size);
+        }
+    },
+
+    /**
+     * A single byte value repeated.
+     */
+    REPEATED {
+        @Override
+        byte[] generate(int size, Random random) {
+            byte[] data = new byte[size];
+            Arrays.fill(data, (byte) 'a');
+            return data;
+        }
+    },
+
+    /**
+     * The machine code of the running Java virtual machine, repeated if 
+     * shorter than requested.
+     */
+    BINARY {
+        @Override
+        byte[] generate(int size, Random random) {
+            byte[] executable = readJvmLibrary();
+            byte[] data = new byte[size];
+
+            for (int i = 0; i < size; i += executable.length) {
+                System.arraycopy(executable, 
+                                 0, 
+                                 data, 
+                                 i, 
+                                 Math.min(executable.length, size - i));
+            }
+
+            return data;
+        }
+    };
+
+    /**
+     * The common English words in the order of decreasing frequency.
+     */
+    private static final String[] WORDS = {
+        "the", "of", "and", "to", "a", "in", "is", "it", "you", "that", "he",
+        "was", "for", "on", "are", "with", "as", "I", "his", "they", "be",
+        "at", "one", "have", "this", "from", "or", "had", "by", "word", "but",
+        "what", "some", "we", "can", "out", "other", "were", "all", "there",
+        "when", "up", "use", "your", "how", "said", "an", "each", "she",
+        "which", "do", "their", "time", "if", "will", "way", "about", "many",
+        "then", "them", "write", "would", "like", "so", "these", "her",
+        "long", "make", "thing", "see", "him", "two", "has", "look", "more",
+        "day", "could", "go", "come", "did", "number", "sound", "no", "most",
+        "people", "my", "over", "know", "water", "than", "call", "first",
+        "who", "may", "down", "side", "been", "now", "find", "any", "new",
+        "work", "part", "take", "get", "place", "made", "live", "where",
+        "after", "back", "little", "only", "round", "man", "year", "came",
+        "show", "every", "good", "me", "give", "our", "under", "name", "very",
+        "through", "just", "form", "sentence", "great", "think", "say",
+        "help", "low", "line", "differ", "turn", "cause", "much", "mean",
+        "before", "move", "right", "boy", "old", "too", "same", "tell",
+        "does", "set", "three", "want", "air", "well", "also", "play",
+        "small", "end", "put", "home", "read", "hand", "port", "large",
+        "spell", "add", "even", "land", "here", "must", "big", "high",
+        "such", "follow", "act", "why", "ask", "men", "change", "went",
+        "light", "kind", "off", "need", "house", "picture", "try", "us",
+        "again", "animal", "point", "mother", "world", "near", "build",
+        "self", "earth", "father", "head", "stand", "own", "page", "should",
+        "country", "found", "answer", "school", "grow", "study", "still",
+        "learn", "plant", "cover", "food", "sun", "four", "between", "state",
+        "keep", "eye", "never", "last", "let", "thought", "city", "tree",
+        "cross", "farm", "hard", "start", "might", "story", "saw", "far",
+        "sea", "draw", "left", "late", "run", "don't", "while", "press",
+        "close", "night", "real", "life", "few", "north"
+    };
+
+    /**
+     * The seed of the generators, fixed so that the corpora are the same in
+     * every run.
+     */
+    private static final long SEED = 20261017L;
+
+    /**
+     * Generates {@code size} bytes of this corpus.
+     *
+     * @param size the number of bytes to generate.
+     * @return the generated data.
+     */
+    public byte[] generate(int size) {
+        return generate(size, new Random(SEED));
+    }
+
+    abstract byte[] generate(int size, Random random);
+
+    private static byte[] readJvmLibrary() {
+        String javaHome = System.getProperty("java.home");
+        String[] candidates = {
+            "lib/server/libjvm.so",
+            "lib/server/libjvm.dylib",
+            "bin/server/jvm.dll",
+            "jre/lib/amd64/server/libjvm.so",
+            "bin/java",
+            "bin/java.exe"
+        };
+
+        for (String candidate : candidates) {
+            File file = new File(javaHome, candidate);
+
+            if (file.isFile() && file.length() > 0) {
+                try {
+                    return Files.readAllBytes(file.toPath());
+                } catch (IOException ex) {
+                    throw new IllegalStateException(
+                            "Cannot read " + file + ".", ex);
+                }
+            }
+        }
+
+        throw new IllegalStateException(
+                "No executable found in " + javaHome + ".");
+    }
+}
@@ -0,0 +1,68 @@
+package net.coderodde.compression.huffman;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class benchmarks a reused {@link HuffmanCodec} on small messages,
+ * compressing and decompressing into preallocated arrays. Run with the gc
+ * profiler ({@code -prof gc}): {@code gc.alloc.rate.norm} should stay at
+ * about zero bytes per operation.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HuffmanCodecBenchmark {
+
+    @Param({ "SKEWED", "ENGLISH", "BINARY" })
+    public Corpus corpus;
+
+    @Param({ "256", "4096" })
+    public int size;
+
+    private final HuffmanCodec codec = new HuffmanCodec();
+    private byte[] text;
+    private byte[] compressed;
+    private int compressedLength;
+    private byte[] decompressed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        text = corpus.generate(size);
+        compressed = new byte[codec.getMaximumCompressedLength(size)];
+        compressedLength =
+                codec.compress(text, 0, text.length, compressed, 0);
+        decompressed = new byte[size];
+    }
+
+    @Benchmark
+    public int compress() {
+        return codec.compress(text, 0, text.length, compressed, 0);
+    }
+
+    @Benchmark
+    public int decompress() {
+        return codec.decompress(compressed,
+                                0,
+                                compressedLength,
+                                decompressed,
+                                0);
+    }
+}
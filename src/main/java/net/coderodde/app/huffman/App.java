@@ -1,23 +1,41 @@
 package net.coderodde.app.huffman;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import net.coderodde.compression.huffman.BitString;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import net.coderodde.compression.huffman.AdaptiveHuffmanInputStream;
+import net.coderodde.compression.huffman.AdaptiveHuffmanOutputStream;
 import net.coderodde.compression.huffman.ByteCountComputer;
+import net.coderodde.compression.huffman.CodecStatistics;
+import net.coderodde.compression.huffman.FrequencyTable;
+import net.coderodde.compression.huffman.HuffmanArchive;
+import net.coderodde.compression.huffman.HuffmanCodec;
 import net.coderodde.compression.huffman.HuffmanDecoder;
 import net.coderodde.compression.huffman.HuffmanDeserializer;
-import net.coderodde.compression.huffman.HuffmanEncoder;
-import net.coderodde.compression.huffman.HuffmanSerializer;
-import net.coderodde.compression.huffman.HuffmanTree;
+import net.coderodde.compression.huffman.HuffmanDictionary;
+import net.coderodde.compression.huffman.HuffmanInputStream;
+import net.coderodde.compression.huffman.ParallelHuffmanCodec;
 
 public final class App {
 
@@ -29,9 +47,149 @@ public final class App {
     private static final String HELP_OPTION_LONG  = "--help";
     private static final String VERSION_OPTION_SHORT = "-v";
     private static final String VERSION_OPTION_LONG  = "--version";
+    private static final String THREADS_OPTION_SHORT = "-t";
+    private static final String THREADS_OPTION_LONG  = "--threads";
+    private static final String MMAP_OPTION_SHORT = "-m";
+    private static final String MMAP_OPTION_LONG  = "--mmap";
+    private static final String MAX_LENGTH_OPTION_SHORT = "-l";
+    private static final String MAX_LENGTH_OPTION_LONG  = "--max-length";
+    private static final String INTERLEAVE_OPTION_SHORT = "-i";
+    private static final String INTERLEAVE_OPTION_LONG  = "--interleave";
+    private static final String ADAPTIVE_OPTION_SHORT = "-a";
+    private static final String ADAPTIVE_OPTION_LONG  = "--adaptive";
+    private static final String SAMPLE_OPTION_SHORT = "-s";
+    private static final String SAMPLE_OPTION_LONG  = "--sample";
+    private static final String REPORT_OPTION_SHORT = "-r";
+    private static final String REPORT_OPTION_LONG  = "--report";
+    private static final String CONTEXT_OPTION_SHORT = "-c";
+    private static final String CONTEXT_OPTION_LONG  = "--context";
+    private static final String TRAIN_OPTION_SHORT = "-T";
+    private static final String TRAIN_OPTION_LONG  = "--train";
+    private static final String DICTIONARY_OPTION_SHORT = "-D";
+    private static final String DICTIONARY_OPTION_LONG  = "--dictionary";
+    private static final String INDEX_OPTION_SHORT = "-x";
+    private static final String INDEX_OPTION_LONG  = "--index";
+    private static final String RANGE_OPTION_SHORT = "-R";
+    private static final String RANGE_OPTION_LONG  = "--range";
+    private static final String TEST_OPTION_SHORT = "-V";
+    private static final String TEST_OPTION_LONG  = "--test";
+    private static final String NO_VERIFY_OPTION_SHORT = "-n";
+    private static final String NO_VERIFY_OPTION_LONG  = "--no-verify";
+    private static final String ARCHIVE_OPTION_SHORT = "-A";
+    private static final String ARCHIVE_OPTION_LONG  = "--archive";
+    private static final String LIST_OPTION_SHORT = "-L";
+    private static final String LIST_OPTION_LONG  = "--list";
+    private static final String EXTRACT_OPTION_SHORT = "-X";
+    private static final String EXTRACT_OPTION_LONG  = "--extract";
+    private static final String STATS_OPTION_SHORT = "-S";
+    private static final String STATS_OPTION_LONG  = "--stats";
     private static final String ENCODED_FILE_EXTENSION = "het";
+    private static final String STANDARD_STREAM_NAME = "-";
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    private static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    private static final int DEFAULT_MAX_CODE_LENGTH = 11;
+    private static final double MEBIBYTE = 1024.0 * 1024.0;
+
+    /**
+     * The column at which the option descriptions of the help message start.
+     */
+    private static final int HELP_DESCRIPTION_COLUMN = 18;
+
+    /**
+     * The maximum length of a line of the help message.
+     */
+    private static final int HELP_LINE_LENGTH = 80;
 
     public static void main(String[] args) {
+        List<String> argumentList = new ArrayList<>(Arrays.asList(args));
+        Options options = null;
+
+        try {
+            options = new Options(argumentList);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+
+        int testIndex = Math.max(argumentList.indexOf(TEST_OPTION_SHORT),
+                                 argumentList.indexOf(TEST_OPTION_LONG));
+
+        if (testIndex >= 0) {
+            boolean passed = false;
+
+            try {
+                passed = doTest(argumentList.subList(testIndex + 1, 
+                                                     argumentList.size()),
+                                options);
+            } catch (Exception ex) {
+                System.err.println(ex.getMessage());
+            }
+
+            System.exit(passed ? 0 : 1);
+        }
+
+        int archiveIndex = 
+                Math.max(argumentList.indexOf(ARCHIVE_OPTION_SHORT),
+                         argumentList.indexOf(ARCHIVE_OPTION_LONG));
+        int listIndex = Math.max(argumentList.indexOf(LIST_OPTION_SHORT),
+                                 argumentList.indexOf(LIST_OPTION_LONG));
+        int extractIndex = 
+                Math.max(argumentList.indexOf(EXTRACT_OPTION_SHORT),
+                         argumentList.indexOf(EXTRACT_OPTION_LONG));
+
+        if (archiveIndex >= 0 || listIndex >= 0 || extractIndex >= 0) {
+            long startTime = System.nanoTime();
+
+            try (ParallelHuffmanCodec codec = 
+                    archiveIndex >= 0 ?
+                    options.encoder().indexed(false).build() :
+                    options.decoder().build()) {
+                if (options.stats) {
+                    codec.setStatistics(new CodecStatistics());
+                }
+
+                if (archiveIndex >= 0) {
+                    doArchive(argumentList.subList(archiveIndex + 1,
+                                                   argumentList.size()),
+                              codec);
+                } else if (listIndex >= 0) {
+                    doList(argumentList.subList(listIndex + 1,
+                                                argumentList.size()));
+                } else {
+                    doExtract(argumentList.subList(extractIndex + 1,
+                                                   argumentList.size()),
+                              codec);
+                }
+
+                if (options.stats && listIndex < 0) {
+                    printStatistics(codec.getStatistics(), 
+                                    System.nanoTime() - startTime);
+                }
+            } catch (Exception ex) {
+                System.err.println(ex.getMessage());
+                System.exit(1);
+            }
+
+            return;
+        }
+
+        int trainIndex = Math.max(argumentList.indexOf(TRAIN_OPTION_SHORT),
+                                  argumentList.indexOf(TRAIN_OPTION_LONG));
+
+        if (trainIndex >= 0) {
+            try {
+                doTrain(argumentList.subList(trainIndex + 1, 
+                                             argumentList.size()),
+                        options.maxCodeLength);
+            } catch (Exception ex) {
+                System.err.println(ex.getMessage());
+                System.exit(1);
+            }
+
+            return;
+        }
+
+        args = argumentList.toArray(new String[argumentList.size()]);
         Set<String> commandLineArgumentSet = getCommandLineOptions(args);
 
         if (commandLineArgumentSet.isEmpty() 
@@ -67,51 +225,180 @@ public final class App {
                                                        ENCODE_OPTION_LONG,
                                                        DECODE_OPTION_SHORT,
                                                        DECODE_OPTION_LONG));
-        if (commandLineArgumentSet.isEmpty()) {
+        if (commandLineArgumentSet.size() > 1 && encode) {
             System.err.println("Bad command line format.");
             System.exit(1);
         }
 
-        File file = new File(commandLineArgumentSet.iterator().next());
+        String file = commandLineArgumentSet.isEmpty() ?
+                      STANDARD_STREAM_NAME :
+                      commandLineArgumentSet.iterator().next();
+
+        long startTime = System.nanoTime();
+
+        try (ParallelHuffmanCodec codec = 
+                decode ? 
+                options.decoder().build() : 
+                options.encoder().build()) {
+            if (options.stats) {
+                codec.setStatistics(new CodecStatistics());
+            }
 
-        try {
             if (decode) {
-                doDecode(args);
+                doDecode(args, codec, options);
             } else if (encode) {
-                doEncode(file);
+                doEncode(file, codec, options);
             } 
+
+            if (options.stats) {
+                printStatistics(codec.getStatistics(), 
+                                System.nanoTime() - startTime);
+            }
         } catch (Exception ex) {
             System.err.println(ex.getMessage());
             System.exit(1);
         }
     }
 
-    private static void doEncode(File file) throws FileNotFoundException {
-        byte[] fileBytes = readBytes(file);
+    /**
+     * Encodes the file {@code file} into the file of the same name with the
+     * extension {@value #ENCODED_FILE_EXTENSION} appended, or the standard
+     * input into the standard output if the name is 
+     * {@value #STANDARD_STREAM_NAME}.
+     */
+    private static void doEncode(String file, 
+                                 ParallelHuffmanCodec codec,
+                                 Options options) throws IOException {
+        boolean standardStreams = isStandardStream(file);
+        String outputFile = 
+                standardStreams ?
+                STANDARD_STREAM_NAME :
+                new File(file).getName() + "." + ENCODED_FILE_EXTENSION;
+
+        if (options.report && standardStreams) {
+            throw new IllegalArgumentException(
+                    "The report needs a named input file.");
+        }
 
-        Map<Byte, Integer> weightMap =
-                new ByteCountComputer()
-                        .computeCharacterWeights(fileBytes);
+        if (!standardStreams) {
+            System.out.println(
+                "Writing compressed text to \"" + outputFile + "\"...");
+        }
 
-        Map<Byte, BitString> encodeMap = 
-                new HuffmanTree(weightMap).inferEncodingMap();
+        if (options.dictionaryFile != null) {
+            HuffmanDictionary dictionary = 
+                    readDictionary(options.dictionaryFile);
+            byte[] text;
 
-        BitString encodedText = new HuffmanEncoder().encode(encodeMap,
-                                                            fileBytes);
+            try (InputStream in = openInput(file)) {
+                text = readAll(in);
+            }
 
-        byte[] data = new HuffmanSerializer().serialize(weightMap,
-                                                        encodedText);
+            try (OutputStream out = openOutput(outputFile)) {
+                out.write(new HuffmanCodec().compress(dictionary, text));
+            }
 
-        File outputFile = 
-                new File(file.getName() + "." + ENCODED_FILE_EXTENSION);
+            return;
+        }
 
-        System.out.println(
-            "Writing compressed text to \"" + outputFile.getName() + "\"...");
+        if (options.adaptive) {
+            try (InputStream in = openInput(file);
+                 OutputStream out = 
+                         new AdaptiveHuffmanOutputStream(
+                                 openOutput(outputFile))) {
+                copy(in, out);
+            }
+
+            return;
+        }
 
-        writeBytes(data, outputFile);
+        if (options.mapped && !standardStreams) {
+            try (FileChannel in = FileChannel.open(new File(file).toPath());
+                 FileChannel out = openForMapping(new File(outputFile))) {
+                codec.compress(in, out);
+            }
+        } else {
+            try (InputStream in = openInput(file);
+                 OutputStream out = openOutput(outputFile)) {
+                codec.compress(in, out);
+            }
+        }
+
+        if (options.report) {
+            try (ParallelHuffmanCodec exactCodec = 
+                    options.encoder()
+                           .samplingInterval(1)
+                           .indexed(false)
+                           .build()) {
+                reportSamplingLoss(new File(file), 
+                                   new File(outputFile).length(),
+                                   exactCodec);
+            }
+        }
+    }
+
+    /**
+     * Compresses the file once more with the exact byte counts, discarding 
+     * the output, and prints how much larger the sampled output is.
+     */
+    private static void reportSamplingLoss(File file,
+                                           long sampledLength,
+                                           ParallelHuffmanCodec exactCodec) 
+            throws IOException {
+        CountingOutputStream exact = new CountingOutputStream();
+
+        try (InputStream in = new FileInputStream(file)) {
+            exactCodec.compress(in, exact);
+        }
+
+        double loss = exact.count == 0 ? 
+                      0.0 : 
+                      100.0 * (sampledLength - exact.count) / exact.count;
+
+        System.out.printf("Sampled: %d bytes, exact: %d bytes, " +
+                          "ratio loss: %.2f%%.%n",
+                          sampledLength,
+                          exact.count,
+                          loss);
+    }
+
+    /**
+     * Decodes each file, verifying the checksums of the blocks, and discards
+     * the output.
+     *
+     * @return {@code true} if all the files decode intact.
+     */
+    private static boolean doTest(List<String> files, Options options) 
+            throws IOException {
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("Expected the files to test.");
+        }
+
+        boolean passed = true;
+
+        try (ParallelHuffmanCodec codec = 
+                options.decoder().verifyChecksums(true).build()) {
+            for (String file : files) {
+                CountingOutputStream out = new CountingOutputStream();
+
+                try (InputStream in = 
+                        new BufferedInputStream(new FileInputStream(file),
+                                                IO_BUFFER_SIZE)) {
+                    decode(in, out, codec);
+                    System.out.println(file + ": OK, " + out.count + " bytes.");
+                } catch (IOException | RuntimeException ex) {
+                    System.out.println(file + ": FAILED. " + ex.getMessage());
+                    passed = false;
+                }
+            }
+        }
+
+        return passed;
     }
 
-    private static void doDecode(String[] args) {
+    private static void doDecode(String[] args, 
+                                 ParallelHuffmanCodec codec,
+                                 Options options) throws IOException {
         String file1 = null;
         String file2 = null;
 
@@ -119,28 +406,588 @@ public final class App {
             int index = 0;
 
             for (int i = args.length - 1; i >= 0; --i) {
-                if (args[i].equals("DECODE_OPTION_SHORT") 
-                        || args[i].equals("DECODE_OPTION_LONG")) {
+                if (args[i].equals(DECODE_OPTION_SHORT) 
+                        || args[i].equals(DECODE_OPTION_LONG)) {
                     index = i;
                     break;
                 }
             }
 
-            file1 = args[index + 1];
-            file2 = args[index + 2];
+            // A missing file stands for the standard stream:
+            file1 = index + 1 < args.length ? 
+                    args[index + 1] : 
+                    STANDARD_STREAM_NAME;
+            file2 = index + 2 < args.length ?
+                    args[index + 2] :
+                    STANDARD_STREAM_NAME;
         } catch (Exception ex) {
             System.err.println("Not enough tokens on command line.");
             System.exit(1);
         }
 
-        byte[] inputData = readBytes(new File(file1));
+        if (options.dictionaryFile != null) {
+            HuffmanDictionary dictionary = 
+                    readDictionary(options.dictionaryFile);
+            byte[] data;
+
+            try (InputStream in = openInput(file1)) {
+                data = readAll(in);
+            }
+
+            try (OutputStream out = openOutput(file2)) {
+                out.write(new HuffmanCodec().decompress(dictionary, data));
+            }
+
+            return;
+        }
+
+        long[] range = options.range;
+
+        if (range != null) {
+            if (isStandardStream(file1)) {
+                throw new IllegalArgumentException(
+                        "The range needs a named compressed file.");
+            }
+
+            try (FileChannel in = FileChannel.open(new File(file1).toPath());
+                 OutputStream out = openOutput(file2)) {
+                codec.decompress(in, range[0], range[1], out);
+            }
+
+            return;
+        }
+
+        if (options.mapped 
+                && !isStandardStream(file1)
+                && !isStandardStream(file2)
+                && hasStreamSignature(file1)) {
+            try (FileChannel in = FileChannel.open(new File(file1).toPath());
+                 FileChannel out = openForMapping(new File(file2))) {
+                codec.decompress(in, out);
+            }
+
+            return;
+        }
+
+        try (InputStream in = openInput(file1);
+             OutputStream out = openOutput(file2)) {
+            decode(in, out, codec);
+        }
+    }
+
+    /**
+     * Decodes the file {@code in} in any of the formats written by this tool
+     * into {@code out}. The stream format is decoded with {@code codec}. The
+     * stream {@code in} must support marking.
+     */
+    private static void decode(InputStream in, 
+                               OutputStream out, 
+                               ParallelHuffmanCodec codec) 
+            throws IOException {
+        if (HuffmanInputStream.hasStreamSignature(in)) {
+            codec.decompress(in, out);
+            return;
+        }
+
+        if (codec.getStatistics() != null) {
+            throw new IllegalArgumentException(
+                    "The statistics are collected for the block stream " +
+                    "format only.");
+        }
+
+        if (AdaptiveHuffmanInputStream.hasStreamSignature(in)) {
+            copy(new AdaptiveHuffmanInputStream(in), out);
+            return;
+        }
+
+        // The single-block formats of the older versions:
         HuffmanDeserializer.Result result = 
-                new HuffmanDeserializer().deserialize(inputData);
-        HuffmanTree decoderTree = new HuffmanTree(result.getCountMap());
-        HuffmanDecoder decoder = new HuffmanDecoder();
-        byte[] originalData = decoder.decode(decoderTree, 
-                                             result.getEncodedText());
-        writeBytes(originalData, new File(file2));
+                new HuffmanDeserializer().deserialize(in);
+        new HuffmanDecoder().decode(result, out);
+    }
+
+    /**
+     * Packs the files into an archive. The arguments are the archive file 
+     * and the files, the directories among which are packed with all the 
+     * regular files under them.
+     */
+    private static void doArchive(List<String> arguments,
+                                  ParallelHuffmanCodec codec) 
+            throws IOException {
+        if (arguments.size() < 2) {
+            throw new IllegalArgumentException(
+                    "Expected an archive file and at least one file.");
+        }
+
+        Map<String, Path> files = new LinkedHashMap<>();
+
+        for (String argument : arguments.subList(1, arguments.size())) {
+            List<Path> paths;
+
+            try (Stream<Path> walk = Files.walk(Paths.get(argument))) {
+                paths = walk.filter(Files::isRegularFile)
+                            .sorted()
+                            .collect(Collectors.toList());
+            }
+
+            for (Path path : paths) {
+                files.putIfAbsent(toMemberName(path), path);
+            }
+        }
+
+        File archiveFile = new File(arguments.get(0));
+
+        System.out.println(
+            "Writing " + files.size() + " files to \"" + 
+            archiveFile.getName() + "\"...");
+
+        try (OutputStream out = 
+                new BufferedOutputStream(new FileOutputStream(archiveFile),
+                                         IO_BUFFER_SIZE)) {
+            codec.compressArchive(files, out);
+        }
+    }
+
+    /**
+     * Prints the size, the compressed size and the name of each member of
+     * the archive given as the only argument.
+     */
+    private static void doList(List<String> arguments) throws IOException {
+        if (arguments.size() != 1) {
+            throw new IllegalArgumentException("Expected an archive file.");
+        }
+
+        try (FileChannel channel = 
+                FileChannel.open(Paths.get(arguments.get(0)))) {
+            for (HuffmanArchive.Entry entry : 
+                    new HuffmanArchive(channel).getEntries()) {
+                System.out.printf("%12d %12d %s%n",
+                                  entry.getSize(),
+                                  entry.getCompressedSize(),
+                                  entry.getName());
+            }
+        }
+    }
+
+    /**
+     * Extracts members of an archive into the current directory. The 
+     * arguments are the archive file and the names of the members to 
+     * extract, all the members being extracted if no names are given.
+     */
+    private static void doExtract(List<String> arguments,
+                                  ParallelHuffmanCodec codec) 
+            throws IOException {
+        if (arguments.isEmpty()) {
+            throw new IllegalArgumentException("Expected an archive file.");
+        }
+
+        try (FileChannel channel = 
+                FileChannel.open(Paths.get(arguments.get(0)))) {
+            HuffmanArchive archive = new HuffmanArchive(channel);
+            List<HuffmanArchive.Entry> entries = new ArrayList<>();
+
+            if (arguments.size() == 1) {
+                entries.addAll(archive.getEntries());
+            }
+
+            for (String name : arguments.subList(1, arguments.size())) {
+                HuffmanArchive.Entry entry = archive.getEntry(name);
+
+                if (entry == null) {
+                    throw new IllegalArgumentException(
+                            "No member \"" + name + "\" in the archive.");
+                }
+
+                entries.add(entry);
+            }
+
+            for (HuffmanArchive.Entry entry : entries) {
+                Path target = toExtractionPath(entry.getName());
+
+                if (target.getParent() != null) {
+                    Files.createDirectories(target.getParent());
+                }
+
+                System.out.println("Extracting \"" + entry.getName() + 
+                                   "\"...");
+
+                try (OutputStream out = 
+                        new BufferedOutputStream(
+                                Files.newOutputStream(target),
+                                IO_BUFFER_SIZE)) {
+                    codec.extract(archive, entry, out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the member packing the file {@code path}: the path
+     * without its root, if any, the elements separated by slashes.
+     */
+    private static String toMemberName(Path path) {
+        path = path.normalize();
+
+        if (path.getRoot() != null) {
+            path = path.getRoot().relativize(path);
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (Path element : path) {
+            if (sb.length() != 0) {
+                sb.append('/');
+            }
+
+            sb.append(element);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the path to extract the member named {@code name} to, 
+     * rejecting the names that would escape the current directory.
+     */
+    private static Path toExtractionPath(String name) {
+        Path path = Paths.get(name);
+
+        for (Path element : path) {
+            if (element.toString().equals("..")) {
+                path = null;
+                break;
+            }
+        }
+
+        if (path == null || path.isAbsolute() || path.getRoot() != null) {
+            throw new IllegalArgumentException(
+                    "Refusing to extract the member \"" + name + 
+                    "\" outside of the current directory.");
+        }
+
+        return path;
+    }
+
+    private static boolean isStandardStream(String file) {
+        return file.equals(STANDARD_STREAM_NAME);
+    }
+
+    /**
+     * Opens the file {@code file} for buffered reading, or the standard input
+     * if the name is {@value #STANDARD_STREAM_NAME}. The stream supports
+     * marking.
+     */
+    private static InputStream openInput(String file) throws IOException {
+        return new BufferedInputStream(
+                isStandardStream(file) ?
+                        new FileInputStream(FileDescriptor.in) :
+                        new FileInputStream(file),
+                IO_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens the file {@code file} for buffered writing, or the standard
+     * output if the name is {@value #STANDARD_STREAM_NAME}. Closing the
+     * stream of the standard output only flushes it, so that 
+     * {@link System#out} remains usable.
+     */
+    private static OutputStream openOutput(String file) throws IOException {
+        if (!isStandardStream(file)) {
+            return new BufferedOutputStream(new FileOutputStream(file),
+                                            IO_BUFFER_SIZE);
+        }
+
+        OutputStream out = new FileOutputStream(FileDescriptor.out);
+        return new BufferedOutputStream(out, IO_BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        copy(in, out);
+        return out.toByteArray();
+    }
+
+    private static void copy(InputStream in, OutputStream out) 
+            throws IOException {
+        byte[] buffer = new byte[IO_BUFFER_SIZE];
+        int read;
+
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Trains a dictionary on the sample files. The arguments are the 
+     * dictionary ID, the dictionary file and the sample files.
+     */
+    private static void doTrain(List<String> arguments, int maxCodeLength) 
+            throws IOException {
+        if (arguments.size() < 3) {
+            throw new IllegalArgumentException(
+                    "Expected a dictionary ID, a dictionary file and at " +
+                    "least one sample file.");
+        }
+
+        int id;
+
+        try {
+            id = Integer.parseInt(arguments.get(0));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(
+                    "Bad dictionary ID: \"" + arguments.get(0) + "\".");
+        }
+
+        ByteCountComputer byteCountComputer = new ByteCountComputer();
+        long[] frequencies = new long[FrequencyTable.ALPHABET_SIZE];
+        byte[] buffer = new byte[IO_BUFFER_SIZE];
+
+        for (String sampleFile : arguments.subList(2, arguments.size())) {
+            try (InputStream in = new FileInputStream(sampleFile)) {
+                int read;
+
+                while ((read = in.read(buffer)) >= 0) {
+                    long[] counts = 
+                            byteCountComputer.computeByteCounts(buffer, 
+                                                                0, 
+                                                                read);
+
+                    for (int i = 0; i != FrequencyTable.ALPHABET_SIZE; ++i) {
+                        frequencies[i] += counts[i];
+                    }
+                }
+            }
+        }
+
+        HuffmanDictionary dictionary = 
+                HuffmanDictionary.train(id,
+                                        new FrequencyTable(frequencies),
+                                        maxCodeLength == 0 ? 
+                                                DEFAULT_MAX_CODE_LENGTH :
+                                                maxCodeLength);
+        File dictionaryFile = new File(arguments.get(1));
+
+        System.out.println(
+            "Writing dictionary " + id + " to \"" + dictionaryFile.getName() + 
+            "\"...");
+
+        try (OutputStream out = new FileOutputStream(dictionaryFile)) {
+            dictionary.writeTo(out);
+        }
+    }
+
+    private static HuffmanDictionary readDictionary(String file) 
+            throws IOException {
+        try (InputStream in = 
+                new BufferedInputStream(new FileInputStream(file))) {
+            return HuffmanDictionary.readFrom(in);
+        }
+    }
+
+    private static boolean hasStreamSignature(String file) 
+            throws IOException {
+        try (InputStream in = 
+                new BufferedInputStream(new FileInputStream(file))) {
+            return HuffmanInputStream.hasStreamSignature(in);
+        }
+    }
+
+    /**
+     * Opens {@code file} for writing through a read-write memory mapping,
+     * which requires the channel to be readable as well.
+     */
+    private static FileChannel openForMapping(File file) throws IOException {
+        return FileChannel.open(file.toPath(),
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING,
+                                StandardOpenOption.READ,
+                                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Prints the time spent in each stage of the codec, the data volumes and
+     * the throughput into the standard error, so that the statistics never 
+     * mix with the data written into the standard output. The stages run 
+     * concurrently, so their shares are of the summed stage time rather than
+     * of the wall time.
+     */
+    private static void printStatistics(CodecStatistics statistics,
+                                        long wallNanos) {
+        long totalNanos = 0L;
+
+        for (CodecStatistics.Stage stage : CodecStatistics.Stage.values()) {
+            totalNanos += statistics.getNanos(stage);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-12s %12s %7s %10s%n", 
+                                "Stage", "Time (ms)", "Share", "Runs"));
+
+        for (CodecStatistics.Stage stage : CodecStatistics.Stage.values()) {
+            long nanos = statistics.getNanos(stage);
+            sb.append(String.format(
+                    "%-12s %12.3f %6.1f%% %10d%n",
+                    stage.name().toLowerCase(),
+                    nanos / 1e6,
+                    totalNanos == 0L ? 0.0 : 100.0 * nanos / totalNanos,
+                    statistics.getCount(stage)));
+        }
+
+        long allocatedBytes = statistics.getAllocatedBytes();
+        double wallSeconds = Math.max(wallNanos, 1L) / 1e9;
+
+        sb.append(String.format(
+                "Bytes in: %d, bytes out: %d, blocks: %d.%n",
+                statistics.getBytesIn(),
+                statistics.getBytesOut(),
+                statistics.getBlocks()));
+        sb.append(String.format(
+                "Bits per symbol: %.3f, tables built: %d, allocated: %s.%n",
+                statistics.getBitsPerSymbol(),
+                statistics.getTablesBuilt(),
+                allocatedBytes < 0L ?
+                        "n/a" :
+                        String.format("%.1f MiB", allocatedBytes / MEBIBYTE)));
+        sb.append(String.format(
+                "Wall time: %.1f ms, throughput: %.1f MiB/s.%n",
+                wallNanos / 1e6,
+                statistics.getUncompressedBytes() / MEBIBYTE / wallSeconds));
+
+        System.err.print(sb);
+    }
+
+    /**
+     * Removes an option taking a positive integer and its value from the 
+     * argument list.
+     * 
+     * @param argumentList the command line arguments.
+     * @param shortOption  the short name of the option.
+     * @param longOption   the long name of the option.
+     * @param description  the description of the value for error messages.
+     * @return the value of the option or zero if not specified.
+     */
+    private static int extractPositiveInt(List<String> argumentList,
+                                          String shortOption,
+                                          String longOption,
+                                          String description) {
+        String value = extractValue(argumentList, 
+                                    shortOption, 
+                                    longOption, 
+                                    description);
+
+        if (value == null) {
+            return 0;
+        }
+
+        int result;
+
+        try {
+            result = Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(
+                    "Bad " + description + ": \"" + value + "\".");
+        }
+
+        if (result <= 0) {
+            throw new IllegalArgumentException(
+                    "The " + description + " must be positive.");
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes the range option and its value {@code OFFSET,LENGTH} from the 
+     * argument list.
+     *
+     * @param argumentList the command line arguments.
+     * @return the offset and the length of the range or {@code null} if not
+     *         specified.
+     */
+    private static long[] extractRange(List<String> argumentList) {
+        String value = extractValue(argumentList,
+                                    RANGE_OPTION_SHORT,
+                                    RANGE_OPTION_LONG,
+                                    "range");
+
+        if (value == null) {
+            return null;
+        }
+
+        String[] parts = value.split(",");
+        long[] range = new long[2];
+
+        try {
+            if (parts.length != 2) {
+                throw new NumberFormatException();
+            }
+
+            range[0] = Long.parseLong(parts[0].trim());
+            range[1] = Long.parseLong(parts[1].trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(
+                    "Bad range: \"" + value + "\". Expected OFFSET,LENGTH.");
+        }
+
+        if (range[0] < 0L || range[1] < 0L) {
+            throw new IllegalArgumentException(
+                    "The range offset and length must not be negative.");
+        }
+
+        return range;
+    }
+
+    /**
+     * Removes both names of an option taking no value from the argument list.
+     * 
+     * @param argumentList the command line arguments.
+     * @param shortOption  the short name of the option.
+     * @param longOption   the long name of the option.
+     * @return {@code true} if the option is specified.
+     */
+    private static boolean extractFlag(List<String> argumentList,
+                                       String shortOption,
+                                       String longOption) {
+        return argumentList.remove(shortOption) | 
+               argumentList.remove(longOption);
+    }
+
+    /**
+     * Removes an option taking a value and its value from the argument list.
+     * 
+     * @param argumentList the command line arguments.
+     * @param shortOption  the short name of the option.
+     * @param longOption   the long name of the option.
+     * @param description  the description of the value for error messages.
+     * @return the value of the option or {@code null} if not specified.
+     */
+    private static String extractValue(List<String> argumentList,
+                                       String shortOption,
+                                       String longOption,
+                                       String description) {
+        int index = argumentList.indexOf(shortOption);
+
+        if (index < 0) {
+            index = argumentList.indexOf(longOption);
+        }
+
+        if (index < 0) {
+            return null;
+        }
+
+        if (index + 1 == argumentList.size()) {
+            throw new IllegalArgumentException(
+                    "Missing the " + description + ".");
+        }
+
+        String value = argumentList.get(index + 1);
+        argumentList.subList(index, index + 2).clear();
+        return value;
     }
 
     private static Set<String> getCommandLineOptions(String[] args) {
@@ -179,40 +1026,297 @@ public final class App {
           .append(ENCODE_OPTION_SHORT)
           .append(" | ")
           .append(ENCODE_OPTION_LONG)
-          .append("] FILE\n");
+          .append("] [FILE]\n");
 
         sb.append(indent)
           .append("[")
           .append(DECODE_OPTION_SHORT)
           .append(" | ")
           .append(DECODE_OPTION_LONG)
-          .append("] FILE1 FILE2\n");
+          .append("] [FILE1 [FILE2]]\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(THREADS_OPTION_SHORT)
+          .append(" | ")
+          .append(THREADS_OPTION_LONG)
+          .append("] N\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(MMAP_OPTION_SHORT)
+          .append(" | ")
+          .append(MMAP_OPTION_LONG)
+          .append("]\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(MAX_LENGTH_OPTION_SHORT)
+          .append(" | ")
+          .append(MAX_LENGTH_OPTION_LONG)
+          .append("] N\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(INTERLEAVE_OPTION_SHORT)
+          .append(" | ")
+          .append(INTERLEAVE_OPTION_LONG)
+          .append("]\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(ADAPTIVE_OPTION_SHORT)
+          .append(" | ")
+          .append(ADAPTIVE_OPTION_LONG)
+          .append("]\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(SAMPLE_OPTION_SHORT)
+          .append(" | ")
+          .append(SAMPLE_OPTION_LONG)
+          .append("] N [")
+          .append(REPORT_OPTION_SHORT)
+          .append(" | ")
+          .append(REPORT_OPTION_LONG)
+          .append("]\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(CONTEXT_OPTION_SHORT)
+          .append(" | ")
+          .append(CONTEXT_OPTION_LONG)
+          .append("]\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(DICTIONARY_OPTION_SHORT)
+          .append(" | ")
+          .append(DICTIONARY_OPTION_LONG)
+          .append("] DICT\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(INDEX_OPTION_SHORT)
+          .append(" | ")
+          .append(INDEX_OPTION_LONG)
+          .append("] [")
+          .append(RANGE_OPTION_SHORT)
+          .append(" | ")
+          .append(RANGE_OPTION_LONG)
+          .append("] OFFSET,LENGTH\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(NO_VERIFY_OPTION_SHORT)
+          .append(" | ")
+          .append(NO_VERIFY_OPTION_LONG)
+          .append("]\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(TEST_OPTION_SHORT)
+          .append(" | ")
+          .append(TEST_OPTION_LONG)
+          .append("] FILE...\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(STATS_OPTION_SHORT)
+          .append(" | ")
+          .append(STATS_OPTION_LONG)
+          .append("]\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(ARCHIVE_OPTION_SHORT)
+          .append(" | ")
+          .append(ARCHIVE_OPTION_LONG)
+          .append("] ARCHIVE FILE...\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(LIST_OPTION_SHORT)
+          .append(" | ")
+          .append(LIST_OPTION_LONG)
+          .append("] ARCHIVE\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(EXTRACT_OPTION_SHORT)
+          .append(" | ")
+          .append(EXTRACT_OPTION_LONG)
+          .append("] ARCHIVE [NAME...]\n");
+
+        sb.append(indent)
+          .append("[")
+          .append(TRAIN_OPTION_SHORT)
+          .append(" | ")
+          .append(TRAIN_OPTION_LONG)
+          .append("] ID DICT FILE...\n");
 
         sb.append("Where:\n");
 
-        sb.append(HELP_OPTION_SHORT)
-          .append(", ")
-          .append(HELP_OPTION_LONG)
-          .append("     Prints this message and exits.\n");
+        appendOptionHelp(sb,
+                         HELP_OPTION_SHORT,
+                         HELP_OPTION_LONG,
+                         "Prints this message and exits.");
 
-        sb.append(VERSION_OPTION_SHORT)
-          .append(", ")
-          .append(VERSION_OPTION_LONG)
-          .append("  Prints the version info and exits.\n");
+        appendOptionHelp(sb,
+                         VERSION_OPTION_SHORT,
+                         VERSION_OPTION_LONG,
+                         "Prints the version info and exits.");
 
-        sb.append(ENCODE_OPTION_SHORT)
-          .append(", ")
-          .append(ENCODE_OPTION_LONG)
-          .append("   Encodes the text from standard input.\n");
+        appendOptionHelp(sb,
+                         ENCODE_OPTION_SHORT,
+                         ENCODE_OPTION_LONG,
+                         "Encodes FILE into FILE.het, or the standard input " +
+                         "into the standard output if FILE is - or missing.");
 
-        sb.append(DECODE_OPTION_SHORT)
-          .append(", ")
-          .append(DECODE_OPTION_LONG)
-          .append("   Decodes the text from standard input.\n");
+        appendOptionHelp(sb,
+                         DECODE_OPTION_SHORT,
+                         DECODE_OPTION_LONG,
+                         "Decodes FILE1 into FILE2. A - or a missing file " +
+                         "stands for the standard input or output.");
+
+        appendOptionHelp(sb,
+                         THREADS_OPTION_SHORT,
+                         THREADS_OPTION_LONG,
+                         "Uses N threads. Defaults to the number of " +
+                         "processors.");
+
+        appendOptionHelp(sb,
+                         MMAP_OPTION_SHORT,
+                         MMAP_OPTION_LONG,
+                         "Maps the files into memory instead of streaming.");
+
+        appendOptionHelp(sb,
+                         MAX_LENGTH_OPTION_SHORT,
+                         MAX_LENGTH_OPTION_LONG,
+                         "Limits the code words to N bits. Defaults to 11.");
+
+        appendOptionHelp(sb,
+                         INTERLEAVE_OPTION_SHORT,
+                         INTERLEAVE_OPTION_LONG,
+                         "Splits each block into four streams decoded in " +
+                         "lockstep.");
+
+        appendOptionHelp(sb,
+                         ADAPTIVE_OPTION_SHORT,
+                         ADAPTIVE_OPTION_LONG,
+                         "Codes in a single pass with an adaptive code.");
+
+        appendOptionHelp(sb,
+                         SAMPLE_OPTION_SHORT,
+                         SAMPLE_OPTION_LONG,
+                         "Builds the codes of large blocks from every N-th " +
+                         "chunk.");
+
+        appendOptionHelp(sb,
+                         REPORT_OPTION_SHORT,
+                         REPORT_OPTION_LONG,
+                         "Reports the ratio loss of sampling against exact " +
+                         "counts.");
+
+        appendOptionHelp(sb,
+                         CONTEXT_OPTION_SHORT,
+                         CONTEXT_OPTION_LONG,
+                         "Selects the code of each byte by the byte " +
+                         "preceding it.");
+
+        appendOptionHelp(sb,
+                         DICTIONARY_OPTION_SHORT,
+                         DICTIONARY_OPTION_LONG,
+                         "Codes a small file with the pre-trained dictionary " +
+                         "DICT.");
+
+        appendOptionHelp(sb,
+                         INDEX_OPTION_SHORT,
+                         INDEX_OPTION_LONG,
+                         "Appends a block index for range decoding.");
+
+        appendOptionHelp(sb,
+                         RANGE_OPTION_SHORT,
+                         RANGE_OPTION_LONG,
+                         "Decodes LENGTH bytes from OFFSET of an indexed " +
+                         "file.");
+
+        appendOptionHelp(sb,
+                         NO_VERIFY_OPTION_SHORT,
+                         NO_VERIFY_OPTION_LONG,
+                         "Skips the block checksums when decoding.");
+
+        appendOptionHelp(sb,
+                         TEST_OPTION_SHORT,
+                         TEST_OPTION_LONG,
+                         "Decodes and verifies the files without writing " +
+                         "output.");
+
+        appendOptionHelp(sb,
+                         STATS_OPTION_SHORT,
+                         STATS_OPTION_LONG,
+                         "Prints the time of each coding stage and the " +
+                         "throughput.");
+
+        appendOptionHelp(sb,
+                         ARCHIVE_OPTION_SHORT,
+                         ARCHIVE_OPTION_LONG,
+                         "Packs the files and directories into ARCHIVE.");
+
+        appendOptionHelp(sb,
+                         LIST_OPTION_SHORT,
+                         LIST_OPTION_LONG,
+                         "Lists the members of ARCHIVE.");
+
+        appendOptionHelp(sb,
+                         EXTRACT_OPTION_SHORT,
+                         EXTRACT_OPTION_LONG,
+                         "Extracts the named members, or all of them, from " +
+                         "ARCHIVE.");
+
+        appendOptionHelp(sb,
+                         TRAIN_OPTION_SHORT,
+                         TRAIN_OPTION_LONG,
+                         "Trains the dictionary ID on the sample files and " +
+                         "writes it to DICT.");
 
         System.out.println(sb.toString());
     }
 
+    /**
+     * Appends the help line of the option {@code shortOption}, 
+     * {@code longOption} with its description starting at the column 
+     * {@link #HELP_DESCRIPTION_COLUMN}. The description is wrapped at word
+     * boundaries into lines of at most {@link #HELP_LINE_LENGTH} characters.
+     */
+    private static void appendOptionHelp(StringBuilder sb,
+                                         String shortOption,
+                                         String longOption,
+                                         String description) {
+        String option = shortOption + ", " + longOption;
+        sb.append(option)
+          .append(getIndent(HELP_DESCRIPTION_COLUMN - option.length()));
+        int lineLength = HELP_DESCRIPTION_COLUMN;
+
+        for (String word : description.split(" ")) {
+            if (lineLength > HELP_DESCRIPTION_COLUMN) {
+                if (lineLength + 1 + word.length() > HELP_LINE_LENGTH) {
+                    sb.append('\n')
+                      .append(getIndent(HELP_DESCRIPTION_COLUMN));
+                    lineLength = HELP_DESCRIPTION_COLUMN;
+                } else {
+                    sb.append(' ');
+                    lineLength++;
+                }
+            }
+
+            sb.append(word);
+            lineLength += word.length();
+        }
+
+        sb.append('\n');
+    }
+
     private static String getIndent(int preambleLength) {
         StringBuilder sb = new StringBuilder();
 
@@ -225,38 +1329,209 @@ public final class App {
 
     private static void printVersion() {
         String msg = 
-        "Huffman compressor tool, version 1.61 (Nov 19, 2016)\n" +
+        "Huffman compressor tool, version 1.7 (Oct 17, 2026)\n" +
         "By Rodion \"rodde\" Efremov";
 
         System.out.println(msg);
     }
 
+    /**
+     * Holds the coding options removed from the command line. The options
+     * that cannot take effect together are rejected once parsed.
+     */
+    private static final class Options {
+
+        private final int numberOfThreads;
+        private final int maxCodeLength;
+        private final int samplingInterval;
+        private final String dictionaryFile;
+        private final long[] range;
+        private final boolean mapped;
+        private final boolean interleaved;
+        private final boolean adaptive;
+        private final boolean report;
+        private final boolean contextModelled;
+        private final boolean indexed;
+        private final boolean verifyChecksums;
+        private final boolean stats;
+
+        /**
+         * Removes the coding options and their values from 
+         * {@code argumentList}.
+         *
+         * @throws IllegalArgumentException if an option value is malformed or
+         *                                  the options conflict.
+         */
+        Options(List<String> argumentList) {
+            numberOfThreads = extractPositiveInt(argumentList,
+                                                 THREADS_OPTION_SHORT,
+                                                 THREADS_OPTION_LONG,
+                                                 "number of threads");
+            maxCodeLength = extractPositiveInt(argumentList,
+                                               MAX_LENGTH_OPTION_SHORT,
+                                               MAX_LENGTH_OPTION_LONG,
+                                               "maximum code length");
+            samplingInterval = extractPositiveInt(argumentList,
+                                                  SAMPLE_OPTION_SHORT,
+                                                  SAMPLE_OPTION_LONG,
+                                                  "sampling interval");
+            dictionaryFile = extractValue(argumentList,
+                                          DICTIONARY_OPTION_SHORT,
+                                          DICTIONARY_OPTION_LONG,
+                                          "dictionary file");
+            range = extractRange(argumentList);
+            mapped = extractFlag(argumentList, 
+                                 MMAP_OPTION_SHORT, 
+                                 MMAP_OPTION_LONG);
+            interleaved = extractFlag(argumentList,
+                                      INTERLEAVE_OPTION_SHORT,
+                                      INTERLEAVE_OPTION_LONG);
+            adaptive = extractFlag(argumentList,
+                                   ADAPTIVE_OPTION_SHORT,
+                                   ADAPTIVE_OPTION_LONG);
+            report = extractFlag(argumentList,
+                                 REPORT_OPTION_SHORT,
+                                 REPORT_OPTION_LONG);
+            contextModelled = extractFlag(argumentList,
+                                          CONTEXT_OPTION_SHORT,
+                                          CONTEXT_OPTION_LONG);
+            indexed = extractFlag(argumentList,
+                                  INDEX_OPTION_SHORT,
+                                  INDEX_OPTION_LONG);
+            verifyChecksums = !extractFlag(argumentList,
+                                           NO_VERIFY_OPTION_SHORT,
+                                           NO_VERIFY_OPTION_LONG);
+            stats = extractFlag(argumentList,
+                                STATS_OPTION_SHORT,
+                                STATS_OPTION_LONG);
+            checkConflicts();
+        }
+
+        /**
+         * Returns the builder of the codec compressing with these options.
+         */
+        ParallelHuffmanCodec.Builder encoder() {
+            ParallelHuffmanCodec.Builder builder = 
+                    decoder().interleaved(interleaved)
+                             .contextModelled(contextModelled)
+                             .indexed(indexed);
+
+            if (samplingInterval != 0) {
+                builder.samplingInterval(samplingInterval);
+            }
+
+            if (maxCodeLength != 0) {
+                builder.maxCodeLength(maxCodeLength);
+            }
+
+            return builder;
+        }
+
+        /**
+         * Returns the builder of the codec decompressing with these options.
+         */
+        ParallelHuffmanCodec.Builder decoder() {
+            ParallelHuffmanCodec.Builder builder = 
+                    ParallelHuffmanCodec.builder()
+                                        .blockSize(DEFAULT_BLOCK_SIZE)
+                                        .verifyChecksums(verifyChecksums);
+
+            if (numberOfThreads != 0) {
+                builder.threads(numberOfThreads);
+            }
+
+            return builder;
+        }
+
+        /**
+         * Rejects the options that cannot take effect together.
+         */
+        private void checkConflicts() {
+            // The adaptive and the dictionary coders use no block codes:
+            boolean[] blockOptions = { 
+                contextModelled, 
+                interleaved, 
+                samplingInterval != 0, 
+                maxCodeLength != 0, 
+                indexed, 
+                mapped, 
+                stats 
+            };
+            String[] blockOptionNames = { 
+                CONTEXT_OPTION_LONG,
+                INTERLEAVE_OPTION_LONG,
+                SAMPLE_OPTION_LONG,
+                MAX_LENGTH_OPTION_LONG,
+                INDEX_OPTION_LONG,
+                MMAP_OPTION_LONG,
+                STATS_OPTION_LONG
+            };
+
+            for (int i = 0; i != blockOptions.length; ++i) {
+                checkNotCombined(adaptive, 
+                                 ADAPTIVE_OPTION_LONG,
+                                 blockOptions[i], 
+                                 blockOptionNames[i]);
+                checkNotCombined(dictionaryFile != null, 
+                                 DICTIONARY_OPTION_LONG,
+                                 blockOptions[i], 
+                                 blockOptionNames[i]);
+            }
+
+            checkNotCombined(adaptive, 
+                             ADAPTIVE_OPTION_LONG,
+                             dictionaryFile != null,
+                             DICTIONARY_OPTION_LONG);
+            checkNotCombined(range != null,
+                             RANGE_OPTION_LONG,
+                             dictionaryFile != null,
+                             DICTIONARY_OPTION_LONG);
+            checkNotCombined(range != null,
+                             RANGE_OPTION_LONG,
+                             mapped,
+                             MMAP_OPTION_LONG);
+
+            if (report && samplingInterval == 0) {
+                throw new IllegalArgumentException(
+                        "The option " + REPORT_OPTION_LONG + " needs " + 
+                        SAMPLE_OPTION_LONG + ".");
+            }
+        }
+
+        private static void checkNotCombined(boolean first,
+                                             String firstOption,
+                                             boolean second,
+                                             String secondOption) {
+            if (first && second) {
+                throw new IllegalArgumentException(
+                        "The options " + firstOption + " and " + 
+                        secondOption + " cannot be combined.");
+            }
+        }
+    }
+
+    /**
+     * Discards the bytes written to it and counts them.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            count += length;
+        }
+    }
+
     private static String getThisJarName() {
         return new File(App.class.getProtectionDomain()
                         .getCodeSource()
                         .getLocation()
                         .getPath()).getName();
     }
-
-    private static void writeBytes(byte[] data, File file) {
-        try {
-            FileOutputStream fos = new FileOutputStream(file);
-            fos.write(data);
-            fos.close();
-        } catch (IOException ex) {
-            throw new RuntimeException(
-            "ERROR: File IO failed while writing encoded data.", ex);
-        } 
-    }
-
-    private static byte[] readBytes(File file) {
-        try {
-            Path path = Paths.get(file.getAbsolutePath());
-            return Files.readAllBytes(path);
-        } catch (IOException ex) {
-            throw new RuntimeException(
-            "ERROR: File IO failed while reading a binary file.", ex);
-        }
-    }
 }
-
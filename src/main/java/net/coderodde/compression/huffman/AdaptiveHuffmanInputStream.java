@@ -0,0 +1,214 @@
+package net.coderodde.compression.huffman;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class implements an input stream decompressing the data produced by
+ * {@link AdaptiveHuffmanOutputStream}. The bytes are decoded one at a time
+ * while the code tree is updated exactly as by the writer. A read returns as
+ * soon as it reaches the point of a flush by the writer, so that the bytes
+ * written before the flush are delivered without waiting for more input.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class AdaptiveHuffmanInputStream extends FilterInputStream {
+
+    /**
+     * The number of bytes read from the underlying stream at a time.
+     */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    /**
+     * The code tree.
+     */
+    private final AdaptiveHuffmanTree tree = new AdaptiveHuffmanTree();
+
+    /**
+     * Buffers the coded bytes.
+     */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /**
+     * The number of bytes in {@code buffer}.
+     */
+    private int bufferLength;
+
+    /**
+     * The index of the next byte to take from {@code buffer}.
+     */
+    private int bufferPosition;
+
+    /**
+     * Holds the unread bits of the current byte, the next bit in bit 0.
+     */
+    private int bits;
+
+    /**
+     * The number of bits in {@code bits}.
+     */
+    private int bitCount;
+
+    /**
+     * Whether the end of stream symbol has been read.
+     */
+    private boolean endOfStream;
+
+    /**
+     * Constructs a decompressing stream and reads the stream signature.
+     *
+     * @param in the stream providing the compressed data.
+     * @throws IOException if reading the signature fails.
+     * @throws InvalidFormatException if the stream signature is bad.
+     */
+    public AdaptiveHuffmanInputStream(InputStream in) throws IOException {
+        super(in);
+        byte[] signature = new byte[AdaptiveHuffmanTree.MAGIC_ADAPTIVE.length];
+        InputStreams.readFully(in, signature, 0, signature.length);
+
+        for (int i = 0; i != signature.length; ++i) {
+            if (signature[i] != AdaptiveHuffmanTree.MAGIC_ADAPTIVE[i]) {
+                throw new InvalidFormatException(
+                        "Bad adaptive stream type signature.");
+            }
+        }
+    }
+
+    /**
+     * Tells whether {@code in} starts with the signature of the adaptive
+     * stream format. The stream {@code in} must support marking, and no bytes
+     * are consumed.
+     *
+     * @param in the stream to check.
+     * @return {@code true} if the adaptive stream signature is present.
+     * @throws IOException if the I/O fails.
+     */
+    public static boolean hasStreamSignature(InputStream in)
+            throws IOException {
+        return HuffmanBlockCodec.hasSignature(
+                in,
+                AdaptiveHuffmanTree.MAGIC_ADAPTIVE);
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (!endOfStream) {
+            int symbol = readSymbol();
+
+            if (symbol < AdaptiveHuffmanTree.FLUSH_SYMBOL) {
+                return symbol;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public int read(byte[] data, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > data.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (length == 0) {
+            return 0;
+        }
+
+        int index = offset;
+        int end = offset + length;
+
+        while (index != end && !endOfStream) {
+            int symbol = readSymbol();
+
+            if (symbol < AdaptiveHuffmanTree.FLUSH_SYMBOL) {
+                data[index++] = (byte) symbol;
+            } else if (index != offset) {
+                // Deliver the bytes up to the flush before reading on:
+                break;
+            }
+        }
+
+        return index == offset ? -1 : index - offset;
+    }
+
+    @Override
+    public int available() {
+        return 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {}
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported.");
+    }
+
+    /**
+     * Decodes the next symbol and updates the tree. The control symbols are
+     * followed by the padding to a whole byte, which is skipped.
+     */
+    private int readSymbol() throws IOException {
+        int node = tree.getRoot();
+
+        while (!tree.isLeaf(node)) {
+            node = tree.getChild(node, readBit());
+        }
+
+        int symbol = tree.getSymbol(node);
+
+        if (symbol == AdaptiveHuffmanTree.NYT_SYMBOL) {
+            symbol = 0;
+
+            for (int i = 0;
+                    i != AdaptiveHuffmanTree.BITS_PER_ESCAPED_SYMBOL;
+                    ++i) {
+                symbol |= readBit() << i;
+            }
+
+            if (symbol >= AdaptiveHuffmanTree.ALPHABET_SIZE
+                    || tree.contains(symbol)) {
+                throw new InvalidFormatException(
+                "Bad escaped symbol: " + symbol + ".");
+            }
+        }
+
+        tree.update(symbol);
+
+        if (symbol >= AdaptiveHuffmanTree.FLUSH_SYMBOL) {
+            bitCount = 0;
+            endOfStream = symbol == AdaptiveHuffmanTree.END_SYMBOL;
+        }
+
+        return symbol;
+    }
+
+    private int readBit() throws IOException {
+        if (bitCount == 0) {
+            if (bufferPosition == bufferLength) {
+                bufferLength = in.read(buffer, 0, buffer.length);
+                bufferPosition = 0;
+
+                if (bufferLength <= 0) {
+                    bufferLength = 0;
+                    throw new EOFException("Unexpected end of the stream.");
+                }
+            }
+
+            bits = Byte.toUnsignedInt(buffer[bufferPosition++]);
+            bitCount = Byte.SIZE;
+        }
+
+        int bit = bits & 1;
+        bits >>>= 1;
+        --bitCount;
+        return bit;
+    }
+}
@@ -0,0 +1,190 @@
+package net.coderodde.compression.huffman;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class implements an output stream compressing the data written to it
+ * in a single pass with the adaptive Huffman code of
+ * {@link AdaptiveHuffmanTree}. Unlike {@link HuffmanOutputStream}, no block
+ * is buffered and no code table is transmitted: each byte is coded as soon as
+ * it is written, with the code adapted to the bytes written before it. This
+ * suits live streams, such as logs or sockets, whose data cannot be held
+ * back.
+ * <p>
+ * The memory usage is constant. Each {@link #flush()} pads the bit stream to
+ * a whole byte and passes everything written so far on, so that the reader
+ * can decode it without waiting for more data; the padding costs a few bits
+ * per flush.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class AdaptiveHuffmanOutputStream extends FilterOutputStream {
+
+    /**
+     * The number of bytes buffered before they are written.
+     */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    /**
+     * The code tree.
+     */
+    private final AdaptiveHuffmanTree tree = new AdaptiveHuffmanTree();
+
+    /**
+     * Buffers the coded bytes.
+     */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /**
+     * The number of bytes in {@code buffer}.
+     */
+    private int bufferLength;
+
+    /**
+     * Holds the bits of the incomplete byte, the first bit in bit 0.
+     */
+    private int bits;
+
+    /**
+     * The number of bits in {@code bits}.
+     */
+    private int bitCount;
+
+    /**
+     * Whether the end of stream symbol is already written.
+     */
+    private boolean finished;
+
+    /**
+     * Constructs a compressing stream and writes the stream signature.
+     *
+     * @param out the stream receiving the compressed data.
+     * @throws IOException if writing the signature fails.
+     */
+    public AdaptiveHuffmanOutputStream(OutputStream out) throws IOException {
+        super(out);
+        out.write(AdaptiveHuffmanTree.MAGIC_ADAPTIVE);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkNotFinished();
+        writeSymbol(b & 0xff);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        checkNotFinished();
+
+        if (offset < 0 || length < 0 || length > data.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        for (int end = offset + length; offset != end; ++offset) {
+            writeSymbol(data[offset] & 0xff);
+        }
+    }
+
+    /**
+     * Pads the bit stream to a whole byte, writes all the coded bytes and
+     * flushes the underlying stream.
+     *
+     * @throws IOException if the I/O fails.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!finished) {
+            writeSymbol(AdaptiveHuffmanTree.FLUSH_SYMBOL);
+            writeBuffer();
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Writes the end of stream symbol and the remaining coded bytes without
+     * closing the underlying stream.
+     *
+     * @throws IOException if the I/O fails.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+
+        writeSymbol(AdaptiveHuffmanTree.END_SYMBOL);
+        writeBuffer();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the code word of {@code symbol}, escaping it if it occurs for
+     * the first time, and updates the tree. The control symbols are followed
+     * by the padding to a whole byte.
+     */
+    private void writeSymbol(int symbol) throws IOException {
+        int[] path = tree.path;
+        boolean escaped = !tree.contains(symbol);
+
+        for (int i = tree.computePath(symbol) - 1; i >= 0; --i) {
+            writeBit(path[i]);
+        }
+
+        if (escaped) {
+            for (int i = 0;
+                    i != AdaptiveHuffmanTree.BITS_PER_ESCAPED_SYMBOL;
+                    ++i) {
+                writeBit((symbol >>> i) & 1);
+            }
+        }
+
+        tree.update(symbol);
+
+        if (symbol >= AdaptiveHuffmanTree.FLUSH_SYMBOL && bitCount != 0) {
+            appendByte(bits);
+            bits = 0;
+            bitCount = 0;
+        }
+    }
+
+    private void writeBit(int bit) throws IOException {
+        bits |= bit << bitCount;
+
+        if (++bitCount == Byte.SIZE) {
+            appendByte(bits);
+            bits = 0;
+            bitCount = 0;
+        }
+    }
+
+    private void appendByte(int b) throws IOException {
+        buffer[bufferLength++] = (byte) b;
+
+        if (bufferLength == buffer.length) {
+            writeBuffer();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        out.write(buffer, 0, bufferLength);
+        bufferLength = 0;
+    }
+
+    private void checkNotFinished() throws IOException {
+        if (finished) {
+            throw new IOException("The stream is already finished.");
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package net.coderodde.compression.huffman;
+
+import java.util.Arrays;
+
+/**
+ * This class implements the code tree of the adaptive Huffman coding by
+ * Faller, Gallager and Knuth (FGK). Both the encoder and the decoder start
+ * from a tree holding only the "not yet transmitted" (NYT) leaf and update it
+ * after each symbol in the same way, so that they stay in sync without any
+ * code table being transmitted. A symbol seen for the first time is coded as
+ * the code word of the NYT leaf followed by the symbol in
+ * {@link #BITS_PER_ESCAPED_SYMBOL} bits, after which the NYT leaf splits into
+ * a new NYT leaf and the leaf of the symbol.
+ * <p>
+ * The nodes are stored in fixed arrays indexed by their number in the
+ * sibling property order: the weights never decrease with the number, the
+ * two children of a node occupy consecutive numbers and the root has the
+ * highest number. An update walks from the leaf to the root; each node on the
+ * way first changes places with the highest numbered node of the same weight
+ * and then gets its weight incremented. Changing places swaps the contents of
+ * the two numbers, that is, the subtrees move while the parent of each
+ * number stays put.
+ * <p>
+ * Besides the 256 byte values, the alphabet has two control symbols:
+ * {@link #FLUSH_SYMBOL} pads the bit stream to a whole byte so that
+ * everything written so far can be decoded, and {@link #END_SYMBOL} ends the
+ * stream.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+final class AdaptiveHuffmanTree {
+
+    /**
+     * The signature of the adaptive stream format.
+     */
+    static final byte[] MAGIC_ADAPTIVE = new byte[]{ (byte) 0xC0,
+                                                     (byte) 0xDE,
+                                                     (byte) 0x0D,
+                                                     (byte) 0xAD };
+
+    /**
+     * The control symbol padding the bit stream to a whole byte.
+     */
+    static final int FLUSH_SYMBOL = 256;
+
+    /**
+     * The control symbol ending the stream.
+     */
+    static final int END_SYMBOL = 257;
+
+    /**
+     * The number of symbols: the byte values and the control symbols.
+     */
+    static final int ALPHABET_SIZE = 258;
+
+    /**
+     * The number of bits of a symbol following the code word of the NYT
+     * leaf.
+     */
+    static final int BITS_PER_ESCAPED_SYMBOL = 9;
+
+    /**
+     * The symbol value marking the NYT leaf.
+     */
+    static final int NYT_SYMBOL = ALPHABET_SIZE;
+
+    /**
+     * The number of nodes in a tree with a leaf for each symbol and the NYT
+     * leaf.
+     */
+    private static final int MAX_NODES = 2 * ALPHABET_SIZE + 1;
+
+    /**
+     * The number of the root.
+     */
+    private static final int ROOT = MAX_NODES - 1;
+
+    /**
+     * The weight of each node, that is, the number of occurrences of the
+     * symbols in its subtree.
+     */
+    private final long[] weights = new long[MAX_NODES];
+
+    /**
+     * The number of the parent of each node but the root.
+     */
+    private final int[] parents = new int[MAX_NODES];
+
+    /**
+     * The contents of each node: the number of the 0-child of an internal
+     * node, whose 1-child follows it, or the bitwise complement of the symbol
+     * of a leaf.
+     */
+    private final int[] contents = new int[MAX_NODES];
+
+    /**
+     * The number of the leaf of each symbol, or -1 if the symbol has not
+     * occurred yet.
+     */
+    private final int[] leaves = new int[ALPHABET_SIZE];
+
+    /**
+     * The number of the NYT leaf.
+     */
+    private int nyt;
+
+    /**
+     * Holds the bits of the last path computed, from the leaf up.
+     */
+    final int[] path = new int[MAX_NODES];
+
+    /**
+     * Constructs a tree holding only the NYT leaf.
+     */
+    AdaptiveHuffmanTree() {
+        Arrays.fill(leaves, -1);
+        contents[ROOT] = ~NYT_SYMBOL;
+        nyt = ROOT;
+    }
+
+    /**
+     * Computes the code word of {@code symbol} into {@link #path}, or the
+     * code word of the NYT leaf if the symbol has not occurred yet. The first
+     * bit of the code word is stored last.
+     *
+     * @param symbol the symbol to code.
+     * @return the length of the code word.
+     */
+    int computePath(int symbol) {
+        int node = leaves[symbol] < 0 ? nyt : leaves[symbol];
+        int length = 0;
+
+        while (node != ROOT) {
+            int parent = parents[node];
+            path[length++] = node - contents[parent];
+            node = parent;
+        }
+
+        return length;
+    }
+
+    /**
+     * Tells whether {@code symbol} has occurred, that is, it has a leaf.
+     *
+     * @param symbol the symbol to check.
+     * @return {@code true} if the symbol has a leaf.
+     */
+    boolean contains(int symbol) {
+        return leaves[symbol] >= 0;
+    }
+
+    /**
+     * Returns the number of the root.
+     *
+     * @return the root.
+     */
+    int getRoot() {
+        return ROOT;
+    }
+
+    /**
+     * Tells whether the node {@code node} is a leaf.
+     *
+     * @param node the number of the node.
+     * @return {@code true} if the node is a leaf.
+     */
+    boolean isLeaf(int node) {
+        return contents[node] < 0;
+    }
+
+    /**
+     * Returns the child of the internal node {@code node} reached by the
+     * bit {@code bit}.
+     *
+     * @param node the number of the internal node.
+     * @param bit  the bit, either 0 or 1.
+     * @return the number of the child.
+     */
+    int getChild(int node, int bit) {
+        return contents[node] + bit;
+    }
+
+    /**
+     * Returns the symbol of the leaf {@code node}, which is
+     * {@link #NYT_SYMBOL} for the NYT leaf.
+     *
+     * @param leaf the number of the leaf.
+     * @return the symbol of the leaf.
+     */
+    int getSymbol(int leaf) {
+        return ~contents[leaf];
+    }
+
+    /**
+     * Counts an occurrence of {@code symbol}, first adding its leaf if it has
+     * not occurred yet.
+     *
+     * @param symbol the symbol that occurred.
+     */
+    void update(int symbol) {
+        int node = leaves[symbol];
+
+        if (node < 0) {
+            // Split the NYT leaf into a new NYT leaf and the symbol leaf:
+            int parent = nyt;
+            nyt = parent - 2;
+            node = parent - 1;
+            contents[parent] = nyt;
+            contents[nyt] = ~NYT_SYMBOL;
+            contents[node] = ~symbol;
+            parents[nyt] = parent;
+            parents[node] = parent;
+            leaves[symbol] = node;
+        }
+
+        while (true) {
+            long weight = weights[node];
+            int leader = node;
+
+            while (leader != ROOT && weights[leader + 1] == weight) {
+                ++leader;
+            }
+
+            // The parent has the same weight only if the sibling is the
+            // NYT leaf; the parent stays above the node anyway.
+            if (leader != node && leader != parents[node]) {
+                swap(node, leader);
+                node = leader;
+            }
+
+            weights[node]++;
+
+            if (node == ROOT) {
+                return;
+            }
+
+            node = parents[node];
+        }
+    }
+
+    /**
+     * Swaps the subtrees at the nodes {@code a} and {@code b}, which have the
+     * same weight.
+     */
+    private void swap(int a, int b) {
+        int contentsA = contents[a];
+        contents[a] = contents[b];
+        contents[b] = contentsA;
+        relink(a);
+        relink(b);
+    }
+
+    /**
+     * Points the children, or the leaf index, of the contents of the node
+     * {@code node} back to it.
+     */
+    private void relink(int node) {
+        int content = contents[node];
+
+        if (content >= 0) {
+            parents[content] = node;
+            parents[content + 1] = node;
+        } else if (~content == NYT_SYMBOL) {
+            nyt = node;
+        } else {
+            leaves[~content] = node;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package net.coderodde.compression.huffman;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class implements a read-only view of a bit string stored in a byte
+ * array or a byte buffer. Bit {@code i} of the view is the bit {@code i % 8}
+ * of the byte {@code i / 8} counted from the start of the view, which is the
+ * layout {@link BitString#toByteArray()} produces. No bits are copied: the
+ * bits are fetched from the underlying storage 64 at a time while decoding.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class BitReader {
+
+    /**
+     * The little-endian buffer whose index zero holds the first byte of the
+     * view.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The number of bits in the view.
+     */
+    private final long length;
+
+    /**
+     * The number of bytes occupied by the bits.
+     */
+    private final int numberOfBytes;
+
+    /**
+     * Constructs a view of {@code length} bits stored in {@code data}
+     * starting at the index {@code offset}.
+     *
+     * @param data   the array holding the bits.
+     * @param offset the index of the byte holding the first bit.
+     * @param length the number of bits.
+     */
+    public BitReader(byte[] data, int offset, long length) {
+        this(wrap(data, offset), length);
+    }
+
+    /**
+     * Constructs a view of {@code length} bits stored in {@code buffer}
+     * starting at its position. Neither the position nor the byte order of
+     * {@code buffer} is changed.
+     *
+     * @param buffer the buffer holding the bits.
+     * @param length the number of bits.
+     */
+    public BitReader(ByteBuffer buffer, long length) {
+        if (length < 0L) {
+            throw new IllegalArgumentException(
+            "Negative bit length: " + length + ".");
+        }
+
+        long numberOfBytes = (length + Byte.SIZE - 1) / Byte.SIZE;
+
+        if (numberOfBytes > buffer.remaining()) {
+            throw new IllegalArgumentException(
+            "The buffer holds " + buffer.remaining() + " bytes, " +
+            numberOfBytes + " needed.");
+        }
+
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.length = length;
+        this.numberOfBytes = (int) numberOfBytes;
+    }
+
+    /**
+     * Returns number of bits in this view.
+     *
+     * @return number of bits.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Reads a specific bit.
+     *
+     * @param index the index of the target bit.
+     * @return {@code true} if the target bit is on, {@code false} otherwise.
+     */
+    public boolean readBit(long index) {
+        checkAccessIndex(index);
+        return (buffer.get((int)(index / Byte.SIZE))
+                & (1 << (index % Byte.SIZE))) != 0;
+    }
+
+    /**
+     * Reads {@code count} bits starting from the bit {@code index}. The first
+     * bit read becomes the least significant bit of the result.
+     *
+     * @param index the index of the first bit to read.
+     * @param count the number of bits to read, at most 64.
+     * @return the bits read.
+     */
+    public long readBits(long index, int count) {
+        if (count < 0 || count > Long.SIZE) {
+            throw new IllegalArgumentException(
+            "The bit count must be within [0, 64]. Received " + count + ".");
+        }
+
+        if (count == 0) {
+            return 0L;
+        }
+
+        checkAccessIndex(index);
+        checkAccessIndex(index + count - 1);
+
+        long bits = readWindow(index);
+        return count == Long.SIZE ? bits : bits & ((1L << count) - 1);
+    }
+
+    /**
+     * Copies the bits of this view into a new bit string.
+     *
+     * @return the bit string.
+     */
+    public BitString toBitString() {
+        BitString bitString = new BitString(length);
+        long fullWords = length / Long.SIZE;
+
+        for (long i = 0; i != fullWords; ++i) {
+            bitString.appendBits(readWord((int) i), Long.SIZE);
+        }
+
+        int remainingBits = (int)(length % Long.SIZE);
+
+        if (remainingBits != 0) {
+            bitString.appendBits(readWord((int) fullWords), remainingBits);
+        }
+
+        return bitString;
+    }
+
+    /**
+     * Returns the little-endian buffer whose index zero holds the first byte
+     * of this view.
+     *
+     * @return the buffer.
+     */
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the number of 64-bit words lying entirely within the bytes of
+     * this view.
+     *
+     * @return the number of full words.
+     */
+    int getNumberOfFullWords() {
+        return numberOfBytes / Long.BYTES;
+    }
+
+    /**
+     * Reads 64 bits starting from the bit {@code index}. The bits past the
+     * bytes of this view are read as zeros.
+     *
+     * @param index the index of the first bit to read.
+     * @return the bits read.
+     */
+    long readWindow(long index) {
+        int wordIndex = (int)(index / Long.SIZE);
+        int bitOffset = (int)(index % Long.SIZE);
+        long window = readWord(wordIndex) >>> bitOffset;
+
+        if (bitOffset != 0) {
+            window |= readWord(wordIndex + 1) << (Long.SIZE - bitOffset);
+        }
+
+        return window;
+    }
+
+    /**
+     * Reads the word {@code wordIndex}. The bytes past the bytes of this view
+     * are read as zeros.
+     */
+    private long readWord(int wordIndex) {
+        long byteIndex = (long) wordIndex * Long.BYTES;
+
+        if (byteIndex + Long.BYTES <= numberOfBytes) {
+            return buffer.getLong((int) byteIndex);
+        }
+
+        long word = 0L;
+
+        for (int i = 0; byteIndex + i < numberOfBytes; ++i) {
+            word |= (buffer.get((int) byteIndex + i) & 0xffL)
+                    << (Byte.SIZE * i);
+        }
+
+        return word;
+    }
+
+    private void checkAccessIndex(long index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException(
+            "The index is negative: " + index + ".");
+        }
+
+        if (index >= length) {
+            throw new IndexOutOfBoundsException(
+            "The bit index is too large (" + index + "). Must be at most " +
+            (length - 1) + ".");
+        }
+    }
+
+    private static ByteBuffer wrap(byte[] data, int offset) {
+        if (offset < 0 || offset > data.length) {
+            throw new IndexOutOfBoundsException(
+            "Bad offset: " + offset + ".");
+        }
+
+        return ByteBuffer.wrap(data, offset, data.length - offset);
+    }
+}
@@ -1,12 +1,19 @@
 package net.coderodde.compression.huffman;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 /**
- * This class implements a builder for creating bit strings.
- * 
+ * This class implements a builder for creating bit strings. The bits are
+ * indexed by {@code long} values and stored in segments of
+ * {@link #LONGS_PER_SEGMENT} words, so a bit string is not limited by the
+ * maximum length of a Java array.
+ *
  * @author Rodion "rodde" Efremov
- * @version 1.618 (Nov 14, 2016)
+ * @version 1.7 (Oct 17, 2026)
  */
 public final class BitString {
 
@@ -27,44 +34,104 @@ public final class BitString {
     private static final int BITS_PER_LONG = Long.BYTES * Byte.SIZE;
 
     /**
-     * This field holds the actual array of long values for storing the bits.
+     * The base 2 logarithm of the number of words in a full segment.
      */
-    private long[] storageLongs;
+    static final int SEGMENT_SHIFT = 20;
+
+    /**
+     * The number of words in a full segment.
+     */
+    static final int LONGS_PER_SEGMENT = 1 << SEGMENT_SHIFT;
+
+    /**
+     * The base 2 logarithm of the number of bits in a full segment.
+     */
+    static final int SEGMENT_BIT_SHIFT = SEGMENT_SHIFT + 6;
+
+    /**
+     * Extracts the index of a word within its segment.
+     */
+    private static final long SEGMENT_MASK = LONGS_PER_SEGMENT - 1;
+
+    /**
+     * The size of the buffer used for writing the bits to a stream.
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * This field holds the segments of long values for storing the bits. Only
+     * the very first segment may be shorter than {@link #LONGS_PER_SEGMENT},
+     * and only if it is the only segment.
+     */
+    private long[][] segments;
 
     /**
      * Current maximum of bits this builder can store.
      */
-    private int storageCapacity;
+    private long storageCapacity;
 
     /**
      * Stores the number of bits this bit string builder actually represents.
      * We have an invariant {@code size <= storageCapacity}.
      */
-    private int size;
+    private long size;
 
     /**
      * Constructs an empty bit string builder.
      */
     public BitString() {
-        this.storageLongs = new long[DEFAULT_NUMBER_OF_LONGS];
-        this.storageCapacity = this.storageLongs.length * BITS_PER_LONG;
+        this.segments = new long[][]{ new long[DEFAULT_NUMBER_OF_LONGS] };
+        this.storageCapacity = DEFAULT_NUMBER_OF_LONGS * BITS_PER_LONG;
+    }
+
+    /**
+     * Constructs an empty bit string builder with room for {@code capacity}
+     * bits, so that appending that many bits never grows the storage.
+     *
+     * @param capacity the number of bits to allocate room for.
+     */
+    public BitString(long capacity) {
+        if (capacity < 0L) {
+            throw new IllegalArgumentException(
+            "Negative capacity: " + capacity + ".");
+        }
+
+        long numberOfWords = Math.max(DEFAULT_NUMBER_OF_LONGS,
+                                      (capacity + BITS_PER_LONG - 1)
+                                              / BITS_PER_LONG);
+
+        if (numberOfWords <= LONGS_PER_SEGMENT) {
+            this.segments = new long[][]{ new long[(int) numberOfWords] };
+        } else {
+            int numberOfSegments = 
+                    (int)((numberOfWords + LONGS_PER_SEGMENT - 1)
+                          >>> SEGMENT_SHIFT);
+
+            this.segments = new long[numberOfSegments][LONGS_PER_SEGMENT];
+        }
+
+        this.storageCapacity = 0L;
+
+        for (long[] segment : segments) {
+            this.storageCapacity += (long) segment.length * BITS_PER_LONG;
+        }
     }
 
     /**
      * Constructs a distinct bit string builder with the same content as in
-     * {@code toCopy}. 
-     * 
+     * {@code toCopy}.
+     *
      * @param toCopy the bit string builder whose content to copy.
      */
     public BitString(BitString toCopy) {
         this.size = toCopy.size;
-        this.storageCapacity = 
-                Math.max(size, DEFAULT_NUMBER_OF_LONGS * BITS_PER_LONG);
+        this.segments = new long[toCopy.segments.length][];
 
-        int numberOfLongs = storageCapacity / BITS_PER_LONG +
-                         (((storageCapacity & MODULO_MASK) == 0) ? 0 : 1);
+        for (int i = 0; i != segments.length; ++i) {
+            segments[i] = toCopy.segments[i].clone();
+        }
 
-        this.storageLongs = Arrays.copyOf(toCopy.storageLongs, numberOfLongs);
+        this.storageCapacity = toCopy.storageCapacity;
     }
 
     public void appendBit(boolean bit) {
@@ -75,35 +142,141 @@ public final class BitString {
 
     /**
      * Returns number of bits stored in this builder.
-     * 
+     *
      * @return number of bits.
      */
-    public int length() {
+    public long length() {
         return size;
     }
 
     /**
-     * Appends all the bits in {@code bitStringBuilder} to the end of this 
+     * Appends all the bits in {@code bitStringBuilder} to the end of this
      * builder.
-     * 
+     *
      * @param bitStringBuilder the bit string builder whose bits to append.
      */
     public void appendBitsFrom(BitString bitStringBuilder) {
         checkBitArrayCapacity(size + bitStringBuilder.size);
-        int otherSize = bitStringBuilder.size;
+        long otherSize = bitStringBuilder.size;
+        long fullWords = otherSize / BITS_PER_LONG;
+
+        for (long i = 0; i != fullWords; ++i) {
+            appendBits(bitStringBuilder.getWord(i), BITS_PER_LONG);
+        }
+
+        int remainingBits = (int) otherSize & MODULO_MASK;
+
+        if (remainingBits != 0) {
+            appendBits(bitStringBuilder.getWord(fullWords), remainingBits);
+        }
+    }
+
+    /**
+     * Appends the {@code count} lowest bits of {@code bits}, starting from
+     * the least significant one.
+     *
+     * @param bits  the bits to append.
+     * @param count the number of bits to append, at most 64.
+     */
+    public void appendBits(long bits, int count) {
+        if (count < 0 || count > BITS_PER_LONG) {
+            throw new IllegalArgumentException(
+            "The bit count must be within [0, 64]. Received " + count + ".");
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        checkBitArrayCapacity(size + count);
+
+        if (count < BITS_PER_LONG) {
+            bits &= (1L << count) - 1;
+        }
+
+        long longIndex = size / BITS_PER_LONG;
+        int bitIndex  = (int) size & MODULO_MASK;
+
+        // Keep the bits below 'size' and overwrite everything above it:
+        setWord(longIndex,
+                (getWord(longIndex) & ((1L << bitIndex) - 1))
+                | (bits << bitIndex));
+
+        if (bitIndex + count > BITS_PER_LONG) {
+            setWord(longIndex + 1, bits >>> (BITS_PER_LONG - bitIndex));
+        }
+
+        size += count;
+    }
+
+    /**
+     * Appends all the 64 bits of each of the words
+     * {@code words[0], ..., words[count - 1]}. If this bit string ends at a
+     * word boundary, the words are copied in bulk.
+     *
+     * @param words the words to append.
+     * @param count the number of words to append.
+     */
+    void appendWords(long[] words, int count) {
+        checkBitArrayCapacity(size + (long) count * BITS_PER_LONG);
+
+        if ((size & MODULO_MASK) != 0) {
+            for (int i = 0; i != count; ++i) {
+                appendBits(words[i], BITS_PER_LONG);
+            }
+
+            return;
+        }
+
+        long longIndex = size / BITS_PER_LONG;
+        int copied = 0;
+
+        while (copied != count) {
+            long[] segment = segments[(int)(longIndex >>> SEGMENT_SHIFT)];
+            int segmentIndex = (int)(longIndex & SEGMENT_MASK);
+            int chunk = Math.min(count - copied, 
+                                 segment.length - segmentIndex);
+
+            System.arraycopy(words, copied, segment, segmentIndex, chunk);
+            copied += chunk;
+            longIndex += chunk;
+        }
+
+        size += (long) count * BITS_PER_LONG;
+    }
+
+    /**
+     * Reads {@code count} bits starting from the bit {@code index}. The first
+     * bit read becomes the least significant bit of the result.
+     *
+     * @param index the index of the first bit to read.
+     * @param count the number of bits to read, at most 64.
+     * @return the bits read.
+     */
+    public long readBits(long index, int count) {
+        if (count < 0 || count > BITS_PER_LONG) {
+            throw new IllegalArgumentException(
+            "The bit count must be within [0, 64]. Received " + count + ".");
+        }
 
-        for (int i = 0; i != otherSize; ++i) {
-            appendBit(bitStringBuilder.readBitImpl(i));
+        if (count == 0) {
+            return 0L;
         }
+
+        checkAccessIndex(index);
+        checkAccessIndex(index + count - 1);
+
+        long bits = readWindow(index);
+        return count == BITS_PER_LONG ? bits : bits & ((1L << count) - 1);
     }
 
     /**
      * Reads a specific bit.
-     * 
+     *
      * @param index the index of the target bit.
-     * @return {@code true} if the target bit is on, {@code false} otherwise.
+     * @return {@code true} if the target bit is on, {@code false} otherwise.
      */
-    public boolean readBit(int index) {
+    public boolean readBit(long index) {
         checkAccessIndex(index);
         return readBitImpl(index);
     }
@@ -129,41 +302,161 @@ public final class BitString {
 
     /**
      * Returns the number of bytes occupied by bits.
-     * 
-     * @return number of bytes occupied. 
+     *
+     * @return number of bytes occupied.
      */
-    public int getNumberOfBytesOccupied() {
+    public long getNumberOfBytesOccupied() {
         return size / 8 + ((size % 8 == 0) ? 0 : 1);
     }
 
-    public byte[] toByteArray() {
-        int numberOfBytes = (size / Byte.SIZE) +
-                           ((size % Byte.SIZE == 0) ? 0 : 1);
+    /**
+     * Returns the segments holding the bits. Bit {@code i} is stored at the
+     * bit {@code i % 64} of the word {@code i / 64}, and word {@code w} is
+     * stored at {@code segments[w >>> SEGMENT_SHIFT][w % LONGS_PER_SEGMENT]}.
+     * The bits past {@link #length()} are unspecified.
+     *
+     * @return the storage segments.
+     */
+    long[][] getSegments() {
+        return segments;
+    }
+
+    /**
+     * Reads 64 bits starting from the bit {@code index}. The bits past the
+     * storage capacity are read as zeros.
+     *
+     * @param index the index of the first bit to read.
+     * @return the bits read.
+     */
+    long readWindow(long index) {
+        long longIndex = index / BITS_PER_LONG;
+        int bitIndex = (int) index & MODULO_MASK;
+        long window = getWord(longIndex) >>> bitIndex;
+
+        if (bitIndex != 0
+                && (longIndex + 1) * BITS_PER_LONG < storageCapacity) {
+            window |= getWord(longIndex + 1) << (BITS_PER_LONG - bitIndex);
+        }
+
+        return window;
+    }
 
-        byte[] byteArray = new byte[numberOfBytes];
+    /**
+     * Converts this bit string into a byte array. Bit {@code i} becomes the
+     * bit {@code i % 8} of the byte {@code i / 8}.
+     *
+     * @return the byte array.
+     * @throws IllegalStateException if the bits do not fit in an array.
+     */
+    public byte[] toByteArray() {
+        long numberOfBytes = getNumberOfBytesOccupied();
 
-        for (int i = 0; i != numberOfBytes; ++i) {
-            byteArray[i] = 
-                    (byte)
-                    ((storageLongs[i / Long.BYTES] 
-                    >>> Byte.SIZE * (i % Long.BYTES)) & 0xff);
+        if (numberOfBytes > Integer.MAX_VALUE - Long.BYTES) {
+            throw new IllegalStateException(
+            "The bit string is too long for an array: " + size + " bits.");
         }
 
+        byte[] byteArray = new byte[(int) numberOfBytes];
+        copyBytes(0L, byteArray, byteArray.length);
         return byteArray;
     }
 
+    /**
+     * Writes the bits into the stream {@code out} in the same layout as
+     * {@link #toByteArray()} produces.
+     *
+     * @param out the target stream.
+     * @throws IOException if the I/O fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        long numberOfBytes = getNumberOfBytesOccupied();
+        byte[] buffer = new byte[(int) Math.min(numberOfBytes,
+                                                WRITE_BUFFER_SIZE)];
+
+        for (long byteIndex = 0L;
+                byteIndex < numberOfBytes;
+                byteIndex += buffer.length) {
+            int chunkLength = (int) Math.min(buffer.length,
+                                             numberOfBytes - byteIndex);
+            copyBytes(byteIndex, buffer, chunkLength);
+            out.write(buffer, 0, chunkLength);
+        }
+    }
+
+    /**
+     * Writes the bits into the buffer {@code out} starting at its position in
+     * the same layout as {@link #toByteArray()} produces. The position of
+     * {@code out} is advanced past the written bytes.
+     *
+     * @param out the target buffer.
+     * @throws java.nio.BufferOverflowException if {@code out} has not enough
+     *                                          remaining space.
+     */
+    public void writeTo(ByteBuffer out) {
+        ByteOrder byteOrder = out.order();
+        out.order(ByteOrder.LITTLE_ENDIAN);
+
+        long numberOfBytes = getNumberOfBytesOccupied();
+        long fullWords = numberOfBytes / Long.BYTES;
+
+        for (long i = 0; i != fullWords; ++i) {
+            out.putLong(getWord(i));
+        }
+
+        int remainingBytes = (int)(numberOfBytes % Long.BYTES);
+
+        if (remainingBytes != 0) {
+            long word = getWord(fullWords);
+
+            for (int i = 0; i != remainingBytes; ++i) {
+                out.put((byte)(word >>> (Byte.SIZE * i)));
+            }
+        }
+
+        out.order(byteOrder);
+    }
+
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder(size);
+        StringBuilder sb = new StringBuilder((int) size);
 
-        for (int i = 0; i != size; ++i) {
+        for (long i = 0; i != size; ++i) {
             sb.append(readBitImpl(i) ? '1': '0');
         }
 
         return sb.toString();
     }
 
-    private void checkAccessIndex(int index) {
+    /**
+     * Copies {@code length} bytes starting from the byte {@code byteIndex}
+     * into {@code target}. The {@code byteIndex} must be a multiple of 8.
+     */
+    private void copyBytes(long byteIndex, byte[] target, int length) {
+        long longIndex = byteIndex / Long.BYTES;
+        int i = 0;
+
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            long word = getWord(longIndex++);
+            target[i]     = (byte)  word;
+            target[i + 1] = (byte) (word >>> 8);
+            target[i + 2] = (byte) (word >>> 16);
+            target[i + 3] = (byte) (word >>> 24);
+            target[i + 4] = (byte) (word >>> 32);
+            target[i + 5] = (byte) (word >>> 40);
+            target[i + 6] = (byte) (word >>> 48);
+            target[i + 7] = (byte) (word >>> 56);
+        }
+
+        if (i < length) {
+            long word = getWord(longIndex);
+
+            for (int shift = 0; i < length; ++i, shift += Byte.SIZE) {
+                target[i] = (byte) (word >>> shift);
+            }
+        }
+    }
+
+    private void checkAccessIndex(long index) {
         if (size == 0) {
             throw new IllegalStateException("The bit string is empty.");
         }
@@ -180,41 +473,75 @@ public final class BitString {
         }
     }
 
-    private boolean readBitImpl(int index) {
-        int longIndex = index / BITS_PER_LONG;
-        int bitIndex  = index & MODULO_MASK;
+    private long getWord(long longIndex) {
+        return segments[(int)(longIndex >>> SEGMENT_SHIFT)]
+                       [(int)(longIndex & SEGMENT_MASK)];
+    }
+
+    private void setWord(long longIndex, long word) {
+        segments[(int)(longIndex >>> SEGMENT_SHIFT)]
+                [(int)(longIndex & SEGMENT_MASK)] = word;
+    }
+
+    private boolean readBitImpl(long index) {
+        long longIndex = index / BITS_PER_LONG;
+        int bitIndex  = (int) index & MODULO_MASK;
         long mask = 1L << bitIndex;
-        return (storageLongs[longIndex] & mask) != 0;
+        return (getWord(longIndex) & mask) != 0;
     }
 
-    private void writeBitImpl(int index, boolean bit) {
-        int longIndex = index / BITS_PER_LONG;
-        int bitIndex  = index & MODULO_MASK;
+    private void writeBitImpl(long index, boolean bit) {
+        long longIndex = index / BITS_PER_LONG;
+        int bitIndex  = (int) index & MODULO_MASK;
 
         if (bit) {
             long mask = 1L << bitIndex;
-            storageLongs[longIndex] |= mask;
+            setWord(longIndex, getWord(longIndex) | mask);
         } else {
             long mask = ~(1L << bitIndex);
-            storageLongs[longIndex] &= mask;
+            setWord(longIndex, getWord(longIndex) & mask);
         }
     }
 
-    private void checkBitArrayCapacity(int requestedCapacity) {
-        if (requestedCapacity > storageCapacity) {
-            int requestedWords1 =
-                    requestedCapacity / BITS_PER_LONG + 
-                 (((requestedCapacity & MODULO_MASK) == 0) ? 0 : 1);
+    private void checkBitArrayCapacity(long requestedCapacity) {
+        if (requestedCapacity <= storageCapacity) {
+            return;
+        }
 
-            int requestedWords2 = (3 * storageCapacity / 2) / BITS_PER_LONG;
+        long requestedWords =
+                requestedCapacity / BITS_PER_LONG +
+             (((requestedCapacity & MODULO_MASK) == 0) ? 0 : 1);
 
-            int selectedRequestedWords = Math.max(requestedWords1,
-                                                  requestedWords2);
+        if (segments.length == 1 && segments[0].length < LONGS_PER_SEGMENT) {
+            // Grow the only segment geometrically until it becomes full:
+            long grownWords = Math.max(requestedWords,
+                                       3L * segments[0].length / 2);
 
-            this.storageLongs = Arrays.copyOf(storageLongs, 
-                                              selectedRequestedWords);
+            int selectedRequestedWords =
+                    (int) Math.min(grownWords, LONGS_PER_SEGMENT);
 
-            this.storageCapacity = this.storageLongs.length * BITS_PER_LONG;
+            segments[0] = Arrays.copyOf(segments[0], selectedRequestedWords);
+            storageCapacity = (long) selectedRequestedWords * BITS_PER_LONG;
         }
-    } 
+
+        if (requestedCapacity > storageCapacity) {
+            int requestedSegments =
+                    (int)((requestedWords + LONGS_PER_SEGMENT - 1)
+                          >>> SEGMENT_SHIFT);
+            int numberOfSegments =
+                    Math.max(requestedSegments,
+                             segments.length + segments.length / 2);
+
+            segments = Arrays.copyOf(segments, numberOfSegments);
+
+            for (int i = 0; i != numberOfSegments; ++i) {
+                if (segments[i] == null) {
+                    segments[i] = new long[LONGS_PER_SEGMENT];
+                }
+            }
+
+            storageCapacity =
+                    (long) numberOfSegments * LONGS_PER_SEGMENT * BITS_PER_LONG;
+        }
+    }
 }
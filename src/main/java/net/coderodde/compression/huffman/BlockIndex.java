@@ -0,0 +1,226 @@
+package net.coderodde.compression.huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * This class maps the blocks of a stream to the file positions of their
+ * frames, so that a range of the uncompressed data is decoded from the
+ * blocks covering it alone. Since all the blocks but the last one hold the
+ * same number of bytes, the block covering an uncompressed offset follows
+ * from the offset, and only the frame positions are stored.
+ * <p>
+ * The index is written after the end of stream marker as the footer
+ * <pre>
+ *   frame positions      (8 bytes per block)
+ *   uncompressed length  (8 bytes)
+ *   block size           (4 bytes)
+ *   signature            (4 bytes)
+ * </pre>
+ * whose fixed-length trailer is found at the end of the file. The frame
+ * positions count from the start of the stream.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+final class BlockIndex {
+
+    /**
+     * The signature ending the footer.
+     */
+    static final byte[] MAGIC_INDEX = new byte[]{ (byte) 0xC0,
+                                                  (byte) 0xDE,
+                                                  (byte) 0x0D,
+                                                  (byte) 0xE5 };
+
+    /**
+     * The number of bytes per frame position.
+     */
+    static final int BYTES_PER_FRAME_POSITION = 8;
+
+    /**
+     * The number of bytes following the frame positions.
+     */
+    static final int BYTES_PER_TRAILER = 8 + 4 + MAGIC_INDEX.length;
+
+    /**
+     * The number of bytes in each block but the last one.
+     */
+    private final int blockSize;
+
+    /**
+     * The position of the frame of each block.
+     */
+    private long[] framePositions;
+
+    /**
+     * The number of blocks.
+     */
+    private int numberOfBlocks;
+
+    /**
+     * The total number of bytes in the blocks.
+     */
+    private long uncompressedLength;
+
+    /**
+     * Constructs an empty index.
+     *
+     * @param blockSize the number of bytes in each block but the last one.
+     */
+    BlockIndex(int blockSize) {
+        this.blockSize = blockSize;
+        this.framePositions = new long[16];
+    }
+
+    /**
+     * Appends a block.
+     *
+     * @param framePosition the position of the frame of the block.
+     * @param blockLength   the number of bytes in the block.
+     */
+    void addBlock(long framePosition, int blockLength) {
+        if (numberOfBlocks == framePositions.length) {
+            framePositions = Arrays.copyOf(framePositions,
+                                           2 * numberOfBlocks);
+        }
+
+        framePositions[numberOfBlocks++] = framePosition;
+        uncompressedLength += blockLength;
+    }
+
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    int getNumberOfBlocks() {
+        return numberOfBlocks;
+    }
+
+    long getUncompressedLength() {
+        return uncompressedLength;
+    }
+
+    long getFramePosition(int block) {
+        return framePositions[block];
+    }
+
+    /**
+     * Returns the number of bytes in the block {@code block}.
+     */
+    int getBlockLength(int block) {
+        return (int) Math.min(blockSize,
+                              uncompressedLength - (long) block * blockSize);
+    }
+
+    /**
+     * Returns the number of bytes in the footer.
+     */
+    int getFooterLength() {
+        return numberOfBlocks * BYTES_PER_FRAME_POSITION + BYTES_PER_TRAILER;
+    }
+
+    /**
+     * Writes the footer into {@code footer}, a little-endian buffer with
+     * room for {@link #getFooterLength()} bytes.
+     *
+     * @param footer the target buffer.
+     */
+    void writeTo(ByteBuffer footer) {
+        for (int block = 0; block != numberOfBlocks; ++block) {
+            footer.putLong(framePositions[block]);
+        }
+
+        footer.putLong(uncompressedLength)
+              .putInt(blockSize)
+              .put(MAGIC_INDEX);
+    }
+
+    /**
+     * Returns the footer.
+     */
+    byte[] toByteArray() {
+        byte[] footer = new byte[getFooterLength()];
+        writeTo(ByteBuffer.wrap(footer).order(ByteOrder.LITTLE_ENDIAN));
+        return footer;
+    }
+
+    /**
+     * Reads the index from the footer at the end of the mapped input and
+     * checks that each frame position lies between the end of the stream
+     * header and the footer, in increasing order.
+     *
+     * @param input       the mapped input.
+     * @param inputSize   the number of bytes in the input.
+     * @param framesStart the position of the first frame.
+     * @return the index.
+     * @throws IOException if the I/O fails.
+     * @throws InvalidFormatException if the footer is malformed.
+     */
+    static BlockIndex readFrom(MappedFileWindow input,
+                               long inputSize,
+                               long framesStart) throws IOException {
+        if (inputSize - framesStart < BYTES_PER_TRAILER) {
+            throw new InvalidFormatException("Missing block index.");
+        }
+
+        ByteBuffer trailer = input.slice(inputSize - BYTES_PER_TRAILER,
+                                         BYTES_PER_TRAILER);
+        long uncompressedLength = trailer.getLong();
+        int blockSize = trailer.getInt();
+        byte[] signature = new byte[MAGIC_INDEX.length];
+        trailer.get(signature);
+
+        if (!Arrays.equals(signature, MAGIC_INDEX)) {
+            throw new InvalidFormatException("Bad block index signature.");
+        }
+
+        if (blockSize <= 0 || blockSize > HuffmanBlockCodec.MAX_BLOCK_SIZE) {
+            throw new InvalidFormatException(
+            "Bad block size in the block index: " + blockSize + ".");
+        }
+
+        long footerStart = inputSize - BYTES_PER_TRAILER;
+        long numberOfBlocks = uncompressedLength < 0L ?
+                              -1L :
+                              (uncompressedLength + blockSize - 1) / blockSize;
+
+        if (numberOfBlocks < 0L
+                || numberOfBlocks > Integer.MAX_VALUE 
+                                    / BYTES_PER_FRAME_POSITION
+                || numberOfBlocks > (footerStart - framesStart)
+                                    / BYTES_PER_FRAME_POSITION) {
+            throw new InvalidFormatException(
+            "Bad uncompressed length in the block index: " +
+            uncompressedLength + ".");
+        }
+
+        footerStart -= numberOfBlocks * BYTES_PER_FRAME_POSITION;
+        ByteBuffer positions =
+                input.slice(footerStart,
+                            (int) numberOfBlocks * BYTES_PER_FRAME_POSITION);
+        BlockIndex index = new BlockIndex(blockSize);
+        index.framePositions = new long[(int) numberOfBlocks];
+        index.numberOfBlocks = (int) numberOfBlocks;
+        index.uncompressedLength = uncompressedLength;
+        long previousPosition = framesStart - 1L;
+
+        for (int block = 0; block != numberOfBlocks; ++block) {
+            long framePosition = positions.getLong();
+
+            if (framePosition <= previousPosition
+                    || framePosition >= footerStart) {
+                throw new InvalidFormatException(
+                "Bad frame position in the block index: " + framePosition +
+                ".");
+            }
+
+            index.framePositions[block] = framePosition;
+            previousPosition = framePosition;
+        }
+
+        return index;
+    }
+}
@@ -1,39 +1,368 @@
 package net.coderodde.compression.huffman;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * This class provides a method for counting relative frequencies of characters
- * in any given corpus of text.
- * 
+ * in any given corpus of text. The bytes are counted into several interleaved
+ * primitive histograms, so that consecutive equal bytes do not wait for each
+ * other's counter update. Large inputs are split into chunks counted in
+ * parallel on a fork/join pool.
+ *
  * @author Rodion "rodde" Efremov
- * @version 1.618 (Nov 19, 2016)
+ * @version 1.7 (Oct 17, 2026)
  */
 public final class ByteCountComputer {
 
     /**
-     * Computes the map mapping each character in the text {@code text} to its
+     * The number of distinct byte values.
+     */
+    private static final int ALPHABET_SIZE = FrequencyTable.ALPHABET_SIZE;
+
+    /**
+     * Inputs of at least this many bytes are counted in parallel.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 22;
+
+    /**
+     * The number of independent counter arrays the bytes are spread over, 
+     * so that consecutive equal bytes do not wait for each other's 
+     * increments.
+     */
+    static final int COUNTER_LANES = 4;
+
+    /**
+     * The number of bytes in a chunk of a sampled count. A chunk spans a
+     * typical memory page, so the pages of the unsampled chunks of a mapped 
+     * file are not touched by the count.
+     */
+    static final int SAMPLE_CHUNK_LENGTH = 1 << 12;
+
+    /**
+     * The minimum number of bytes counted by one parallel task.
+     */
+    private static final int MINIMUM_CHUNK_LENGTH = 1 << 21;
+
+    /**
+     * Computes the map mapping each character in the text {@code text} to its
      * relative frequency.
-     * 
+     *
      * @param text the text for which to compute the frequencies.
      * @return the map mapping each character to its respective frequency.
      */
     public Map<Byte, Integer> computeCharacterWeights(byte[] text) {
-        Map<Byte, Integer> map = new TreeMap<>();
-        int textLength = text.length;
+        return computeCharacterWeights(text, 0, text.length);
+    }
 
-        for (int i = 0; i != textLength; ++i) {
-            byte currentByte = text[i];
+    /**
+     * Computes the map mapping each character in the range
+     * {@code text[offset], ..., text[offset + length - 1]} to its relative
+     * frequency.
+     *
+     * @param text   the text for which to compute the frequencies.
+     * @param offset the index of the first byte to count.
+     * @param length the number of bytes to count.
+     * @return the map mapping each character to its respective frequency.
+     */
+    public Map<Byte, Integer> computeCharacterWeights(byte[] text,
+                                                      int offset,
+                                                      int length) {
+        return computeFrequencyTable(text, offset, length).toMap();
+    }
 
-            if (map.containsKey(currentByte)) {
-                map.put(currentByte, map.get(currentByte) + 1);
-            } else {
-                map.put(currentByte, 1);
-            }
+    /**
+     * Computes the frequency table of the text {@code text}.
+     *
+     * @param text the text for which to compute the frequencies.
+     * @return the frequency table.
+     */
+    public FrequencyTable computeFrequencyTable(byte[] text) {
+        return computeFrequencyTable(text, 0, text.length);
+    }
+
+    /**
+     * Computes the frequency table of the range
+     * {@code text[offset], ..., text[offset + length - 1]}.
+     *
+     * @param text   the text for which to compute the frequencies.
+     * @param offset the index of the first byte to count.
+     * @param length the number of bytes to count.
+     * @return the frequency table.
+     */
+    public FrequencyTable computeFrequencyTable(byte[] text,
+                                                int offset,
+                                                int length) {
+        return new FrequencyTable(computeByteCounts(text, offset, length));
+    }
+
+    /**
+     * Computes the frequency table of the bytes between the position and the
+     * limit of the buffer {@code text}. The position of {@code text} is not
+     * changed.
+     *
+     * @param text the text for which to compute the frequencies.
+     * @return the frequency table.
+     */
+    public FrequencyTable computeFrequencyTable(ByteBuffer text) {
+        return new FrequencyTable(computeByteCounts(text));
+    }
+
+    /**
+     * Counts the occurrences of each byte value in {@code text}.
+     *
+     * @param text the text to count.
+     * @return the array of 256 counts indexed by the unsigned byte value.
+     */
+    public long[] computeByteCounts(byte[] text) {
+        return computeByteCounts(text, 0, text.length);
+    }
+
+    /**
+     * Counts the occurrences of each byte value in the range
+     * {@code text[offset], ..., text[offset + length - 1]}.
+     *
+     * @param text   the text to count.
+     * @param offset the index of the first byte to count.
+     * @param length the number of bytes to count.
+     * @return the array of 256 counts indexed by the unsigned byte value.
+     */
+    public long[] computeByteCounts(byte[] text, int offset, int length) {
+        if (offset < 0 || length < 0 || length > text.length - offset) {
+            throw new IndexOutOfBoundsException(
+            "Bad range: offset " + offset + ", length " + length + ".");
+        }
+
+        if (length < PARALLEL_THRESHOLD) {
+            long[] counts = new long[ALPHABET_SIZE];
+            countSequentially(text, offset, length, counts);
+            return counts;
         }
 
-        return map;
+        return new CountTask(text, offset, length).invoke();
+    }
+
+    /**
+     * Counts the occurrences of each byte value between the position and the
+     * limit of the buffer {@code text}. The bytes are read in place, so a
+     * direct or a memory-mapped buffer is counted without copying it onto the
+     * heap. The position of {@code text} is not changed.
+     *
+     * @param text the text to count.
+     * @return the array of 256 counts indexed by the unsigned byte value.
+     */
+    public long[] computeByteCounts(ByteBuffer text) {
+        long[] counts = new long[ALPHABET_SIZE];
+        countSequentially(text, text.position(), text.remaining(), counts);
+        return counts;
+    }
+
+    /**
+     * Adds the byte counts of the given range to {@code counts}.
+     */
+    static void countSequentially(byte[] text,
+                                  int offset,
+                                  int length,
+                                  long[] counts) {
+        countSequentially(text, 
+                          offset, 
+                          length, 
+                          counts, 
+                          new int[COUNTER_LANES * ALPHABET_SIZE]);
     }
-}
 
+    /**
+     * Adds the byte counts of the given range to {@code counts}. The four 
+     * interleaved counter lanes are kept in {@code lanes}, which must be all
+     * zero and is left so, so that the caller may reuse it.
+     *
+     * @param text   the array holding the range.
+     * @param offset the index of the first byte of the range.
+     * @param length the number of bytes in the range.
+     * @param counts the 256 counts to add to.
+     * @param lanes  the {@code 4 * 256} zero counters.
+     */
+    static void countSequentially(byte[] text,
+                                  int offset,
+                                  int length,
+                                  long[] counts,
+                                  int[] lanes) {
+        int index = offset;
+        int unrolledEnd = offset + (length & ~3);
+        int end = offset + length;
+
+        while (index != unrolledEnd) {
+            lanes[                     text[index]     & 0xff]++;
+            lanes[    ALPHABET_SIZE + (text[index + 1] & 0xff)]++;
+            lanes[2 * ALPHABET_SIZE + (text[index + 2] & 0xff)]++;
+            lanes[3 * ALPHABET_SIZE + (text[index + 3] & 0xff)]++;
+            index += 4;
+        }
+
+        while (index != end) {
+            lanes[text[index++] & 0xff]++;
+        }
+
+        drainLanes(lanes, counts);
+    }
+
+    /**
+     * Adds the byte counts of the given range of a buffer to {@code counts}.
+     * Eight bytes are fetched at a time.
+     */
+    static void countSequentially(ByteBuffer text,
+                                  int offset,
+                                  int length,
+                                  long[] counts) {
+        countSequentially(text, 
+                          offset, 
+                          length, 
+                          counts, 
+                          new int[COUNTER_LANES * ALPHABET_SIZE]);
+    }
+
+    /**
+     * Adds the byte counts of the given range of a buffer to {@code counts}.
+     * Eight bytes are fetched at a time. The counter lanes are kept in 
+     * {@code lanes} as by 
+     * {@link #countSequentially(byte[], int, int, long[], int[])}.
+     */
+    static void countSequentially(ByteBuffer text,
+                                  int offset,
+                                  int length,
+                                  long[] counts,
+                                  int[] lanes) {
+        int index = offset;
+        int unrolledEnd = offset + (length & ~7);
+        int end = offset + length;
+
+        while (index != unrolledEnd) {
+            long bytes = text.getLong(index);
+            lanes[                     (int)  bytes         & 0xff]++;
+            lanes[    ALPHABET_SIZE + ((int) (bytes >>> 8)  & 0xff)]++;
+            lanes[2 * ALPHABET_SIZE + ((int) (bytes >>> 16) & 0xff)]++;
+            lanes[3 * ALPHABET_SIZE + ((int) (bytes >>> 24) & 0xff)]++;
+            lanes[                     (int) (bytes >>> 32) & 0xff]++;
+            lanes[    ALPHABET_SIZE + ((int) (bytes >>> 40) & 0xff)]++;
+            lanes[2 * ALPHABET_SIZE + ((int) (bytes >>> 48) & 0xff)]++;
+            lanes[3 * ALPHABET_SIZE +  (int) (bytes >>> 56)]++;
+            index += 8;
+        }
+
+        while (index != end) {
+            lanes[text.get(index++) & 0xff]++;
+        }
+
+        drainLanes(lanes, counts);
+    }
+
+    /**
+     * Adds the byte counts of every {@code samplingInterval}th chunk of
+     * {@link #SAMPLE_CHUNK_LENGTH} bytes of the given range, starting from
+     * the first chunk, to {@code counts}. The counter lanes are kept in 
+     * {@code lanes} as by 
+     * {@link #countSequentially(byte[], int, int, long[], int[])}.
+     *
+     * @param text             the array holding the range.
+     * @param offset           the index of the first byte of the range.
+     * @param length           the number of bytes in the range.
+     * @param samplingInterval the number of chunks per sampled chunk.
+     * @param counts           the 256 counts to add to.
+     * @param lanes            the {@code 4 * 256} zero counters.
+     */
+    static void countSample(byte[] text,
+                            int offset,
+                            int length,
+                            int samplingInterval,
+                            long[] counts,
+                            int[] lanes) {
+        long stride = (long) samplingInterval * SAMPLE_CHUNK_LENGTH;
+
+        for (long chunkStart = 0L; chunkStart < length; chunkStart += stride) {
+            countSequentially(text,
+                              offset + (int) chunkStart,
+                              (int) Math.min(SAMPLE_CHUNK_LENGTH, 
+                                             length - chunkStart),
+                              counts,
+                              lanes);
+        }
+    }
+
+    /**
+     * Adds the byte counts of every {@code samplingInterval}th chunk of the
+     * given range of a buffer to {@code counts} as 
+     * {@link #countSample(byte[], int, int, int, long[], int[])} does.
+     */
+    static void countSample(ByteBuffer text,
+                            int offset,
+                            int length,
+                            int samplingInterval,
+                            long[] counts,
+                            int[] lanes) {
+        long stride = (long) samplingInterval * SAMPLE_CHUNK_LENGTH;
+
+        for (long chunkStart = 0L; chunkStart < length; chunkStart += stride) {
+            countSequentially(text,
+                              offset + (int) chunkStart,
+                              (int) Math.min(SAMPLE_CHUNK_LENGTH, 
+                                             length - chunkStart),
+                              counts,
+                              lanes);
+        }
+    }
+
+    /**
+     * Adds the four counter lanes to {@code counts} and zeroes them.
+     */
+    private static void drainLanes(int[] lanes, long[] counts) {
+        for (int i = 0; i != ALPHABET_SIZE; ++i) {
+            counts[i] += (long) lanes[i] + lanes[ALPHABET_SIZE + i]
+                                        + lanes[2 * ALPHABET_SIZE + i]
+                                        + lanes[3 * ALPHABET_SIZE + i];
+            lanes[i] = 0;
+            lanes[ALPHABET_SIZE + i] = 0;
+            lanes[2 * ALPHABET_SIZE + i] = 0;
+            lanes[3 * ALPHABET_SIZE + i] = 0;
+        }
+    }
+
+    private static final class CountTask extends RecursiveTask<long[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] text;
+        private final int offset;
+        private final int length;
+
+        CountTask(byte[] text, int offset, int length) {
+            this.text = text;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (length < 2 * MINIMUM_CHUNK_LENGTH) {
+                long[] counts = new long[ALPHABET_SIZE];
+                countSequentially(text, offset, length, counts);
+                return counts;
+            }
+
+            int leftLength = length / 2;
+            CountTask left = new CountTask(text, offset, leftLength);
+            CountTask right = new CountTask(text,
+                                            offset + leftLength,
+                                            length - leftLength);
+            left.fork();
+            long[] counts = right.compute();
+            long[] leftCounts = left.join();
+
+            for (int i = 0; i != ALPHABET_SIZE; ++i) {
+                counts[i] += leftCounts[i];
+            }
+
+            return counts;
+        }
+    }
+}
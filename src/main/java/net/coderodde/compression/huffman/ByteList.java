@@ -6,7 +6,7 @@ import java.util.Arrays;
  * This class implements a simple, non-generic list of bytes.
  * 
  * @author Rodion "rodde" Efremov
- * @version 1.6 (Nov 17, 2016)
+ * @version 1.7 (Oct 17, 2026)
  */
 final class ByteList {
 
@@ -26,6 +26,29 @@ final class ByteList {
         data[size++] = b;
     }
 
+    public void appendInt(int value) {
+        ensureCapacity(size + Integer.BYTES);
+        data[size++] = (byte)  value;
+        data[size++] = (byte) (value >>> 8);
+        data[size++] = (byte) (value >>> 16);
+        data[size++] = (byte) (value >>> 24);
+    }
+
+    public void appendLong(long value) {
+        appendInt((int) value);
+        appendInt((int)(value >>> 32));
+    }
+
+    public void appendBytes(byte[] bytes) {
+        ensureCapacity(size + bytes.length);
+        System.arraycopy(bytes, 0, data, size, bytes.length);
+        size += bytes.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
     public byte[] toByteArray() {
         return Arrays.copyOfRange(data, 0, size);
     }
@@ -0,0 +1,257 @@
+package net.coderodde.compression.huffman;
+
+import java.util.Map;
+
+/**
+ * This class implements a canonical prefix code. A canonical code is fully
+ * determined by the code word lengths: the symbols are sorted by their code
+ * length and then by their value, and each symbol receives the code word
+ * following the code word of its predecessor. This way only the code lengths
+ * need to be stored along with the encoded text.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class CanonicalHuffmanCode {
+
+    /**
+     * The maximum supported code word length in bits.
+     */
+    public static final int MAX_CODE_LENGTH = CodeTable.MAX_CODE_LENGTH;
+
+    /**
+     * The code words in the stream order indexed by the unsigned symbol value:
+     * bit 0 is the first bit emitted.
+     */
+    final long[] codeWords;
+
+    /**
+     * The code word lengths indexed by the unsigned symbol value. Zero means
+     * that the symbol has no code word.
+     */
+    final int[] codeLengths;
+
+    /**
+     * The code table sharing the arrays {@code codeWords} and 
+     * {@code codeLengths}.
+     */
+    private final CodeTable codeTable;
+
+    /**
+     * Constructs the canonical code with the given code lengths.
+     *
+     * @param codeLengths the array of 256 code lengths indexed by the unsigned
+     *                    byte value.
+     */
+    public CanonicalHuffmanCode(int[] codeLengths) {
+        if (codeLengths.length != FrequencyTable.ALPHABET_SIZE) {
+            throw new IllegalArgumentException(
+            "Expected " + FrequencyTable.ALPHABET_SIZE +
+            " code lengths, received " + codeLengths.length + ".");
+        }
+
+        this.codeLengths = codeLengths.clone();
+        this.codeWords = new long[FrequencyTable.ALPHABET_SIZE];
+        assignCodeWords(this.codeLengths, codeWords);
+        this.codeTable = new CodeTable(codeWords, this.codeLengths);
+    }
+
+    /**
+     * Constructs the canonical code with the same code lengths as in the
+     * Huffman tree {@code tree}.
+     *
+     * @param tree the Huffman tree.
+     */
+    public CanonicalHuffmanCode(HuffmanTree tree) {
+        this(tree.inferCodeLengths());
+    }
+
+    /**
+     * Constructs the canonical code for the byte frequencies 
+     * {@code frequencyTable} whose code words are at most 
+     * {@code maxCodeLength} bits long. If the Huffman code of the frequencies
+     * fits within the limit, it is used as is; otherwise the code lengths are 
+     * computed by the package-merge algorithm, which yields the shortest 
+     * encoded text among all the codes respecting the limit.
+     *
+     * @param frequencyTable the byte frequencies.
+     * @param maxCodeLength  the maximum code length.
+     */
+    public CanonicalHuffmanCode(FrequencyTable frequencyTable, 
+                                int maxCodeLength) {
+        this(computeCodeLengths(frequencyTable, maxCodeLength));
+    }
+
+    /**
+     * Returns the length of the longest code word.
+     *
+     * @return the maximum code length.
+     */
+    public int getMaximumCodeLength() {
+        int maximumCodeLength = 0;
+
+        for (int codeLength : codeLengths) {
+            maximumCodeLength = Math.max(maximumCodeLength, codeLength);
+        }
+
+        return maximumCodeLength;
+    }
+
+    /**
+     * Returns the code length of the given byte.
+     *
+     * @param symbol the byte.
+     * @return the code length or zero if {@code symbol} has no code word.
+     */
+    public int getCodeLength(byte symbol) {
+        return codeLengths[Byte.toUnsignedInt(symbol)];
+    }
+
+    /**
+     * Returns a copy of the code lengths indexed by the unsigned byte value.
+     *
+     * @return the code lengths.
+     */
+    public int[] getCodeLengths() {
+        return codeLengths.clone();
+    }
+
+    /**
+     * Returns the number of bytes having a code word.
+     *
+     * @return the number of code words.
+     */
+    public int getNumberOfCodeWords() {
+        int numberOfCodeWords = 0;
+
+        for (int codeLength : codeLengths) {
+            if (codeLength != 0) {
+                ++numberOfCodeWords;
+            }
+        }
+
+        return numberOfCodeWords;
+    }
+
+    /**
+     * Constructs the encoder map of this code.
+     *
+     * @return the encoder map.
+     */
+    public Map<Byte, BitString> inferEncodingMap() {
+        return codeTable.toEncodingMap();
+    }
+
+    /**
+     * Returns the code table of this code.
+     *
+     * @return the code table.
+     */
+    public CodeTable getCodeTable() {
+        return codeTable;
+    }
+
+    HuffmanDecodingTable getDecodingTable() {
+        return codeTable.getDecodingTable();
+    }
+
+    private static int[] computeCodeLengths(FrequencyTable frequencyTable,
+                                            int maxCodeLength) {
+        if (maxCodeLength < 1 || maxCodeLength > MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException(
+            "The maximum code length must be within [1, " + 
+            MAX_CODE_LENGTH + "]. Received " + maxCodeLength + ".");
+        }
+
+        int[] codeLengths;
+
+        try {
+            codeLengths = new HuffmanTree(frequencyTable).inferCodeLengths();
+        } catch (IllegalStateException ex) {
+            // The Huffman tree is deeper than any code length supported.
+            return PackageMerge.computeCodeLengths(frequencyTable,
+                                                   maxCodeLength);
+        }
+
+        for (int codeLength : codeLengths) {
+            if (codeLength > maxCodeLength) {
+                return PackageMerge.computeCodeLengths(frequencyTable,
+                                                       maxCodeLength);
+            }
+        }
+
+        return codeLengths;
+    }
+
+    /**
+     * Assigns the canonical code words for the code lengths 
+     * {@code codeLengths} into {@code codeWords}. The code words are handed
+     * out in the order of increasing code length, the ties being broken by 
+     * the symbol value; the symbols without a code word receive zero.
+     *
+     * @param codeLengths the 256 code lengths indexed by the unsigned byte
+     *                    value.
+     * @param codeWords   the array receiving the 256 code words.
+     * @throws IllegalArgumentException if the code lengths are invalid.
+     */
+    static void assignCodeWords(int[] codeLengths, long[] codeWords) {
+        int maximumCodeLength = 0;
+
+        for (int symbol = 0;
+                symbol != FrequencyTable.ALPHABET_SIZE;
+                ++symbol) {
+            int codeLength = codeLengths[symbol];
+
+            if (codeLength < 0 || codeLength > MAX_CODE_LENGTH) {
+                throw new IllegalArgumentException(
+                "Bad code length " + codeLength + " for symbol " +
+                        symbol + ".");
+            }
+
+            codeWords[symbol] = 0L;
+            maximumCodeLength = Math.max(maximumCodeLength, codeLength);
+        }
+
+        if (maximumCodeLength == 0) {
+            throw new IllegalArgumentException(
+                    "The code contains no code words.");
+        }
+
+        long code = 0L;
+        boolean exhausted = false;
+
+        for (int codeLength = 1; 
+                codeLength <= maximumCodeLength; 
+                ++codeLength) {
+            code <<= 1;
+
+            for (int symbol = 0;
+                    symbol != FrequencyTable.ALPHABET_SIZE;
+                    ++symbol) {
+                if (codeLengths[symbol] != codeLength) {
+                    continue;
+                }
+
+                if (exhausted) {
+                    throw new IllegalArgumentException(
+                            "The code lengths are oversubscribed.");
+                }
+
+                codeWords[symbol] = reverse(code, codeLength);
+                ++code;
+
+                exhausted = codeLength == Long.SIZE ?
+                            code == 0L :
+                            code == (1L << codeLength);
+            }
+        }
+    }
+
+    /**
+     * Reverses the {@code length} lowest bits of {@code code}, since the
+     * canonical code words are emitted starting from the most significant bit.
+     */
+    private static long reverse(long code, int length) {
+        return Long.reverse(code) >>> (Long.SIZE - length);
+    }
+}
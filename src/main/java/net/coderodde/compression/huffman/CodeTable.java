@@ -0,0 +1,159 @@
+package net.coderodde.compression.huffman;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class implements a table mapping each byte value to its code word. The
+ * code words are packed into a primitive array of {@code long} values along
+ * with an array of code word lengths, both indexed by the unsigned byte value.
+ * Bit 0 of a packed code word is the first bit emitted into the encoded text.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class CodeTable {
+
+    /**
+     * The maximum supported code word length in bits.
+     */
+    public static final int MAX_CODE_LENGTH = Long.SIZE;
+
+    /**
+     * The packed code words indexed by the unsigned byte value.
+     */
+    final long[] codeWords;
+
+    /**
+     * The code word lengths indexed by the unsigned byte value. Zero means
+     * that the byte has no code word.
+     */
+    final int[] codeLengths;
+
+    /**
+     * The decoding table, built lazily.
+     */
+    private HuffmanDecodingTable decodingTable;
+
+    /**
+     * Constructs a code table sharing the given arrays.
+     */
+    CodeTable(long[] codeWords, int[] codeLengths) {
+        this.codeWords = codeWords;
+        this.codeLengths = codeLengths;
+    }
+
+    /**
+     * Constructs a code table from an encoder map.
+     *
+     * @param encoderMap the map mapping each byte to its code word.
+     * @return the code table.
+     */
+    public static CodeTable fromEncodingMap(Map<Byte, BitString> encoderMap) {
+        long[] codeWords = new long[FrequencyTable.ALPHABET_SIZE];
+        int[] codeLengths = new int[FrequencyTable.ALPHABET_SIZE];
+
+        for (Map.Entry<Byte, BitString> entry : encoderMap.entrySet()) {
+            BitString codeWord = entry.getValue();
+            long codeLength = codeWord.length();
+
+            if (codeLength == 0 || codeLength > MAX_CODE_LENGTH) {
+                throw new IllegalArgumentException(
+                "Bad code word length: " + codeLength + ".");
+            }
+
+            int symbol = Byte.toUnsignedInt(entry.getKey());
+            codeWords[symbol] = codeWord.readBits(0, (int) codeLength);
+            codeLengths[symbol] = (int) codeLength;
+        }
+
+        return new CodeTable(codeWords, codeLengths);
+    }
+
+    /**
+     * Returns the code word of the given byte packed into a {@code long}.
+     *
+     * @param symbol the byte.
+     * @return the packed code word.
+     */
+    public long getCodeWord(byte symbol) {
+        return codeWords[Byte.toUnsignedInt(symbol)];
+    }
+
+    /**
+     * Returns the code word length of the given byte.
+     *
+     * @param symbol the byte.
+     * @return the code length or zero if {@code symbol} has no code word.
+     */
+    public int getCodeLength(byte symbol) {
+        return codeLengths[Byte.toUnsignedInt(symbol)];
+    }
+
+    /**
+     * Returns a copy of the code lengths indexed by the unsigned byte value.
+     *
+     * @return the code lengths.
+     */
+    public int[] getCodeLengths() {
+        return codeLengths.clone();
+    }
+
+    /**
+     * Returns the exact number of bits this table encodes a text with the
+     * given byte frequencies into.
+     *
+     * @param frequencyTable the byte frequencies of the text.
+     * @return the number of encoded bits.
+     * @throws IllegalArgumentException if a present byte has no code word.
+     */
+    public long computeEncodedLength(FrequencyTable frequencyTable) {
+        long encodedLength = 0L;
+
+        for (int symbol = 0;
+                symbol != FrequencyTable.ALPHABET_SIZE;
+                ++symbol) {
+            long frequency = frequencyTable.frequencies[symbol];
+
+            if (frequency != 0L && codeLengths[symbol] == 0) {
+                throw new IllegalArgumentException(
+                "No code word for byte " + (byte) symbol + ".");
+            }
+
+            encodedLength += frequency * codeLengths[symbol];
+        }
+
+        return encodedLength;
+    }
+
+    /**
+     * Converts this table to the encoder map.
+     *
+     * @return the encoder map.
+     */
+    public Map<Byte, BitString> toEncodingMap() {
+        Map<Byte, BitString> map = new TreeMap<>();
+
+        for (int symbol = 0;
+                symbol != FrequencyTable.ALPHABET_SIZE;
+                ++symbol) {
+            int codeLength = codeLengths[symbol];
+
+            if (codeLength != 0) {
+                BitString codeWord = new BitString();
+                codeWord.appendBits(codeWords[symbol], codeLength);
+                map.put((byte) symbol, codeWord);
+            }
+        }
+
+        return map;
+    }
+
+    HuffmanDecodingTable getDecodingTable() {
+        if (decodingTable == null) {
+            decodingTable = new HuffmanDecodingTable(codeWords, codeLengths);
+        }
+
+        return decodingTable;
+    }
+}
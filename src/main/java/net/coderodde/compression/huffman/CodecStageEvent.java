@@ -0,0 +1,76 @@
+package net.coderodde.compression.huffman;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class is the Flight Recorder event of a run of a
+ * {@link CodecStatistics.Stage}. The event begins with the run and is 
+ * committed at its end, so that its duration is the one of the run. It is 
+ * only ever loaded by {@link CodecStatistics} once the platform is known to 
+ * have Flight Recorder, so that the codec runs on the platforms without it as
+ * well. Hence the methods take and return the events as plain objects.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+@Name("net.coderodde.huffman.CodecStage")
+@Label("Huffman Codec Stage")
+@Category("Huffman")
+@Description("A run of a stage of coding a block or of the stream I/O.")
+@StackTrace(false)
+final class CodecStageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Begins an event if Flight Recorder is recording the events. Nothing is
+     * allocated unless Flight Recorder has been started.
+     *
+     * @return the event, or {@code null} if the events are not recorded.
+     */
+    static Object beginIfEnabled() {
+        if (!FlightRecorder.isInitialized()) {
+            return null;
+        }
+
+        CodecStageEvent event = new CodecStageEvent();
+
+        if (!event.isEnabled()) {
+            return null;
+        }
+
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event {@code event} and commits it unless it is shorter than
+     * the threshold of the recording.
+     *
+     * @param event the event returned by {@link #beginIfEnabled()}.
+     * @param stage the name of the stage.
+     * @param bytes the number of bytes processed by the run.
+     */
+    static void commit(Object event, String stage, long bytes) {
+        CodecStageEvent stageEvent = (CodecStageEvent) event;
+        stageEvent.end();
+
+        if (stageEvent.shouldCommit()) {
+            stageEvent.stage = stage;
+            stageEvent.bytes = bytes;
+            stageEvent.commit();
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package net.coderodde.compression.huffman;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class accumulates the statistics of the operations of a
+ * {@link ParallelHuffmanCodec}: the time spent in and the number of runs of
+ * each coding {@link Stage}, the bytes read and written, the blocks coded and
+ * the bytes allocated. The statistics are collected only once passed to
+ * {@link ParallelHuffmanCodec#setStatistics(CodecStatistics)}, and are then
+ * updated concurrently by all the threads of the codec.
+ * <p>
+ * Independently of the statistics, each stage run is recorded as a
+ * {@code net.coderodde.huffman.CodecStage} event whenever Flight Recorder is
+ * recording the event. The event begins and ends with the run.
+ * <p>
+ * Since the stages run concurrently on several threads, their times add up
+ * to the processor time of the operation rather than to its wall time.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class CodecStatistics {
+
+    /**
+     * The stages of coding a stream.
+     */
+    public enum Stage {
+
+        /**
+         * Reading the input of a stream.
+         */
+        READ,
+
+        /**
+         * Counting the bytes of a block.
+         */
+        HISTOGRAM,
+
+        /**
+         * Building a code or a decoding table.
+         */
+        CODE_BUILD,
+
+        /**
+         * Encoding a block and serializing its frame, the nested stages
+         * excluded.
+         */
+        ENCODE,
+
+        /**
+         * Decoding the body of a block, the nested stages excluded.
+         */
+        DECODE,
+
+        /**
+         * Computing or verifying the checksum of a block.
+         */
+        CHECKSUM,
+
+        /**
+         * Writing the output of a stream.
+         */
+        WRITE
+    }
+
+    /**
+     * A run of a stage being timed, along with its Flight Recorder event.
+     */
+    static final class StageRun {
+
+        /**
+         * The start time of the run in nanoseconds.
+         */
+        private final long start;
+
+        /**
+         * The event begun with the run, or {@code null} if none is recorded.
+         */
+        private final Object event;
+
+        private StageRun(long start, Object event) {
+            this.start = start;
+            this.event = event;
+        }
+
+        /**
+         * Ends the run of the stage {@code stage} and commits its event.
+         *
+         * @param stage the stage.
+         * @param bytes the number of bytes processed by the run.
+         * @return the duration of the run in nanoseconds.
+         */
+        long end(Stage stage, long bytes) {
+            long nanos = System.nanoTime() - start;
+
+            if (event != null) {
+                CodecStageEvent.commit(event, stage.name(), bytes);
+            }
+
+            return nanos;
+        }
+    }
+
+    /**
+     * Measures the bytes allocated by each thread, or is {@code null} if the
+     * platform does not.
+     */
+    private static final ThreadMXBean ALLOCATION_BEAN = findAllocationBean();
+
+    /**
+     * Whether the platform has Flight Recorder.
+     */
+    private static final boolean FLIGHT_RECORDER_AVAILABLE =
+            isFlightRecorderAvailable();
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LongAdder[] stageNanos = createAdders(STAGES.length);
+    private final LongAdder[] stageCounts = createAdders(STAGES.length);
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder blocks = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    /**
+     * Returns the number of nanoseconds spent in the stage {@code stage}.
+     *
+     * @param stage the stage.
+     * @return the number of nanoseconds.
+     */
+    public long getNanos(Stage stage) {
+        return stageNanos[stage.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of runs of the stage {@code stage}.
+     *
+     * @param stage the stage.
+     * @return the number of runs.
+     */
+    public long getCount(Stage stage) {
+        return stageCounts[stage.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of bytes read from the inputs.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    /**
+     * Returns the number of bytes written into the outputs.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    /**
+     * Returns the number of blocks encoded or decoded.
+     *
+     * @return the number of blocks.
+     */
+    public long getBlocks() {
+        return blocks.sum();
+    }
+
+    /**
+     * Returns the number of bytes in the blocks encoded or decoded.
+     *
+     * @return the number of bytes.
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    /**
+     * Returns the number of bytes in the frames of the blocks encoded or
+     * decoded, the checksums excluded.
+     *
+     * @return the number of bytes.
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * Returns the average number of compressed bits per byte of the blocks,
+     * the code tables and the frame headers included.
+     *
+     * @return the number of bits per symbol, or zero if no block was coded.
+     */
+    public double getBitsPerSymbol() {
+        long uncompressed = getUncompressedBytes();
+        return uncompressed == 0L ?
+               0.0 :
+               (double) Byte.SIZE * getCompressedBytes() / uncompressed;
+    }
+
+    /**
+     * Returns the number of codes and decoding tables built.
+     *
+     * @return the number of tables.
+     */
+    public long getTablesBuilt() {
+        return getCount(Stage.CODE_BUILD);
+    }
+
+    /**
+     * Returns the number of bytes allocated on the heap by the threads of
+     * the codec while coding.
+     *
+     * @return the number of bytes, or -1 if the platform does not measure
+     *         the allocations.
+     */
+    public long getAllocatedBytes() {
+        return ALLOCATION_BEAN == null ? -1L : allocatedBytes.sum();
+    }
+
+    /**
+     * Resets all the statistics to zero.
+     */
+    public void reset() {
+        for (int i = 0; i != STAGES.length; ++i) {
+            stageNanos[i].reset();
+            stageCounts[i].reset();
+        }
+
+        bytesIn.reset();
+        bytesOut.reset();
+        blocks.reset();
+        uncompressedBytes.reset();
+        compressedBytes.reset();
+        allocatedBytes.reset();
+    }
+
+    /**
+     * Begins a run of a stage unless neither {@code statistics} nor Flight
+     * Recorder records it, which keeps the stages free when nobody looks.
+     *
+     * @param statistics the statistics to record the run into, or 
+     *                   {@code null}.
+     * @return the run, or {@code null} if the run is not recorded.
+     */
+    static StageRun startStage(CodecStatistics statistics) {
+        Object event = FLIGHT_RECORDER_AVAILABLE ? 
+                       CodecStageEvent.beginIfEnabled() : 
+                       null;
+
+        return statistics == null && event == null ?
+               null :
+               new StageRun(System.nanoTime(), event);
+    }
+
+    /**
+     * Ends the run {@code run} of the stage {@code stage} and records it into
+     * {@code statistics}.
+     *
+     * @param statistics the statistics, or {@code null}.
+     * @param run        the run returned by {@link #startStage}, or 
+     *                   {@code null}.
+     * @param stage      the stage.
+     * @param bytes      the number of bytes processed by the run.
+     * @return the duration of the run in nanoseconds, or zero if the run is
+     *         not recorded.
+     */
+    static long endStage(CodecStatistics statistics, 
+                         StageRun run, 
+                         Stage stage, 
+                         long bytes) {
+        if (run == null) {
+            return 0L;
+        }
+
+        long nanos = run.end(stage, bytes);
+
+        if (statistics != null) {
+            statistics.record(stage, nanos);
+        }
+
+        return nanos;
+    }
+
+    /**
+     * Records a run of the stage {@code stage}.
+     *
+     * @param stage the stage.
+     * @param nanos the duration of the run in nanoseconds.
+     */
+    void record(Stage stage, long nanos) {
+        stageNanos[stage.ordinal()].add(nanos);
+        stageCounts[stage.ordinal()].increment();
+    }
+
+    void addBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    void addBytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    /**
+     * Records a block coded.
+     *
+     * @param uncompressedLength the number of bytes in the block.
+     * @param frameLength        the number of bytes in its frame, the
+     *                           checksum excluded.
+     */
+    void addBlock(long uncompressedLength, long frameLength) {
+        blocks.increment();
+        uncompressedBytes.add(uncompressedLength);
+        compressedBytes.add(frameLength);
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or
+     * zero if the platform does not measure it.
+     */
+    static long getThreadAllocatedBytes() {
+        return ALLOCATION_BEAN == null ?
+               0L :
+               ((com.sun.management.ThreadMXBean) ALLOCATION_BEAN)
+                       .getThreadAllocatedBytes(
+                               Thread.currentThread().getId());
+    }
+
+    /**
+     * Adds the bytes allocated by the current thread since it had allocated
+     * {@code allocatedBefore} bytes.
+     *
+     * @param allocatedBefore the result of an earlier call to
+     *                        {@link #getThreadAllocatedBytes()} on the
+     *                        current thread.
+     */
+    void addAllocatedBytesSince(long allocatedBefore) {
+        if (ALLOCATION_BEAN != null) {
+            allocatedBytes.add(getThreadAllocatedBytes() - allocatedBefore);
+        }
+    }
+
+    private static LongAdder[] createAdders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+
+        for (int i = 0; i != length; ++i) {
+            adders[i] = new LongAdder();
+        }
+
+        return adders;
+    }
+
+    private static ThreadMXBean findAllocationBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+            if (bean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) bean)
+                            .isThreadAllocatedMemorySupported()
+                    && ((com.sun.management.ThreadMXBean) bean)
+                            .isThreadAllocatedMemoryEnabled()) {
+                return bean;
+            }
+        } catch (LinkageError | SecurityException ex) {
+            // Not a HotSpot-derived platform.
+        }
+
+        return null;
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package net.coderodde.compression.huffman;
+
+import java.util.Arrays;
+
+/**
+ * This class selects the code tables of an order-1 context-modelled block.
+ * The context of a byte is the byte preceding it in the block, or zero for
+ * the first byte of the block. A table per context would cost up to 256 code
+ * length tables per block, so the contexts are clustered instead: each
+ * context is mapped to one of at most {@link #MAX_TABLES} tables, and the
+ * contexts with similar byte distributions share a table.
+ * <p>
+ * The most frequent contexts seed the tables. Each context is then assigned
+ * to the table that codes its bytes in the fewest bits, and the tables are
+ * recomputed from their contexts, a few rounds in a row. Finally, the two
+ * tables whose merging saves the most bits, the code length tables in the
+ * block header included, are merged for as long as any merge saves bits.
+ * <p>
+ * The arrays are reused by each build, so that one instance serves all the
+ * blocks of a {@link HuffmanBlockCodec}.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+final class ContextModel {
+
+    /**
+     * The maximum number of code tables of a block.
+     */
+    static final int MAX_TABLES = 16;
+
+    /**
+     * The number of rounds assigning the contexts to the tables.
+     */
+    private static final int ASSIGNMENT_ROUNDS = 3;
+
+    /**
+     * The number of byte values, which is the number of contexts as well.
+     */
+    private static final int ALPHABET_SIZE = FrequencyTable.ALPHABET_SIZE;
+
+    /**
+     * The natural logarithm of two.
+     */
+    private static final double LN_2 = Math.log(2.0);
+
+    /**
+     * The index of the table of each context.
+     */
+    final byte[] contextMap = new byte[ALPHABET_SIZE];
+
+    /**
+     * The byte frequencies of each table.
+     */
+    final long[][] tableFrequencies = new long[MAX_TABLES][ALPHABET_SIZE];
+
+    /**
+     * The number of tables built.
+     */
+    int numberOfTables;
+
+    /**
+     * The byte counts of each context, the count of the byte {@code b} in the
+     * context {@code c} being stored at the index {@code (c << 8) | b}.
+     */
+    private final int[] counts = new int[ALPHABET_SIZE * ALPHABET_SIZE];
+
+    /**
+     * The number of bytes in each context.
+     */
+    private final long[] contextTotals = new long[ALPHABET_SIZE];
+
+    /**
+     * The indices into {@link #counts} of the bytes occurring in each 
+     * context, those of the context {@code c} stored from the index
+     * {@code symbolListStarts[c]} on.
+     */
+    private final int[] symbolLists = new int[ALPHABET_SIZE * ALPHABET_SIZE];
+
+    /**
+     * The start of the list of each context in {@link #symbolLists}, followed
+     * by the end of the last list.
+     */
+    private final int[] symbolListStarts = new int[ALPHABET_SIZE + 1];
+
+    /**
+     * The contexts sorted by their totals, packed as
+     * {@code (total << 8) | context}.
+     */
+    private final long[] keys = new long[ALPHABET_SIZE];
+
+    /**
+     * The estimated number of bits each table spends on each byte.
+     */
+    private final double[][] bitCosts = new double[MAX_TABLES][ALPHABET_SIZE];
+
+    /**
+     * The estimated number of bits each table spends on its bytes and its
+     * code length table.
+     */
+    private final double[] tableCosts = new double[MAX_TABLES];
+
+    /**
+     * Holds the frequencies of two tables merged.
+     */
+    private final long[] mergedFrequencies = new long[ALPHABET_SIZE];
+
+    /**
+     * Counts the bytes {@code data[offset], ..., data[offset + length - 1]}
+     * by their contexts and clusters the contexts into
+     * {@link #numberOfTables} tables, filling {@link #contextMap} and
+     * {@link #tableFrequencies}.
+     *
+     * @param data   the array holding the block.
+     * @param offset the index of the first byte of the block.
+     * @param length the number of bytes in the block.
+     */
+    void build(byte[] data, int offset, int length) {
+        Arrays.fill(counts, 0);
+        Arrays.fill(contextMap, (byte) 0);
+        int context = 0;
+
+        for (int i = offset, end = offset + length; i != end; ++i) {
+            int symbol = data[i] & 0xff;
+            counts[(context << Byte.SIZE) | symbol]++;
+            context = symbol;
+        }
+
+        listSymbols();
+        seedTables();
+
+        for (int round = 0; round != ASSIGNMENT_ROUNDS; ++round) {
+            computeBitCosts();
+            assignContexts();
+        }
+
+        mergeTables();
+    }
+
+    /**
+     * Lists the bytes occurring in each context, so that the assignment 
+     * skips the bytes that do not, and sums the counts of each context.
+     */
+    private void listSymbols() {
+        int size = 0;
+
+        for (int context = 0; context != ALPHABET_SIZE; ++context) {
+            long total = 0L;
+            symbolListStarts[context] = size;
+
+            for (int index = context << Byte.SIZE, 
+                     end = index + ALPHABET_SIZE; 
+                    index != end; 
+                    ++index) {
+                if (counts[index] != 0) {
+                    total += counts[index];
+                    symbolLists[size++] = index;
+                }
+            }
+
+            contextTotals[context] = total;
+        }
+
+        symbolListStarts[ALPHABET_SIZE] = size;
+    }
+
+    /**
+     * Seeds a table with each of the most frequent contexts.
+     */
+    private void seedTables() {
+        int numberOfContexts = 0;
+
+        for (int context = 0; context != ALPHABET_SIZE; ++context) {
+            if (contextTotals[context] != 0L) {
+                keys[numberOfContexts++] =
+                        (contextTotals[context] << Byte.SIZE) | context;
+            }
+        }
+
+        Arrays.sort(keys, 0, numberOfContexts);
+        numberOfTables = Math.min(MAX_TABLES, numberOfContexts);
+
+        for (int table = 0; table != numberOfTables; ++table) {
+            int context = (int)(keys[numberOfContexts - 1 - table] & 0xff);
+            Arrays.fill(tableFrequencies[table], 0L);
+            addContext(context, tableFrequencies[table]);
+        }
+    }
+
+    /**
+     * Estimates the code word length of each byte in each table. A byte
+     * missing from a table is counted as if it occurred once, so that moving
+     * a context to a table not yet coding its bytes is penalized yet
+     * possible.
+     */
+    private void computeBitCosts() {
+        for (int table = 0; table != numberOfTables; ++table) {
+            long[] frequencies = tableFrequencies[table];
+            long total = ALPHABET_SIZE;
+
+            for (long frequency : frequencies) {
+                total += frequency;
+            }
+
+            double totalBits = log2(total);
+
+            for (int symbol = 0; symbol != ALPHABET_SIZE; ++symbol) {
+                bitCosts[table][symbol] =
+                        totalBits - log2(frequencies[symbol] + 1);
+            }
+        }
+    }
+
+    /**
+     * Assigns each context to the table coding its bytes in the fewest bits
+     * and recomputes the tables. The tables left without contexts are
+     * removed.
+     */
+    private void assignContexts() {
+        for (int table = 0; table != numberOfTables; ++table) {
+            Arrays.fill(tableFrequencies[table], 0L);
+        }
+
+        for (int context = 0; context != ALPHABET_SIZE; ++context) {
+            if (contextTotals[context] == 0L) {
+                continue;
+            }
+
+            int bestTable = 0;
+            double bestCost = Double.POSITIVE_INFINITY;
+            int listStart = symbolListStarts[context];
+            int listEnd = symbolListStarts[context + 1];
+
+            for (int table = 0; table != numberOfTables; ++table) {
+                double cost = 0.0;
+                double[] costs = bitCosts[table];
+
+                for (int i = listStart; i != listEnd; ++i) {
+                    int index = symbolLists[i];
+                    cost += counts[index] * costs[index & 0xff];
+                }
+
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestTable = table;
+                }
+            }
+
+            contextMap[context] = (byte) bestTable;
+            addContext(context, tableFrequencies[bestTable]);
+        }
+
+        for (int table = numberOfTables - 1; table >= 0; --table) {
+            if (isEmpty(tableFrequencies[table])) {
+                removeTable(table, 0);
+            }
+        }
+    }
+
+    /**
+     * Merges the two tables whose merging saves the most bits for as long as
+     * any merge saves bits.
+     */
+    private void mergeTables() {
+        for (int table = 0; table != numberOfTables; ++table) {
+            tableCosts[table] = computeTableCost(tableFrequencies[table]);
+        }
+
+        while (numberOfTables > 1) {
+            double bestSaving = 0.0;
+            int bestTable1 = -1;
+            int bestTable2 = -1;
+
+            for (int table1 = 0; table1 != numberOfTables; ++table1) {
+                for (int table2 = table1 + 1;
+                        table2 != numberOfTables;
+                        ++table2) {
+                    merge(table1, table2, mergedFrequencies);
+                    double saving = tableCosts[table1]
+                                  + tableCosts[table2]
+                                  - computeTableCost(mergedFrequencies);
+
+                    if (saving > bestSaving) {
+                        bestSaving = saving;
+                        bestTable1 = table1;
+                        bestTable2 = table2;
+                    }
+                }
+            }
+
+            if (bestTable1 < 0) {
+                return;
+            }
+
+            merge(bestTable1, bestTable2, tableFrequencies[bestTable1]);
+            tableCosts[bestTable1] =
+                    computeTableCost(tableFrequencies[bestTable1]);
+            removeTable(bestTable2, bestTable1);
+        }
+    }
+
+    /**
+     * Removes the table {@code table}, maps its contexts to the table
+     * {@code target} and moves the last table into its place.
+     */
+    private void removeTable(int table, int target) {
+        int last = --numberOfTables;
+
+        if (target == last) {
+            target = table;
+        }
+
+        for (int context = 0; context != ALPHABET_SIZE; ++context) {
+            if (contextMap[context] == table) {
+                contextMap[context] = (byte) target;
+            } else if (contextMap[context] == last) {
+                contextMap[context] = (byte) table;
+            }
+        }
+
+        long[] frequencies = tableFrequencies[table];
+        tableFrequencies[table] = tableFrequencies[last];
+        tableFrequencies[last] = frequencies;
+        tableCosts[table] = tableCosts[last];
+    }
+
+    /**
+     * Estimates the number of bits a table spends on its bytes and its code
+     * length table.
+     */
+    private static double computeTableCost(long[] frequencies) {
+        long total = 0L;
+        int numberOfSymbols = 0;
+
+        for (long frequency : frequencies) {
+            total += frequency;
+
+            if (frequency != 0L) {
+                ++numberOfSymbols;
+            }
+        }
+
+        double bits = 0.0;
+        double totalBits = log2(total);
+
+        for (long frequency : frequencies) {
+            if (frequency != 0L) {
+                bits += frequency * (totalBits - log2(frequency));
+            }
+        }
+
+        int headerBytes =
+                numberOfSymbols <=
+                        HuffmanSerializer.MAX_SPARSE_CODE_LENGTH_ENTRIES ?
+                1 + 2 * numberOfSymbols :
+                1 + HuffmanSerializer.BYTES_PER_CODE_LENGTH_BITMAP
+                  + numberOfSymbols;
+
+        return bits + Byte.SIZE * headerBytes;
+    }
+
+    private void merge(int table1, int table2, long[] target) {
+        long[] frequencies1 = tableFrequencies[table1];
+        long[] frequencies2 = tableFrequencies[table2];
+
+        for (int symbol = 0; symbol != ALPHABET_SIZE; ++symbol) {
+            target[symbol] = frequencies1[symbol] + frequencies2[symbol];
+        }
+    }
+
+    private void addContext(int context, long[] frequencies) {
+        for (int symbol = 0; symbol != ALPHABET_SIZE; ++symbol) {
+            frequencies[symbol] += counts[(context << Byte.SIZE) | symbol];
+        }
+    }
+
+    private static boolean isEmpty(long[] frequencies) {
+        for (long frequency : frequencies) {
+            if (frequency != 0L) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / LN_2;
+    }
+}
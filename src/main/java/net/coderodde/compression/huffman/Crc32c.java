@@ -0,0 +1,175 @@
+package net.coderodde.compression.huffman;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * This class computes the CRC-32C checksum (Castagnoli polynomial) of the
+ * blocks of the stream format. The checksums are computed with
+ * {@code java.util.zip.CRC32C}, which the JVM compiles into the CRC32
+ * instructions of the processor, wherever it is available, that is, on Java 9
+ * and later. On older runtimes this class computes them with a lookup table
+ * of its own, eight bytes per step.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+final class Crc32c implements Checksum {
+
+    /**
+     * The reflected Castagnoli polynomial.
+     */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    /**
+     * The name of the checksum class of the platform.
+     */
+    private static final String PLATFORM_CLASS_NAME = "java.util.zip.CRC32C";
+
+    /**
+     * The lookup tables. The table {@code k} holds the CRC of each byte
+     * followed by {@code k} zero bytes, so that eight bytes are folded in at
+     * once.
+     */
+    private static final int[][] TABLES = new int[8][256];
+
+    /**
+     * Constructs the checksum of the platform, or is {@code null} if the 
+     * platform has none.
+     */
+    private static final MethodHandle PLATFORM_CONSTRUCTOR = 
+            findPlatformConstructor();
+
+    static {
+        for (int i = 0; i != 256; ++i) {
+            int crc = i;
+
+            for (int bit = 0; bit != Byte.SIZE; ++bit) {
+                crc = (crc >>> 1) ^ (POLYNOMIAL & -(crc & 1));
+            }
+
+            TABLES[0][i] = crc;
+        }
+
+        for (int i = 0; i != 256; ++i) {
+            for (int k = 1; k != TABLES.length; ++k) {
+                int previous = TABLES[k - 1][i];
+                TABLES[k][i] = (previous >>> 8) ^ TABLES[0][previous & 0xff];
+            }
+        }
+    }
+
+    /**
+     * The inverted checksum of the bytes so far.
+     */
+    private int crc = -1;
+
+    /**
+     * Returns a new CRC-32C checksum, preferring the one of the platform.
+     *
+     * @return the checksum.
+     */
+    static Checksum create() {
+        if (PLATFORM_CONSTRUCTOR == null) {
+            return new Crc32c();
+        }
+
+        try {
+            return (Checksum) PLATFORM_CONSTRUCTOR.invokeExact();
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable t) {
+            throw new IllegalStateException(
+                    "Could not create the checksum of the platform.", t);
+        }
+    }
+
+    /**
+     * Updates {@code checksum} with the bytes between the position and the
+     * limit of {@code data}, leaving the position of {@code data} intact.
+     *
+     * @param checksum the checksum to update.
+     * @param data     the buffer holding the bytes.
+     */
+    static void update(Checksum checksum, ByteBuffer data) {
+        if (data.hasArray()) {
+            checksum.update(data.array(),
+                            data.arrayOffset() + data.position(),
+                            data.remaining());
+        } else if (checksum instanceof Crc32c) {
+            ((Crc32c) checksum).updateDirect(data);
+        } else {
+            // Only reached with the checksum of the platform, whose interface
+            // has this method from Java 9 on:
+            checksum.update(data.duplicate());
+        }
+    }
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xff];
+    }
+
+    @Override
+    public void update(byte[] data, int offset, int length) {
+        int crc = this.crc;
+        int end = offset + length;
+
+        for (; offset + 8 <= end; offset += 8) {
+            int low = crc ^ ((data[offset] & 0xff)
+                          | (data[offset + 1] & 0xff) << 8
+                          | (data[offset + 2] & 0xff) << 16
+                          | (data[offset + 3] & 0xff) << 24);
+            crc = TABLES[7][low & 0xff]
+                ^ TABLES[6][(low >>> 8) & 0xff]
+                ^ TABLES[5][(low >>> 16) & 0xff]
+                ^ TABLES[4][low >>> 24]
+                ^ TABLES[3][data[offset + 4] & 0xff]
+                ^ TABLES[2][data[offset + 5] & 0xff]
+                ^ TABLES[1][data[offset + 6] & 0xff]
+                ^ TABLES[0][data[offset + 7] & 0xff];
+        }
+
+        for (; offset != end; ++offset) {
+            crc = (crc >>> 8) ^ TABLES[0][(crc ^ data[offset]) & 0xff];
+        }
+
+        this.crc = crc;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xffffffffL;
+    }
+
+    @Override
+    public void reset() {
+        crc = -1;
+    }
+
+    private void updateDirect(ByteBuffer data) {
+        byte[] chunk = new byte[Math.min(data.remaining(), 1 << 13)];
+        ByteBuffer source = data.duplicate();
+
+        while (source.hasRemaining()) {
+            int chunkLength = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, chunkLength);
+            update(chunk, 0, chunkLength);
+        }
+    }
+
+    private static MethodHandle findPlatformConstructor() {
+        try {
+            return MethodHandles.publicLookup()
+                                .findConstructor(
+                                        Class.forName(PLATFORM_CLASS_NAME),
+                                        MethodType.methodType(void.class))
+                                .asType(MethodType.methodType(Checksum.class));
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+}
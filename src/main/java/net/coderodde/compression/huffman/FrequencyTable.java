@@ -0,0 +1,160 @@
+package net.coderodde.compression.huffman;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class implements a table mapping each byte value to its frequency. It
+ * is backed by a primitive array of 256 counts indexed by the unsigned byte
+ * value.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class FrequencyTable {
+
+    /**
+     * The number of distinct byte values.
+     */
+    public static final int ALPHABET_SIZE = 256;
+
+    /**
+     * The frequencies indexed by the unsigned byte value.
+     */
+    final long[] frequencies;
+
+    /**
+     * Constructs a table with all the frequencies set to zero.
+     */
+    public FrequencyTable() {
+        this.frequencies = new long[ALPHABET_SIZE];
+    }
+
+    /**
+     * Constructs a table with the given frequencies.
+     *
+     * @param frequencies the array of 256 frequencies indexed by the unsigned
+     *                    byte value.
+     */
+    public FrequencyTable(long[] frequencies) {
+        if (frequencies.length != ALPHABET_SIZE) {
+            throw new IllegalArgumentException(
+            "Expected " + ALPHABET_SIZE + " frequencies, received " +
+                    frequencies.length + ".");
+        }
+
+        for (long frequency : frequencies) {
+            if (frequency < 0L) {
+                throw new IllegalArgumentException(
+                "Negative frequency: " + frequency + ".");
+            }
+        }
+
+        this.frequencies = frequencies.clone();
+    }
+
+    /**
+     * Constructs a table from a frequency map.
+     *
+     * @param frequencyMap the map mapping each byte to its frequency.
+     * @return the frequency table.
+     */
+    public static FrequencyTable fromMap(Map<Byte, Integer> frequencyMap) {
+        FrequencyTable table = new FrequencyTable();
+
+        for (Map.Entry<Byte, Integer> entry : frequencyMap.entrySet()) {
+            int frequency = entry.getValue();
+
+            if (frequency < 0) {
+                throw new IllegalArgumentException(
+                "Negative frequency: " + frequency + ".");
+            }
+
+            table.frequencies[Byte.toUnsignedInt(entry.getKey())] = frequency;
+        }
+
+        return table;
+    }
+
+    /**
+     * Returns the frequency of the given byte.
+     *
+     * @param symbol the byte.
+     * @return the frequency of {@code symbol}.
+     */
+    public long getFrequency(byte symbol) {
+        return frequencies[Byte.toUnsignedInt(symbol)];
+    }
+
+    /**
+     * Returns the number of bytes with a non-zero frequency.
+     *
+     * @return the number of present bytes.
+     */
+    public int getNumberOfSymbols() {
+        int numberOfSymbols = 0;
+
+        for (long frequency : frequencies) {
+            if (frequency != 0L) {
+                ++numberOfSymbols;
+            }
+        }
+
+        return numberOfSymbols;
+    }
+
+    /**
+     * Returns the sum of all the frequencies.
+     *
+     * @return the total frequency.
+     */
+    public long getTotalFrequency() {
+        long totalFrequency = 0L;
+
+        for (long frequency : frequencies) {
+            totalFrequency += frequency;
+        }
+
+        return totalFrequency;
+    }
+
+    /**
+     * Adds the frequencies of {@code other} to this table.
+     *
+     * @param other the table to add.
+     */
+    void add(FrequencyTable other) {
+        for (int i = 0; i != ALPHABET_SIZE; ++i) {
+            frequencies[i] += other.frequencies[i];
+        }
+    }
+
+    /**
+     * Returns a copy of the frequencies indexed by the unsigned byte value.
+     *
+     * @return the frequencies.
+     */
+    public long[] toArray() {
+        return frequencies.clone();
+    }
+
+    /**
+     * Converts this table to a map containing the bytes with a non-zero
+     * frequency.
+     *
+     * @return the frequency map.
+     * @throws ArithmeticException if a frequency does not fit in an
+     *                             {@code int}.
+     */
+    public Map<Byte, Integer> toMap() {
+        Map<Byte, Integer> map = new TreeMap<>();
+
+        for (int i = 0; i != ALPHABET_SIZE; ++i) {
+            if (frequencies[i] != 0L) {
+                map.put((byte) i, Math.toIntExact(frequencies[i]));
+            }
+        }
+
+        return map;
+    }
+}
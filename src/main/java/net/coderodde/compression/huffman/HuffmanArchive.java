@@ -0,0 +1,365 @@
+package net.coderodde.compression.huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class reads the central directory of an archive written by
+ * {@link ParallelHuffmanCodec#compressArchive(Map, OutputStream)}. An archive
+ * packs many files, each compressed into a complete stream of its own, so
+ * that a member is extracted by
+ * {@link ParallelHuffmanCodec#extract(HuffmanArchive, Entry, OutputStream)}
+ * without reading any other member. The archive has the layout
+ * <pre>
+ *   signature            (4 bytes)
+ *   flags                (1 byte, zero)
+ *   member streams
+ *   central directory
+ *   directory position   (8 bytes)
+ *   number of entries    (4 bytes)
+ *   signature            (4 bytes)
+ * </pre>
+ * The central directory holds an entry per member:
+ * <pre>
+ *   name length          (2 bytes)
+ *   name                 (UTF-8)
+ *   uncompressed size    (8 bytes)
+ *   stream position      (8 bytes)
+ *   stream length        (8 bytes)
+ * </pre>
+ * All the integers are stored in little-endian order.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class HuffmanArchive {
+
+    /**
+     * The magic file signature of the archive format.
+     */
+    static final byte[] MAGIC_ARCHIVE = new byte[]{ (byte) 0xC0,
+                                                    (byte) 0xDE,
+                                                    (byte) 0x0D,
+                                                    (byte) 0xE6 };
+
+    /**
+     * The number of bytes in the archive header.
+     */
+    static final int BYTES_PER_ARCHIVE_HEADER = MAGIC_ARCHIVE.length + 1;
+
+    /**
+     * The number of bytes in the trailer following the central directory.
+     */
+    static final int BYTES_PER_TRAILER = 8 + 4 + MAGIC_ARCHIVE.length;
+
+    /**
+     * The number of bytes in an entry besides its name.
+     */
+    static final int BYTES_PER_ENTRY = 2 + 8 + 8 + 8;
+
+    /**
+     * The maximum number of bytes in the encoded name of a member.
+     */
+    static final int MAX_NAME_LENGTH = 0xffff;
+
+    /**
+     * Describes a member of an archive.
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final long size;
+        private final long streamPosition;
+        private final long streamLength;
+
+        Entry(String name, long size, long streamPosition, long streamLength) {
+            this.name = name;
+            this.size = size;
+            this.streamPosition = streamPosition;
+            this.streamLength = streamLength;
+        }
+
+        /**
+         * Returns the name of the member.
+         *
+         * @return the name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the number of bytes in the member.
+         *
+         * @return the uncompressed size.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the number of bytes in the compressed stream of the member.
+         *
+         * @return the compressed size.
+         */
+        public long getCompressedSize() {
+            return streamLength;
+        }
+
+        long getStreamPosition() {
+            return streamPosition;
+        }
+    }
+
+    /**
+     * The archive file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The entries in the archive order.
+     */
+    private final List<Entry> entries;
+
+    /**
+     * The entries by their names.
+     */
+    private final Map<String, Entry> entryMap = new LinkedHashMap<>();
+
+    /**
+     * Reads the central directory of the archive in the file
+     * {@code channel}. The channel is not closed.
+     *
+     * @param channel the archive file opened for reading.
+     * @throws IOException if the I/O fails.
+     * @throws InvalidFormatException if the archive is malformed.
+     */
+    public HuffmanArchive(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long archiveSize = channel.size();
+
+        if (archiveSize < BYTES_PER_ARCHIVE_HEADER + BYTES_PER_TRAILER) {
+            throw new InvalidFormatException(
+                    "The archive is too short: " + archiveSize + " bytes.");
+        }
+
+        byte[] signature = new byte[MAGIC_ARCHIVE.length];
+        read(0L, MAGIC_ARCHIVE.length).get(signature);
+
+        if (!Arrays.equals(signature, MAGIC_ARCHIVE)) {
+            throw new InvalidFormatException("Bad archive signature.");
+        }
+
+        long directoryEnd = archiveSize - BYTES_PER_TRAILER;
+        ByteBuffer trailer = read(directoryEnd, BYTES_PER_TRAILER);
+        long directoryPosition = trailer.getLong();
+        int numberOfEntries = trailer.getInt();
+        trailer.get(signature);
+
+        if (!Arrays.equals(signature, MAGIC_ARCHIVE)) {
+            throw new InvalidFormatException(
+                    "Bad archive trailer. The archive is truncated.");
+        }
+
+        if (directoryPosition < BYTES_PER_ARCHIVE_HEADER
+                || directoryPosition > directoryEnd
+                || directoryEnd - directoryPosition > Integer.MAX_VALUE
+                || numberOfEntries < 0
+                || numberOfEntries > (directoryEnd - directoryPosition)
+                                     / BYTES_PER_ENTRY) {
+            throw new InvalidFormatException("Bad central directory.");
+        }
+
+        ByteBuffer directory =
+                read(directoryPosition,
+                     (int)(directoryEnd - directoryPosition));
+        List<Entry> entryList = new ArrayList<>(numberOfEntries);
+
+        try {
+            for (int i = 0; i != numberOfEntries; ++i) {
+                byte[] name =
+                        new byte[Short.toUnsignedInt(directory.getShort())];
+                directory.get(name);
+                Entry entry = new Entry(new String(name,
+                                                   StandardCharsets.UTF_8),
+                                        directory.getLong(),
+                                        directory.getLong(),
+                                        directory.getLong());
+                checkEntry(entry, directoryPosition);
+                entryList.add(entry);
+                entryMap.put(entry.getName(), entry);
+            }
+        } catch (BufferUnderflowException ex) {
+            throw new InvalidFormatException(
+                    "The central directory is truncated.");
+        }
+
+        this.entries = Collections.unmodifiableList(entryList);
+    }
+
+    /**
+     * Returns the entries in the archive order.
+     *
+     * @return the entries.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the entry of the member named {@code name}.
+     *
+     * @param name the name of the member.
+     * @return the entry or {@code null} if the archive has no such member.
+     */
+    public Entry getEntry(String name) {
+        return entryMap.get(name);
+    }
+
+    /**
+     * Returns a stream reading the compressed stream of the member
+     * {@code entry}. The stream reads the archive at explicit positions, so
+     * that the members are read concurrently.
+     *
+     * @param entry the entry of the member.
+     * @return the stream.
+     */
+    InputStream openStream(Entry entry) {
+        return new MemberInputStream(channel,
+                                     entry.getStreamPosition(),
+                                     entry.getCompressedSize());
+    }
+
+    /**
+     * Writes the central directory and the trailer of an archive.
+     *
+     * @param out               the target stream.
+     * @param entries           the entries.
+     * @param directoryPosition the position of the central directory.
+     * @throws IOException if the I/O fails.
+     */
+    static void writeDirectory(OutputStream out,
+                               List<Entry> entries,
+                               long directoryPosition) throws IOException {
+        ByteList directory = new ByteList(BYTES_PER_TRAILER);
+
+        for (Entry entry : entries) {
+            byte[] name = encodeName(entry.getName());
+            directory.appendByte((byte) name.length);
+            directory.appendByte((byte)(name.length >>> 8));
+            directory.appendBytes(name);
+            directory.appendLong(entry.getSize());
+            directory.appendLong(entry.getStreamPosition());
+            directory.appendLong(entry.getCompressedSize());
+        }
+
+        directory.appendLong(directoryPosition);
+        directory.appendInt(entries.size());
+        directory.appendBytes(MAGIC_ARCHIVE);
+        out.write(directory.toByteArray());
+    }
+
+    /**
+     * Returns the UTF-8 encoding of the name {@code name}.
+     *
+     * @throws IllegalArgumentException if the name is too long.
+     */
+    static byte[] encodeName(String name) {
+        byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+
+        if (encodedName.length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException(
+            "The member name is too long: " + encodedName.length +
+            " bytes.");
+        }
+
+        return encodedName;
+    }
+
+    private static void checkEntry(Entry entry, long directoryPosition) {
+        if (entry.getSize() < 0L
+                || entry.getStreamPosition() < BYTES_PER_ARCHIVE_HEADER
+                || entry.getCompressedSize() < 0L
+                || entry.getCompressedSize()
+                        > directoryPosition - entry.getStreamPosition()) {
+            throw new InvalidFormatException(
+            "Bad central directory entry of \"" + entry.getName() + "\".");
+        }
+    }
+
+    /**
+     * Reads {@code length} bytes of the archive starting at the position
+     * {@code position} into a little-endian buffer.
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new InvalidFormatException(
+                        "Unexpected end of the archive.");
+            }
+        }
+
+        // Cast to Buffer so that the code runs on Java 8 as well.
+        ((Buffer) buffer).flip();
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads a region of a file channel without moving its position.
+     */
+    private static final class MemberInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+        private long remaining;
+
+        MemberInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (remaining == 0L) {
+                return -1;
+            }
+
+            int toRead = (int) Math.min(len, remaining);
+            int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+
+            if (read < 0) {
+                return -1;
+            }
+
+            position += read;
+            remaining -= read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,1945 @@
+package net.coderodde.compression.huffman;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+/**
+ * This class encodes and decodes the independent blocks of the stream format.
+ * A stream starts with the signature {@link #MAGIC_STREAM} followed by one
+ * flag byte and a sequence of frames. Each frame has the layout
+ * <pre>
+ *   block type           (1 byte)
+ *   uncompressed length  (4 bytes)
+ *   body length          (4 bytes)
+ *   body                 (body length bytes)
+ * </pre>
+ * The body of a Huffman block consists of the number of encoded bits
+ * (4 bytes), the code length table of the canonical code and the encoded
+ * bits. The body of an interleaved Huffman block splits the block into four
+ * consecutive segments, each but the last one {@code ceil(n / 4)} bytes long,
+ * and encodes each segment into a bit stream of its own. The body starts with
+ * the jump table of the four bit counts (4 bytes each), followed by the code
+ * length table shared by the streams and the four streams, each padded to a
+ * whole byte. The streams are decoded in the same loop, which overlaps the
+ * table lookups of the four streams. The stream is terminated by a frame of type
+ * {@link #END_OF_STREAM_BLOCK}, which has no further fields. All the integers
+ * are stored in little-endian order.
+ * <p>
+ * The body of a context-modelled Huffman block codes each byte with one of
+ * up to {@link ContextModel#MAX_TABLES} canonical codes, selected by the byte
+ * preceding it in the block; the first byte of the block is coded as if
+ * preceded by zero. The body consists of the number of encoded bits
+ * (4 bytes), the number of codes minus one (1 byte), the index of the code
+ * of each of the 256 preceding bytes (1 byte each), the code length table of
+ * each code and the encoded bits.
+ * <p>
+ * The body of a stored block is the block itself. A block is stored if its
+ * byte counts show that no Huffman body would be shorter, so that a frame 
+ * never exceeds the block by more than its header.
+ * <p>
+ * In a stream with the flag {@link #CHECKSUMMED_STREAM} set, each frame is 
+ * followed by the CRC-32C checksum of its uncompressed block (4 bytes), which
+ * the body length does not count. The end of stream marker has no checksum.
+ * <p>
+ * A stream with the flag {@link #INDEXED_STREAM} set is followed by the 
+ * footer of a {@link BlockIndex}, which the readers of the stream skip.
+ * <p>
+ * The instances of this class hold scratch buffers and must not be shared
+ * between threads.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+final class HuffmanBlockCodec {
+
+    /**
+     * The magic file signature of the stream format.
+     */
+    static final byte[] MAGIC_STREAM = new byte[]{ (byte) 0xC0,
+                                                   (byte) 0xDE,
+                                                   (byte) 0x0D,
+                                                   (byte) 0xE3 };
+
+    /**
+     * The number of bytes following the signature in the stream header. The
+     * only byte holds the stream flags.
+     */
+    static final int BYTES_PER_STREAM_FLAGS = 1;
+
+    /**
+     * The stream flag telling that a block index follows the stream.
+     */
+    static final int INDEXED_STREAM = 1;
+
+    /**
+     * The stream flag telling that each frame is followed by the checksum of
+     * its block. The frames encoded by this class always are.
+     */
+    static final int CHECKSUMMED_STREAM = 2;
+
+    /**
+     * The number of bytes in the checksum following a frame.
+     */
+    static final int BYTES_PER_CHECKSUM = 4;
+
+    /**
+     * Marks the end of the stream.
+     */
+    static final byte END_OF_STREAM_BLOCK = 0;
+
+    /**
+     * Marks a block coded with a canonical Huffman code.
+     */
+    static final byte HUFFMAN_BLOCK = 1;
+
+    /**
+     * Marks a block coded with a canonical Huffman code into four interleaved
+     * bit streams.
+     */
+    static final byte INTERLEAVED_HUFFMAN_BLOCK = 2;
+
+    /**
+     * Marks a block coded with canonical Huffman codes selected by the 
+     * preceding byte.
+     */
+    static final byte CONTEXT_HUFFMAN_BLOCK = 3;
+
+    /**
+     * Marks a block stored as is.
+     */
+    static final byte STORED_BLOCK = 4;
+
+    /**
+     * The number of bit streams of an interleaved block.
+     */
+    static final int NUMBER_OF_STREAMS = 4;
+
+    /**
+     * The number of bytes in a frame header.
+     */
+    static final int BYTES_PER_FRAME_HEADER = 1 + 4 + 4;
+
+    /**
+     * The default number of bytes in an uncompressed block.
+     */
+    static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    /**
+     * The largest accepted number of bytes in an uncompressed block.
+     */
+    static final int MAX_BLOCK_SIZE = 1 << 26;
+
+    /**
+     * The default maximum code length of a block. A code limited to the 
+     * primary table index of {@link HuffmanDecodingTable} is decoded without 
+     * secondary table lookups, several symbols per 64-bit window.
+     */
+    static final int DEFAULT_MAX_CODE_LENGTH = 
+            HuffmanDecodingTable.PRIMARY_TABLE_BITS;
+
+    /**
+     * The smallest accepted maximum code length. It fits all the 256 byte 
+     * values.
+     */
+    static final int MIN_MAX_CODE_LENGTH = Byte.SIZE;
+
+    /**
+     * The smallest number of chunks a sample must hold; smaller blocks are
+     * counted exactly.
+     */
+    static final int MIN_SAMPLED_CHUNKS = 8;
+
+    /**
+     * The smallest block coded with context-modelled codes. The header of a 
+     * smaller block would outweigh the savings, and could not be written 
+     * within {@link #getMaximumFrameLength(int)} bytes either.
+     */
+    static final int MIN_CONTEXT_BLOCK_LENGTH = 1 << 13;
+
+    /**
+     * The number of bytes in the body of a context-modelled block preceding
+     * the code length tables.
+     */
+    private static final int BYTES_PER_CONTEXT_HEADER = 
+            HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY 
+            + 1 
+            + FrequencyTable.ALPHABET_SIZE;
+
+    /**
+     * Holds the lengths stored in a frame header.
+     */
+    static final class FrameHeader {
+        int blockType;
+        int uncompressedLength;
+        int bodyLength;
+    }
+
+    /**
+     * The maximum code length of the encoded blocks.
+     */
+    private final int maxCodeLength;
+
+    /**
+     * Whether the blocks are encoded into interleaved bit streams.
+     */
+    private final boolean interleaved;
+
+    /**
+     * The code of a block is built from the byte counts of every 
+     * {@code samplingInterval}th chunk of the block, or from the exact byte 
+     * counts if this is one.
+     */
+    private final int samplingInterval;
+
+    /**
+     * Selects the codes of the context-modelled blocks, or is {@code null} if
+     * the blocks are coded with a single code.
+     */
+    private final ContextModel contextModel;
+
+    /**
+     * The code words of all the codes of a context-modelled block, the code 
+     * of the table {@code t} starting at the index {@code 256 * t}.
+     */
+    private final long[] contextCodeWords;
+
+    /**
+     * The code lengths of all the codes of a context-modelled block, laid out
+     * as {@link #contextCodeWords}.
+     */
+    private final int[] contextCodeLengths;
+
+    /**
+     * The index of the code of each preceding byte within 
+     * {@link #contextCodeWords}.
+     */
+    private final int[] contextTableOffsets = 
+            new int[FrequencyTable.ALPHABET_SIZE];
+
+    /**
+     * The decoding tables of the codes of a context-modelled block, created 
+     * on demand.
+     */
+    private final HuffmanDecodingTable[] contextDecodingTables = 
+            new HuffmanDecodingTable[ContextModel.MAX_TABLES];
+
+    /**
+     * The decoding table of each preceding byte.
+     */
+    private final HuffmanDecodingTable[] decodingTablesByContext =
+            new HuffmanDecodingTable[FrequencyTable.ALPHABET_SIZE];
+
+    /**
+     * Holds the code lengths of the block being decoded.
+     */
+    private final int[] codeLengths =
+            new int[FrequencyTable.ALPHABET_SIZE];
+
+    /**
+     * Builds the code of each block encoded or decoded.
+     */
+    private final HuffmanCodeBuilder codeBuilder = new HuffmanCodeBuilder();
+
+    /**
+     * Holds the byte frequencies of the block being encoded.
+     */
+    private final long[] frequencies = new long[FrequencyTable.ALPHABET_SIZE];
+
+    /**
+     * The counter lanes of {@link ByteCountComputer}.
+     */
+    private final int[] counterLanes = 
+            new int[ByteCountComputer.COUNTER_LANES 
+                    * FrequencyTable.ALPHABET_SIZE];
+
+    /**
+     * Holds the encoded bits of each stream of the block being decoded.
+     */
+    private final long[][] streamWords = new long[NUMBER_OF_STREAMS][0];
+
+    /**
+     * Computes the checksums of the blocks.
+     */
+    private final Checksum checksum = Crc32c.create();
+
+    /**
+     * Holds a copy of the header of the block body being decoded from a 
+     * buffer. It fits the jump table and the largest code length table.
+     */
+    private final byte[] bodyHeader = 
+            new byte[NUMBER_OF_STREAMS 
+                     * HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY
+                     + HuffmanSerializer.MAX_CODE_LENGTHS_SIZE];
+
+    /**
+     * Holds a block decoded into an array before it is copied into a buffer.
+     */
+    private byte[] interleavedBlock = new byte[0];
+
+    /**
+     * Holds a copy of a block, or of a block body, read from a buffer by the
+     * coders working on arrays.
+     */
+    private byte[] blockCopy = new byte[0];
+
+    /**
+     * The number of encoded bits of each stream of the block being decoded.
+     */
+    private final int[] streamBitLengths = new int[NUMBER_OF_STREAMS];
+
+    /**
+     * The number of encoded bytes of each stream of the block being decoded.
+     */
+    private final int[] streamByteLengths = new int[NUMBER_OF_STREAMS];
+
+    /**
+     * The index of the first encoded byte within the body being decoded.
+     */
+    private int payloadOffset;
+
+    /**
+     * Accumulates the statistics of the coded blocks, or is {@code null} if
+     * none are collected.
+     */
+    CodecStatistics statistics;
+
+    /**
+     * The number of nanoseconds recorded in the nested stages so far, so that
+     * the enclosing stage is recorded without them.
+     */
+    private long nestedStageNanos;
+
+    /**
+     * Constructs a codec encoding with the default maximum code length.
+     */
+    HuffmanBlockCodec() {
+        this(DEFAULT_MAX_CODE_LENGTH);
+    }
+
+    /**
+     * Constructs a codec encoding with the given maximum code length.
+     *
+     * @param maxCodeLength the maximum code length of the encoded blocks.
+     */
+    HuffmanBlockCodec(int maxCodeLength) {
+        this(maxCodeLength, false);
+    }
+
+    /**
+     * Constructs a codec encoding with the given maximum code length and 
+     * optionally into interleaved bit streams.
+     *
+     * @param maxCodeLength the maximum code length of the encoded blocks.
+     * @param interleaved   whether to encode into interleaved bit streams.
+     */
+    HuffmanBlockCodec(int maxCodeLength, boolean interleaved) {
+        this(maxCodeLength, interleaved, 1);
+    }
+
+    /**
+     * Constructs a codec encoding with the given maximum code length, 
+     * optionally into interleaved bit streams, and building the codes of 
+     * large blocks from a sample of their bytes. The bytes not seen in the
+     * sample still receive code words. A block whose estimated code turns 
+     * out to spend more than 8 bits per byte is encoded again from its exact
+     * byte counts.
+     *
+     * @param maxCodeLength    the maximum code length of the encoded blocks.
+     * @param interleaved      whether to encode into interleaved bit 
+     *                         streams.
+     * @param samplingInterval the number of chunks per sampled chunk, or one
+     *                         for exact counts.
+     */
+    HuffmanBlockCodec(int maxCodeLength, 
+                      boolean interleaved, 
+                      int samplingInterval) {
+        this(maxCodeLength, interleaved, samplingInterval, false);
+    }
+
+    /**
+     * Constructs a codec encoding with the given maximum code length, 
+     * optionally into interleaved bit streams, building the codes of large 
+     * blocks from a sample of their bytes and optionally with codes selected
+     * by the preceding byte. A context-modelled block is coded into a single
+     * bit stream from the exact byte counts; the blocks for which it does 
+     * not pay off are coded with a single code as usual.
+     *
+     * @param maxCodeLength    the maximum code length of the encoded blocks.
+     * @param interleaved      whether to encode into interleaved bit 
+     *                         streams.
+     * @param samplingInterval the number of chunks per sampled chunk, or one
+     *                         for exact counts.
+     * @param contextModelled  whether to select the code by the preceding 
+     *                         byte.
+     */
+    HuffmanBlockCodec(int maxCodeLength, 
+                      boolean interleaved, 
+                      int samplingInterval,
+                      boolean contextModelled) {
+        this.maxCodeLength = checkMaxCodeLength(maxCodeLength);
+        this.interleaved = interleaved;
+        this.samplingInterval = checkSamplingInterval(samplingInterval);
+
+        if (contextModelled) {
+            this.contextModel = new ContextModel();
+            this.contextCodeWords = 
+                    new long[ContextModel.MAX_TABLES 
+                             * FrequencyTable.ALPHABET_SIZE];
+            this.contextCodeLengths = 
+                    new int[ContextModel.MAX_TABLES 
+                            * FrequencyTable.ALPHABET_SIZE];
+        } else {
+            this.contextModel = null;
+            this.contextCodeWords = null;
+            this.contextCodeLengths = null;
+        }
+    }
+
+    /**
+     * Holds a block encoded in a worker thread until it is written as a 
+     * frame.
+     */
+    static final class EncodedBlock {
+
+        private final int uncompressedLength;
+        private final int[] codeLengths;
+        private final BitString[] encodedTexts;
+        private final int bodyLength;
+        private final byte[] frame;
+        private int checksum;
+
+        EncodedBlock(int uncompressedLength,
+                     int[] codeLengths,
+                     BitString... encodedTexts) {
+            this.uncompressedLength = uncompressedLength;
+            this.codeLengths = codeLengths;
+            this.encodedTexts = encodedTexts;
+            this.frame = null;
+
+            // A Huffman code never spends more than 8 bits per byte on
+            // average, so the bit count of a block always fits in an int:
+            this.bodyLength = getHeaderLength() + getPayloadLength();
+        }
+
+        /**
+         * Constructs a block already written into a frame, the checksum 
+         * excluded.
+         *
+         * @param frame the frame.
+         */
+        EncodedBlock(byte[] frame) {
+            this.uncompressedLength = readInt(frame, 1);
+            this.codeLengths = null;
+            this.encodedTexts = null;
+            this.bodyLength = frame.length - BYTES_PER_FRAME_HEADER;
+            this.frame = frame;
+        }
+
+        /**
+         * Returns the number of bytes in the frame of this block, the 
+         * checksum included.
+         *
+         * @return the frame length.
+         */
+        int getFrameLength() {
+            return BYTES_PER_FRAME_HEADER + bodyLength + BYTES_PER_CHECKSUM;
+        }
+
+        /**
+         * Returns the number of bytes in this block.
+         *
+         * @return the uncompressed length.
+         */
+        int getUncompressedLength() {
+            return uncompressedLength;
+        }
+
+        /**
+         * Writes the frame of this block into {@code out} starting at its 
+         * position and advances the position past the frame.
+         *
+         * @param out the target buffer.
+         */
+        void writeTo(ByteBuffer out) {
+            if (frame != null) {
+                out.put(frame);
+                putChecksum(out);
+                return;
+            }
+
+            ByteList header = new ByteList(BYTES_PER_FRAME_HEADER 
+                                           + getHeaderLength());
+            header.appendByte(encodedTexts.length == 1 ? 
+                              HUFFMAN_BLOCK :
+                              INTERLEAVED_HUFFMAN_BLOCK);
+            header.appendInt(uncompressedLength);
+            header.appendInt(bodyLength);
+
+            for (BitString encodedText : encodedTexts) {
+                header.appendInt((int) encodedText.length());
+            }
+
+            HuffmanSerializer.emitCodeLengths(header, codeLengths);
+            out.put(header.toByteArray());
+
+            for (BitString encodedText : encodedTexts) {
+                encodedText.writeTo(out);
+            }
+
+            putChecksum(out);
+        }
+
+        private void putChecksum(ByteBuffer out) {
+            out.put((byte)  checksum)
+               .put((byte) (checksum >>> 8))
+               .put((byte) (checksum >>> 16))
+               .put((byte) (checksum >>> 24));
+        }
+
+        private int getHeaderLength() {
+            return encodedTexts.length 
+                   * HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY
+                   + HuffmanSerializer.computeCodeLengthsSize(codeLengths);
+        }
+
+        private int getPayloadLength() {
+            int payloadLength = 0;
+
+            for (BitString encodedText : encodedTexts) {
+                payloadLength += (int) encodedText.getNumberOfBytesOccupied();
+            }
+
+            return payloadLength;
+        }
+    }
+
+    /**
+     * Encodes a block of data into a complete frame.
+     *
+     * @param data   the array holding the block.
+     * @param offset the index of the first byte of the block.
+     * @param length the number of bytes in the block.
+     * @return the frame.
+     */
+    byte[] encodeBlock(byte[] data, int offset, int length) {
+        byte[] frame = new byte[getMaximumFrameLength(length)];
+        int frameLength = encodeBlock(data, offset, length, frame, 0);
+        return Arrays.copyOf(frame, frameLength);
+    }
+
+    /**
+     * Encodes a block of data into a complete frame written into 
+     * {@code output} starting at the index {@code outputOffset}. Both the 
+     * byte counts and the code are built in the scratch arrays of this codec
+     * and the code words are written straight into {@code output}, so that 
+     * nothing is allocated. If the code built from a sample does not fit,
+     * the frame is written again with the code of the exact byte counts.
+     *
+     * @param data         the array holding the block.
+     * @param offset       the index of the first byte of the block.
+     * @param length       the number of bytes in the block.
+     * @param output       the array with room for 
+     *                     {@link #getMaximumFrameLength(int)} bytes.
+     * @param outputOffset the index of the first byte of the frame.
+     * @return the number of bytes in the frame, the checksum included.
+     */
+    int encodeBlock(byte[] data, 
+                    int offset, 
+                    int length, 
+                    byte[] output, 
+                    int outputOffset) {
+        CodecStatistics.StageRun run = startStage();
+        long nestedNanosBefore = nestedStageNanos;
+        long allocatedBefore = getAllocatedBytes();
+        int frameLength = 
+                encodeFrame(data, offset, length, output, outputOffset);
+        endBlockStage(CodecStatistics.Stage.ENCODE,
+                      run,
+                      nestedNanosBefore,
+                      allocatedBefore,
+                      length,
+                      frameLength);
+        writeInt(output, 
+                 outputOffset + frameLength, 
+                 computeChecksum(data, offset, length));
+        return frameLength + BYTES_PER_CHECKSUM;
+    }
+
+    /**
+     * Encodes a block of data into a frame without the checksum.
+     *
+     * @return the number of bytes in the frame.
+     */
+    private int encodeFrame(byte[] data, 
+                            int offset, 
+                            int length, 
+                            byte[] output, 
+                            int outputOffset) {
+        if (contextModel != null && length >= MIN_CONTEXT_BLOCK_LENGTH) {
+            int frameLength = writeContextFrame(data, 
+                                                offset, 
+                                                length, 
+                                                output, 
+                                                outputOffset);
+
+            if (frameLength >= 0) {
+                return frameLength;
+            }
+        }
+
+        Arrays.fill(frequencies, 0L);
+
+        if (isSampled(length)) {
+            CodecStatistics.StageRun histogramRun = startStage();
+            ByteCountComputer.countSample(data,
+                                          offset,
+                                          length,
+                                          samplingInterval,
+                                          frequencies,
+                                          counterLanes);
+            completeSample(frequencies);
+            endStage(CodecStatistics.Stage.HISTOGRAM, histogramRun, length);
+            int frameLength = 
+                    writeFrame(data, offset, length, output, outputOffset);
+
+            if (frameLength >= 0) {
+                return frameLength;
+            }
+
+            Arrays.fill(frequencies, 0L);
+        }
+
+        CodecStatistics.StageRun histogramRun = startStage();
+        ByteCountComputer.countSequentially(data, 
+                                            offset, 
+                                            length, 
+                                            frequencies, 
+                                            counterLanes);
+        endStage(CodecStatistics.Stage.HISTOGRAM, histogramRun, length);
+        return writeFrame(data, offset, length, output, outputOffset);
+    }
+
+    /**
+     * Builds the context-modelled codes of the block and writes its frame 
+     * into {@code output} unless it would be no shorter than the frame coded
+     * with a single code. Both lengths are known exactly before any byte is
+     * coded.
+     *
+     * @return the number of bytes in the frame, or -1 if the frame is not 
+     *         written.
+     */
+    private int writeContextFrame(byte[] data,
+                                  int offset,
+                                  int length,
+                                  byte[] output,
+                                  int outputOffset) {
+        CodecStatistics.StageRun histogramRun = startStage();
+        contextModel.build(data, offset, length);
+        endStage(CodecStatistics.Stage.HISTOGRAM, histogramRun, length);
+        int numberOfTables = contextModel.numberOfTables;
+
+        if (numberOfTables < 2) {
+            return -1;
+        }
+
+        int bodyOffset = outputOffset + BYTES_PER_FRAME_HEADER;
+        int index = bodyOffset + BYTES_PER_CONTEXT_HEADER;
+        long numberOfBits = 0L;
+        Arrays.fill(frequencies, 0L);
+
+        for (int table = 0; table != numberOfTables; ++table) {
+            long[] tableFrequencies = contextModel.tableFrequencies[table];
+            int tableOffset = table * FrequencyTable.ALPHABET_SIZE;
+            buildCode(tableFrequencies);
+            numberOfBits += codeBuilder.computeEncodedLength(tableFrequencies);
+            index = HuffmanSerializer.emitCodeLengths(output, 
+                                                      index, 
+                                                      codeBuilder.codeLengths);
+            System.arraycopy(codeBuilder.codeWords, 
+                             0, 
+                             contextCodeWords, 
+                             tableOffset, 
+                             FrequencyTable.ALPHABET_SIZE);
+            System.arraycopy(codeBuilder.codeLengths, 
+                             0, 
+                             contextCodeLengths, 
+                             tableOffset, 
+                             FrequencyTable.ALPHABET_SIZE);
+
+            for (int i = 0; i != FrequencyTable.ALPHABET_SIZE; ++i) {
+                frequencies[i] += tableFrequencies[i];
+            }
+        }
+
+        // The length of the body writeFrame would write instead, coded with
+        // a single code into as many streams or stored:
+        buildCode(frequencies);
+        long singleCodeLength = Math.min(
+                length, 
+                computeBodyLength(frequencies, getNumberOfEncodedStreams()));
+
+        if (index - bodyOffset + (numberOfBits + Byte.SIZE - 1) / Byte.SIZE 
+                >= singleCodeLength) {
+            return -1;
+        }
+
+        writeInt(output, bodyOffset, (int) numberOfBits);
+        output[bodyOffset + HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY] = 
+                (byte)(numberOfTables - 1);
+
+        for (int context = 0; 
+                context != FrequencyTable.ALPHABET_SIZE; 
+                ++context) {
+            int table = contextModel.contextMap[context];
+            output[bodyOffset 
+                   + HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY 
+                   + 1 
+                   + context] = (byte) table;
+            contextTableOffsets[context] = 
+                    table * FrequencyTable.ALPHABET_SIZE;
+        }
+
+        index += (int)((HuffmanEncoder.encode(contextCodeWords,
+                                              contextCodeLengths,
+                                              contextTableOffsets,
+                                              data,
+                                              offset,
+                                              length,
+                                              output,
+                                              index) 
+                        + Byte.SIZE - 1) / Byte.SIZE);
+
+        int frameLength = index - outputOffset;
+        output[outputOffset] = CONTEXT_HUFFMAN_BLOCK;
+        writeInt(output, outputOffset + 1, length);
+        writeInt(output, 
+                 outputOffset + 5, 
+                 frameLength - BYTES_PER_FRAME_HEADER);
+        return frameLength;
+    }
+
+    /**
+     * Builds the code from {@link #frequencies} and writes the frame of the
+     * block into {@code output}, or stores the block if the code would not 
+     * make it shorter.
+     *
+     * @return the number of bytes in the frame, or -1 if the frame and its
+     *         checksum would exceed {@link #getMaximumFrameLength(int)} 
+     *         bytes.
+     */
+    private int writeFrame(byte[] data, 
+                           int offset, 
+                           int length, 
+                           byte[] output, 
+                           int outputOffset) {
+        int numberOfStreams = getNumberOfEncodedStreams();
+        int outputEnd = outputOffset 
+                      + getMaximumFrameLength(length) 
+                      - BYTES_PER_CHECKSUM;
+        buildCode(frequencies);
+
+        if (computeBodyLength(frequencies, numberOfStreams) >= length) {
+            return writeStoredFrame(data, offset, length, output, outputOffset);
+        }
+
+        int jumpTableOffset = outputOffset + BYTES_PER_FRAME_HEADER;
+        int index = HuffmanSerializer.emitCodeLengths(
+                output,
+                jumpTableOffset + numberOfStreams 
+                        * HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY,
+                codeBuilder.codeLengths);
+        int segmentLength = numberOfStreams == 1 ? 
+                            length : 
+                            computeSegmentLength(length);
+
+        for (int i = 0; i != numberOfStreams; ++i) {
+            long numberOfBits = HuffmanEncoder.encode(
+                    codeBuilder.codeWords,
+                    codeBuilder.codeLengths,
+                    data,
+                    offset + getSegmentStart(i, segmentLength, length),
+                    getSegmentLength(i, segmentLength, length),
+                    output,
+                    index,
+                    outputEnd);
+
+            if (numberOfBits < 0L) {
+                return -1;
+            }
+
+            writeInt(output, 
+                     jumpTableOffset 
+                             + i * HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY,
+                     (int) numberOfBits);
+            index += (int)((numberOfBits + Byte.SIZE - 1) / Byte.SIZE);
+        }
+
+        int frameLength = index - outputOffset;
+        output[outputOffset] = numberOfStreams == 1 ? 
+                               HUFFMAN_BLOCK : 
+                               INTERLEAVED_HUFFMAN_BLOCK;
+        writeInt(output, outputOffset + 1, length);
+        writeInt(output, 
+                 outputOffset + 5, 
+                 frameLength - BYTES_PER_FRAME_HEADER);
+        return frameLength;
+    }
+
+    /**
+     * Writes the frame of a stored block into {@code output}.
+     *
+     * @return the number of bytes in the frame.
+     */
+    private static int writeStoredFrame(byte[] data, 
+                                        int offset, 
+                                        int length, 
+                                        byte[] output, 
+                                        int outputOffset) {
+        output[outputOffset] = STORED_BLOCK;
+        writeInt(output, outputOffset + 1, length);
+        writeInt(output, outputOffset + 5, length);
+        System.arraycopy(data, 
+                         offset, 
+                         output, 
+                         outputOffset + BYTES_PER_FRAME_HEADER, 
+                         length);
+        return BYTES_PER_FRAME_HEADER + length;
+    }
+
+    /**
+     * Returns the frame of a stored block holding the bytes between the 
+     * position and the limit of the buffer {@code data}.
+     */
+    private static EncodedBlock storeBlock(ByteBuffer data) {
+        int length = data.remaining();
+        byte[] frame = new byte[BYTES_PER_FRAME_HEADER + length];
+        frame[0] = STORED_BLOCK;
+        writeInt(frame, 1, length);
+        writeInt(frame, 5, length);
+        data.duplicate().get(frame, BYTES_PER_FRAME_HEADER, length);
+        return new EncodedBlock(frame);
+    }
+
+    /**
+     * Returns the number of bytes in the body of a block with the byte 
+     * counts {@code frequencies} coded into {@code numberOfStreams} bit 
+     * streams with the last code built, assuming each stream but one ends 
+     * with a padding byte.
+     */
+    private long computeBodyLength(long[] frequencies, int numberOfStreams) {
+        return numberOfStreams * HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY
+             + HuffmanSerializer.computeCodeLengthsSize(
+                     codeBuilder.codeLengths)
+             + (codeBuilder.computeEncodedLength(frequencies) 
+                     + Byte.SIZE - 1) / Byte.SIZE
+             + numberOfStreams - 1;
+    }
+
+    /**
+     * Returns the maximum number of bytes in the frame of a block of 
+     * {@code blockLength} bytes, the checksum included. A block that a 
+     * Huffman code would not make shorter is stored, so that a frame exceeds
+     * its block by the frame header and the checksum at most.
+     *
+     * @param blockLength the number of bytes in the block.
+     * @return the maximum frame length.
+     */
+    static int getMaximumFrameLength(int blockLength) {
+        return BYTES_PER_FRAME_HEADER + blockLength + BYTES_PER_CHECKSUM;
+    }
+
+    /**
+     * Encodes the bytes between the position and the limit of the buffer
+     * {@code data}. The bytes are read in place, so that a memory-mapped
+     * block is never copied onto the heap.
+     *
+     * @param data the buffer holding the block.
+     * @return the encoded block.
+     */
+    EncodedBlock encodeBlock(ByteBuffer data) {
+        CodecStatistics.StageRun run = startStage();
+        long nestedNanosBefore = nestedStageNanos;
+        long allocatedBefore = getAllocatedBytes();
+        EncodedBlock encodedBlock = encodeFrame(data);
+        endBlockStage(CodecStatistics.Stage.ENCODE,
+                      run,
+                      nestedNanosBefore,
+                      allocatedBefore,
+                      data.remaining(),
+                      encodedBlock.getFrameLength() - BYTES_PER_CHECKSUM);
+        encodedBlock.checksum = computeChecksum(data);
+        return encodedBlock;
+    }
+
+    /**
+     * Encodes the bytes between the position and the limit of the buffer
+     * {@code data} into a block whose checksum is yet to be set.
+     */
+    private EncodedBlock encodeFrame(ByteBuffer data) {
+        int length = data.remaining();
+
+        if (contextModel != null && length >= MIN_CONTEXT_BLOCK_LENGTH) {
+            // The context-modelled coder works on an array:
+            if (blockCopy.length < length) {
+                blockCopy = new byte[length];
+            }
+
+            data.duplicate().get(blockCopy, 0, length);
+            byte[] frame = new byte[getMaximumFrameLength(length)];
+            int frameLength = encodeFrame(blockCopy, 0, length, frame, 0);
+            return new EncodedBlock(Arrays.copyOf(frame, frameLength));
+        }
+
+        if (isSampled(length)) {
+            CodecStatistics.StageRun histogramRun = startStage();
+            long[] estimate = new long[FrequencyTable.ALPHABET_SIZE];
+            ByteCountComputer.countSample(data,
+                                          data.position(),
+                                          length,
+                                          samplingInterval,
+                                          estimate,
+                                          counterLanes);
+            completeSample(estimate);
+            endStage(CodecStatistics.Stage.HISTOGRAM, histogramRun, length);
+            EncodedBlock encodedBlock = 
+                    interleaved ? 
+                    encodeInterleavedBlock(data, estimate) :
+                    encodeBlock(data, new FrequencyTable(estimate));
+
+            if (encodedBlock == null) {
+                return storeBlock(data);
+            }
+
+            if (encodedBlock.getFrameLength() 
+                    <= getMaximumFrameLength(length)) {
+                return encodedBlock;
+            }
+        }
+
+        EncodedBlock encodedBlock;
+
+        if (interleaved) {
+            encodedBlock = encodeInterleavedBlock(data, null);
+        } else {
+            CodecStatistics.StageRun histogramRun = startStage();
+            FrequencyTable frequencyTable = 
+                    new ByteCountComputer().computeFrequencyTable(data);
+            endStage(CodecStatistics.Stage.HISTOGRAM, histogramRun, length);
+            encodedBlock = encodeBlock(data, frequencyTable);
+        }
+
+        return encodedBlock != null ? encodedBlock : storeBlock(data);
+    }
+
+    /**
+     * Encodes the bytes between the position and the limit of the buffer
+     * {@code data} with the code built from {@code frequencyTable}, which 
+     * gives the length of the output as well.
+     *
+     * @return the encoded block, or {@code null} if the block is to be 
+     *         stored.
+     */
+    private EncodedBlock encodeBlock(ByteBuffer data, 
+                                     FrequencyTable frequencyTable) {
+        buildCode(frequencyTable.frequencies);
+
+        if (computeBodyLength(frequencyTable.frequencies, 1) 
+                >= data.remaining()) {
+            return null;
+        }
+
+        BitString encodedText =
+                new HuffmanEncoder().encode(codeBuilder.codeTable,
+                                            frequencyTable,
+                                            data);
+
+        return new EncodedBlock(data.remaining(), 
+                                codeBuilder.codeLengths.clone(), 
+                                encodedText);
+    }
+
+    /**
+     * Encodes the bytes between the position and the limit of the buffer 
+     * {@code data} into four interleaved bit streams. Unless an estimate of 
+     * the byte counts of the block is given, the byte counts of the four 
+     * segments give both the code shared by the streams and the exact length
+     * of each stream.
+     *
+     * @param data     the buffer holding the block.
+     * @param estimate the estimated byte counts of the block, or 
+     *                 {@code null} to count the bytes.
+     * @return the encoded block, or {@code null} if the block is to be 
+     *         stored.
+     */
+    private EncodedBlock encodeInterleavedBlock(ByteBuffer data, 
+                                                long[] estimate) {
+        int length = data.remaining();
+        int segmentLength = computeSegmentLength(length);
+        ByteBuffer[] segments = new ByteBuffer[NUMBER_OF_STREAMS];
+        FrequencyTable[] frequencyTables = 
+                new FrequencyTable[NUMBER_OF_STREAMS];
+        FrequencyTable frequencyTable = new FrequencyTable();
+
+        for (int i = 0; i != NUMBER_OF_STREAMS; ++i) {
+            int segmentStart = data.position() 
+                             + getSegmentStart(i, segmentLength, length);
+            segments[i] = data.duplicate();
+
+            // Cast to Buffer so that the code runs on Java 8 as well.
+            ((Buffer) segments[i]).limit(
+                    segmentStart + getSegmentLength(i, segmentLength, length));
+            ((Buffer) segments[i]).position(segmentStart);
+
+            if (estimate == null) {
+                CodecStatistics.StageRun histogramRun = startStage();
+                frequencyTables[i] = 
+                        new ByteCountComputer()
+                                .computeFrequencyTable(segments[i]);
+                endStage(CodecStatistics.Stage.HISTOGRAM, 
+                         histogramRun, 
+                         segments[i].remaining());
+            } else {
+                // Only sizes the output of the segment:
+                long[] segmentEstimate = estimate.clone();
+
+                for (int j = 0; j != segmentEstimate.length; ++j) {
+                    segmentEstimate[j] /= NUMBER_OF_STREAMS;
+                }
+
+                frequencyTables[i] = new FrequencyTable(segmentEstimate);
+            }
+
+            frequencyTable.add(frequencyTables[i]);
+        }
+
+        if (estimate != null) {
+            frequencyTable = new FrequencyTable(estimate);
+        }
+
+        buildCode(frequencyTable.frequencies);
+
+        if (computeBodyLength(frequencyTable.frequencies, NUMBER_OF_STREAMS) 
+                >= length) {
+            return null;
+        }
+
+        BitString[] encodedTexts = new BitString[NUMBER_OF_STREAMS];
+
+        for (int i = 0; i != NUMBER_OF_STREAMS; ++i) {
+            encodedTexts[i] = new HuffmanEncoder().encode(
+                    codeBuilder.codeTable,
+                    frequencyTables[i],
+                    segments[i]);
+        }
+
+        return new EncodedBlock(length, 
+                                codeBuilder.codeLengths.clone(), 
+                                encodedTexts);
+    }
+
+    /**
+     * Decodes the body of a Huffman block.
+     *
+     * @param blockType    the type of the block.
+     * @param body         the array holding the body.
+     * @param bodyLength   the number of bytes in the body.
+     * @param output       the array for the decoded bytes.
+     * @param outputLength the number of bytes to decode.
+     */
+    void decodeBlockBody(int blockType,
+                         byte[] body,
+                         int bodyLength,
+                         byte[] output,
+                         int outputLength) {
+        decodeBlockBody(blockType, body, 0, bodyLength, output, 0, outputLength);
+    }
+
+    /**
+     * Decodes the body of a Huffman block stored in {@code body} starting at
+     * the index {@code bodyOffset} into {@code output} starting at the index
+     * {@code outputOffset}. Once the scratch arrays of this codec have grown,
+     * nothing is allocated.
+     *
+     * @param blockType    the type of the block.
+     * @param body         the array holding the body.
+     * @param bodyOffset   the index of the first byte of the body.
+     * @param bodyLength   the number of bytes in the body.
+     * @param output       the array for the decoded bytes.
+     * @param outputOffset the index of the first decoded byte.
+     * @param outputLength the number of bytes to decode.
+     */
+    void decodeBlockBody(int blockType,
+                         byte[] body,
+                         int bodyOffset,
+                         int bodyLength,
+                         byte[] output,
+                         int outputOffset,
+                         int outputLength) {
+        CodecStatistics.StageRun run = startStage();
+        long nestedNanosBefore = nestedStageNanos;
+        long allocatedBefore = getAllocatedBytes();
+        decodeBody(blockType,
+                   body,
+                   bodyOffset,
+                   bodyLength,
+                   output,
+                   outputOffset,
+                   outputLength);
+        endBlockStage(CodecStatistics.Stage.DECODE,
+                      run,
+                      nestedNanosBefore,
+                      allocatedBefore,
+                      outputLength,
+                      BYTES_PER_FRAME_HEADER + bodyLength);
+    }
+
+    private void decodeBody(int blockType,
+                            byte[] body,
+                            int bodyOffset,
+                            int bodyLength,
+                            byte[] output,
+                            int outputOffset,
+                            int outputLength) {
+        if (blockType == STORED_BLOCK) {
+            checkStoredBody(bodyLength, outputLength);
+            System.arraycopy(body, 
+                             bodyOffset, 
+                             output, 
+                             outputOffset, 
+                             bodyLength);
+            return;
+        }
+
+        if (blockType == CONTEXT_HUFFMAN_BLOCK) {
+            decodeContextBody(body, 
+                              bodyOffset, 
+                              bodyLength, 
+                              output, 
+                              outputOffset, 
+                              outputLength);
+            return;
+        }
+
+        int numberOfStreams = getNumberOfStreams(blockType);
+        HuffmanDecodingTable decodingTable = 
+                readBodyHeader(body, bodyOffset, bodyLength, numberOfStreams);
+        int offset = bodyOffset + payloadOffset;
+
+        for (int i = 0; i != numberOfStreams; ++i) {
+            loadWords(body, offset, streamByteLengths[i], i);
+            offset += streamByteLengths[i];
+        }
+
+        decodeStreams(decodingTable, 
+                      numberOfStreams, 
+                      output, 
+                      outputOffset, 
+                      outputLength);
+    }
+
+    /**
+     * Decodes exactly {@code outputLength} bytes from the encoded text 
+     * {@code data[offset], ..., data[offset + length - 1]}, padded to a whole
+     * number of bytes, into {@code output} starting at the index 
+     * {@code outputOffset}. Once the scratch arrays of this codec have grown,
+     * nothing is allocated.
+     *
+     * @param decodingTable the decoding table of the code.
+     * @param data          the array holding the encoded text.
+     * @param offset        the index of the first encoded byte.
+     * @param length        the number of encoded bytes.
+     * @param output        the array for the decoded bytes.
+     * @param outputOffset  the index of the first decoded byte.
+     * @param outputLength  the number of bytes to decode.
+     */
+    void decodePadded(HuffmanDecodingTable decodingTable,
+                      byte[] data,
+                      int offset,
+                      int length,
+                      byte[] output,
+                      int outputOffset,
+                      int outputLength) {
+        loadWords(data, offset, length, 0);
+        decodingTable.decodePadded(streamWords[0], 
+                                   length, 
+                                   output, 
+                                   outputOffset, 
+                                   outputLength);
+    }
+
+    /**
+     * Decodes the body of a Huffman block held between the position and the
+     * limit of the buffer {@code body} into the space between the position
+     * and the limit of the buffer {@code output}. Neither of the positions is
+     * changed. Only the header of the body is copied onto the heap; the
+     * decoded bytes are staged in a reusable array and copied in bulk.
+     *
+     * @param blockType the type of the block.
+     * @param body      the buffer holding the body.
+     * @param output    the buffer for the decoded bytes.
+     */
+    void decodeBlockBody(int blockType, ByteBuffer body, ByteBuffer output) {
+        CodecStatistics.StageRun run = startStage();
+        long nestedNanosBefore = nestedStageNanos;
+        long allocatedBefore = getAllocatedBytes();
+        int bodyLength = body.remaining();
+        int outputLength = output.remaining();
+        decodeBody(blockType, body, output);
+        endBlockStage(CodecStatistics.Stage.DECODE,
+                      run,
+                      nestedNanosBefore,
+                      allocatedBefore,
+                      outputLength,
+                      BYTES_PER_FRAME_HEADER + bodyLength);
+    }
+
+    private void decodeBody(int blockType, 
+                            ByteBuffer body, 
+                            ByteBuffer output) {
+        if (blockType == STORED_BLOCK) {
+            checkStoredBody(body.remaining(), output.remaining());
+            output.duplicate().put(body.duplicate());
+            return;
+        }
+
+        if (blockType == CONTEXT_HUFFMAN_BLOCK) {
+            // The context-modelled decoder works on arrays:
+            int bodyLength = body.remaining();
+            int outputLength = output.remaining();
+
+            if (blockCopy.length < bodyLength) {
+                blockCopy = new byte[bodyLength];
+            }
+
+            if (interleavedBlock.length < outputLength) {
+                interleavedBlock = new byte[outputLength];
+            }
+
+            body.duplicate().get(blockCopy, 0, bodyLength);
+            decodeContextBody(blockCopy, 
+                              0, 
+                              bodyLength, 
+                              interleavedBlock, 
+                              0, 
+                              outputLength);
+            output.duplicate().put(interleavedBlock, 0, outputLength);
+            return;
+        }
+
+        int numberOfStreams = getNumberOfStreams(blockType);
+        int bodyLength = body.remaining();
+        int headerLength = Math.min(bodyLength, bodyHeader.length);
+
+        for (int i = 0; i != headerLength; ++i) {
+            bodyHeader[i] = body.get(body.position() + i);
+        }
+
+        HuffmanDecodingTable decodingTable = 
+                readBodyHeader(bodyHeader, 0, bodyLength, numberOfStreams);
+        int offset = body.position() + payloadOffset;
+
+        for (int i = 0; i != numberOfStreams; ++i) {
+            loadWords(body, offset, streamByteLengths[i], i);
+            offset += streamByteLengths[i];
+        }
+
+        // The decoders write into an array, which is copied in bulk:
+        int outputLength = output.remaining();
+
+        if (interleavedBlock.length < outputLength) {
+            interleavedBlock = new byte[outputLength];
+        }
+
+        decodeStreams(decodingTable, 
+                      numberOfStreams, 
+                      interleavedBlock, 
+                      0, 
+                      outputLength);
+        output.duplicate().put(interleavedBlock, 0, outputLength);
+    }
+
+    private void decodeStreams(HuffmanDecodingTable decodingTable,
+                               int numberOfStreams,
+                               byte[] output,
+                               int outputOffset,
+                               int outputLength) {
+        if (numberOfStreams == 1) {
+            decodingTable.decode(streamWords[0],
+                                 streamBitLengths[0],
+                                 output,
+                                 outputOffset,
+                                 outputLength);
+        } else {
+            decodingTable.decodeInterleaved(
+                    streamWords,
+                    streamBitLengths,
+                    computeSegmentLength(outputLength),
+                    output,
+                    outputOffset,
+                    outputLength);
+        }
+    }
+
+    private static void checkStoredBody(int bodyLength, int outputLength) {
+        if (bodyLength != outputLength) {
+            throw new InvalidFormatException(
+            "The stored block has " + bodyLength + " bytes, expected " + 
+            outputLength + ".");
+        }
+    }
+
+    /**
+     * Decodes the body of a context-modelled block stored in {@code body}
+     * starting at the index {@code bodyOffset}.
+     */
+    private void decodeContextBody(byte[] body,
+                                   int bodyOffset,
+                                   int bodyLength,
+                                   byte[] output,
+                                   int outputOffset,
+                                   int outputLength) {
+        if (bodyLength < BYTES_PER_CONTEXT_HEADER) {
+            throw new InvalidFormatException("The block body is too short.");
+        }
+
+        int numberOfBits = readInt(body, bodyOffset);
+        int numberOfTables = 
+                Byte.toUnsignedInt(
+                        body[bodyOffset 
+                             + HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY])
+                + 1;
+
+        if (numberOfBits < 0) {
+            throw new InvalidFormatException(
+            "Bad number of encoded bits: " + numberOfBits + ".");
+        }
+
+        if (numberOfTables > ContextModel.MAX_TABLES) {
+            throw new InvalidFormatException(
+            "Bad number of codes: " + numberOfTables + ".");
+        }
+
+        int mapOffset = 
+                bodyOffset + HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY + 1;
+
+        for (int context = 0; 
+                context != FrequencyTable.ALPHABET_SIZE; 
+                ++context) {
+            int table = Byte.toUnsignedInt(body[mapOffset + context]);
+
+            if (table >= numberOfTables) {
+                throw new InvalidFormatException(
+                "Bad code index: " + table + ".");
+            }
+
+            decodingTablesByContext[context] = getContextDecodingTable(table);
+        }
+
+        int index = bodyOffset + BYTES_PER_CONTEXT_HEADER;
+
+        for (int table = 0; table != numberOfTables; ++table) {
+            index = HuffmanDeserializer.extractCodeLengths(body, 
+                                                           index, 
+                                                           codeLengths);
+
+            try {
+                CodecStatistics.StageRun buildRun = startStage();
+                codeBuilder.build(codeLengths);
+                getContextDecodingTable(table).build(codeBuilder.codeWords,
+                                                     codeBuilder.codeLengths);
+                endStage(CodecStatistics.Stage.CODE_BUILD, buildRun, 0L);
+            } catch (IllegalArgumentException ex) {
+                throw new InvalidFormatException(ex.getMessage());
+            }
+        }
+
+        int payloadLength = (int)(((long) numberOfBits + 7) / Byte.SIZE);
+
+        if ((long) index - bodyOffset + payloadLength > bodyLength) {
+            throw new InvalidFormatException(
+            "The encoded bits exceed the block body.");
+        }
+
+        loadWords(body, index, payloadLength, 0);
+        HuffmanDecodingTable.decode(decodingTablesByContext,
+                                    streamWords[0],
+                                    numberOfBits,
+                                    output,
+                                    outputOffset,
+                                    outputLength);
+    }
+
+    private HuffmanDecodingTable getContextDecodingTable(int table) {
+        if (contextDecodingTables[table] == null) {
+            contextDecodingTables[table] = new HuffmanDecodingTable();
+        }
+
+        return contextDecodingTables[table];
+    }
+
+    /**
+     * Reads the bit counts and the code length table of a block body into 
+     * {@code streamBitLengths}, {@code streamByteLengths}, 
+     * {@code payloadOffset} and {@code codeLengths}, and builds the code of 
+     * the block.
+     *
+     * @param header          the array holding the body.
+     * @param headerOffset    the index of the first byte of the body.
+     * @param bodyLength      the number of bytes in the body.
+     * @param numberOfStreams the number of bit streams in the body.
+     * @return the decoding table of the block.
+     */
+    private HuffmanDecodingTable readBodyHeader(byte[] header,
+                                                int headerOffset,
+                                                int bodyLength,
+                                                int numberOfStreams) {
+        int jumpTableLength = 
+                numberOfStreams * HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY;
+
+        if (bodyLength < jumpTableLength) {
+            throw new InvalidFormatException("The block body is too short.");
+        }
+
+        payloadOffset = HuffmanDeserializer.extractCodeLengths(
+                header,
+                headerOffset + jumpTableLength,
+                codeLengths) - headerOffset;
+
+        long payloadEnd = payloadOffset;
+
+        for (int i = 0; i != numberOfStreams; ++i) {
+            int numberOfBits = readInt(
+                    header, 
+                    headerOffset 
+                            + i * HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY);
+
+            if (numberOfBits < 0) {
+                throw new InvalidFormatException(
+                "Bad number of encoded bits: " + numberOfBits + ".");
+            }
+
+            streamBitLengths[i] = numberOfBits;
+            streamByteLengths[i] = 
+                    (int)(((long) numberOfBits + 7) / Byte.SIZE);
+            payloadEnd += streamByteLengths[i];
+        }
+
+        if (payloadEnd > bodyLength) {
+            throw new InvalidFormatException(
+            "The encoded bits exceed the block body.");
+        }
+
+        try {
+            CodecStatistics.StageRun buildRun = startStage();
+            codeBuilder.build(codeLengths);
+            HuffmanDecodingTable decodingTable = 
+                    codeBuilder.buildDecodingTable();
+            endStage(CodecStatistics.Stage.CODE_BUILD, buildRun, 0L);
+            return decodingTable;
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidFormatException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Builds the code of the byte counts {@code frequencies} into
+     * {@link #codeBuilder}.
+     */
+    private void buildCode(long[] frequencies) {
+        CodecStatistics.StageRun run = startStage();
+        codeBuilder.build(frequencies, maxCodeLength);
+        endStage(CodecStatistics.Stage.CODE_BUILD, run, 0L);
+    }
+
+    /**
+     * Begins a run of a stage, or returns {@code null} if neither the
+     * statistics nor Flight Recorder record it.
+     */
+    private CodecStatistics.StageRun startStage() {
+        return CodecStatistics.startStage(statistics);
+    }
+
+    /**
+     * Records a run of a stage nesting no other stage.
+     */
+    private void endStage(CodecStatistics.Stage stage, 
+                          CodecStatistics.StageRun run, 
+                          long bytes) {
+        nestedStageNanos += 
+                CodecStatistics.endStage(statistics, run, stage, bytes);
+    }
+
+    /**
+     * Records the coding of a block, the time of the stages nested in it 
+     * excluded, along with the bytes allocated meanwhile.
+     */
+    private void endBlockStage(CodecStatistics.Stage stage,
+                               CodecStatistics.StageRun run,
+                               long nestedNanosBefore,
+                               long allocatedBefore,
+                               long uncompressedLength,
+                               long frameLength) {
+        if (run == null) {
+            return;
+        }
+
+        long nanos = run.end(stage, uncompressedLength);
+
+        if (statistics != null) {
+            statistics.record(stage, 
+                              nanos - (nestedStageNanos - nestedNanosBefore));
+            statistics.addBlock(uncompressedLength, frameLength);
+            statistics.addAllocatedBytesSince(allocatedBefore);
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or
+     * zero if no statistics are collected.
+     */
+    private long getAllocatedBytes() {
+        return statistics == null ? 
+               0L : 
+               CodecStatistics.getThreadAllocatedBytes();
+    }
+
+    /**
+     * Returns the checksum of the bytes 
+     * {@code data[offset], ..., data[offset + length - 1]}.
+     */
+    int computeChecksum(byte[] data, int offset, int length) {
+        CodecStatistics.StageRun run = startStage();
+        checksum.reset();
+        checksum.update(data, offset, length);
+        endStage(CodecStatistics.Stage.CHECKSUM, run, length);
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Returns the checksum of the bytes between the position and the limit
+     * of the buffer {@code data}.
+     */
+    int computeChecksum(ByteBuffer data) {
+        CodecStatistics.StageRun run = startStage();
+        checksum.reset();
+        Crc32c.update(checksum, data);
+        endStage(CodecStatistics.Stage.CHECKSUM, run, data.remaining());
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Checks that the decoded block 
+     * {@code data[offset], ..., data[offset + length - 1]} has the checksum
+     * {@code expectedChecksum}.
+     *
+     * @throws InvalidFormatException if the checksums differ.
+     */
+    void verifyChecksum(int expectedChecksum, 
+                        byte[] data, 
+                        int offset, 
+                        int length) {
+        checkChecksum(expectedChecksum, computeChecksum(data, offset, length));
+    }
+
+    /**
+     * Checks that the decoded block between the position and the limit of 
+     * the buffer {@code data} has the checksum {@code expectedChecksum}.
+     *
+     * @throws InvalidFormatException if the checksums differ.
+     */
+    void verifyChecksum(int expectedChecksum, ByteBuffer data) {
+        checkChecksum(expectedChecksum, computeChecksum(data));
+    }
+
+    private static void checkChecksum(int expectedChecksum, 
+                                      int actualChecksum) {
+        if (actualChecksum != expectedChecksum) {
+            throw new InvalidFormatException(String.format(
+            "Block checksum mismatch: stored %08x, computed %08x. " +
+            "The block is corrupted.", 
+            expectedChecksum,
+            actualChecksum));
+        }
+    }
+
+    /**
+     * Releases the scratch buffers, which have grown to fit the largest block
+     * coded so far.
+     */
+    void releaseBuffers() {
+        Arrays.fill(streamWords, new long[0]);
+        interleavedBlock = new byte[0];
+        blockCopy = new byte[0];
+    }
+
+    /**
+     * Returns the number of bit streams the blocks coded with a single code
+     * are encoded into.
+     */
+    private int getNumberOfEncodedStreams() {
+        return interleaved ? NUMBER_OF_STREAMS : 1;
+    }
+
+    /**
+     * Returns the number of bit streams in a block of type 
+     * {@code blockType}.
+     */
+    private static int getNumberOfStreams(int blockType) {
+        return blockType == INTERLEAVED_HUFFMAN_BLOCK ? NUMBER_OF_STREAMS : 1;
+    }
+
+    /**
+     * Returns the number of bytes in each segment of an interleaved block of
+     * {@code blockLength} bytes but the last one.
+     */
+    static int computeSegmentLength(int blockLength) {
+        return (blockLength + NUMBER_OF_STREAMS - 1) / NUMBER_OF_STREAMS;
+    }
+
+    private static int getSegmentStart(int segmentIndex, 
+                                       int segmentLength, 
+                                       int blockLength) {
+        return Math.min(blockLength, segmentIndex * segmentLength);
+    }
+
+    private static int getSegmentLength(int segmentIndex, 
+                                        int segmentLength, 
+                                        int blockLength) {
+        return getSegmentStart(segmentIndex + 1, segmentLength, blockLength)
+             - getSegmentStart(segmentIndex, segmentLength, blockLength);
+    }
+
+    /**
+     * Tells whether the code of a block of {@code length} bytes is built from
+     * a sample of its bytes.
+     */
+    private boolean isSampled(int length) {
+        return samplingInterval > 1
+            && length / ByteCountComputer.SAMPLE_CHUNK_LENGTH 
+                    >= (long) MIN_SAMPLED_CHUNKS * samplingInterval;
+    }
+
+    /**
+     * Scales the byte counts of a sample up to the whole block and adds one
+     * to each, so that the bytes not seen in the sample receive a code word 
+     * as well.
+     */
+    private void completeSample(long[] counts) {
+        for (int i = 0; i != FrequencyTable.ALPHABET_SIZE; ++i) {
+            counts[i] = counts[i] * samplingInterval + 1;
+        }
+    }
+
+    /**
+     * Checks that {@code samplingInterval} is a valid sampling interval.
+     *
+     * @param samplingInterval the sampling interval to check.
+     * @return {@code samplingInterval}.
+     */
+    static int checkSamplingInterval(int samplingInterval) {
+        if (samplingInterval < 1) {
+            throw new IllegalArgumentException(
+            "The sampling interval must be positive. Received " + 
+            samplingInterval + ".");
+        }
+
+        return samplingInterval;
+    }
+
+    /**
+     * Checks that {@code maxCodeLength} is a valid maximum code length of a 
+     * block.
+     *
+     * @param maxCodeLength the maximum code length to check.
+     * @return {@code maxCodeLength}.
+     */
+    static int checkMaxCodeLength(int maxCodeLength) {
+        if (maxCodeLength < MIN_MAX_CODE_LENGTH
+                || maxCodeLength > CanonicalHuffmanCode.MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException(
+            "The maximum code length must be within [" + 
+            MIN_MAX_CODE_LENGTH + ", " + CanonicalHuffmanCode.MAX_CODE_LENGTH +
+            "]. Received " + maxCodeLength + ".");
+        }
+
+        return maxCodeLength;
+    }
+
+    /**
+     * Packs {@code length} bytes of {@code data} starting at the index
+     * {@code offset} into the words of the stream {@code stream}.
+     */
+    private void loadWords(ByteBuffer data, 
+                           int offset, 
+                           int length, 
+                           int stream) {
+        long[] words = getStreamWords(stream, length);
+        ByteBuffer littleEndianData = 
+                data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int fullWords = length / Long.BYTES;
+
+        for (int i = 0; i != fullWords; ++i) {
+            words[i] = littleEndianData.getLong(offset + i * Long.BYTES);
+        }
+
+        if (fullWords * Long.BYTES != length) {
+            long word = 0L;
+
+            for (int i = fullWords * Long.BYTES; i != length; ++i) {
+                word |= (data.get(offset + i) & 0xffL)
+                        << (Byte.SIZE * (i % Long.BYTES));
+            }
+
+            words[fullWords] = word;
+        }
+    }
+
+    /**
+     * Packs the bytes {@code data[offset], ..., data[offset + length - 1]}
+     * into the words of the stream {@code stream}.
+     */
+    private void loadWords(byte[] data, int offset, int length, int stream) {
+        long[] words = getStreamWords(stream, length);
+
+        int fullWords = length / Long.BYTES;
+
+        for (int i = 0; i != fullWords; ++i) {
+            int index = offset + i * Long.BYTES;
+            words[i] = (data[index] & 0xffL)
+                    | ((data[index + 1] & 0xffL) << 8)
+                    | ((data[index + 2] & 0xffL) << 16)
+                    | ((data[index + 3] & 0xffL) << 24)
+                    | ((data[index + 4] & 0xffL) << 32)
+                    | ((data[index + 5] & 0xffL) << 40)
+                    | ((data[index + 6] & 0xffL) << 48)
+                    | ((data[index + 7] & 0xffL) << 56);
+        }
+
+        if (fullWords * Long.BYTES != length) {
+            long word = 0L;
+
+            for (int i = fullWords * Long.BYTES; i != length; ++i) {
+                word |= (data[offset + i] & 0xffL)
+                        << (Byte.SIZE * (i % Long.BYTES));
+            }
+
+            words[fullWords] = word;
+        }
+    }
+
+    /**
+     * Returns the words of the stream {@code stream}, grown to hold at least
+     * {@code length} bytes.
+     */
+    private long[] getStreamWords(int stream, int length) {
+        int numberOfWords = (length + Long.BYTES - 1) / Long.BYTES;
+
+        if (streamWords[stream].length < numberOfWords) {
+            streamWords[stream] = new long[numberOfWords];
+        }
+
+        return streamWords[stream];
+    }
+
+    /**
+     * Tells whether {@code in} starts with {@code signature}. The stream 
+     * {@code in} must support marking, and no bytes are consumed.
+     *
+     * @param in        the stream to check.
+     * @param signature the expected signature.
+     * @return {@code true} if the signature is present.
+     * @throws IOException if the I/O fails.
+     */
+    static boolean hasSignature(InputStream in, byte[] signature) 
+            throws IOException {
+        byte[] data = new byte[signature.length];
+        in.mark(data.length);
+
+        try {
+            InputStreams.readFully(in, data, 0, data.length);
+        } catch (EOFException ex) {
+            return false;
+        } finally {
+            in.reset();
+        }
+
+        return Arrays.equals(data, signature);
+    }
+
+    /**
+     * Writes the stream signature and the stream flags.
+     *
+     * @param out   the target stream.
+     * @param flags the stream flags.
+     * @throws IOException if the I/O fails.
+     */
+    static void writeStreamHeader(OutputStream out, int flags) 
+            throws IOException {
+        out.write(MAGIC_STREAM);
+        out.write(flags);
+    }
+
+    /**
+     * Reads and verifies the stream signature and the stream flags.
+     *
+     * @param in the source stream.
+     * @return the stream flags.
+     * @throws IOException if the I/O fails.
+     * @throws InvalidFormatException if the header is bad.
+     */
+    static int readStreamHeader(InputStream in) throws IOException {
+        byte[] header = new byte[MAGIC_STREAM.length + BYTES_PER_STREAM_FLAGS];
+
+        try {
+            InputStreams.readFully(in, header, 0, header.length);
+        } catch (EOFException ex) {
+            throw new InvalidFormatException(
+                    "No stream header. The stream is too short.");
+        }
+
+        for (int i = 0; i != MAGIC_STREAM.length; ++i) {
+            if (header[i] != MAGIC_STREAM[i]) {
+                throw new InvalidFormatException(
+                        "Bad stream type signature.");
+            }
+        }
+
+        int flags = Byte.toUnsignedInt(header[MAGIC_STREAM.length]);
+
+        if ((flags & ~(INDEXED_STREAM | CHECKSUMMED_STREAM)) != 0) {
+            throw new InvalidFormatException("Unsupported stream flags.");
+        }
+
+        return flags;
+    }
+
+    /**
+     * Reads the header of the next frame.
+     *
+     * @param in     the source stream.
+     * @param buffer the scratch buffer of at least
+     *               {@link #BYTES_PER_FRAME_HEADER} bytes.
+     * @param header the object receiving the header fields.
+     * @return {@code false} if the end of stream marker was read.
+     * @throws IOException if the I/O fails.
+     * @throws InvalidFormatException if the header is bad.
+     */
+    static boolean readFrameHeader(InputStream in,
+                                   byte[] buffer,
+                                   FrameHeader header) throws IOException {
+        int blockType = in.read();
+
+        if (blockType < 0) {
+            throw new EOFException("Missing end of stream marker.");
+        }
+
+        if (!checkBlockType(blockType)) {
+            return false;
+        }
+
+        buffer[0] = (byte) blockType;
+        InputStreams.readFully(in, buffer, 1, BYTES_PER_FRAME_HEADER - 1);
+        parseFrameHeader(buffer, header);
+        return true;
+    }
+
+    /**
+     * Checks the type of the next frame.
+     *
+     * @param blockType the unsigned block type byte.
+     * @return {@code false} if the frame is the end of stream marker.
+     * @throws InvalidFormatException if the block type is unknown.
+     */
+    static boolean checkBlockType(int blockType) {
+        if (blockType == END_OF_STREAM_BLOCK) {
+            return false;
+        }
+
+        if (blockType != HUFFMAN_BLOCK 
+                && blockType != INTERLEAVED_HUFFMAN_BLOCK
+                && blockType != CONTEXT_HUFFMAN_BLOCK
+                && blockType != STORED_BLOCK) {
+            throw new InvalidFormatException(
+            "Unknown block type: " + blockType + ".");
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses and validates the lengths of a frame header.
+     *
+     * @param buffer the array holding the entire frame header.
+     * @param header the object receiving the header fields.
+     * @throws InvalidFormatException if the header is bad.
+     */
+    static void parseFrameHeader(byte[] buffer, FrameHeader header) {
+        parseFrameHeader(buffer, 0, header);
+    }
+
+    /**
+     * Parses and validates the lengths of a frame header starting at the 
+     * index {@code offset}.
+     *
+     * @param buffer the array holding the entire frame header.
+     * @param offset the index of the block type byte.
+     * @param header the object receiving the header fields.
+     * @throws InvalidFormatException if the header is bad.
+     */
+    static void parseFrameHeader(byte[] buffer, 
+                                 int offset, 
+                                 FrameHeader header) {
+        int uncompressedLength = readInt(buffer, offset + 1);
+        int bodyLength = readInt(buffer, offset + 5);
+
+        if (uncompressedLength < 0 || uncompressedLength > MAX_BLOCK_SIZE) {
+            throw new InvalidFormatException(
+            "Bad block length: " + uncompressedLength + ".");
+        }
+
+        if (bodyLength < 0 || bodyLength > 2 * MAX_BLOCK_SIZE) {
+            throw new InvalidFormatException(
+            "Bad block body length: " + bodyLength + ".");
+        }
+
+        header.blockType = Byte.toUnsignedInt(buffer[offset]);
+        header.uncompressedLength = uncompressedLength;
+        header.bodyLength = bodyLength;
+    }
+
+    static void writeInt(byte[] data, int offset, int value) {
+        data[offset]     = (byte)  value;
+        data[offset + 1] = (byte) (value >>> 8);
+        data[offset + 2] = (byte) (value >>> 16);
+        data[offset + 3] = (byte) (value >>> 24);
+    }
+
+    static int readInt(byte[] data, int offset) {
+        return Byte.toUnsignedInt(data[offset])
+            | (Byte.toUnsignedInt(data[offset + 1]) << 8)
+            | (Byte.toUnsignedInt(data[offset + 2]) << 16)
+            | (Byte.toUnsignedInt(data[offset + 3]) << 24);
+    }
+
+    /**
+     * Reads the checksum following a frame.
+     *
+     * @param in     the source stream.
+     * @param buffer the scratch buffer of at least 
+     *               {@link #BYTES_PER_CHECKSUM} bytes.
+     * @return the checksum.
+     * @throws IOException if the I/O fails.
+     */
+    static int readChecksum(InputStream in, byte[] buffer) 
+            throws IOException {
+        InputStreams.readFully(in, buffer, 0, BYTES_PER_CHECKSUM);
+        return readInt(buffer, 0);
+    }
+}
@@ -0,0 +1,264 @@
+package net.coderodde.compression.huffman;
+
+import java.util.Arrays;
+
+/**
+ * This class builds canonical codes into arrays it owns, so that one instance
+ * serves all the blocks of a {@link HuffmanBlockCodec} without allocating. The
+ * code lengths are computed in place over the sorted frequencies by the
+ * algorithm of Moffat and Katajainen; if the resulting code exceeds the
+ * length limit, the lengths are recomputed by {@link PackageMerge}, whose
+ * scratch arrays are kept as well.
+ * <p>
+ * The arrays {@link #codeLengths} and {@link #codeWords} are overwritten by
+ * each build.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+final class HuffmanCodeBuilder {
+
+    /**
+     * The largest frequency that fits in a sort key along with its symbol.
+     */
+    static final long MAX_FREQUENCY = (1L << (Long.SIZE - Byte.SIZE)) - 1;
+
+    /**
+     * The code word lengths of the last code built, indexed by the unsigned
+     * symbol value.
+     */
+    final int[] codeLengths = new int[FrequencyTable.ALPHABET_SIZE];
+
+    /**
+     * The code words of the last code built, indexed by the unsigned symbol
+     * value. Bit 0 of a code word is the first bit emitted.
+     */
+    final long[] codeWords = new long[FrequencyTable.ALPHABET_SIZE];
+
+    /**
+     * The code table sharing {@link #codeWords} and {@link #codeLengths}.
+     */
+    final CodeTable codeTable = new CodeTable(codeWords, codeLengths);
+
+    /**
+     * The present symbols sorted by their frequencies, packed as
+     * {@code (frequency << 8) | symbol}. The Huffman code lengths overwrite
+     * the frequencies in place.
+     */
+    private final long[] keys = new long[FrequencyTable.ALPHABET_SIZE];
+
+    /**
+     * Computes the length-limited code lengths.
+     */
+    private final PackageMerge packageMerge = new PackageMerge();
+
+    /**
+     * The decoding table of the last code built, rebuilt on demand.
+     */
+    private final HuffmanDecodingTable decodingTable =
+            new HuffmanDecodingTable();
+
+    /**
+     * Builds the canonical code for the byte frequencies {@code frequencies}
+     * whose code words are at most {@code maxCodeLength} bits long. The code
+     * lengths are those of a Huffman code if it fits within the limit, and
+     * those of the optimal length-limited code otherwise.
+     *
+     * @param frequencies   the 256 byte frequencies.
+     * @param maxCodeLength the maximum code length.
+     */
+    void build(long[] frequencies, int maxCodeLength) {
+        int numberOfSymbols = sortSymbols(frequencies, keys);
+
+        if (numberOfSymbols == 0) {
+            throw new IllegalArgumentException(
+                    "Compressor requires a non-empty text.");
+        }
+
+        Arrays.fill(codeLengths, 0);
+
+        if (computeHuffmanCodeLengths(numberOfSymbols) > maxCodeLength) {
+            // 'keys' lost the frequencies; sort them again for the
+            // package-merge:
+            sortSymbols(frequencies, keys);
+            Arrays.fill(codeLengths, 0);
+            packageMerge.computeCodeLengths(keys,
+                                            numberOfSymbols,
+                                            maxCodeLength,
+                                            codeLengths);
+        }
+
+        CanonicalHuffmanCode.assignCodeWords(codeLengths, codeWords);
+    }
+
+    /**
+     * Builds the canonical code with the given code lengths.
+     *
+     * @param codeLengths the 256 code lengths indexed by the unsigned byte
+     *                    value.
+     * @throws IllegalArgumentException if the code lengths are invalid.
+     */
+    void build(int[] codeLengths) {
+        System.arraycopy(codeLengths,
+                         0,
+                         this.codeLengths,
+                         0,
+                         FrequencyTable.ALPHABET_SIZE);
+        CanonicalHuffmanCode.assignCodeWords(this.codeLengths, codeWords);
+    }
+
+    /**
+     * Rebuilds and returns the decoding table of the last code built.
+     *
+     * @return the decoding table.
+     */
+    HuffmanDecodingTable buildDecodingTable() {
+        decodingTable.build(codeWords, codeLengths);
+        return decodingTable;
+    }
+
+    /**
+     * Returns the number of bits the last code built encodes a text with the
+     * byte frequencies {@code frequencies} into.
+     *
+     * @param frequencies the 256 byte frequencies.
+     * @return the number of encoded bits.
+     */
+    long computeEncodedLength(long[] frequencies) {
+        long encodedLength = 0L;
+
+        for (int i = 0; i != FrequencyTable.ALPHABET_SIZE; ++i) {
+            encodedLength += frequencies[i] * codeLengths[i];
+        }
+
+        return encodedLength;
+    }
+
+    /**
+     * Packs the present symbols into {@code keys} as
+     * {@code (frequency << 8) | symbol} and sorts them, so that the symbols
+     * appear in the order of increasing frequency, the ties being broken by
+     * the symbol value.
+     *
+     * @param frequencies the 256 byte frequencies.
+     * @param keys        the array receiving the sorted keys.
+     * @return the number of present symbols.
+     */
+    static int sortSymbols(long[] frequencies, long[] keys) {
+        int numberOfSymbols = 0;
+
+        for (int symbol = 0;
+                symbol != FrequencyTable.ALPHABET_SIZE;
+                ++symbol) {
+            long frequency = frequencies[symbol];
+
+            if (frequency == 0L) {
+                continue;
+            }
+
+            if (frequency < 0L || frequency > MAX_FREQUENCY) {
+                throw new IllegalArgumentException(
+                "Unsupported frequency: " + frequency + ".");
+            }
+
+            keys[numberOfSymbols++] = (frequency << Byte.SIZE) | symbol;
+        }
+
+        Arrays.sort(keys, 0, numberOfSymbols);
+        return numberOfSymbols;
+    }
+
+    /**
+     * Computes the Huffman code lengths of the sorted symbols in
+     * {@code keys} into {@link #codeLengths}. The first pass combines the
+     * weights and leaves the parent index of each internal node, the second
+     * one turns the parent indices into node depths, and the third one
+     * assigns the leaf depths.
+     *
+     * @return the maximum code length.
+     */
+    private int computeHuffmanCodeLengths(int numberOfSymbols) {
+        long[] a = keys;
+
+        if (numberOfSymbols == 1) {
+            codeLengths[symbolOf(a[0])] = 1;
+            return 1;
+        }
+
+        // Borrow 'codeLengths' for the symbols while 'a' holds the weights:
+        int[] symbols = codeLengths;
+
+        for (int i = 0; i != numberOfSymbols; ++i) {
+            symbols[i] = symbolOf(a[i]);
+            a[i] >>>= Byte.SIZE;
+        }
+
+        int n = numberOfSymbols;
+        int root = 0;
+        int leaf = 2;
+        a[0] += a[1];
+
+        for (int next = 1; next < n - 1; ++next) {
+            if (leaf >= n || a[root] < a[leaf]) {
+                a[next] = a[root];
+                a[root++] = next;
+            } else {
+                a[next] = a[leaf++];
+            }
+
+            if (leaf >= n || (root < next && a[root] < a[leaf])) {
+                a[next] += a[root];
+                a[root++] = next;
+            } else {
+                a[next] += a[leaf++];
+            }
+        }
+
+        a[n - 2] = 0;
+
+        for (int next = n - 3; next >= 0; --next) {
+            a[next] = a[(int) a[next]] + 1;
+        }
+
+        int available = 1;
+        int used = 0;
+        int depth = 0;
+        root = n - 2;
+        int next = n - 1;
+
+        while (available > 0) {
+            while (root >= 0 && a[root] == depth) {
+                ++used;
+                --root;
+            }
+
+            while (available > used) {
+                a[next--] = depth;
+                --available;
+            }
+
+            available = 2 * used;
+            ++depth;
+            used = 0;
+        }
+
+        // Now 'a[i]' is the code length of 'symbols[i]':
+        int maximumCodeLength = (int) a[0];
+
+        for (int i = 0; i != n; ++i) {
+            a[i] = (a[i] << Byte.SIZE) | symbols[i];
+        }
+
+        Arrays.fill(codeLengths, 0);
+
+        for (int i = 0; i != n; ++i) {
+            codeLengths[symbolOf(a[i])] = (int)(a[i] >>> Byte.SIZE);
+        }
+
+        return maximumCodeLength;
+    }
+
+    private static int symbolOf(long key) {
+        return (int) key & 0xff;
+    }
+}
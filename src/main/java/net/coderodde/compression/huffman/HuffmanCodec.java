@@ -0,0 +1,703 @@
+package net.coderodde.compression.huffman;
+
+import java.util.Arrays;
+
+/**
+ * This class compresses and decompresses byte arrays in the stream format of
+ * {@link HuffmanOutputStream} and is meant to be reused for many small
+ * messages. An instance owns the byte counts, the code tables and all the
+ * working buffers, which only ever grow to fit the largest message seen, so
+ * that once warmed up, the methods writing into a caller-supplied array
+ * allocate nothing and the methods returning a new array allocate only that
+ * array. Each call starts from a clean state; {@link #reset()} releases the
+ * buffers grown by an unusually large message.
+ * <p>
+ * Compressing a message produces the same bytes as writing it into a
+ * {@link HuffmanOutputStream} with the same settings in one go, and any
+ * stream of that format is accepted for decompression.
+ * <p>
+ * The methods taking a {@link HuffmanDictionary} code the message with the
+ * pre-trained code of the dictionary instead. Such a compressed message 
+ * consists of the dictionary ID (4 bytes), the message length (4 bytes) and
+ * the code words padded to a whole byte, which pays off for messages too 
+ * short to amortize a code length table.
+ * <p>
+ * The instances of this class are not thread-safe.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class HuffmanCodec {
+
+    /**
+     * The number of bytes in a stream besides its frames: the stream header
+     * and the end of stream marker.
+     */
+    private static final int STREAM_OVERHEAD =
+            HuffmanBlockCodec.MAGIC_STREAM.length
+            + HuffmanBlockCodec.BYTES_PER_STREAM_FLAGS
+            + 1;
+
+    /**
+     * The maximum length of an array.
+     */
+    private static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * The maximum number of code word bytes in a message compressed with a
+     * dictionary, so that the bit count fits in an {@code int}.
+     */
+    private static final long MAX_ENCODED_TEXT_LENGTH = 
+            Integer.MAX_VALUE / Byte.SIZE;
+
+    /**
+     * Codes the blocks.
+     */
+    private final HuffmanBlockCodec codec;
+
+    /**
+     * The number of bytes in an uncompressed block.
+     */
+    private final int blockSize;
+
+    /**
+     * Holds the compressed message before it is copied into an array of the
+     * exact length.
+     */
+    private byte[] buffer = new byte[0];
+
+    /**
+     * Receives the fields of each frame header.
+     */
+    private final HuffmanBlockCodec.FrameHeader frameHeader =
+            new HuffmanBlockCodec.FrameHeader();
+
+    /**
+     * The number of checksum bytes following each frame of the message being
+     * decompressed.
+     */
+    private int checksumLength;
+
+    /**
+     * Constructs a codec with the default block size and maximum code length.
+     */
+    public HuffmanCodec() {
+        this(HuffmanBlockCodec.DEFAULT_BLOCK_SIZE,
+             HuffmanBlockCodec.DEFAULT_MAX_CODE_LENGTH);
+    }
+
+    /**
+     * Constructs a codec compressing with code words of at most
+     * {@code maxCodeLength} bits.
+     *
+     * @param blockSize     the number of bytes in an uncompressed block.
+     * @param maxCodeLength the maximum code length, at least 8 and at most
+     *                      64.
+     */
+    public HuffmanCodec(int blockSize, int maxCodeLength) {
+        this(blockSize, maxCodeLength, false);
+    }
+
+    /**
+     * Constructs a codec compressing with code words of at most
+     * {@code maxCodeLength} bits and optionally splitting each block into
+     * four interleaved bit streams.
+     *
+     * @param blockSize     the number of bytes in an uncompressed block.
+     * @param maxCodeLength the maximum code length, at least 8 and at most
+     *                      64.
+     * @param interleaved   whether to split the blocks into interleaved bit
+     *                      streams.
+     */
+    public HuffmanCodec(int blockSize, int maxCodeLength, boolean interleaved) {
+        if (blockSize <= 0 || blockSize > HuffmanBlockCodec.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException(
+            "The block size must be within [1, " +
+            HuffmanBlockCodec.MAX_BLOCK_SIZE + "]. Received " + blockSize +
+            ".");
+        }
+
+        this.codec = new HuffmanBlockCodec(maxCodeLength, interleaved);
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the maximum number of bytes a message of {@code length} bytes
+     * compresses into.
+     *
+     * @param length the number of bytes in the message.
+     * @return the maximum compressed length.
+     * @throws IllegalArgumentException if the compressed message may not fit
+     *                                  in an array.
+     */
+    public int getMaximumCompressedLength(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException(
+            "Negative length: " + length + ".");
+        }
+
+        long numberOfFullBlocks = length / blockSize;
+        int lastBlockLength = length % blockSize;
+        long maximumLength =
+                STREAM_OVERHEAD
+                + numberOfFullBlocks
+                        * HuffmanBlockCodec.getMaximumFrameLength(blockSize);
+
+        if (lastBlockLength != 0) {
+            maximumLength +=
+                    HuffmanBlockCodec.getMaximumFrameLength(lastBlockLength);
+        }
+
+        if (maximumLength > MAX_ARRAY_LENGTH) {
+            throw new IllegalArgumentException(
+            "The compressed message may not fit in an array: " +
+            maximumLength + " bytes.");
+        }
+
+        return (int) maximumLength;
+    }
+
+    /**
+     * Compresses the entire array {@code data}.
+     *
+     * @param data the message to compress.
+     * @return the compressed message.
+     */
+    public byte[] compress(byte[] data) {
+        return compress(data, 0, data.length);
+    }
+
+    /**
+     * Compresses the range {@code data[offset], ...,
+     * data[offset + length - 1]}.
+     *
+     * @param data   the array holding the message.
+     * @param offset the index of the first byte of the message.
+     * @param length the number of bytes in the message.
+     * @return the compressed message.
+     */
+    public byte[] compress(byte[] data, int offset, int length) {
+        int maximumLength = getMaximumCompressedLength(length);
+
+        if (buffer.length < maximumLength) {
+            buffer = new byte[maximumLength];
+        }
+
+        int compressedLength = compress(data, offset, length, buffer, 0);
+        return Arrays.copyOf(buffer, compressedLength);
+    }
+
+    /**
+     * Compresses the range {@code data[offset], ...,
+     * data[offset + length - 1]} into {@code output} starting at the index
+     * {@code outputOffset}. The output array must have room for
+     * {@link #getMaximumCompressedLength(int)} bytes.
+     *
+     * @param data         the array holding the message.
+     * @param offset       the index of the first byte of the message.
+     * @param length       the number of bytes in the message.
+     * @param output       the array receiving the compressed message.
+     * @param outputOffset the index of the first compressed byte.
+     * @return the number of compressed bytes.
+     */
+    public int compress(byte[] data,
+                        int offset,
+                        int length,
+                        byte[] output,
+                        int outputOffset) {
+        checkRange(data, offset, length);
+        int maximumLength = getMaximumCompressedLength(length);
+
+        if (outputOffset < 0 || outputOffset > output.length - maximumLength) {
+            throw new IndexOutOfBoundsException(
+            "The output array has no room for " + maximumLength +
+            " bytes at the index " + outputOffset + ".");
+        }
+
+        int index = outputOffset;
+        System.arraycopy(HuffmanBlockCodec.MAGIC_STREAM,
+                         0,
+                         output,
+                         index,
+                         HuffmanBlockCodec.MAGIC_STREAM.length);
+        index += HuffmanBlockCodec.MAGIC_STREAM.length;
+        output[index++] = HuffmanBlockCodec.CHECKSUMMED_STREAM;
+
+        for (int blockStart = 0;
+                blockStart < length;
+                blockStart += blockSize) {
+            index += codec.encodeBlock(data,
+                                       offset + blockStart,
+                                       Math.min(blockSize,
+                                                length - blockStart),
+                                       output,
+                                       index);
+        }
+
+        output[index++] = HuffmanBlockCodec.END_OF_STREAM_BLOCK;
+        return index - outputOffset;
+    }
+
+    /**
+     * Returns the number of bytes the compressed message in the range
+     * {@code data[offset], ..., data[offset + length - 1]} decompresses into.
+     * Only the stream and the frame headers are read.
+     *
+     * @param data   the array holding the compressed message.
+     * @param offset the index of the first byte of the compressed message.
+     * @param length the number of bytes in the compressed message.
+     * @return the decompressed length.
+     * @throws InvalidFormatException if the message is malformed.
+     */
+    public int getDecompressedLength(byte[] data, int offset, int length) {
+        checkRange(data, offset, length);
+        int end = offset + length;
+        int index = checkStreamHeader(data, offset, end);
+        long decompressedLength = 0L;
+
+        while ((index = readFrameHeader(data, index, end)) >= 0) {
+            decompressedLength += frameHeader.uncompressedLength;
+            index += frameHeader.bodyLength + checksumLength;
+
+            if (decompressedLength > MAX_ARRAY_LENGTH) {
+                throw new InvalidFormatException(
+                "The decompressed message does not fit in an array.");
+            }
+        }
+
+        return (int) decompressedLength;
+    }
+
+    /**
+     * Decompresses the entire array {@code data}.
+     *
+     * @param data the compressed message.
+     * @return the decompressed message.
+     * @throws InvalidFormatException if the message is malformed.
+     */
+    public byte[] decompress(byte[] data) {
+        return decompress(data, 0, data.length);
+    }
+
+    /**
+     * Decompresses the range {@code data[offset], ...,
+     * data[offset + length - 1]}.
+     *
+     * @param data   the array holding the compressed message.
+     * @param offset the index of the first byte of the compressed message.
+     * @param length the number of bytes in the compressed message.
+     * @return the decompressed message.
+     * @throws InvalidFormatException if the message is malformed.
+     */
+    public byte[] decompress(byte[] data, int offset, int length) {
+        byte[] output = new byte[getDecompressedLength(data, offset, length)];
+        decompress(data, offset, length, output, 0);
+        return output;
+    }
+
+    /**
+     * Decompresses the range {@code data[offset], ...,
+     * data[offset + length - 1]} into {@code output} starting at the index
+     * {@code outputOffset}. The output array must have room for
+     * {@link #getDecompressedLength(byte[], int, int)} bytes.
+     *
+     * @param data         the array holding the compressed message.
+     * @param offset       the index of the first byte of the compressed
+     *                     message.
+     * @param length       the number of bytes in the compressed message.
+     * @param output       the array receiving the decompressed message.
+     * @param outputOffset the index of the first decompressed byte.
+     * @return the number of decompressed bytes.
+     * @throws InvalidFormatException if the message is malformed.
+     */
+    public int decompress(byte[] data,
+                          int offset,
+                          int length,
+                          byte[] output,
+                          int outputOffset) {
+        checkRange(data, offset, length);
+
+        if (outputOffset < 0 || outputOffset > output.length) {
+            throw new IndexOutOfBoundsException(
+            "Bad output offset: " + outputOffset + ".");
+        }
+
+        int end = offset + length;
+        int index = checkStreamHeader(data, offset, end);
+        int outputIndex = outputOffset;
+
+        while ((index = readFrameHeader(data, index, end)) >= 0) {
+            int uncompressedLength = frameHeader.uncompressedLength;
+
+            if (uncompressedLength > output.length - outputIndex) {
+                throw new IndexOutOfBoundsException(
+                "The output array has no room for the decompressed " +
+                "message.");
+            }
+
+            codec.decodeBlockBody(frameHeader.blockType,
+                                  data,
+                                  index,
+                                  frameHeader.bodyLength,
+                                  output,
+                                  outputIndex,
+                                  uncompressedLength);
+            index += frameHeader.bodyLength;
+
+            if (checksumLength != 0) {
+                codec.verifyChecksum(HuffmanBlockCodec.readInt(data, index),
+                                     output,
+                                     outputIndex,
+                                     uncompressedLength);
+                index += checksumLength;
+            }
+
+            outputIndex += uncompressedLength;
+        }
+
+        return outputIndex - outputOffset;
+    }
+
+    /**
+     * Returns the maximum number of bytes a message of {@code length} bytes
+     * compresses into with the dictionary {@code dictionary}.
+     *
+     * @param dictionary the dictionary.
+     * @param length     the number of bytes in the message.
+     * @return the maximum compressed length.
+     * @throws IllegalArgumentException if the compressed message may not fit
+     *                                  in an array.
+     */
+    public int getMaximumCompressedLength(HuffmanDictionary dictionary, 
+                                          int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException(
+            "Negative length: " + length + ".");
+        }
+
+        long maximumEncodedLength = 
+                ((long) length * dictionary.maximumCodeLength 
+                        + Byte.SIZE - 1) / Byte.SIZE;
+
+        if (maximumEncodedLength > MAX_ENCODED_TEXT_LENGTH) {
+            throw new IllegalArgumentException(
+            "The compressed message may not fit in an array: " +
+            maximumEncodedLength + " bytes of code words.");
+        }
+
+        return HuffmanDictionary.BYTES_PER_MESSAGE_HEADER 
+             + (int) maximumEncodedLength;
+    }
+
+    /**
+     * Compresses the entire array {@code data} with the dictionary
+     * {@code dictionary}.
+     *
+     * @param dictionary the dictionary.
+     * @param data       the message to compress.
+     * @return the compressed message.
+     * @throws IllegalArgumentException if the dictionary has no code word for
+     *                                  a byte of the message.
+     */
+    public byte[] compress(HuffmanDictionary dictionary, byte[] data) {
+        return compress(dictionary, data, 0, data.length);
+    }
+
+    /**
+     * Compresses the range {@code data[offset], ...,
+     * data[offset + length - 1]} with the dictionary {@code dictionary}.
+     *
+     * @param dictionary the dictionary.
+     * @param data       the array holding the message.
+     * @param offset     the index of the first byte of the message.
+     * @param length     the number of bytes in the message.
+     * @return the compressed message.
+     * @throws IllegalArgumentException if the dictionary has no code word for
+     *                                  a byte of the message.
+     */
+    public byte[] compress(HuffmanDictionary dictionary, 
+                           byte[] data, 
+                           int offset, 
+                           int length) {
+        int maximumLength = getMaximumCompressedLength(dictionary, length);
+
+        if (buffer.length < maximumLength) {
+            buffer = new byte[maximumLength];
+        }
+
+        int compressedLength = 
+                compress(dictionary, data, offset, length, buffer, 0);
+        return Arrays.copyOf(buffer, compressedLength);
+    }
+
+    /**
+     * Compresses the range {@code data[offset], ...,
+     * data[offset + length - 1]} with the dictionary {@code dictionary} into
+     * {@code output} starting at the index {@code outputOffset}. The output 
+     * array must have room for 
+     * {@link #getMaximumCompressedLength(HuffmanDictionary, int)} bytes. 
+     * Nothing is allocated.
+     *
+     * @param dictionary   the dictionary.
+     * @param data         the array holding the message.
+     * @param offset       the index of the first byte of the message.
+     * @param length       the number of bytes in the message.
+     * @param output       the array receiving the compressed message.
+     * @param outputOffset the index of the first compressed byte.
+     * @return the number of compressed bytes.
+     * @throws IllegalArgumentException if the dictionary has no code word for
+     *                                  a byte of the message.
+     */
+    public int compress(HuffmanDictionary dictionary,
+                        byte[] data,
+                        int offset,
+                        int length,
+                        byte[] output,
+                        int outputOffset) {
+        checkRange(data, offset, length);
+        int maximumLength = getMaximumCompressedLength(dictionary, length);
+
+        if (outputOffset < 0 || outputOffset > output.length - maximumLength) {
+            throw new IndexOutOfBoundsException(
+            "The output array has no room for " + maximumLength +
+            " bytes at the index " + outputOffset + ".");
+        }
+
+        HuffmanBlockCodec.writeInt(output, outputOffset, dictionary.getId());
+        HuffmanBlockCodec.writeInt(output, outputOffset + 4, length);
+        long numberOfBits = 
+                HuffmanEncoder.encode(
+                        dictionary.codeWords,
+                        dictionary.codeLengths,
+                        data,
+                        offset,
+                        length,
+                        output,
+                        outputOffset 
+                                + HuffmanDictionary.BYTES_PER_MESSAGE_HEADER);
+
+        return HuffmanDictionary.BYTES_PER_MESSAGE_HEADER 
+             + (int)((numberOfBits + Byte.SIZE - 1) / Byte.SIZE);
+    }
+
+    /**
+     * Returns the number of bytes the message in the range 
+     * {@code data[offset], ..., data[offset + length - 1]}, compressed with 
+     * the dictionary {@code dictionary}, decompresses into. Only the message
+     * header is read.
+     *
+     * @param dictionary the dictionary.
+     * @param data       the array holding the compressed message.
+     * @param offset     the index of the first byte of the compressed 
+     *                   message.
+     * @param length     the number of bytes in the compressed message.
+     * @return the decompressed length.
+     * @throws InvalidFormatException if the message is malformed or was not
+     *                                compressed with {@code dictionary}.
+     */
+    public int getDecompressedLength(HuffmanDictionary dictionary,
+                                     byte[] data, 
+                                     int offset, 
+                                     int length) {
+        int id = HuffmanDictionary.readId(data, offset, length);
+
+        if (id != dictionary.getId()) {
+            throw new InvalidFormatException(
+            "The message was compressed with the dictionary " + id +
+            ", not " + dictionary.getId() + ".");
+        }
+
+        long encodedLength = 
+                length - HuffmanDictionary.BYTES_PER_MESSAGE_HEADER;
+        int decompressedLength = HuffmanBlockCodec.readInt(data, offset + 4);
+
+        if (encodedLength > MAX_ENCODED_TEXT_LENGTH) {
+            throw new InvalidFormatException(
+                    "The compressed message is too long.");
+        }
+
+        // Reject a bad length before the caller allocates the output:
+        if (decompressedLength < 0
+                || (long) decompressedLength * dictionary.minimumCodeLength 
+                        > encodedLength * Byte.SIZE) {
+            throw new InvalidFormatException(
+            "Bad message length: " + decompressedLength + ".");
+        }
+
+        return decompressedLength;
+    }
+
+    /**
+     * Decompresses the entire array {@code data} compressed with the 
+     * dictionary {@code dictionary}.
+     *
+     * @param dictionary the dictionary.
+     * @param data       the compressed message.
+     * @return the decompressed message.
+     * @throws InvalidFormatException if the message is malformed or was not
+     *                                compressed with {@code dictionary}.
+     */
+    public byte[] decompress(HuffmanDictionary dictionary, byte[] data) {
+        return decompress(dictionary, data, 0, data.length);
+    }
+
+    /**
+     * Decompresses the range {@code data[offset], ...,
+     * data[offset + length - 1]} compressed with the dictionary 
+     * {@code dictionary}.
+     *
+     * @param dictionary the dictionary.
+     * @param data       the array holding the compressed message.
+     * @param offset     the index of the first byte of the compressed 
+     *                   message.
+     * @param length     the number of bytes in the compressed message.
+     * @return the decompressed message.
+     * @throws InvalidFormatException if the message is malformed or was not
+     *                                compressed with {@code dictionary}.
+     */
+    public byte[] decompress(HuffmanDictionary dictionary, 
+                             byte[] data, 
+                             int offset, 
+                             int length) {
+        byte[] output = 
+                new byte[getDecompressedLength(dictionary, 
+                                               data, 
+                                               offset, 
+                                               length)];
+        decompress(dictionary, data, offset, length, output, 0);
+        return output;
+    }
+
+    /**
+     * Decompresses the range {@code data[offset], ...,
+     * data[offset + length - 1]} compressed with the dictionary 
+     * {@code dictionary} into {@code output} starting at the index 
+     * {@code outputOffset}. The output array must have room for
+     * {@link #getDecompressedLength(HuffmanDictionary, byte[], int, int)} 
+     * bytes.
+     *
+     * @param dictionary   the dictionary.
+     * @param data         the array holding the compressed message.
+     * @param offset       the index of the first byte of the compressed
+     *                     message.
+     * @param length       the number of bytes in the compressed message.
+     * @param output       the array receiving the decompressed message.
+     * @param outputOffset the index of the first decompressed byte.
+     * @return the number of decompressed bytes.
+     * @throws InvalidFormatException if the message is malformed or was not
+     *                                compressed with {@code dictionary}.
+     */
+    public int decompress(HuffmanDictionary dictionary,
+                          byte[] data,
+                          int offset,
+                          int length,
+                          byte[] output,
+                          int outputOffset) {
+        int decompressedLength = 
+                getDecompressedLength(dictionary, data, offset, length);
+
+        if (outputOffset < 0 
+                || outputOffset > output.length - decompressedLength) {
+            throw new IndexOutOfBoundsException(
+            "The output array has no room for " + decompressedLength + 
+            " bytes at the index " + outputOffset + ".");
+        }
+
+        codec.decodePadded(dictionary.decodingTable,
+                           data,
+                           offset + HuffmanDictionary.BYTES_PER_MESSAGE_HEADER,
+                           length - HuffmanDictionary.BYTES_PER_MESSAGE_HEADER,
+                           output,
+                           outputOffset,
+                           decompressedLength);
+        return decompressedLength;
+    }
+
+    /**
+     * Releases the working buffers, which have grown to fit the largest
+     * message coded so far. The next call allocates them anew.
+     */
+    public void reset() {
+        buffer = new byte[0];
+        codec.releaseBuffers();
+    }
+
+    /**
+     * Checks the stream header starting at the index {@code offset} and 
+     * notes whether the frames are followed by checksums.
+     *
+     * @return the index of the first frame.
+     */
+    private int checkStreamHeader(byte[] data, int offset, int end) {
+        byte[] magic = HuffmanBlockCodec.MAGIC_STREAM;
+
+        if (end - offset < magic.length
+                           + HuffmanBlockCodec.BYTES_PER_STREAM_FLAGS) {
+            throw new InvalidFormatException(
+                    "No stream header. The message is too short.");
+        }
+
+        for (int i = 0; i != magic.length; ++i) {
+            if (data[offset + i] != magic[i]) {
+                throw new InvalidFormatException("Bad stream type signature.");
+            }
+        }
+
+        int flags = data[offset + magic.length];
+
+        if ((flags & ~HuffmanBlockCodec.CHECKSUMMED_STREAM) != 0) {
+            throw new InvalidFormatException("Unsupported stream flags.");
+        }
+
+        checksumLength = (flags & HuffmanBlockCodec.CHECKSUMMED_STREAM) != 0 ?
+                         HuffmanBlockCodec.BYTES_PER_CHECKSUM :
+                         0;
+
+        return offset + magic.length + HuffmanBlockCodec.BYTES_PER_STREAM_FLAGS;
+    }
+
+    /**
+     * Reads the frame header starting at the index {@code index} into
+     * {@code frameHeader} and checks that the body and its checksum fit 
+     * before {@code end}.
+     *
+     * @return the index of the frame body, or -1 if the end of stream marker
+     *         was read.
+     */
+    private int readFrameHeader(byte[] data, int index, int end) {
+        if (index == end) {
+            throw new InvalidFormatException("Missing end of stream marker.");
+        }
+
+        int blockType = Byte.toUnsignedInt(data[index]);
+
+        if (!HuffmanBlockCodec.checkBlockType(blockType)) {
+            if (index + 1 != end) {
+                throw new InvalidFormatException(
+                        "Trailing bytes after the end of stream marker.");
+            }
+
+            return -1;
+        }
+
+        if (end - index < HuffmanBlockCodec.BYTES_PER_FRAME_HEADER) {
+            throw new InvalidFormatException("Truncated frame header.");
+        }
+
+        HuffmanBlockCodec.parseFrameHeader(data, index, frameHeader);
+        index += HuffmanBlockCodec.BYTES_PER_FRAME_HEADER;
+
+        if (frameHeader.bodyLength > end - index - checksumLength) {
+            throw new InvalidFormatException("Truncated frame body.");
+        }
+
+        return index;
+    }
+
+    private static void checkRange(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || length > data.length - offset) {
+            throw new IndexOutOfBoundsException(
+            "Bad range: offset " + offset + ", length " + length + ".");
+        }
+    }
+}
@@ -1,33 +1,128 @@
 package net.coderodde.compression.huffman;
 
-import net.coderodde.compression.huffman.HuffmanTree.IntHolder;
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * This class is responsible for recovering the encoded text.
- * 
+ *
  * @author Rodion "rodde" Efremov
- * @version 1.61 (Nov 19, 2016)
+ * @version 1.7 (Oct 17, 2026)
  */
 public final class HuffmanDecoder {
 
     /**
      * Recovers the text encoded by the bit string {@code bits} and the encoder
-     * map {@code encoderMap}.
-     * 
+     * map {@code encoderMap}. Decoding is done via lookup tables indexed by
+     * the next few bits, which emit one byte per lookup.
+     *
      * @param tree the Huffman tree used for decoding.
      * @param bits the actual encoded text bits.
      * @return the recovered text.
      */
     public byte[] decode(HuffmanTree tree, BitString bits) {
-        IntHolder index = new IntHolder();
-        int bitStringLength = bits.length();
-        ByteList byteList = new ByteList();
+        return decode(tree.inferCodeTable(), bits);
+    }
+
+    /**
+     * Recovers the text encoded by the bit string {@code bits} using the 
+     * code table {@code codeTable}.
+     *
+     * @param codeTable the code table used for encoding.
+     * @param bits      the actual encoded text bits.
+     * @return the recovered text.
+     */
+    public byte[] decode(CodeTable codeTable, BitString bits) {
+        return codeTable.getDecodingTable().decode(bits);
+    }
+
+    /**
+     * Recovers the text encoded by the bit string {@code bits} using the 
+     * canonical code {@code code}.
+     *
+     * @param code the canonical code used for encoding.
+     * @param bits the actual encoded text bits.
+     * @return the recovered text.
+     */
+    public byte[] decode(CanonicalHuffmanCode code, BitString bits) {
+        return code.getDecodingTable().decode(bits);
+    }
+
+    /**
+     * Recovers the text from the deserialized data, no matter which format 
+     * the data was stored in.
+     *
+     * @param result the deserialized data.
+     * @return the recovered text.
+     */
+    public byte[] decode(HuffmanDeserializer.Result result) {
+        BitReader encodedBits = result.getEncodedBits();
+
+        if (encodedBits != null) {
+            return inferCodeTable(result).getDecodingTable()
+                                         .decode(encodedBits);
+        }
 
-        while (index.value < bitStringLength) {
-            byte character = tree.decodeBitString(index, bits);
-            byteList.appendByte(character);
+        if (result.isCanonical()) {
+            return decode(result.getCanonicalCode(), result.getEncodedText());
         }
 
-        return byteList.toByteArray();
+        return decode(new HuffmanTree(result.getFrequencyTable()),
+                      result.getEncodedText());
+    }
+
+    /**
+     * Recovers the text encoded by the view {@code bits} using the code table
+     * {@code codeTable}. The encoded bits are read in place.
+     *
+     * @param codeTable the code table used for encoding.
+     * @param bits      the actual encoded text bits.
+     * @return the recovered text.
+     */
+    public byte[] decode(CodeTable codeTable, BitReader bits) {
+        return codeTable.getDecodingTable().decode(bits);
+    }
+
+    /**
+     * Recovers the text encoded by the bit string {@code bits} using the 
+     * code table {@code codeTable} and writes it into the stream {@code out}.
+     * The recovered text is not limited by the maximum length of an array.
+     *
+     * @param codeTable the code table used for encoding.
+     * @param bits      the actual encoded text bits.
+     * @param out       the target stream.
+     * @return the number of recovered bytes.
+     * @throws IOException if the I/O fails.
+     */
+    public long decode(CodeTable codeTable, BitString bits, OutputStream out)
+            throws IOException {
+        return codeTable.getDecodingTable().decode(bits, out);
+    }
+
+    /**
+     * Recovers the text from the deserialized data, no matter which format 
+     * the data was stored in, and writes it into the stream {@code out}.
+     *
+     * @param result the deserialized data.
+     * @param out    the target stream.
+     * @return the number of recovered bytes.
+     * @throws IOException if the I/O fails.
+     */
+    public long decode(HuffmanDeserializer.Result result, OutputStream out)
+            throws IOException {
+        CodeTable codeTable = inferCodeTable(result);
+        BitReader encodedBits = result.getEncodedBits();
+
+        if (encodedBits != null) {
+            return codeTable.getDecodingTable().decode(encodedBits, out);
+        }
+
+        return decode(codeTable, result.getEncodedText(), out);
+    }
+
+    private static CodeTable inferCodeTable(HuffmanDeserializer.Result result) {
+        return result.isCanonical() ?
+               result.getCanonicalCode().getCodeTable() :
+               new HuffmanTree(result.getFrequencyTable()).inferCodeTable();
     }
 }
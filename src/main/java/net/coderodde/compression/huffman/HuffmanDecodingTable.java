@@ -0,0 +1,997 @@
+package net.coderodde.compression.huffman;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class implements a multi-level lookup table for decoding prefix codes.
+ * Instead of walking a Huffman tree one bit at a time, the decoder peeks at
+ * the next {@code k} bits of the encoded text and resolves the next symbol
+ * with a single table lookup. Code words longer than {@code k} bits are
+ * resolved through secondary tables hanging off the primary table.
+ * <p>
+ * The code words are stored in the stream order: bit 0 of a code word is the
+ * first bit emitted into the bit string.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+final class HuffmanDecodingTable {
+
+    /**
+     * The number of alphabet symbols.
+     */
+    static final int ALPHABET_SIZE = FrequencyTable.ALPHABET_SIZE;
+
+    /**
+     * The maximum supported code word length in bits.
+     */
+    static final int MAX_CODE_LENGTH = CodeTable.MAX_CODE_LENGTH;
+
+    /**
+     * The maximum number of bits indexing the primary table.
+     */
+    static final int PRIMARY_TABLE_BITS = 11;
+
+    /**
+     * The maximum number of bits indexing a secondary table.
+     */
+    static final int SECONDARY_TABLE_BITS = 8;
+
+    /**
+     * Marks the table entries that point to a secondary table.
+     */
+    private static final int LINK_FLAG = 1 << 31;
+
+    /**
+     * Extracts the number of index bits of a secondary table from a link
+     * entry.
+     */
+    private static final int LINK_BITS_MASK = 0b111111;
+
+    /**
+     * The number of low bits in a link entry reserved for the number of index
+     * bits of the secondary table.
+     */
+    private static final int LINK_OFFSET_SHIFT = 6;
+
+    /**
+     * The number of low bits in a symbol entry reserved for the symbol.
+     */
+    private static final int LENGTH_SHIFT = 8;
+
+    /**
+     * The maximum length of a decoded array.
+     */
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * The size of the buffer used for decoding into a stream.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * All the tables concatenated. The primary table starts at index zero.
+     * Each entry is either zero (no code word has such a prefix), a symbol
+     * entry {@code (codeLength << 8) | symbol} or a link entry
+     * {@code LINK_FLAG | (offset << 6) | bits} pointing to a secondary table.
+     */
+    private int[] entries;
+
+    /**
+     * The number of used entries in {@code entries}.
+     */
+    private int size;
+
+    /**
+     * The number of bits indexing the primary table.
+     */
+    private int primaryTableBits;
+
+    /**
+     * The number of symbols decoded from a single 64-bit window, or zero if
+     * some code words are longer than the primary table index. A code whose
+     * length is limited to at most {@link #PRIMARY_TABLE_BITS} bits needs no
+     * secondary tables, so that each window yields {@code 64 / L} symbols, 
+     * {@code L} being the length of the longest code word.
+     */
+    private int symbolsPerWindow;
+
+    /**
+     * The symbols having a code word, collected while building.
+     */
+    private final int[] symbols = new int[ALPHABET_SIZE];
+
+    /**
+     * Constructs an empty decoding table, which is to be built by
+     * {@link #build(long[], int[])} before decoding.
+     */
+    HuffmanDecodingTable() {
+        this.entries = new int[0];
+    }
+
+    /**
+     * Constructs a decoding table for the given code. A code length of zero
+     * means that the corresponding symbol does not appear in the text.
+     *
+     * @param codeWords   the code words indexed by the unsigned symbol value.
+     * @param codeLengths the code word lengths indexed by the unsigned symbol
+     *                    value.
+     */
+    HuffmanDecodingTable(long[] codeWords, int[] codeLengths) {
+        this();
+        build(codeWords, codeLengths);
+    }
+
+    /**
+     * Rebuilds this table for the given code, reusing the entry array. A 
+     * code whose code words fit in the primary table index is built without
+     * allocating once the entry array has grown to the primary table.
+     *
+     * @param codeWords   the code words indexed by the unsigned symbol value.
+     * @param codeLengths the code word lengths indexed by the unsigned symbol
+     *                    value.
+     */
+    void build(long[] codeWords, int[] codeLengths) {
+        int numberOfSymbols = 0;
+        int maximumCodeLength = 0;
+
+        for (int symbol = 0; symbol != ALPHABET_SIZE; ++symbol) {
+            int codeLength = codeLengths[symbol];
+
+            if (codeLength == 0) {
+                continue;
+            }
+
+            if (codeLength < 0 || codeLength > MAX_CODE_LENGTH) {
+                throw new IllegalArgumentException(
+                "Bad code length " + codeLength + " for symbol " +
+                        symbol + ".");
+            }
+
+            symbols[numberOfSymbols++] = symbol;
+            maximumCodeLength = Math.max(maximumCodeLength, codeLength);
+        }
+
+        if (numberOfSymbols == 0) {
+            throw new IllegalArgumentException(
+                    "The code contains no code words.");
+        }
+
+        this.primaryTableBits = Math.min(PRIMARY_TABLE_BITS,
+                                         maximumCodeLength);
+        this.symbolsPerWindow = maximumCodeLength <= PRIMARY_TABLE_BITS ?
+                                Long.SIZE / maximumCodeLength : 0;
+        Arrays.fill(entries, 0, size, 0);
+        size = 0;
+        buildTable(symbols,
+                   numberOfSymbols,
+                   codeWords,
+                   codeLengths,
+                   0,
+                   primaryTableBits);
+    }
+
+    /**
+     * Decodes the entire bit string {@code bits}.
+     *
+     * @param bits the encoded text.
+     * @return the decoded text.
+     */
+    byte[] decode(BitString bits) {
+        return decodeToArray(bits.length(),
+                             (cursor, output, offset, length) ->
+                                     decode(bits,
+                                            cursor,
+                                            output,
+                                            offset,
+                                            length));
+    }
+
+    /**
+     * Decodes the entire bit string {@code bits} into the stream {@code out}.
+     * Unlike {@link #decode(BitString)}, the decoded text may exceed the
+     * maximum length of an array.
+     *
+     * @param bits the encoded text.
+     * @param out  the target stream.
+     * @return the number of decoded bytes.
+     * @throws IOException if the I/O fails.
+     */
+    long decode(BitString bits, OutputStream out) throws IOException {
+        return decodeToStream(bits.length(),
+                              (cursor, output, offset, length) ->
+                                      decode(bits,
+                                             cursor,
+                                             output,
+                                             offset,
+                                             length),
+                              out);
+    }
+
+    /**
+     * Decodes all the bits of the view {@code bits}.
+     *
+     * @param bits the encoded text.
+     * @return the decoded text.
+     */
+    byte[] decode(BitReader bits) {
+        return decodeToArray(bits.length(),
+                             (cursor, output, offset, length) ->
+                                     decode(bits,
+                                            cursor,
+                                            output,
+                                            offset,
+                                            length));
+    }
+
+    /**
+     * Decodes all the bits of the view {@code bits} into the stream 
+     * {@code out}.
+     *
+     * @param bits the encoded text.
+     * @param out  the target stream.
+     * @return the number of decoded bytes.
+     * @throws IOException if the I/O fails.
+     */
+    long decode(BitReader bits, OutputStream out) throws IOException {
+        return decodeToStream(bits.length(),
+                              (cursor, output, offset, length) ->
+                                      decode(bits,
+                                             cursor,
+                                             output,
+                                             offset,
+                                             length),
+                              out);
+    }
+
+    private static byte[] decodeToArray(long bitLength, 
+                                        ChunkDecoder chunkDecoder) {
+        byte[] output = new byte[(int) Math.max(16L,
+                                                Math.min(bitLength / Byte.SIZE,
+                                                         MAX_ARRAY_LENGTH))];
+        int outputSize = 0;
+        BitCursor cursor = new BitCursor();
+
+        while (cursor.bitIndex < bitLength) {
+            if (outputSize == output.length) {
+                if (output.length == MAX_ARRAY_LENGTH) {
+                    throw new IllegalStateException(
+                    "The decoded text does not fit in an array.");
+                }
+
+                output = Arrays.copyOf(
+                        output,
+                        (int) Math.min(MAX_ARRAY_LENGTH,
+                                       output.length
+                                               + (long)(output.length >> 1)));
+            }
+
+            outputSize += chunkDecoder.decode(cursor,
+                                              output,
+                                              outputSize,
+                                              output.length - outputSize);
+        }
+
+        checkFullyConsumed(cursor, bitLength);
+        return Arrays.copyOf(output, outputSize);
+    }
+
+    private static long decodeToStream(long bitLength,
+                                       ChunkDecoder chunkDecoder,
+                                       OutputStream out) throws IOException {
+        byte[] buffer = new byte[OUTPUT_BUFFER_SIZE];
+        BitCursor cursor = new BitCursor();
+        long numberOfDecodedBytes = 0L;
+
+        while (cursor.bitIndex < bitLength) {
+            int count = chunkDecoder.decode(cursor, buffer, 0, buffer.length);
+            out.write(buffer, 0, count);
+            numberOfDecodedBytes += count;
+        }
+
+        checkFullyConsumed(cursor, bitLength);
+        return numberOfDecodedBytes;
+    }
+
+    /**
+     * Decodes symbols from {@code bits} starting at the bit
+     * {@code cursor.bitIndex} into {@code output} until either
+     * {@code outputLength} bytes are decoded or the bits run out. Each window
+     * is assembled from two 64-bit words fetched from the underlying buffer;
+     * only the code words reaching past the last full word are read through
+     * {@link BitReader#readWindow(long)}.
+     *
+     * @return the number of decoded bytes.
+     */
+    private int decode(BitReader bits,
+                       BitCursor cursor,
+                       byte[] output,
+                       int outputOffset,
+                       int outputLength) {
+        ByteBuffer buffer = bits.getBuffer();
+        long bitLength = bits.length();
+        long bitIndex = cursor.bitIndex;
+        int outputIndex = outputOffset;
+        int outputEnd = outputOffset + outputLength;
+
+        // The fast loop: the current word and its successor are always
+        // within the buffer.
+        long fastLoopBitLimit = 
+                Math.min(bitLength,
+                         (bits.getNumberOfFullWords() - 1L) * Long.SIZE);
+
+        while (outputIndex < outputEnd && bitIndex < fastLoopBitLimit) {
+            int byteIndex = (int)(bitIndex >>> 6) << 3;
+            int bitOffset = (int) bitIndex & 63;
+            long window = (buffer.getLong(byteIndex) >>> bitOffset)
+                        | ((buffer.getLong(byteIndex + Long.BYTES) << 1)
+                                << (63 - bitOffset));
+            int entry = decodeSymbol(window, bitIndex);
+
+            output[outputIndex++] = (byte) entry;
+            bitIndex += entry >>> LENGTH_SHIFT;
+        }
+
+        while (outputIndex < outputEnd && bitIndex < bitLength) {
+            long window = bits.readWindow(bitIndex);
+            int entry = decodeSymbol(window, bitIndex);
+
+            output[outputIndex++] = (byte) entry;
+            bitIndex += entry >>> LENGTH_SHIFT;
+        }
+
+        cursor.bitIndex = bitIndex;
+        return outputIndex - outputOffset;
+    }
+
+    /**
+     * Decodes symbols from {@code bits} starting at the bit
+     * {@code cursor.bitIndex} into {@code output} until either
+     * {@code outputLength} bytes are decoded or the bits run out. The bits are
+     * read straight from the storage segments of {@code bits}; only the code
+     * words straddling two segments are read through
+     * {@link BitString#readWindow(long)}.
+     *
+     * @return the number of decoded bytes.
+     */
+    private int decode(BitString bits,
+                       BitCursor cursor,
+                       byte[] output,
+                       int outputOffset,
+                       int outputLength) {
+        long[][] segments = bits.getSegments();
+        long bitLength = bits.length();
+        long bitIndex = cursor.bitIndex;
+        int outputIndex = outputOffset;
+        int outputEnd = outputOffset + outputLength;
+
+        while (outputIndex < outputEnd && bitIndex < bitLength) {
+            int segmentIndex = (int)(bitIndex >>> BitString.SEGMENT_BIT_SHIFT);
+            long[] words = segments[segmentIndex];
+            long segmentStart =
+                    (long) segmentIndex << BitString.SEGMENT_BIT_SHIFT;
+
+            // The fast loop: the current word and its successor are always
+            // within the segment.
+            int localBitLimit =
+                    (int) Math.min(bitLength - segmentStart,
+                                   (words.length - 1) * (long) Long.SIZE);
+            int localBitIndex = (int)(bitIndex - segmentStart);
+
+            while (outputIndex < outputEnd && localBitIndex < localBitLimit) {
+                long window = readFastWindow(words, localBitIndex);
+                int entry = decodeSymbol(window, 
+                                         segmentStart + localBitIndex);
+
+                output[outputIndex++] = (byte) entry;
+                localBitIndex += entry >>> LENGTH_SHIFT;
+            }
+
+            bitIndex = segmentStart + localBitIndex;
+
+            if (outputIndex == outputEnd || bitIndex >= bitLength) {
+                break;
+            }
+
+            // The code word starts in the last word of the segment:
+            long window = bits.readWindow(bitIndex);
+            int entry = decodeSymbol(window, bitIndex);
+
+            output[outputIndex++] = (byte) entry;
+            bitIndex += entry >>> LENGTH_SHIFT;
+        }
+
+        cursor.bitIndex = bitIndex;
+        return outputIndex - outputOffset;
+    }
+
+    private static void checkFullyConsumed(BitCursor cursor, long bitLength) {
+        if (cursor.bitIndex != bitLength) {
+            throw new InvalidFormatException(
+            "The last code word is truncated.");
+        }
+    }
+
+    /**
+     * Decodes exactly {@code outputLength} bytes from the first
+     * {@code bitLength} bits stored in {@code words} into {@code output}
+     * starting at index {@code outputOffset}. All the {@code bitLength} bits
+     * must be consumed.
+     *
+     * @param words        the words holding the encoded text.
+     * @param bitLength    the number of encoded bits.
+     * @param output       the target array.
+     * @param outputOffset the index of the first decoded byte in
+     *                     {@code output}.
+     * @param outputLength the number of bytes to decode.
+     */
+    void decode(long[] words,
+                int bitLength,
+                byte[] output,
+                int outputOffset,
+                int outputLength) {
+        decode(words, 0, bitLength, output, outputOffset, outputLength);
+    }
+
+    /**
+     * Decodes exactly {@code outputLength} bytes from the first
+     * {@code byteLength} bytes packed into {@code words} into {@code output}
+     * starting at index {@code outputOffset}. The encoded text is padded with
+     * less than a byte of zero bits, which are skipped; no whole byte may be
+     * left over.
+     *
+     * @param words        the words holding the encoded text.
+     * @param byteLength   the number of bytes holding the encoded text.
+     * @param output       the target array.
+     * @param outputOffset the index of the first decoded byte in
+     *                     {@code output}.
+     * @param outputLength the number of bytes to decode.
+     */
+    void decodePadded(long[] words,
+                      int byteLength,
+                      byte[] output,
+                      int outputOffset,
+                      int outputLength) {
+        decode(words,
+               0,
+               byteLength * Byte.SIZE,
+               Byte.SIZE - 1,
+               output,
+               outputOffset,
+               outputLength);
+    }
+
+    /**
+     * Decodes exactly {@code outputLength} bytes from the four interleaved 
+     * bit streams {@code streams} into {@code output} starting at index 
+     * {@code outputOffset}. The stream {@code k} holds the {@code k}th of the 
+     * four consecutive segments of the output, each but the last one 
+     * {@code segmentLength} bytes long. The streams are advanced in the same
+     * loop: since the position of a code word depends only on the previous 
+     * code word of the same stream, the processor overlaps the lookups of 
+     * the four streams. All the bits of each stream must be consumed.
+     *
+     * @param streams       the words of each stream.
+     * @param bitLengths    the number of encoded bits in each stream.
+     * @param segmentLength the number of bytes decoded from each stream but 
+     *                      the last one.
+     * @param output        the target array.
+     * @param outputOffset  the index of the first decoded byte in 
+     *                      {@code output}.
+     * @param outputLength  the number of bytes to decode.
+     */
+    void decodeInterleaved(long[][] streams,
+                           int[] bitLengths,
+                           int segmentLength,
+                           byte[] output,
+                           int outputOffset,
+                           int outputLength) {
+        long[] words0 = streams[0];
+        long[] words1 = streams[1];
+        long[] words2 = streams[2];
+        long[] words3 = streams[3];
+        int outputEnd = outputOffset + outputLength;
+        int index0 = outputOffset;
+        int index1 = Math.min(outputEnd, index0 + segmentLength);
+        int index2 = Math.min(outputEnd, index1 + segmentLength);
+        int index3 = Math.min(outputEnd, index2 + segmentLength);
+        int end0 = index1;
+        int end1 = index2;
+        int end2 = index3;
+        int bitIndex0 = 0;
+        int bitIndex1 = 0;
+        int bitIndex2 = 0;
+        int bitIndex3 = 0;
+        int limit0 = fastLoopBitLimit(words0, bitLengths[0]);
+        int limit1 = fastLoopBitLimit(words1, bitLengths[1]);
+        int limit2 = fastLoopBitLimit(words2, bitLengths[2]);
+        int limit3 = fastLoopBitLimit(words3, bitLengths[3]);
+        int[] entries = this.entries;
+        int primaryMask = (1 << primaryTableBits) - 1;
+        int symbolsPerWindow = Math.max(1, this.symbolsPerWindow);
+        boolean singleLevel = this.symbolsPerWindow != 0;
+
+        while (end0 - index0 >= symbolsPerWindow 
+                && end1 - index1 >= symbolsPerWindow
+                && end2 - index2 >= symbolsPerWindow
+                && outputEnd - index3 >= symbolsPerWindow
+                && bitIndex0 < limit0
+                && bitIndex1 < limit1
+                && bitIndex2 < limit2
+                && bitIndex3 < limit3) {
+            long window0 = readFastWindow(words0, bitIndex0);
+            long window1 = readFastWindow(words1, bitIndex1);
+            long window2 = readFastWindow(words2, bitIndex2);
+            long window3 = readFastWindow(words3, bitIndex3);
+
+            for (int i = 0; i != symbolsPerWindow; ++i) {
+                int entry0 = entries[(int) window0 & primaryMask];
+                int entry1 = entries[(int) window1 & primaryMask];
+                int entry2 = entries[(int) window2 & primaryMask];
+                int entry3 = entries[(int) window3 & primaryMask];
+
+                if (!singleLevel) {
+                    entry0 = followLinks(entries, entry0, window0, 
+                                         primaryTableBits);
+                    entry1 = followLinks(entries, entry1, window1, 
+                                         primaryTableBits);
+                    entry2 = followLinks(entries, entry2, window2, 
+                                         primaryTableBits);
+                    entry3 = followLinks(entries, entry3, window3, 
+                                         primaryTableBits);
+                }
+
+                if (entry0 == 0 || entry1 == 0 || entry2 == 0 || entry3 == 0) {
+                    throw new InvalidFormatException(
+                            "Invalid code word in an interleaved stream.");
+                }
+
+                output[index0++] = (byte) entry0;
+                output[index1++] = (byte) entry1;
+                output[index2++] = (byte) entry2;
+                output[index3++] = (byte) entry3;
+
+                int codeLength0 = entry0 >>> LENGTH_SHIFT;
+                int codeLength1 = entry1 >>> LENGTH_SHIFT;
+                int codeLength2 = entry2 >>> LENGTH_SHIFT;
+                int codeLength3 = entry3 >>> LENGTH_SHIFT;
+
+                bitIndex0 += codeLength0;
+                bitIndex1 += codeLength1;
+                bitIndex2 += codeLength2;
+                bitIndex3 += codeLength3;
+                window0 >>>= codeLength0;
+                window1 >>>= codeLength1;
+                window2 >>>= codeLength2;
+                window3 >>>= codeLength3;
+            }
+        }
+
+        // Finish each stream on its own:
+        decode(words0, bitIndex0, bitLengths[0], output, index0, end0 - index0);
+        decode(words1, bitIndex1, bitLengths[1], output, index1, end1 - index1);
+        decode(words2, bitIndex2, bitLengths[2], output, index2, end2 - index2);
+        decode(words3, 
+               bitIndex3,
+               bitLengths[3],
+               output, 
+               index3, 
+               outputEnd - index3);
+    }
+
+    /**
+     * Decodes exactly {@code outputLength} bytes from the first
+     * {@code bitLength} bits stored in {@code words} into {@code output}
+     * starting at index {@code outputOffset}, each byte with the table
+     * selected by the byte decoded before it. The first byte is decoded with
+     * the table of the byte zero. Unless some code words are longer than the
+     * primary table index, several bytes are decoded from each 64-bit window.
+     * All the {@code bitLength} bits must be consumed.
+     *
+     * @param tables       the decoding table of each preceding byte.
+     * @param words        the words holding the encoded text.
+     * @param bitLength    the number of encoded bits.
+     * @param output       the target array.
+     * @param outputOffset the index of the first decoded byte in
+     *                     {@code output}.
+     * @param outputLength the number of bytes to decode.
+     */
+    static void decode(HuffmanDecodingTable[] tables,
+                       long[] words,
+                       int bitLength,
+                       byte[] output,
+                       int outputOffset,
+                       int outputLength) {
+        int outputIndex = outputOffset;
+        int outputEnd = outputOffset + outputLength;
+        int bitIndex = 0;
+        int fastLoopBitLimit = fastLoopBitLimit(words, bitLength);
+        int symbolsPerWindow = Long.SIZE;
+        int[][] entriesByContext = new int[tables.length][];
+        int[] primaryMasks = new int[tables.length];
+        int[] primaryBits = new int[tables.length];
+
+        for (int context = 0; context != tables.length; ++context) {
+            HuffmanDecodingTable table = tables[context];
+            entriesByContext[context] = table.entries;
+            primaryBits[context] = table.primaryTableBits;
+            primaryMasks[context] = (1 << table.primaryTableBits) - 1;
+            symbolsPerWindow = Math.min(symbolsPerWindow,
+                                        table.symbolsPerWindow);
+        }
+
+        int context = 0;
+
+        // The length-limited fast loop: decode several symbols from each
+        // window without following links.
+        while (outputEnd - outputIndex >= symbolsPerWindow
+                && symbolsPerWindow != 0
+                && bitIndex < fastLoopBitLimit) {
+            long window = readFastWindow(words, bitIndex);
+
+            for (int i = 0; i != symbolsPerWindow; ++i) {
+                int entry = entriesByContext[context]
+                                            [(int) window 
+                                             & primaryMasks[context]];
+
+                if (entry == 0) {
+                    throw new InvalidFormatException(
+                    "Invalid code word at bit " + bitIndex + ".");
+                }
+
+                int codeLength = entry >>> LENGTH_SHIFT;
+                output[outputIndex++] = (byte) entry;
+                context = entry & 0xff;
+                bitIndex += codeLength;
+                window >>>= codeLength;
+            }
+        }
+
+        while (outputIndex < outputEnd) {
+            long window;
+
+            if (bitIndex < fastLoopBitLimit) {
+                window = readFastWindow(words, bitIndex);
+            } else if (bitIndex < bitLength) {
+                window = readWindow(words, bitIndex);
+            } else {
+                throw new InvalidFormatException(
+                "The encoded text ends after " + (outputIndex - outputOffset) +
+                " bytes, expected " + outputLength + ".");
+            }
+
+            int[] entries = entriesByContext[context];
+            int entry = entries[(int) window & primaryMasks[context]];
+
+            if (entry < 0) {
+                entry = followLinks(entries, 
+                                    entry, 
+                                    window, 
+                                    primaryBits[context]);
+            }
+
+            if (entry == 0) {
+                throw new InvalidFormatException(
+                "Invalid code word at bit " + bitIndex + ".");
+            }
+
+            output[outputIndex++] = (byte) entry;
+            context = entry & 0xff;
+            bitIndex += entry >>> LENGTH_SHIFT;
+        }
+
+        if (bitIndex != bitLength) {
+            throw new InvalidFormatException(
+            "The encoded text has " + bitLength + " bits, decoded " +
+            bitIndex + ".");
+        }
+    }
+
+    /**
+     * Returns the bit index below which a 64-bit window starting at it lies 
+     * within {@code words}, capped at {@code bitLength}.
+     */
+    private static int fastLoopBitLimit(long[] words, int bitLength) {
+        return Math.min(bitLength, (words.length - 1) * Long.SIZE);
+    }
+
+    /**
+     * Reads the 64 bits starting from the bit {@code bitIndex}, which must be
+     * below {@link #fastLoopBitLimit(long[], int)}.
+     */
+    private static long readFastWindow(long[] words, int bitIndex) {
+        int wordIndex = bitIndex >>> 6;
+        int bitOffset = bitIndex & 63;
+        return (words[wordIndex] >>> bitOffset)
+             | ((words[wordIndex + 1] << 1) << (63 - bitOffset));
+    }
+
+    /**
+     * Decodes exactly {@code outputLength} bytes from the bits 
+     * {@code bitIndex, ..., bitLength - 1} stored in {@code words} into 
+     * {@code output} starting at index {@code outputOffset}. All the bits 
+     * must be consumed.
+     */
+    private void decode(long[] words,
+                        int bitIndex,
+                        int bitLength,
+                        byte[] output,
+                        int outputOffset,
+                        int outputLength) {
+        decode(words, 
+               bitIndex, 
+               bitLength, 
+               0, 
+               output, 
+               outputOffset, 
+               outputLength);
+    }
+
+    /**
+     * Decodes exactly {@code outputLength} bytes from the bits 
+     * {@code bitIndex, ..., bitLength - 1} stored in {@code words} into 
+     * {@code output} starting at index {@code outputOffset}. At most 
+     * {@code paddingBits} of the last bits may be left over.
+     */
+    private void decode(long[] words,
+                        int bitIndex,
+                        int bitLength,
+                        int paddingBits,
+                        byte[] output,
+                        int outputOffset,
+                        int outputLength) {
+        int outputIndex = outputOffset;
+        int outputEnd = outputOffset + outputLength;
+        int[] entries = this.entries;
+        int primaryMask = (1 << primaryTableBits) - 1;
+        int fastLoopBitLimit = fastLoopBitLimit(words, bitLength);
+        int symbolsPerWindow = this.symbolsPerWindow;
+
+        // The length-limited fast loop: decode several symbols from each 
+        // window without following links.
+        while (outputEnd - outputIndex >= symbolsPerWindow
+                && symbolsPerWindow != 0 
+                && bitIndex < fastLoopBitLimit) {
+            long window = readFastWindow(words, bitIndex);
+
+            for (int i = 0; i != symbolsPerWindow; ++i) {
+                int entry = entries[(int) window & primaryMask];
+
+                if (entry == 0) {
+                    throw new InvalidFormatException(
+                    "Invalid code word at bit " + bitIndex + ".");
+                }
+
+                int codeLength = entry >>> LENGTH_SHIFT;
+                output[outputIndex++] = (byte) entry;
+                bitIndex += codeLength;
+                window >>>= codeLength;
+            }
+        }
+
+        while (outputIndex < outputEnd && bitIndex < fastLoopBitLimit) {
+            long window = readFastWindow(words, bitIndex);
+            int entry = decodeSymbol(window, bitIndex);
+
+            output[outputIndex++] = (byte) entry;
+            bitIndex += entry >>> LENGTH_SHIFT;
+        }
+
+        while (outputIndex < outputEnd) {
+            if (bitIndex >= bitLength) {
+                throw new InvalidFormatException(
+                "The encoded text ends after " + (outputIndex - outputOffset) +
+                " bytes, expected " + outputLength + ".");
+            }
+
+            long window = readWindow(words, bitIndex);
+            int entry = decodeSymbol(window, bitIndex);
+
+            output[outputIndex++] = (byte) entry;
+            bitIndex += entry >>> LENGTH_SHIFT;
+        }
+
+        if (bitIndex > bitLength || bitLength - bitIndex > paddingBits) {
+            throw new InvalidFormatException(
+            "The encoded text has " + bitLength + " bits, decoded " +
+            bitIndex + ".");
+        }
+    }
+
+    /**
+     * Decodes the code word at the start of {@code window}, which was read
+     * from the bit {@code bitIndex}, following the links into the secondary
+     * tables if needed.
+     *
+     * @return the table entry holding the symbol and the code length.
+     * @throws InvalidFormatException if the window starts with no code word.
+     */
+    private int decodeSymbol(long window, long bitIndex) {
+        int entry = entries[(int) window & ((1 << primaryTableBits) - 1)];
+
+        if (entry < 0) {
+            entry = followLinks(entries, entry, window, primaryTableBits);
+        }
+
+        if (entry == 0) {
+            throw new InvalidFormatException(
+            "Invalid code word at bit " + bitIndex + ".");
+        }
+
+        return entry;
+    }
+
+    private static int followLinks(int[] entries,
+                                   int entry,
+                                   long window,
+                                   int shift) {
+        while (entry < 0) {
+            int tableBits = entry & LINK_BITS_MASK;
+            int offset = (entry & ~LINK_FLAG) >>> LINK_OFFSET_SHIFT;
+            int index = (int)(window >>> shift) & ((1 << tableBits) - 1);
+            entry = entries[offset + index];
+            shift += tableBits;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Reads 64 bits starting from the bit {@code bitIndex}. The bits past the
+     * end of {@code words} are read as zeros.
+     */
+    private static long readWindow(long[] words, int bitIndex) {
+        int wordIndex = bitIndex >>> 6;
+        int bitOffset = bitIndex & 63;
+        long window = words[wordIndex] >>> bitOffset;
+
+        if (bitOffset != 0 && wordIndex + 1 < words.length) {
+            window |= words[wordIndex + 1] << (64 - bitOffset);
+        }
+
+        return window;
+    }
+
+    /**
+     * Builds a table resolving the code words of {@code symbols}, all of which
+     * share the same {@code shift} first bits.
+     *
+     * @return the offset of the new table.
+     */
+    private int buildTable(int[] symbols,
+                           int numberOfSymbols,
+                           long[] codeWords,
+                           int[] codeLengths,
+                           int shift,
+                           int tableBits) {
+        int offset = allocate(1 << tableBits);
+        int tableMask = (1 << tableBits) - 1;
+        int[] longSymbols = null;
+        int numberOfLongSymbols = 0;
+
+        for (int i = 0; i != numberOfSymbols; ++i) {
+            int symbol = symbols[i];
+            int codeLength = codeLengths[symbol];
+            int remainingBits = codeLength - shift;
+
+            if (remainingBits > tableBits) {
+                if (longSymbols == null) {
+                    longSymbols = new int[numberOfSymbols];
+                }
+
+                longSymbols[numberOfLongSymbols++] = symbol;
+                continue;
+            }
+
+            // Fill all the entries whose low 'remainingBits' bits match the
+            // rest of the code word:
+            int index = (int)(codeWords[symbol] >>> shift)
+                      & ((1 << remainingBits) - 1);
+            int step = 1 << remainingBits;
+            int entry = (codeLength << LENGTH_SHIFT) | symbol;
+
+            for (; index <= tableMask; index += step) {
+                if (entries[offset + index] != 0) {
+                    throw new IllegalArgumentException(
+                            "The code is not prefix-free.");
+                }
+
+                entries[offset + index] = entry;
+            }
+        }
+
+        if (numberOfLongSymbols == 0) {
+            return offset;
+        }
+
+        // Group the long code words by their index in this table and build a
+        // secondary table for each group:
+        boolean[] processed = new boolean[numberOfLongSymbols];
+        int[] group = new int[numberOfLongSymbols];
+
+        for (int i = 0; i != numberOfLongSymbols; ++i) {
+            if (processed[i]) {
+                continue;
+            }
+
+            int index = tableIndex(codeWords[longSymbols[i]], shift, tableMask);
+            int groupSize = 0;
+            int maximumRemainingBits = 0;
+
+            for (int j = i; j != numberOfLongSymbols; ++j) {
+                int symbol = longSymbols[j];
+
+                if (!processed[j]
+                        && tableIndex(codeWords[symbol],
+                                      shift,
+                                      tableMask) == index) {
+                    processed[j] = true;
+                    group[groupSize++] = symbol;
+                    maximumRemainingBits =
+                            Math.max(maximumRemainingBits,
+                                     codeLengths[symbol] - shift - tableBits);
+                }
+            }
+
+            if (entries[offset + index] != 0) {
+                throw new IllegalArgumentException(
+                        "The code is not prefix-free.");
+            }
+
+            int subtableBits = Math.min(SECONDARY_TABLE_BITS,
+                                        maximumRemainingBits);
+            int subtableOffset = buildTable(group,
+                                            groupSize,
+                                            codeWords,
+                                            codeLengths,
+                                            shift + tableBits,
+                                            subtableBits);
+
+            entries[offset + index] = LINK_FLAG
+                                    | (subtableOffset << LINK_OFFSET_SHIFT)
+                                    | subtableBits;
+        }
+
+        return offset;
+    }
+
+    private static int tableIndex(long codeWord, int shift, int tableMask) {
+        return (int)(codeWord >>> shift) & tableMask;
+    }
+
+    private int allocate(int numberOfEntries) {
+        int offset = size;
+        size += numberOfEntries;
+
+        if (size > entries.length) {
+            entries = Arrays.copyOf(entries,
+                                    Math.max(size, 2 * entries.length));
+        }
+
+        return offset;
+    }
+
+    /**
+     * Decodes a chunk of symbols starting at the bit {@code cursor.bitIndex}.
+     */
+    private interface ChunkDecoder {
+
+        /**
+         * Decodes symbols into {@code output} until either {@code length} 
+         * bytes are decoded or the bits run out, and advances the cursor.
+         *
+         * @return the number of decoded bytes.
+         */
+        int decode(BitCursor cursor, byte[] output, int offset, int length);
+    }
+
+    /**
+     * Holds the index of the next bit to decode.
+     */
+    private static final class BitCursor {
+        long bitIndex;
+    }
+}
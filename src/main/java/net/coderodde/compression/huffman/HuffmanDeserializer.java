@@ -1,53 +1,502 @@
 package net.coderodde.compression.huffman;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * This class is responsible for deserializing the text from a raw byte data.
  * 
  * @author Rodion "rodde" Efremov
- * @version 1.61 (Nov 19, 2016)
+ * @version 1.7 (Oct 17, 2026)
  */
 public class HuffmanDeserializer {
 
+    /**
+     * The size of the buffer used for deserializing from a stream. It must
+     * hold the largest header of any format.
+     */
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The length of the largest header of any format: the legacy header 
+     * with all the 256 frequencies.
+     */
+    private static final int MAX_HEADER_LENGTH = 
+            HuffmanSerializer.MAGIC.length
+            + HuffmanSerializer.BYTES_PER_CODE_WORD_COUNT_ENTRY
+            + HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY
+            + FrequencyTable.ALPHABET_SIZE 
+            * HuffmanSerializer.BYTES_PER_WEIGHT_MAP_ENTRY;
+
     public static final class Result {
 
-        private final BitString encodedText;
-        private final Map<Byte, Integer> countMap;
+        private BitString encodedText;
+        private final BitReader encodedBits;
+        private final FrequencyTable frequencyTable;
+        private final CanonicalHuffmanCode canonicalCode;
+
+        Result(BitString encodedText, FrequencyTable frequencyTable) {
+            this(encodedText, null, frequencyTable, null);
+        }
+
+        Result(BitString encodedText, CanonicalHuffmanCode canonicalCode) {
+            this(encodedText, null, null, canonicalCode);
+        }
+
+        Result(BitReader encodedBits, FrequencyTable frequencyTable) {
+            this(null, encodedBits, frequencyTable, null);
+        }
+
+        Result(BitReader encodedBits, CanonicalHuffmanCode canonicalCode) {
+            this(null, encodedBits, null, canonicalCode);
+        }
 
-        Result(BitString encodedText, 
-               Map<Byte, Integer> frequencyMap) {
+        private Result(BitString encodedText,
+                       BitReader encodedBits,
+                       FrequencyTable frequencyTable,
+                       CanonicalHuffmanCode canonicalCode) {
             this.encodedText = encodedText;
-            this.countMap = frequencyMap;
+            this.encodedBits = encodedBits;
+            this.frequencyTable = frequencyTable;
+            this.canonicalCode = canonicalCode;
         }
 
+        /**
+         * Returns the encoded text. If the data was deserialized from an 
+         * array or a buffer, the bits are copied out of the view 
+         * {@link #getEncodedBits()} on the first call.
+         * 
+         * @return the encoded text.
+         */
         public BitString getEncodedText() {
+            if (encodedText == null) {
+                encodedText = encodedBits.toBitString();
+            }
+
             return encodedText;
         }
 
+        /**
+         * Returns the view of the encoded text over the deserialized array or
+         * buffer. Decoding the view does not copy the encoded text.
+         * 
+         * @return the view or {@code null} if the data was deserialized from
+         *         a stream.
+         */
+        public BitReader getEncodedBits() {
+            return encodedBits;
+        }
+
+        /**
+         * Returns the count map of the legacy format.
+         * 
+         * @return the count map or {@code null} if the data is in the 
+         *         canonical format.
+         */
         public Map<Byte, Integer> getCountMap() {
-            return countMap;
+            return frequencyTable == null ? null : frequencyTable.toMap();
+        }
+
+        /**
+         * Returns the frequency table of the legacy format.
+         * 
+         * @return the frequency table or {@code null} if the data is in the
+         *         canonical format.
+         */
+        public FrequencyTable getFrequencyTable() {
+            return frequencyTable;
+        }
+
+        /**
+         * Returns the canonical code of the canonical format.
+         * 
+         * @return the canonical code or {@code null} if the data is in the 
+         *         legacy format.
+         */
+        public CanonicalHuffmanCode getCanonicalCode() {
+            return canonicalCode;
+        }
+
+        public boolean isCanonical() {
+            return canonicalCode != null;
         }
     }
 
     /**
      * Deserializes and returns the data structures need for decoding the text.
+     * The encoded text is not copied: the result holds a view of it over 
+     * {@code data}.
      * 
      * @param data the raw byte data previously serialised.
      * @return the data structures needed for decoding the text.
      */
     public Result deserialize(byte[] data) {
-        checkSignature(data);
-        int numberOfCodeWords = extractNumberOfCodeWords(data);
-        int numberOfBits = extractNumberOfEncodedTextBits(data);
+        return deserialize(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Deserializes and returns the data structures need for decoding the text
+     * stored between the position and the limit of {@code data}. Only the 
+     * header is copied; the result holds a view of the encoded text over 
+     * {@code data}, so the work done does not depend on the length of the 
+     * encoded text. The position of {@code data} is not changed.
+     * 
+     * @param data the buffer holding the raw data previously serialised.
+     * @return the data structures needed for decoding the text.
+     */
+    public Result deserialize(ByteBuffer data) {
+        byte[] header = new byte[Math.min(data.remaining(), 
+                                          MAX_HEADER_LENGTH)];
+        data.duplicate().get(header);
+
+        if (hasSignature(header, HuffmanSerializer.MAGIC_CANONICAL)) {
+            return deserializeCanonical(
+                    data,
+                    header,
+                    HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY);
+        }
+
+        if (hasSignature(header, HuffmanSerializer.MAGIC_CANONICAL_64)) {
+            return deserializeCanonical(
+                    data,
+                    header,
+                    HuffmanSerializer.BYTES_PER_LONG_BIT_COUNT_ENTRY);
+        }
 
-        Map<Byte, Integer> frequencyMap = extractCountMap(data, 
-                                                          numberOfCodeWords);
-        BitString encodedText = extractEncodedText(data, 
-                                                   frequencyMap,
-                                                   numberOfBits);
-        return new Result(encodedText, frequencyMap);
+        checkSignature(header);
+        int numberOfCodeWords = extractNumberOfCodeWords(header);
+        int numberOfBits = extractNumberOfEncodedTextBits(header);
+
+        FrequencyTable frequencyTable = 
+                extractFrequencyTable(header, numberOfCodeWords);
+        int omittedBytes = HuffmanSerializer.MAGIC.length +
+                           HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY +
+                           HuffmanSerializer.BYTES_PER_CODE_WORD_COUNT_ENTRY;
+
+        omittedBytes += numberOfCodeWords * 
+                        HuffmanSerializer.BYTES_PER_WEIGHT_MAP_ENTRY;
+
+        BitReader encodedBits = createView(data, omittedBytes, numberOfBits);
+        return new Result(encodedBits, frequencyTable);
+    }
+
+    /**
+     * Deserializes the data structures needed for decoding the text from the
+     * stream {@code in}. Unlike {@link #deserialize(byte[])}, the encoded text
+     * is not limited by the maximum length of an array.
+     * 
+     * @param in the stream holding the raw data previously serialized.
+     * @return the data structures needed for decoding the text.
+     * @throws IOException if the I/O fails.
+     */
+    public Result deserialize(InputStream in) throws IOException {
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+
+        try {
+            InputStreams.readFully(in,
+                                   buffer,
+                                   0,
+                                   HuffmanSerializer.MAGIC.length);
+
+            if (hasSignature(buffer, HuffmanSerializer.MAGIC_CANONICAL)) {
+                return deserializeCanonical(
+                        in,
+                        buffer,
+                        HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY);
+            }
+
+            if (hasSignature(buffer, HuffmanSerializer.MAGIC_CANONICAL_64)) {
+                return deserializeCanonical(
+                        in,
+                        buffer,
+                        HuffmanSerializer.BYTES_PER_LONG_BIT_COUNT_ENTRY);
+            }
+
+            if (!hasSignature(buffer, HuffmanSerializer.MAGIC)) {
+                throw new InvalidFormatException("Bad file type signature.");
+            }
+
+            int headerLength = HuffmanSerializer.MAGIC.length
+                    + HuffmanSerializer.BYTES_PER_CODE_WORD_COUNT_ENTRY
+                    + HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY;
+
+            InputStreams.readFully(in,
+                                   buffer,
+                                   HuffmanSerializer.MAGIC.length,
+                                   headerLength 
+                                   - HuffmanSerializer.MAGIC.length);
+
+            int numberOfCodeWords = extractNumberOfCodeWords(buffer);
+            int numberOfBits = extractNumberOfEncodedTextBits(buffer);
+
+            if (numberOfCodeWords < 0 
+                    || numberOfCodeWords > FrequencyTable.ALPHABET_SIZE) {
+                throw new InvalidFormatException(
+                "Bad number of code words: " + numberOfCodeWords + ".");
+            }
+
+            InputStreams.readFully(
+                    in,
+                    buffer,
+                    headerLength,
+                    numberOfCodeWords 
+                    * HuffmanSerializer.BYTES_PER_WEIGHT_MAP_ENTRY);
+
+            FrequencyTable frequencyTable = 
+                    extractFrequencyTable(buffer, numberOfCodeWords);
+
+            BitString encodedText = 
+                    readEncodedText(in, buffer, numberOfBits);
+            return new Result(encodedText, frequencyTable);
+        } catch (EOFException ex) {
+            throw new InvalidFormatException("The data is truncated.");
+        }
+    }
+
+    /**
+     * Reads the code length table emitted by 
+     * {@link HuffmanSerializer#emitCodeLengths(ByteList, int[])}.
+     * 
+     * @param data        the raw data.
+     * @param offset      the index of the first byte of the table.
+     * @param codeLengths the array for the code lengths.
+     * @return the index of the first byte past the table.
+     */
+    static int extractCodeLengths(byte[] data, int offset, int[] codeLengths) {
+        Arrays.fill(codeLengths, 0);
+
+        try {
+            int numberOfCodeWords = Byte.toUnsignedInt(data[offset++]) + 1;
+
+            if (numberOfCodeWords <= 
+                    HuffmanSerializer.MAX_SPARSE_CODE_LENGTH_ENTRIES) {
+                for (int i = 0; i != numberOfCodeWords; ++i) {
+                    int symbol = Byte.toUnsignedInt(data[offset++]);
+                    codeLengths[symbol] = checkCodeLength(data[offset++]);
+                }
+
+                return offset;
+            }
+
+            int bitmapOffset = offset;
+            offset += HuffmanSerializer.BYTES_PER_CODE_LENGTH_BITMAP;
+            int numberOfPresentBytes = 0;
+
+            for (int symbol = 0; symbol != codeLengths.length; ++symbol) {
+                int bitmapByte = 
+                        data[bitmapOffset + symbol / Byte.SIZE];
+
+                if ((bitmapByte & (1 << (symbol % Byte.SIZE))) != 0) {
+                    codeLengths[symbol] = checkCodeLength(data[offset++]);
+                    ++numberOfPresentBytes;
+                }
+            }
+
+            if (numberOfPresentBytes != numberOfCodeWords) {
+                throw new InvalidFormatException(
+                "Code length bitmap does not match the number of code " +
+                "words.");
+            }
+
+            return offset;
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            throw new InvalidFormatException("Invalid format.");
+        }
+    }
+
+    private static int checkCodeLength(byte codeLengthByte) {
+        int codeLength = Byte.toUnsignedInt(codeLengthByte);
+
+        if (codeLength == 0 
+                || codeLength > CanonicalHuffmanCode.MAX_CODE_LENGTH) {
+            throw new InvalidFormatException(
+            "Bad code length: " + codeLength + ".");
+        }
+
+        return codeLength;
+    }
+
+    private Result deserializeCanonical(ByteBuffer data,
+                                        byte[] header,
+                                        int bitCountSize) {
+        int offset = HuffmanSerializer.MAGIC_CANONICAL.length;
+
+        if (header.length < offset + bitCountSize) {
+            throw new InvalidFormatException(
+            "No number of encoded text bits. The file is too short: " + 
+                    header.length);
+        }
+
+        long numberOfBits = readBitCount(header, offset, bitCountSize);
+        offset += bitCountSize;
+
+        int[] codeLengths = new int[FrequencyTable.ALPHABET_SIZE];
+        offset = extractCodeLengths(header, offset, codeLengths);
+        CanonicalHuffmanCode code = createCanonicalCode(codeLengths);
+        BitReader encodedBits = createView(data, offset, numberOfBits);
+        return new Result(encodedBits, code);
+    }
+
+    private Result deserializeCanonical(InputStream in,
+                                        byte[] buffer,
+                                        int bitCountSize) throws IOException {
+        int offset = HuffmanSerializer.MAGIC_CANONICAL.length;
+        InputStreams.readFully(in, buffer, offset, bitCountSize);
+        long numberOfBits = readBitCount(buffer, offset, bitCountSize);
+        offset += bitCountSize;
+
+        int[] codeLengths = new int[FrequencyTable.ALPHABET_SIZE];
+        readCodeLengths(in, buffer, offset, codeLengths);
+        CanonicalHuffmanCode code = createCanonicalCode(codeLengths);
+        BitString encodedText = readEncodedText(in, buffer, numberOfBits);
+        return new Result(encodedText, code);
+    }
+
+    /**
+     * Reads the code length table from {@code in} into {@code buffer} 
+     * starting at the index {@code offset} and extracts the code lengths 
+     * into {@code codeLengths}. The buffer must have room for 
+     * {@link HuffmanSerializer#MAX_CODE_LENGTHS_SIZE} bytes.
+     *
+     * @param in          the stream to read from.
+     * @param buffer      the scratch buffer.
+     * @param offset      the index of the table in {@code buffer}.
+     * @param codeLengths the array receiving the 256 code lengths.
+     * @throws IOException if reading fails.
+     */
+    static void readCodeLengths(InputStream in,
+                                byte[] buffer,
+                                int offset,
+                                int[] codeLengths) throws IOException {
+        // Read the code length table: first the number of code words, then 
+        // either the sparse pairs or the bitmap along with the lengths.
+        InputStreams.readFully(in, buffer, offset, 1);
+        int numberOfCodeWords = Byte.toUnsignedInt(buffer[offset]) + 1;
+        int tableLength = 
+                numberOfCodeWords <= 
+                HuffmanSerializer.MAX_SPARSE_CODE_LENGTH_ENTRIES ?
+                2 * numberOfCodeWords :
+                HuffmanSerializer.BYTES_PER_CODE_LENGTH_BITMAP + 
+                numberOfCodeWords;
+
+        InputStreams.readFully(in, buffer, offset + 1, tableLength);
+        extractCodeLengths(buffer, offset, codeLengths);
+    }
+
+    private static CanonicalHuffmanCode createCanonicalCode(int[] codeLengths) {
+        try {
+            return new CanonicalHuffmanCode(codeLengths);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidFormatException(ex.getMessage());
+        }
+    }
+
+    private static long readBitCount(byte[] data,
+                                     int offset,
+                                     int bitCountSize) {
+        long numberOfBits = 
+                bitCountSize == HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY ?
+                readInt(data, offset) :
+                (readInt(data, offset) & 0xffffffffL)
+                        | ((long) readInt(data, offset + 4) << 32);
+
+        if (numberOfBits < 0L) {
+            throw new InvalidFormatException(
+            "Bad number of encoded bits: " + numberOfBits + ".");
+        }
+
+        return numberOfBits;
+    }
+
+    /**
+     * Reads {@code numberOfBits} encoded text bits from {@code in} using 
+     * {@code buffer} as the scratch space.
+     */
+    private static BitString readEncodedText(InputStream in,
+                                             byte[] buffer,
+                                             long numberOfBits)
+            throws IOException {
+        if (numberOfBits < 0L) {
+            throw new InvalidFormatException(
+            "Bad number of encoded bits: " + numberOfBits + ".");
+        }
+
+        BitString encodedText = new BitString();
+        long remainingBytes = (numberOfBits + Byte.SIZE - 1) / Byte.SIZE;
+
+        while (remainingBytes > 0L) {
+            int chunkLength = (int) Math.min(buffer.length, remainingBytes);
+            InputStreams.readFully(in, buffer, 0, chunkLength);
+            appendBytes(encodedText, buffer, 0, chunkLength);
+            remainingBytes -= chunkLength;
+        }
+
+        truncate(encodedText, numberOfBits);
+        return encodedText;
+    }
+
+    /**
+     * Appends all the bits of the bytes 
+     * {@code data[offset], ..., data[offset + length - 1]} to 
+     * {@code bitString}, a word at a time.
+     */
+    private static void appendBytes(BitString bitString,
+                                    byte[] data,
+                                    int offset,
+                                    int length) {
+        int end = offset + length;
+        int index = offset;
+
+        for (; index + Long.BYTES <= end; index += Long.BYTES) {
+            bitString.appendBits((data[index] & 0xffL)
+                              | ((data[index + 1] & 0xffL) << 8)
+                              | ((data[index + 2] & 0xffL) << 16)
+                              | ((data[index + 3] & 0xffL) << 24)
+                              | ((data[index + 4] & 0xffL) << 32)
+                              | ((data[index + 5] & 0xffL) << 40)
+                              | ((data[index + 6] & 0xffL) << 48)
+                              | ((data[index + 7] & 0xffL) << 56),
+                                 Long.SIZE);
+        }
+
+        for (; index != end; ++index) {
+            bitString.appendBits(data[index], Byte.SIZE);
+        }
+    }
+
+    /**
+     * Removes the padding bits of the last byte.
+     */
+    private static void truncate(BitString bitString, long numberOfBits) {
+        while (bitString.length() > numberOfBits) {
+            bitString.removeLastBit();
+        }
+    }
+
+    private static boolean hasSignature(byte[] data, byte[] magic) {
+        if (data.length < magic.length) {
+            return false;
+        }
+
+        for (int i = 0; i != magic.length; ++i) {
+            if (data[i] != magic[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return Byte.toUnsignedInt(data[offset])
+            | (Byte.toUnsignedInt(data[offset + 1]) << 8)
+            | (Byte.toUnsignedInt(data[offset + 2]) << 16)
+            | (Byte.toUnsignedInt(data[offset + 3]) << 24);
     }
 
     private void checkSignature(byte[] data) {
@@ -97,9 +546,15 @@ public class HuffmanDeserializer {
         return numberOfEncodedTextBits;
     }
 
-    private Map<Byte, Integer> extractCountMap(byte[] data,
-                                               int numberOfCodeWords) {
-        Map<Byte, Integer> countMap = new TreeMap<>();
+    private FrequencyTable extractFrequencyTable(byte[] data,
+                                                 int numberOfCodeWords) {
+        long[] frequencies = new long[FrequencyTable.ALPHABET_SIZE];
+
+        if (numberOfCodeWords < 0 
+                || numberOfCodeWords > FrequencyTable.ALPHABET_SIZE) {
+            throw new InvalidFormatException(
+            "Bad number of code words: " + numberOfCodeWords + ".");
+        }
 
         try {
             int dataByteIndex =
@@ -119,47 +574,37 @@ public class HuffmanDeserializer {
                 frequency |= (Byte.toUnsignedInt(frequencyByte3) << 16);
                 frequency |= (Byte.toUnsignedInt(frequencyByte4) << 24);
 
-                countMap.put(character, frequency);
+                if (frequency < 0) {
+                    throw new InvalidFormatException(
+                    "Negative frequency: " + frequency + ".");
+                }
+
+                frequencies[Byte.toUnsignedInt(character)] = frequency;
             }
         } catch (ArrayIndexOutOfBoundsException ex) {
             throw new InvalidFormatException("Invalid format.");
         }
 
-        return countMap;
+        return new FrequencyTable(frequencies);
     }
 
-    private BitString extractEncodedText(byte[] data,
-                                         Map<Byte, Integer> frequencyMap,
-                                         int numberOfEncodedTextBits) {
-        int omittedBytes = HuffmanSerializer.MAGIC.length +
-                           HuffmanSerializer.BYTES_PER_BIT_COUNT_ENTRY +
-                           HuffmanSerializer.BYTES_PER_CODE_WORD_COUNT_ENTRY;
-
-        omittedBytes += frequencyMap.size() * 
-                        HuffmanSerializer.BYTES_PER_WEIGHT_MAP_ENTRY;
-
-        BitString encodedText = new BitString();
-        int currentByteIndex = omittedBytes;
-        int currentBitIndex = 0;
-
-        try {
-            for (int bitIndex = 0; 
-                    bitIndex != numberOfEncodedTextBits; 
-                    bitIndex++) {
-                boolean bit = 
-                        (data[currentByteIndex] & (1 << currentBitIndex)) != 0;
-
-                encodedText.appendBit(bit);
-
-                if (++currentBitIndex == Byte.SIZE) {
-                    currentBitIndex = 0;
-                    currentByteIndex++;
-                }
-            }
-        } catch (ArrayIndexOutOfBoundsException ex) {
+    /**
+     * Creates a view of {@code numberOfEncodedTextBits} bits stored in 
+     * {@code data} starting {@code omittedBytes} bytes past its position.
+     */
+    private static BitReader createView(ByteBuffer data,
+                                        int omittedBytes,
+                                        long numberOfEncodedTextBits) {
+        long numberOfBytes = (numberOfEncodedTextBits + Byte.SIZE - 1) 
+                           / Byte.SIZE;
+
+        if (numberOfEncodedTextBits < 0L
+                || numberOfBytes > data.remaining() - omittedBytes) {
             throw new InvalidFormatException("Invalid file format.");
         }
 
-        return encodedText;
+        ByteBuffer payload = data.duplicate();
+        ((Buffer) payload).position(data.position() + omittedBytes);
+        return new BitReader(payload, numberOfEncodedTextBits);
     }
 }
@@ -0,0 +1,328 @@
+package net.coderodde.compression.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * This class implements a canonical code trained in advance on a sample
+ * corpus and shared by the sender and the receiver of small messages. A
+ * message compressed by {@link HuffmanCodec} with a dictionary carries
+ * neither a code length table nor a stream header: only the dictionary ID,
+ * the message length and the code words, so that no histogram and no code is
+ * built per message.
+ * <p>
+ * The training adds one to the sample frequency of each byte, so that every
+ * byte receives a code word and any message can be compressed, while the
+ * length limit keeps the code words of the bytes unseen in the samples short.
+ * The dictionary file stores the code lengths only:
+ * <pre>
+ * signature          4 bytes  C0 DE 0D D1
+ * version            1 byte   1
+ * dictionary ID      4 bytes
+ * code length table  as in a frame body
+ * </pre>
+ * <p>
+ * The instances of this class are immutable and may be shared by any number
+ * of threads.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class HuffmanDictionary {
+
+    /**
+     * The version of the dictionary file format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The signature of a dictionary file.
+     */
+    static final byte[] MAGIC_DICTIONARY = new byte[]{ (byte) 0xC0,
+                                                       (byte) 0xDE,
+                                                       (byte) 0x0D,
+                                                       (byte) 0xD1 };
+
+    /**
+     * The number of bytes before the code length table in a dictionary file.
+     */
+    private static final int BYTES_PER_FILE_HEADER =
+            MAGIC_DICTIONARY.length + 1 + 4;
+
+    /**
+     * The number of bytes before the code words in a compressed message: the
+     * dictionary ID and the message length.
+     */
+    static final int BYTES_PER_MESSAGE_HEADER = 4 + 4;
+
+    /**
+     * The ID of this dictionary.
+     */
+    private final int id;
+
+    /**
+     * The code lengths indexed by the unsigned byte value.
+     */
+    final int[] codeLengths = new int[FrequencyTable.ALPHABET_SIZE];
+
+    /**
+     * The code words indexed by the unsigned byte value.
+     */
+    final long[] codeWords = new long[FrequencyTable.ALPHABET_SIZE];
+
+    /**
+     * The decoding table, which is only read after the construction.
+     */
+    final HuffmanDecodingTable decodingTable = new HuffmanDecodingTable();
+
+    /**
+     * The length of the shortest code word.
+     */
+    final int minimumCodeLength;
+
+    /**
+     * The length of the longest code word.
+     */
+    final int maximumCodeLength;
+
+    /**
+     * Constructs a dictionary with the given ID and code lengths.
+     *
+     * @param id          the ID of the dictionary.
+     * @param codeLengths the 256 code lengths indexed by the unsigned byte
+     *                    value.
+     * @throws IllegalArgumentException if the code lengths are invalid.
+     */
+    public HuffmanDictionary(int id, int[] codeLengths) {
+        if (codeLengths.length != FrequencyTable.ALPHABET_SIZE) {
+            throw new IllegalArgumentException(
+            "Expected " + FrequencyTable.ALPHABET_SIZE +
+            " code lengths, received " + codeLengths.length + ".");
+        }
+
+        System.arraycopy(codeLengths,
+                         0,
+                         this.codeLengths,
+                         0,
+                         FrequencyTable.ALPHABET_SIZE);
+        CanonicalHuffmanCode.assignCodeWords(this.codeLengths, codeWords);
+        decodingTable.build(codeWords, this.codeLengths);
+
+        int minimumCodeLength = Integer.MAX_VALUE;
+        int maximumCodeLength = 0;
+
+        for (int codeLength : this.codeLengths) {
+            if (codeLength != 0) {
+                minimumCodeLength = Math.min(minimumCodeLength, codeLength);
+                maximumCodeLength = Math.max(maximumCodeLength, codeLength);
+            }
+        }
+
+        this.id = id;
+        this.minimumCodeLength = minimumCodeLength;
+        this.maximumCodeLength = maximumCodeLength;
+    }
+
+    /**
+     * Trains a dictionary on the concatenation of {@code samples} with the
+     * default maximum code length.
+     *
+     * @param id      the ID of the dictionary.
+     * @param samples the sample messages.
+     * @return the trained dictionary.
+     */
+    public static HuffmanDictionary train(int id, byte[]... samples) {
+        long[] frequencies = new long[FrequencyTable.ALPHABET_SIZE];
+        int[] counterLanes =
+                new int[ByteCountComputer.COUNTER_LANES
+                        * FrequencyTable.ALPHABET_SIZE];
+
+        for (byte[] sample : samples) {
+            ByteCountComputer.countSequentially(sample,
+                                                0,
+                                                sample.length,
+                                                frequencies,
+                                                counterLanes);
+        }
+
+        return train(id,
+                     new FrequencyTable(frequencies),
+                     HuffmanBlockCodec.DEFAULT_MAX_CODE_LENGTH);
+    }
+
+    /**
+     * Trains a dictionary on the byte frequencies of a sample corpus, limiting
+     * the code words to {@code maxCodeLength} bits.
+     *
+     * @param id                the ID of the dictionary.
+     * @param sampleFrequencies the byte frequencies of the samples.
+     * @param maxCodeLength     the maximum code length, at least 8 and at
+     *                          most 64.
+     * @return the trained dictionary.
+     */
+    public static HuffmanDictionary train(int id,
+                                          FrequencyTable sampleFrequencies,
+                                          int maxCodeLength) {
+        HuffmanBlockCodec.checkMaxCodeLength(maxCodeLength);
+        long[] frequencies = sampleFrequencies.toArray();
+
+        for (int i = 0; i != FrequencyTable.ALPHABET_SIZE; ++i) {
+            ++frequencies[i];
+        }
+
+        HuffmanCodeBuilder codeBuilder = new HuffmanCodeBuilder();
+        codeBuilder.build(frequencies, maxCodeLength);
+        return new HuffmanDictionary(id, codeBuilder.codeLengths);
+    }
+
+    /**
+     * Returns the ID of this dictionary.
+     *
+     * @return the dictionary ID.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns a copy of the code lengths indexed by the unsigned byte value.
+     *
+     * @return the code lengths.
+     */
+    public int[] getCodeLengths() {
+        return codeLengths.clone();
+    }
+
+    /**
+     * Writes this dictionary in the dictionary file format.
+     *
+     * @param out the target stream.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(toByteArray());
+    }
+
+    /**
+     * Returns this dictionary in the dictionary file format.
+     *
+     * @return the dictionary file contents.
+     */
+    public byte[] toByteArray() {
+        byte[] data =
+                new byte[BYTES_PER_FILE_HEADER
+                         + HuffmanSerializer.computeCodeLengthsSize(
+                                 codeLengths)];
+        System.arraycopy(MAGIC_DICTIONARY,
+                         0,
+                         data,
+                         0,
+                         MAGIC_DICTIONARY.length);
+        data[MAGIC_DICTIONARY.length] = (byte) VERSION;
+        HuffmanBlockCodec.writeInt(data, MAGIC_DICTIONARY.length + 1, id);
+        HuffmanSerializer.emitCodeLengths(data,
+                                          BYTES_PER_FILE_HEADER,
+                                          codeLengths);
+        return data;
+    }
+
+    /**
+     * Reads a dictionary in the dictionary file format from {@code in}. No
+     * byte past the dictionary is consumed.
+     *
+     * @param in the stream to read from.
+     * @return the dictionary.
+     * @throws IOException            if reading fails.
+     * @throws InvalidFormatException if the dictionary is malformed.
+     */
+    public static HuffmanDictionary readFrom(InputStream in)
+            throws IOException {
+        byte[] buffer =
+                new byte[BYTES_PER_FILE_HEADER
+                         + HuffmanSerializer.MAX_CODE_LENGTHS_SIZE];
+        InputStreams.readFully(in, buffer, 0, BYTES_PER_FILE_HEADER);
+
+        for (int i = 0; i != MAGIC_DICTIONARY.length; ++i) {
+            if (buffer[i] != MAGIC_DICTIONARY[i]) {
+                throw new InvalidFormatException(
+                        "Bad dictionary type signature.");
+            }
+        }
+
+        int version = Byte.toUnsignedInt(buffer[MAGIC_DICTIONARY.length]);
+
+        if (version != VERSION) {
+            throw new InvalidFormatException(
+            "Unsupported dictionary version: " + version + ".");
+        }
+
+        int id = HuffmanBlockCodec.readInt(buffer,
+                                           MAGIC_DICTIONARY.length + 1);
+        int[] codeLengths = new int[FrequencyTable.ALPHABET_SIZE];
+        HuffmanDeserializer.readCodeLengths(in,
+                                            buffer,
+                                            BYTES_PER_FILE_HEADER,
+                                            codeLengths);
+
+        try {
+            return new HuffmanDictionary(id, codeLengths);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidFormatException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Reads a dictionary from the dictionary file contents {@code data}.
+     *
+     * @param data the dictionary file contents.
+     * @return the dictionary.
+     * @throws InvalidFormatException if the dictionary is malformed.
+     */
+    public static HuffmanDictionary fromByteArray(byte[] data) {
+        ByteArrayInputStream in = new ByteArrayInputStream(data);
+        HuffmanDictionary dictionary;
+
+        try {
+            dictionary = readFrom(in);
+        } catch (EOFException ex) {
+            throw new InvalidFormatException("Truncated dictionary.");
+        } catch (IOException ex) {
+            // A byte array stream does not throw anything else.
+            throw new IllegalStateException(ex);
+        }
+
+        if (in.available() != 0) {
+            throw new InvalidFormatException(
+                    "Trailing bytes after the dictionary.");
+        }
+
+        return dictionary;
+    }
+
+    /**
+     * Returns the ID of the dictionary a compressed message was compressed
+     * with, so that the receiver can pick the dictionary.
+     *
+     * @param data   the array holding the compressed message.
+     * @param offset the index of the first byte of the compressed message.
+     * @param length the number of bytes in the compressed message.
+     * @return the dictionary ID.
+     * @throws InvalidFormatException if the message is too short.
+     */
+    public static int readId(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || length > data.length - offset) {
+            throw new IndexOutOfBoundsException(
+            "Bad range: offset " + offset + ", length " + length + ".");
+        }
+
+        if (length < BYTES_PER_MESSAGE_HEADER) {
+            throw new InvalidFormatException(
+                    "No message header. The message is too short.");
+        }
+
+        return HuffmanBlockCodec.readInt(data, offset);
+    }
+}
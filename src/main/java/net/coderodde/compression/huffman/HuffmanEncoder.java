@@ -1,16 +1,27 @@
 package net.coderodde.compression.huffman;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Map;
 
 /**
  * This class provides a method for encoding the given text using a particular
- * encoder map.
+ * encoder map or code table. The code words are collected in a 64-bit 
+ * accumulator, and only the filled accumulator words are appended to the
+ * output, which is allocated once with the exact length computed from the
+ * byte frequencies and the code lengths.
  * 
  * @author Rodion "rodde" Efremov
- * @version 1.61 (Nov 19, 2016)
+ * @version 1.7 (Oct 17, 2026)
  */
 public final class HuffmanEncoder {
 
+    /**
+     * The number of filled accumulator words collected before they are 
+     * appended to the output bit string.
+     */
+    private static final int WORD_BUFFER_LENGTH = 1024;
+
     /**
      * Encodes the input text {@code text} using the encoder map 
      * {@code encoderMap}.
@@ -20,15 +31,409 @@ public final class HuffmanEncoder {
      * @return a bit string representing the encoded text.
      */
     public BitString encode(Map<Byte, BitString> map, byte[] text) {
-        BitString outputBitString = new BitString();
-        int textLength = text.length;
+        return encode(map, text, 0, text.length);
+    }
+
+    /**
+     * Encodes the range {@code text[offset], ..., text[offset + length - 1]}
+     * using the encoder map {@code encoderMap}.
+     * 
+     * @param map    the encoder map.
+     * @param text   the text to encode.
+     * @param offset the index of the first byte to encode.
+     * @param length the number of bytes to encode.
+     * @return a bit string representing the encoded text.
+     */
+    public BitString encode(Map<Byte, BitString> map, 
+                            byte[] text, 
+                            int offset, 
+                            int length) {
+        return encode(CodeTable.fromEncodingMap(map), text, offset, length);
+    }
+
+    /**
+     * Encodes the input text {@code text} using the code table 
+     * {@code codeTable}.
+     * 
+     * @param codeTable the code table.
+     * @param text      the text to encode.
+     * @return a bit string representing the encoded text.
+     */
+    public BitString encode(CodeTable codeTable, byte[] text) {
+        return encode(codeTable, text, 0, text.length);
+    }
+
+    /**
+     * Encodes the range {@code text[offset], ..., text[offset + length - 1]}
+     * using the code table {@code codeTable}.
+     * 
+     * @param codeTable the code table.
+     * @param text      the text to encode.
+     * @param offset    the index of the first byte to encode.
+     * @param length    the number of bytes to encode.
+     * @return a bit string representing the encoded text.
+     */
+    public BitString encode(CodeTable codeTable,
+                            byte[] text, 
+                            int offset, 
+                            int length) {
+        return encode(codeTable,
+                      new ByteCountComputer()
+                              .computeFrequencyTable(text, offset, length),
+                      text,
+                      offset,
+                      length);
+    }
+
+    /**
+     * Encodes the range {@code text[offset], ..., text[offset + length - 1]}
+     * using the code table {@code codeTable}. The frequency table of the range
+     * gives the exact length of the output, so the bit string is allocated
+     * only once.
+     * 
+     * @param codeTable      the code table.
+     * @param frequencyTable the byte frequencies of the range.
+     * @param text           the text to encode.
+     * @param offset         the index of the first byte to encode.
+     * @param length         the number of bytes to encode.
+     * @return a bit string representing the encoded text.
+     */
+    public BitString encode(CodeTable codeTable,
+                            FrequencyTable frequencyTable,
+                            byte[] text, 
+                            int offset, 
+                            int length) {
+        BitString output = 
+                new BitString(codeTable.computeEncodedLength(frequencyTable));
+        long[] codeWords = codeTable.codeWords;
+        int[] codeLengths = codeTable.codeLengths;
+        long[] buffer = new long[WORD_BUFFER_LENGTH];
+        int bufferSize = 0;
+        long accumulator = 0L;
+        int accumulatorBits = 0;
+        int textEnd = offset + length;
+
+        for (int index = offset; index != textEnd; ++index) {
+            int symbol = text[index] & 0xff;
+            int codeLength = codeLengths[symbol];
+
+            if (codeLength == 0) {
+                throw noCodeWord(symbol);
+            }
+
+            long codeWord = codeWords[symbol];
+            accumulator |= codeWord << accumulatorBits;
+            accumulatorBits += codeLength;
+
+            if (accumulatorBits >= Long.SIZE) {
+                buffer[bufferSize++] = accumulator;
+                accumulatorBits -= Long.SIZE;
+                accumulator = leftover(codeWord, codeLength, accumulatorBits);
+
+                if (bufferSize == WORD_BUFFER_LENGTH) {
+                    output.appendWords(buffer, bufferSize);
+                    bufferSize = 0;
+                }
+            }
+        }
+
+        output.appendWords(buffer, bufferSize);
+        output.appendBits(accumulator, accumulatorBits);
+        return output;
+    }
+
+    /**
+     * Encodes the range {@code text[offset], ..., text[offset + length - 1]}
+     * directly into the array {@code output} starting at the index 
+     * {@code outputOffset}, laid out as by {@link BitString#toByteArray()}: 
+     * the last byte is padded with zero bits. Nothing is allocated, so that 
+     * the caller may reuse both arrays.
+     * 
+     * @param codeWords    the code words indexed by the unsigned byte value.
+     * @param codeLengths  the code lengths indexed by the unsigned byte value.
+     * @param text         the text to encode.
+     * @param offset       the index of the first byte to encode.
+     * @param length       the number of bytes to encode.
+     * @param output       the array with room for the encoded bytes.
+     * @param outputOffset the index of the first encoded byte.
+     * @return the number of encoded bits.
+     */
+    static long encode(long[] codeWords,
+                       int[] codeLengths,
+                       byte[] text,
+                       int offset,
+                       int length,
+                       byte[] output,
+                       int outputOffset) {
+        long numberOfBits = encode(codeWords,
+                                   codeLengths,
+                                   text,
+                                   offset,
+                                   length,
+                                   output,
+                                   outputOffset,
+                                   output.length);
+
+        if (numberOfBits < 0L) {
+            throw new IndexOutOfBoundsException(
+                    "The output array has no room for the encoded text.");
+        }
+
+        return numberOfBits;
+    }
+
+    /**
+     * Encodes the range {@code text[offset], ..., text[offset + length - 1]}
+     * as {@link #encode(long[], int[], byte[], int, int, byte[], int)} does,
+     * yet gives up as soon as the encoded bytes would reach past the index 
+     * {@code outputEnd}. This lets the caller try a code that is not 
+     * guaranteed to fit, such as one built from estimated frequencies.
+     * 
+     * @param codeWords    the code words indexed by the unsigned byte value.
+     * @param codeLengths  the code lengths indexed by the unsigned byte value.
+     * @param text         the text to encode.
+     * @param offset       the index of the first byte to encode.
+     * @param length       the number of bytes to encode.
+     * @param output       the array receiving the encoded bytes.
+     * @param outputOffset the index of the first encoded byte.
+     * @param outputEnd    the index past the last byte that may be written.
+     * @return the number of encoded bits, or -1 if they do not fit.
+     */
+    static long encode(long[] codeWords,
+                       int[] codeLengths,
+                       byte[] text,
+                       int offset,
+                       int length,
+                       byte[] output,
+                       int outputOffset,
+                       int outputEnd) {
+        int outputIndex = outputOffset;
+        int wordLimit = outputEnd - Long.BYTES;
+        long accumulator = 0L;
+        int accumulatorBits = 0;
+        int textEnd = offset + length;
+
+        for (int index = offset; index != textEnd; ++index) {
+            int symbol = text[index] & 0xff;
+            int codeLength = codeLengths[symbol];
+
+            if (codeLength == 0) {
+                throw noCodeWord(symbol);
+            }
+
+            long codeWord = codeWords[symbol];
+            accumulator |= codeWord << accumulatorBits;
+            accumulatorBits += codeLength;
+
+            if (accumulatorBits >= Long.SIZE) {
+                if (outputIndex > wordLimit) {
+                    return -1L;
+                }
 
-        for (int index = 0; index != textLength; ++index) {
-            byte currentByte = text[index];
-            BitString codeWord = map.get(currentByte);
-            outputBitString.appendBitsFrom(codeWord);
+                writeLong(output, outputIndex, accumulator);
+                outputIndex += Long.BYTES;
+                accumulatorBits -= Long.SIZE;
+                accumulator = leftover(codeWord, codeLength, accumulatorBits);
+            }
         }
 
-        return outputBitString;
+        long numberOfBits = 
+                (long)(outputIndex - outputOffset) * Byte.SIZE 
+                + accumulatorBits;
+
+        if ((accumulatorBits + Byte.SIZE - 1) / Byte.SIZE 
+                > outputEnd - outputIndex) {
+            return -1L;
+        }
+
+        for (; accumulatorBits > 0; accumulatorBits -= Byte.SIZE) {
+            output[outputIndex++] = (byte) accumulator;
+            accumulator >>>= Byte.SIZE;
+        }
+
+        return numberOfBits;
+    }
+
+    /**
+     * Encodes the range {@code text[offset], ..., text[offset + length - 1]}
+     * with a code table selected by the preceding byte of each byte. The code
+     * of the byte {@code b} preceded by the byte {@code c} is at the index
+     * {@code tableOffsets[c] + b} of {@code codeWords} and
+     * {@code codeLengths}. The first byte is coded as if preceded by zero.
+     *
+     * @param codeWords    the code words of all the tables.
+     * @param codeLengths  the code lengths of all the tables.
+     * @param tableOffsets the index of the table of each preceding byte.
+     * @param text         the text to encode.
+     * @param offset       the index of the first byte to encode.
+     * @param length       the number of bytes to encode.
+     * @param output       the array with room for the encoded bytes.
+     * @param outputOffset the index of the first encoded byte.
+     * @return the number of encoded bits.
+     */
+    static long encode(long[] codeWords,
+                       int[] codeLengths,
+                       int[] tableOffsets,
+                       byte[] text,
+                       int offset,
+                       int length,
+                       byte[] output,
+                       int outputOffset) {
+        int outputIndex = outputOffset;
+        long accumulator = 0L;
+        int accumulatorBits = 0;
+        int textEnd = offset + length;
+        int context = 0;
+
+        for (int index = offset; index != textEnd; ++index) {
+            int symbol = text[index] & 0xff;
+            int codeIndex = tableOffsets[context] + symbol;
+            int codeLength = codeLengths[codeIndex];
+
+            if (codeLength == 0) {
+                throw noCodeWord(symbol);
+            }
+
+            long codeWord = codeWords[codeIndex];
+            accumulator |= codeWord << accumulatorBits;
+            accumulatorBits += codeLength;
+            context = symbol;
+
+            if (accumulatorBits >= Long.SIZE) {
+                writeLong(output, outputIndex, accumulator);
+                outputIndex += Long.BYTES;
+                accumulatorBits -= Long.SIZE;
+                accumulator = leftover(codeWord, codeLength, accumulatorBits);
+            }
+        }
+
+        long numberOfBits =
+                (long)(outputIndex - outputOffset) * Byte.SIZE
+                + accumulatorBits;
+
+        for (; accumulatorBits > 0; accumulatorBits -= Byte.SIZE) {
+            output[outputIndex++] = (byte) accumulator;
+            accumulator >>>= Byte.SIZE;
+        }
+
+        return numberOfBits;
+    }
+
+    /**
+     * Encodes the bytes between the position and the limit of the buffer 
+     * {@code text} using the code table {@code codeTable}. The bytes are read 
+     * in place and the position of {@code text} is not changed.
+     * 
+     * @param codeTable the code table.
+     * @param text      the text to encode.
+     * @return a bit string representing the encoded text.
+     */
+    public BitString encode(CodeTable codeTable, ByteBuffer text) {
+        return encode(codeTable,
+                      new ByteCountComputer().computeFrequencyTable(text),
+                      text);
+    }
+
+    /**
+     * Encodes the bytes between the position and the limit of the buffer 
+     * {@code text} using the code table {@code codeTable}. The bytes are read 
+     * in place and the position of {@code text} is not changed. The frequency
+     * table of the bytes gives the exact length of the output, so the bit 
+     * string is allocated only once.
+     * 
+     * @param codeTable      the code table.
+     * @param frequencyTable the byte frequencies of the text.
+     * @param text           the text to encode.
+     * @return a bit string representing the encoded text.
+     */
+    public BitString encode(CodeTable codeTable, 
+                            FrequencyTable frequencyTable,
+                            ByteBuffer text) {
+        BitString output = 
+                new BitString(codeTable.computeEncodedLength(frequencyTable));
+        long[] codeWords = codeTable.codeWords;
+        int[] codeLengths = codeTable.codeLengths;
+        long[] buffer = new long[WORD_BUFFER_LENGTH];
+        int bufferSize = 0;
+        long accumulator = 0L;
+        int accumulatorBits = 0;
+        ByteBuffer littleEndianText = 
+                text.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int index = text.position();
+        int textEnd = text.limit();
+
+        // Fetch eight bytes at a time and encode them in the text order:
+        for (; index + Long.BYTES <= textEnd; index += Long.BYTES) {
+            long bytes = littleEndianText.getLong(index);
+
+            for (int i = 0; i != Long.BYTES; ++i) {
+                int symbol = (int)(bytes >>> (Byte.SIZE * i)) & 0xff;
+                int codeLength = codeLengths[symbol];
+
+                if (codeLength == 0) {
+                    throw noCodeWord(symbol);
+                }
+
+                long codeWord = codeWords[symbol];
+                accumulator |= codeWord << accumulatorBits;
+                accumulatorBits += codeLength;
+
+                if (accumulatorBits >= Long.SIZE) {
+                    buffer[bufferSize++] = accumulator;
+                    accumulatorBits -= Long.SIZE;
+                    accumulator = 
+                            leftover(codeWord, codeLength, accumulatorBits);
+
+                    if (bufferSize == WORD_BUFFER_LENGTH) {
+                        output.appendWords(buffer, bufferSize);
+                        bufferSize = 0;
+                    }
+                }
+            }
+        }
+
+        output.appendWords(buffer, bufferSize);
+        output.appendBits(accumulator, accumulatorBits);
+
+        for (; index != textEnd; ++index) {
+            int symbol = text.get(index) & 0xff;
+            int codeLength = codeLengths[symbol];
+
+            if (codeLength == 0) {
+                throw noCodeWord(symbol);
+            }
+
+            output.appendBits(codeWords[symbol], codeLength);
+        }
+
+        return output;
+    }
+
+    /**
+     * Returns the {@code remainingBits} highest bits of the 
+     * {@code codeLength}-bit code word {@code codeWord}, which did not fit in
+     * the flushed accumulator. Shifting in two steps yields zero when no bits
+     * remain, even for a 64-bit code word.
+     */
+    private static long leftover(long codeWord, 
+                                 int codeLength, 
+                                 int remainingBits) {
+        return (codeWord >>> 1) >>> (codeLength - remainingBits - 1);
+    }
+
+    private static void writeLong(byte[] output, int index, long value) {
+        output[index]     = (byte)  value;
+        output[index + 1] = (byte) (value >>> 8);
+        output[index + 2] = (byte) (value >>> 16);
+        output[index + 3] = (byte) (value >>> 24);
+        output[index + 4] = (byte) (value >>> 32);
+        output[index + 5] = (byte) (value >>> 40);
+        output[index + 6] = (byte) (value >>> 48);
+        output[index + 7] = (byte) (value >>> 56);
+    }
+
+    private static IllegalArgumentException noCodeWord(int symbol) {
+        return new IllegalArgumentException(
+                "No code word for byte " + (byte) symbol + ".");
     }
 }
@@ -0,0 +1,205 @@
+package net.coderodde.compression.huffman;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class implements an input stream decompressing the data produced by
+ * {@link HuffmanOutputStream}. Only one block is held in memory at a time.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class HuffmanInputStream extends FilterInputStream {
+
+    /**
+     * Holds the raw frame header of the next block.
+     */
+    private final byte[] frameHeaderBuffer =
+            new byte[HuffmanBlockCodec.BYTES_PER_FRAME_HEADER];
+
+    /**
+     * Holds the parsed frame header of the next block.
+     */
+    private final HuffmanBlockCodec.FrameHeader frameHeader = 
+            new HuffmanBlockCodec.FrameHeader();
+
+    /**
+     * Holds the body of the current block.
+     */
+    private byte[] body = new byte[0];
+
+    /**
+     * Holds the decoded data of the current block.
+     */
+    private byte[] block = new byte[0];
+
+    /**
+     * The number of decoded bytes in {@code block}.
+     */
+    private int blockLength;
+
+    /**
+     * The index of the next byte to return from {@code block}.
+     */
+    private int blockPosition;
+
+    /**
+     * Whether the end of stream marker has been read.
+     */
+    private boolean endOfStream;
+
+    /**
+     * Whether each frame is followed by the checksum of its block.
+     */
+    private final boolean checksummed;
+
+    /**
+     * Decodes the blocks.
+     */
+    private final HuffmanBlockCodec codec = new HuffmanBlockCodec();
+
+    /**
+     * Constructs a decompressing stream and reads the stream header.
+     *
+     * @param in the stream providing the compressed data.
+     * @throws IOException if reading the header fails.
+     * @throws InvalidFormatException if the stream signature is bad.
+     */
+    public HuffmanInputStream(InputStream in) throws IOException {
+        super(in);
+        checksummed = (HuffmanBlockCodec.readStreamHeader(in) 
+                       & HuffmanBlockCodec.CHECKSUMMED_STREAM) != 0;
+    }
+
+    /**
+     * Tells whether {@code in} starts with the signature of the stream format.
+     * The stream {@code in} must support marking, and no bytes are consumed.
+     *
+     * @param in the stream to check.
+     * @return {@code true} if the stream format signature is present.
+     * @throws IOException if the I/O fails.
+     */
+    public static boolean hasStreamSignature(InputStream in)
+            throws IOException {
+        return HuffmanBlockCodec.hasSignature(in, 
+                                              HuffmanBlockCodec.MAGIC_STREAM);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (blockPosition == blockLength && !readBlock()) {
+            return -1;
+        }
+
+        return Byte.toUnsignedInt(block[blockPosition++]);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > buffer.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (length == 0) {
+            return 0;
+        }
+
+        if (blockPosition == blockLength && !readBlock()) {
+            return -1;
+        }
+
+        int chunkLength = Math.min(length, blockLength - blockPosition);
+        System.arraycopy(block, blockPosition, buffer, offset, chunkLength);
+        blockPosition += chunkLength;
+        return chunkLength;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0L;
+
+        while (skipped < n) {
+            if (blockPosition == blockLength && !readBlock()) {
+                break;
+            }
+
+            int chunkLength = (int) Math.min(n - skipped,
+                                             blockLength - blockPosition);
+            blockPosition += chunkLength;
+            skipped += chunkLength;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return blockLength - blockPosition;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {}
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported.");
+    }
+
+    /**
+     * Reads and decodes the next non-empty block.
+     *
+     * @return {@code false} if the end of the stream is reached.
+     */
+    private boolean readBlock() throws IOException {
+        while (!endOfStream) {
+            if (!HuffmanBlockCodec.readFrameHeader(in, 
+                                                   frameHeaderBuffer, 
+                                                   frameHeader)) {
+                endOfStream = true;
+                return false;
+            }
+
+            int uncompressedLength = frameHeader.uncompressedLength;
+            int bodyLength = frameHeader.bodyLength;
+
+            if (body.length < bodyLength) {
+                body = new byte[bodyLength];
+            }
+
+            if (block.length < uncompressedLength) {
+                block = new byte[uncompressedLength];
+            }
+
+            InputStreams.readFully(in, body, 0, bodyLength);
+            codec.decodeBlockBody(frameHeader.blockType,
+                                  body,
+                                  bodyLength,
+                                  block,
+                                  uncompressedLength);
+
+            if (checksummed) {
+                codec.verifyChecksum(
+                        HuffmanBlockCodec.readChecksum(in, frameHeaderBuffer),
+                        block,
+                        0,
+                        uncompressedLength);
+            }
+
+            blockLength = uncompressedLength;
+            blockPosition = 0;
+
+            if (blockLength > 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,205 @@
+package net.coderodde.compression.huffman;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class implements an output stream compressing the data written to it.
+ * The data is buffered into blocks of a fixed size, and each block is coded
+ * independently with its own canonical Huffman code. This way, the memory
+ * usage is bounded by the block size no matter how much data is written.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class HuffmanOutputStream extends FilterOutputStream {
+
+    /**
+     * Buffers the data of the current block.
+     */
+    private final byte[] block;
+
+    /**
+     * The number of bytes in {@code block}.
+     */
+    private int blockLength;
+
+    /**
+     * Receives the frame of the current block. 
+     */
+    private final byte[] frame;
+
+    /**
+     * Encodes the blocks.
+     */
+    private final HuffmanBlockCodec codec;
+
+    /**
+     * Whether the end of stream marker is already written.
+     */
+    private boolean finished;
+
+    /**
+     * Constructs a compressing stream with the default block size.
+     *
+     * @param out the stream receiving the compressed data.
+     * @throws IOException if writing the stream header fails.
+     */
+    public HuffmanOutputStream(OutputStream out) throws IOException {
+        this(out, HuffmanBlockCodec.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructs a compressing stream.
+     *
+     * @param out       the stream receiving the compressed data.
+     * @param blockSize the number of bytes in an uncompressed block.
+     * @throws IOException if writing the stream header fails.
+     */
+    public HuffmanOutputStream(OutputStream out, int blockSize)
+            throws IOException {
+        this(out, blockSize, HuffmanBlockCodec.DEFAULT_MAX_CODE_LENGTH);
+    }
+
+    /**
+     * Constructs a compressing stream whose code words are at most 
+     * {@code maxCodeLength} bits long. The longer the limit, the closer the 
+     * codes are to the unconstrained Huffman codes, and the slower the 
+     * decoding of the blocks needing longer code words.
+     *
+     * @param out           the stream receiving the compressed data.
+     * @param blockSize     the number of bytes in an uncompressed block.
+     * @param maxCodeLength the maximum code length, at least 8 and at most 
+     *                      64.
+     * @throws IOException if writing the stream header fails.
+     */
+    public HuffmanOutputStream(OutputStream out, 
+                               int blockSize, 
+                               int maxCodeLength) throws IOException {
+        this(out, blockSize, maxCodeLength, false);
+    }
+
+    /**
+     * Constructs a compressing stream optionally splitting each block into
+     * four interleaved bit streams. The interleaved blocks are a few bytes 
+     * larger but decode faster, since the decoder advances the four streams
+     * in the same loop.
+     *
+     * @param out           the stream receiving the compressed data.
+     * @param blockSize     the number of bytes in an uncompressed block.
+     * @param maxCodeLength the maximum code length, at least 8 and at most 
+     *                      64.
+     * @param interleaved   whether to split the blocks into interleaved bit
+     *                      streams.
+     * @throws IOException if writing the stream header fails.
+     */
+    public HuffmanOutputStream(OutputStream out, 
+                               int blockSize, 
+                               int maxCodeLength,
+                               boolean interleaved) throws IOException {
+        super(out);
+
+        if (blockSize <= 0 || blockSize > HuffmanBlockCodec.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException(
+            "The block size must be within [1, " +
+            HuffmanBlockCodec.MAX_BLOCK_SIZE + "]. Received " + blockSize +
+            ".");
+        }
+
+        this.block = new byte[blockSize];
+        this.frame = 
+                new byte[HuffmanBlockCodec.getMaximumFrameLength(blockSize)];
+        this.codec = new HuffmanBlockCodec(maxCodeLength, interleaved);
+        HuffmanBlockCodec.writeStreamHeader(
+                out, 
+                HuffmanBlockCodec.CHECKSUMMED_STREAM);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkNotFinished();
+        block[blockLength++] = (byte) b;
+
+        if (blockLength == block.length) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        checkNotFinished();
+
+        if (offset < 0 || length < 0 || length > data.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        while (length > 0) {
+            int chunkLength = Math.min(length, block.length - blockLength);
+            System.arraycopy(data, offset, block, blockLength, chunkLength);
+            blockLength += chunkLength;
+            offset += chunkLength;
+            length -= chunkLength;
+
+            if (blockLength == block.length) {
+                writeBlock();
+            }
+        }
+    }
+
+    /**
+     * Encodes the buffered data as a block and flushes the underlying stream.
+     * Frequent flushing produces short blocks and hurts the compression ratio.
+     *
+     * @throws IOException if the I/O fails.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!finished) {
+            writeBlock();
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Writes the remaining data and the end of stream marker without closing
+     * the underlying stream.
+     *
+     * @throws IOException if the I/O fails.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+
+        writeBlock();
+        out.write(HuffmanBlockCodec.END_OF_STREAM_BLOCK);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (blockLength == 0) {
+            return;
+        }
+
+        int frameLength = codec.encodeBlock(block, 0, blockLength, frame, 0);
+        out.write(frame, 0, frameLength);
+        blockLength = 0;
+    }
+
+    private void checkNotFinished() throws IOException {
+        if (finished) {
+            throw new IOException("The stream is already finished.");
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package net.coderodde.compression.huffman;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
 
 /**
@@ -7,7 +9,7 @@ import java.util.Map;
  * into a raw byte array.
  * 
  * @author Rodion "rodde" Efremov
- * @version 1.61 (Nov 19, 2016)
+ * @version 1.7 (Oct 17, 2026)
  */
 public final class HuffmanSerializer {
 
@@ -19,6 +21,43 @@ public final class HuffmanSerializer {
                                             (byte) 0x0D,
                                             (byte) 0xDE };
 
+    /**
+     * The magic file signature of the format storing only the code lengths of
+     * a canonical code.
+     */
+    static final byte[] MAGIC_CANONICAL = new byte[]{ (byte) 0xC0,
+                                                      (byte) 0xDE,
+                                                      (byte) 0x0D,
+                                                      (byte) 0xE2 };
+
+    /**
+     * The magic file signature of the canonical format with a 64-bit number of
+     * encoded text bits.
+     */
+    static final byte[] MAGIC_CANONICAL_64 = new byte[]{ (byte) 0xC0,
+                                                         (byte) 0xDE,
+                                                         (byte) 0x0D,
+                                                         (byte) 0xE4 };
+
+    /**
+     * The code lengths of at most this many code words are serialized as
+     * (byte, code length) pairs. Larger codes are serialized as a bitmap of 
+     * present bytes followed by their code lengths.
+     */
+    static final int MAX_SPARSE_CODE_LENGTH_ENTRIES = 32;
+
+    /**
+     * The number of bytes in the bitmap of present bytes.
+     */
+    static final int BYTES_PER_CODE_LENGTH_BITMAP = 32;
+
+    /**
+     * The maximum number of bytes in a code length table: the count, the 
+     * bitmap and the lengths of all the 256 bytes.
+     */
+    static final int MAX_CODE_LENGTHS_SIZE = 
+            1 + BYTES_PER_CODE_LENGTH_BITMAP + FrequencyTable.ALPHABET_SIZE;
+
     /**
      * The number of bytes it takes to serialize one mapping from a character
      * to its code word.
@@ -36,6 +75,17 @@ public final class HuffmanSerializer {
      */
     static final int BYTES_PER_BIT_COUNT_ENTRY = 4;
 
+    /**
+     * The number of bytes it takes to serialize the 64-bit number of bits in
+     * the actual encoded text.
+     */
+    static final int BYTES_PER_LONG_BIT_COUNT_ENTRY = 8;
+
+    /**
+     * The maximum length of a serialized array.
+     */
+    private static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
     /**
      * Produces a byte array holding the compressed text along with its 
      * encoder map.
@@ -46,15 +96,35 @@ public final class HuffmanSerializer {
      */
     public byte[] serialize(Map<Byte, Integer> countMap,
                             BitString encodedText) {
-        ByteList byteList = new ByteList(computeByteListSize(countMap, 
-                                                             encodedText));
+        return serialize(FrequencyTable.fromMap(countMap), encodedText);
+    }
+
+    /**
+     * Produces a byte array holding the compressed text along with its 
+     * frequency table in the legacy format.
+     * 
+     * @param frequencyTable the frequencies the encoding tree was built from.
+     * @param encodedText    the encoded text.
+     * @return an array of byte.
+     */
+    public byte[] serialize(FrequencyTable frequencyTable,
+                            BitString encodedText) {
+        if (encodedText.length() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+            "The legacy format supports at most " + Integer.MAX_VALUE +
+            " encoded bits.");
+        }
+
+        ByteList byteList = 
+                new ByteList(computeByteListSize(frequencyTable, 
+                                                 encodedText));
         // Emit the magic number:
         for (byte b : MAGIC) {
             byteList.appendByte(b);
         }
 
-        int numberOfCodeWords = countMap.size();
-        int numberOfBits = encodedText.length();
+        int numberOfCodeWords = frequencyTable.getNumberOfSymbols();
+        int numberOfBits = (int) encodedText.length();
 
         // Emit the number of code words.
         byteList.appendByte((byte) (numberOfCodeWords & 0xff));
@@ -69,9 +139,20 @@ public final class HuffmanSerializer {
         byteList.appendByte((byte)((numberOfBits >>= 8) & 0xff));
 
         // Emit the code words:
-        for (Map.Entry<Byte, Integer> entry : countMap.entrySet()) {
-            byte character = entry.getKey();
-            int frequency = entry.getValue();
+        for (int b = Byte.MIN_VALUE; b <= Byte.MAX_VALUE; ++b) {
+            long frequency64 = frequencyTable.frequencies[b & 0xff];
+
+            if (frequency64 == 0L) {
+                continue;
+            }
+
+            if (frequency64 > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                "The legacy format supports only 32-bit frequencies.");
+            }
+
+            byte character = (byte) b;
+            int frequency = (int) frequency64;
 
             // Emit the character:
             byteList.appendByte(character);
@@ -93,11 +174,161 @@ public final class HuffmanSerializer {
         return byteList.toByteArray();
     }
 
-    private int computeByteListSize(Map<Byte, Integer> frequencyMap,
+    /**
+     * Produces a byte array holding the compressed text along with the code
+     * lengths of the canonical code used for encoding it.
+     * 
+     * @param code        the canonical code used for encoding the text.
+     * @param encodedText the encoded text.
+     * @return an array of byte.
+     */
+    public byte[] serialize(CanonicalHuffmanCode code, BitString encodedText) {
+        long size = computeCanonicalHeaderSize(code)
+                  + encodedText.getNumberOfBytesOccupied();
+
+        if (size > MAX_ARRAY_LENGTH) {
+            throw new IllegalArgumentException(
+            "The serialized data does not fit in an array: " + size +
+            " bytes.");
+        }
+
+        ByteList byteList = new ByteList((int) size);
+        emitCanonicalHeader(byteList, code, encodedText);
+        byteList.appendBytes(encodedText.toByteArray());
+        return byteList.toByteArray();
+    }
+
+    /**
+     * Writes the compressed text along with the code lengths of the canonical
+     * code used for encoding it into the stream {@code out}. The output is the
+     * same as that of {@link #serialize(CanonicalHuffmanCode, BitString)}, yet
+     * it is not limited by the maximum length of an array.
+     * 
+     * @param code        the canonical code used for encoding the text.
+     * @param encodedText the encoded text.
+     * @param out         the target stream.
+     * @throws IOException if the I/O fails.
+     */
+    public void serialize(CanonicalHuffmanCode code,
+                          BitString encodedText,
+                          OutputStream out) throws IOException {
+        ByteList byteList = new ByteList(computeCanonicalHeaderSize(code));
+        emitCanonicalHeader(byteList, code, encodedText);
+        out.write(byteList.toByteArray());
+        encodedText.writeTo(out);
+    }
+
+    private static int computeCanonicalHeaderSize(CanonicalHuffmanCode code) {
+        return MAGIC_CANONICAL_64.length
+             + BYTES_PER_LONG_BIT_COUNT_ENTRY
+             + computeCodeLengthsSize(code.codeLengths);
+    }
+
+    private static void emitCanonicalHeader(ByteList byteList,
+                                            CanonicalHuffmanCode code,
+                                            BitString encodedText) {
+        byteList.appendBytes(MAGIC_CANONICAL_64);
+        byteList.appendLong(encodedText.length());
+        emitCodeLengths(byteList, code.codeLengths);
+    }
+
+    /**
+     * Emits the code length table. The first byte holds the number of code 
+     * words minus one. Up to {@link #MAX_SPARSE_CODE_LENGTH_ENTRIES} code words
+     * are emitted as (byte, code length) pairs; more code words are emitted as
+     * a 256-bit bitmap of present bytes followed by their code lengths in the
+     * ascending order of the bytes.
+     * 
+     * @param byteList    the target byte list.
+     * @param codeLengths the code lengths indexed by the unsigned byte value.
+     */
+    static void emitCodeLengths(ByteList byteList, int[] codeLengths) {
+        byte[] table = new byte[computeCodeLengthsSize(codeLengths)];
+        emitCodeLengths(table, 0, codeLengths);
+        byteList.appendBytes(table);
+    }
+
+    /**
+     * Emits the code length table as 
+     * {@link #emitCodeLengths(ByteList, int[])} does, yet into the array 
+     * {@code output} starting at the index {@code offset}.
+     * 
+     * @param output      the array with room for the table.
+     * @param offset      the index of the first byte of the table.
+     * @param codeLengths the code lengths indexed by the unsigned byte value.
+     * @return the index following the table.
+     */
+    static int emitCodeLengths(byte[] output, int offset, int[] codeLengths) {
+        int numberOfCodeWords = countCodeWords(codeLengths);
+        output[offset++] = (byte)(numberOfCodeWords - 1);
+
+        if (numberOfCodeWords <= MAX_SPARSE_CODE_LENGTH_ENTRIES) {
+            for (int symbol = 0; symbol != codeLengths.length; ++symbol) {
+                if (codeLengths[symbol] != 0) {
+                    output[offset++] = (byte) symbol;
+                    output[offset++] = (byte) codeLengths[symbol];
+                }
+            }
+
+            return offset;
+        }
+
+        for (int i = 0; i != BYTES_PER_CODE_LENGTH_BITMAP; ++i) {
+            int bitmapByte = 0;
+
+            for (int bit = 0; bit != Byte.SIZE; ++bit) {
+                if (codeLengths[i * Byte.SIZE + bit] != 0) {
+                    bitmapByte |= 1 << bit;
+                }
+            }
+
+            output[offset++] = (byte) bitmapByte;
+        }
+
+        for (int codeLength : codeLengths) {
+            if (codeLength != 0) {
+                output[offset++] = (byte) codeLength;
+            }
+        }
+
+        return offset;
+    }
+
+    /**
+     * Returns the number of bytes {@link #emitCodeLengths(ByteList, int[])} 
+     * emits.
+     * 
+     * @param codeLengths the code lengths.
+     * @return the size of the code length table in bytes.
+     */
+    static int computeCodeLengthsSize(int[] codeLengths) {
+        int numberOfCodeWords = countCodeWords(codeLengths);
+
+        if (numberOfCodeWords <= MAX_SPARSE_CODE_LENGTH_ENTRIES) {
+            return 1 + 2 * numberOfCodeWords;
+        }
+
+        return 1 + BYTES_PER_CODE_LENGTH_BITMAP + numberOfCodeWords;
+    }
+
+    private static int countCodeWords(int[] codeLengths) {
+        int numberOfCodeWords = 0;
+
+        for (int codeLength : codeLengths) {
+            if (codeLength != 0) {
+                ++numberOfCodeWords;
+            }
+        }
+
+        return numberOfCodeWords;
+    }
+
+    private int computeByteListSize(FrequencyTable frequencyTable,
                                     BitString encodedText) {
         return MAGIC.length + BYTES_PER_CODE_WORD_COUNT_ENTRY
                             + BYTES_PER_BIT_COUNT_ENTRY
-                            + frequencyMap.size() * BYTES_PER_WEIGHT_MAP_ENTRY 
-                            + encodedText.getNumberOfBytesOccupied();
+                            + frequencyTable.getNumberOfSymbols() 
+                            * BYTES_PER_WEIGHT_MAP_ENTRY 
+                            + (int) encodedText.getNumberOfBytesOccupied();
     }
 }
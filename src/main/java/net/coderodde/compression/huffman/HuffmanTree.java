@@ -1,5 +1,6 @@
 package net.coderodde.compression.huffman;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
@@ -9,7 +10,7 @@ import java.util.TreeMap;
  * This class implements a Huffman tree for building a prefix code.
  * 
  * @author Rodion "rodde" Efremov
- * @version 1.61 (Nov 19, 2016)
+ * @version 1.7 (Oct 17, 2026)
  */
 public final class HuffmanTree {
 
@@ -21,12 +22,12 @@ public final class HuffmanTree {
             implements Comparable<HuffmanTreeNode> {
 
         byte character;
-        int  frequency;
+        long frequency;
         boolean isLeaf;
         HuffmanTreeNode left;
         HuffmanTreeNode right;
 
-        HuffmanTreeNode(byte character, int frequency, boolean isLeaf) {
+        HuffmanTreeNode(byte character, long frequency, boolean isLeaf) {
             this.frequency = checkFrequency(frequency);
             this.isLeaf = isLeaf;
 
@@ -37,7 +38,7 @@ public final class HuffmanTree {
 
         @Override
         public int compareTo(HuffmanTreeNode o) {
-            int cmp = Integer.compare(frequency, o.frequency);
+            int cmp = Long.compare(frequency, o.frequency);
 
             if (cmp != 0) {
                 return cmp;
@@ -70,7 +71,7 @@ public final class HuffmanTree {
             return a > b ? a : b;
         }
 
-        private int checkFrequency(int frequency) {
+        private long checkFrequency(long frequency) {
             if (frequency <= 0) {
                 throw new IllegalArgumentException(
                 "The input byte frequency must be positive. Received " +
@@ -90,17 +91,32 @@ public final class HuffmanTree {
      * @param frequencyMap the map mapping each byte to its frequency.
      */
     public HuffmanTree(Map<Byte, Integer> frequencyMap) {
-        if (frequencyMap.isEmpty()) {
-            throw new IllegalArgumentException(
-                    "Compressor requires a non-empty text.");
-        }
+        this(FrequencyTable.fromMap(frequencyMap));
+    }
 
+    /**
+     * Constructs a Huffman tree from the byte frequencies 
+     * {@code frequencyTable}. The bytes with zero frequency are omitted.
+     * 
+     * @param frequencyTable the table mapping each byte to its frequency.
+     */
+    public HuffmanTree(FrequencyTable frequencyTable) {
         Queue<HuffmanTreeNode> queue = new PriorityQueue<>();
 
-        for (Map.Entry<Byte, Integer> entry : frequencyMap.entrySet()) {
-            queue.add(new HuffmanTreeNode(entry.getKey(),
-                                          entry.getValue(),
-                                          true));
+        // Add the leaves in the signed byte order, just like iterating a 
+        // 'TreeMap<Byte, Integer>' does, so that the trees of the legacy
+        // format are reconstructed exactly.
+        for (int b = Byte.MIN_VALUE; b <= Byte.MAX_VALUE; ++b) {
+            long frequency = frequencyTable.frequencies[b & 0xff];
+
+            if (frequency != 0L) {
+                queue.add(new HuffmanTreeNode((byte) b, frequency, true));
+            }
+        }
+
+        if (queue.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "Compressor requires a non-empty text.");
         }
 
         while (queue.size() > 1) {
@@ -140,12 +156,16 @@ public final class HuffmanTree {
     public Map<Byte, BitString> inferEncodingMap() {
         Map<Byte, BitString> map = new TreeMap<>();
 
-        if (root.isLeaf) {
-            // Corner case. Only one byte value in the text.
-            root.isLeaf = false;
-            root.left = new HuffmanTreeNode(root.character, 
-                                            1, 
-                                            true);
+        if (root.isLeaf || root.right == null) {
+            // Corner case. Only one byte value in the text. The root gets a
+            // single left child on the first call.
+            if (root.isLeaf) {
+                root.isLeaf = false;
+                root.left = new HuffmanTreeNode(root.character, 
+                                                1, 
+                                                true);
+            }
+
             BitString bs = new BitString();
             bs.appendBit(false);
             map.put(root.character, bs);
@@ -157,6 +177,92 @@ public final class HuffmanTree {
         return map;
     }
 
+    /**
+     * Constructs the code table from this tree. Unlike 
+     * {@link #inferEncodingMap()}, this method does not modify the tree.
+     * 
+     * @return the code table.
+     */
+    public CodeTable inferCodeTable() {
+        long[] codeWords = new long[FrequencyTable.ALPHABET_SIZE];
+        int[] codeLengths = new int[FrequencyTable.ALPHABET_SIZE];
+        inferCodeWords(codeWords, codeLengths);
+        return new CodeTable(codeWords, codeLengths);
+    }
+
+    /**
+     * Returns the code word lengths of this tree indexed by the unsigned byte
+     * value. The bytes not present in the tree receive the code length of 
+     * zero.
+     * 
+     * @return the array of 256 code lengths.
+     */
+    public int[] inferCodeLengths() {
+        long[] codeWords = new long[FrequencyTable.ALPHABET_SIZE];
+        int[] codeLengths = new int[FrequencyTable.ALPHABET_SIZE];
+        inferCodeWords(codeWords, codeLengths);
+        return codeLengths;
+    }
+
+    /**
+     * Infers the code words of this tree into primitive arrays indexed by the
+     * unsigned byte value. Bit {@code 0} of each code word is the first bit of
+     * the code word. The symbols not present in the tree receive the code 
+     * length of zero.
+     * 
+     * @param codeWords   the array for the code words.
+     * @param codeLengths the array for the code word lengths.
+     */
+    void inferCodeWords(long[] codeWords, int[] codeLengths) {
+        Arrays.fill(codeWords, 0L);
+        Arrays.fill(codeLengths, 0);
+
+        if (root.isLeaf) {
+            // Corner case. Only one byte value in the text, which is encoded
+            // with a single zero bit.
+            codeLengths[Byte.toUnsignedInt(root.character)] = 1;
+            return;
+        }
+
+        inferCodeWordsImpl(root, 0L, 0, codeWords, codeLengths);
+    }
+
+    private void inferCodeWordsImpl(HuffmanTreeNode currentTreeNode,
+                                    long currentCodeWord,
+                                    int currentCodeLength,
+                                    long[] codeWords,
+                                    int[] codeLengths) {
+        if (currentTreeNode == null) {
+            // The right child of the root in a one-byte tree after
+            // 'inferEncodingMap' has been called.
+            return;
+        }
+
+        if (currentTreeNode.isLeaf) {
+            int symbol = Byte.toUnsignedInt(currentTreeNode.character);
+            codeWords[symbol] = currentCodeWord;
+            codeLengths[symbol] = currentCodeLength;
+            return;
+        }
+
+        if (currentCodeLength == CodeTable.MAX_CODE_LENGTH) {
+            throw new IllegalStateException(
+                    "The Huffman tree is too deep.");
+        }
+
+        inferCodeWordsImpl(currentTreeNode.left, 
+                           currentCodeWord,
+                           currentCodeLength + 1,
+                           codeWords,
+                           codeLengths);
+
+        inferCodeWordsImpl(currentTreeNode.right,
+                           currentCodeWord | (1L << currentCodeLength),
+                           currentCodeLength + 1,
+                           codeWords,
+                           codeLengths);
+    }
+
     private void inferEncodingMapImpl(BitString currentCodeWord,
                                       HuffmanTreeNode currentTreeNode,
                                       Map<Byte, BitString> map) {
@@ -0,0 +1,42 @@
+package net.coderodde.compression.huffman;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class provides the stream reading helpers shared by the readers of 
+ * the serialized code tables, the block frames and the archives.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+final class InputStreams {
+
+    private InputStreams() {}
+
+    /**
+     * Reads exactly {@code length} bytes from {@code in} into 
+     * {@code buffer} starting at index {@code offset}.
+     *
+     * @param in     the stream to read.
+     * @param buffer the target array.
+     * @param offset the index of the first read byte in {@code buffer}.
+     * @param length the number of bytes to read.
+     * @throws EOFException if the stream ends prematurely.
+     * @throws IOException  if reading {@code in} fails.
+     */
+    static void readFully(InputStream in, byte[] buffer, int offset, int length)
+            throws IOException {
+        while (length > 0) {
+            int read = in.read(buffer, offset, length);
+
+            if (read < 0) {
+                throw new EOFException("Unexpected end of the stream.");
+            }
+
+            offset += read;
+            length -= read;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package net.coderodde.compression.huffman;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class maps a file into memory one window at a time. A file larger than
+ * the window, or larger than the maximum size of a single mapping, is mapped
+ * piecewise: whenever a requested range does not fit in the current window, a
+ * new window starting at the range is mapped. The slices handed out remain
+ * valid after the window moves on.
+ * <p>
+ * A window mapped in the read-write mode extends the file as needed; the
+ * caller truncates the file to its final length once done.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+final class MappedFileWindow {
+
+    /**
+     * The default number of bytes in a window.
+     */
+    static final long DEFAULT_WINDOW_SIZE = 1L << 30;
+
+    /**
+     * The mapped file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapping mode.
+     */
+    private final FileChannel.MapMode mode;
+
+    /**
+     * The number of bytes in a window, unless a single range is larger.
+     */
+    private final long windowSize;
+
+    /**
+     * The current window or {@code null} if nothing is mapped yet.
+     */
+    private MappedByteBuffer window;
+
+    /**
+     * The file position of the first byte of {@code window}.
+     */
+    private long windowStart;
+
+    /**
+     * Constructs a window over the file {@code channel}.
+     *
+     * @param channel    the file to map.
+     * @param mode       the mapping mode.
+     * @param windowSize the number of bytes in a window.
+     */
+    MappedFileWindow(FileChannel channel,
+                     FileChannel.MapMode mode,
+                     long windowSize) {
+        if (windowSize <= 0L || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+            "Bad window size: " + windowSize + ".");
+        }
+
+        this.channel = channel;
+        this.mode = mode;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Returns a little-endian buffer over the {@code length} bytes of the
+     * file starting at the position {@code position}. The returned buffer
+     * starts at index zero and has the capacity {@code length}.
+     *
+     * @param position the file position of the first byte.
+     * @param length   the number of bytes.
+     * @return the buffer over the range.
+     * @throws EOFException if a read-only file ends before the range does.
+     * @throws IOException  if the mapping fails.
+     */
+    ByteBuffer slice(long position, int length) throws IOException {
+        if (window == null
+                || position < windowStart
+                || position + length > windowStart + window.capacity()) {
+            map(position, length);
+        }
+
+        ByteBuffer slice = window.duplicate();
+        int sliceStart = (int)(position - windowStart);
+
+        // Cast to Buffer so that the code runs on Java 8 as well.
+        ((Buffer) slice).limit(sliceStart + length);
+        ((Buffer) slice).position(sliceStart);
+        return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void map(long position, int length) throws IOException {
+        long size = Math.max(windowSize, length);
+
+        if (mode == FileChannel.MapMode.READ_ONLY) {
+            long fileSize = channel.size();
+
+            if (position + length > fileSize) {
+                throw new EOFException("Unexpected end of the file.");
+            }
+
+            size = Math.min(size, fileSize - position);
+        }
+
+        window = channel.map(mode, position, size);
+        windowStart = position;
+    }
+}
@@ -0,0 +1,217 @@
+package net.coderodde.compression.huffman;
+
+/**
+ * This class computes optimal length-limited code lengths with the
+ * package-merge algorithm of Larmore and Hirschberg. The algorithm solves the
+ * problem as a coin collector's problem: each symbol contributes one coin of
+ * its frequency to each of the {@code L} denominations, the two cheapest coins
+ * of a denomination are repeatedly packaged into a coin of the next one, and
+ * the {@code 2n - 2} cheapest items of the last denomination are selected. The
+ * code length of a symbol is the number of its coins in the selection.
+ * <p>
+ * The lists of each denomination are kept as arrays of item indices; a package
+ * refers to the two items it was made of, so that the selected coins are
+ * counted by walking the packages at the end. An instance keeps these arrays
+ * between the calls, so that once they have grown, computing the code lengths
+ * allocates nothing.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+final class PackageMerge {
+
+    /**
+     * The weights of the items.
+     */
+    private long[] weights = new long[0];
+
+    /**
+     * The first item of each package.
+     */
+    private int[] firstParts = new int[0];
+
+    /**
+     * The second item of each package.
+     */
+    private int[] secondParts = new int[0];
+
+    /**
+     * The current list of items.
+     */
+    private int[] list = new int[0];
+
+    /**
+     * The list being merged.
+     */
+    private int[] nextList = new int[0];
+
+    /**
+     * The stack of items for counting the selected coins.
+     */
+    private int[] stack = new int[0];
+
+    /**
+     * Computes the code lengths minimizing the encoded length of a text with
+     * the byte frequencies {@code frequencyTable} under the constraint that no
+     * code word is longer than {@code maxCodeLength} bits. The bytes with
+     * zero frequency receive the code length of zero; a lone byte receives
+     * the code length of one.
+     *
+     * @param frequencyTable the byte frequencies.
+     * @param maxCodeLength  the maximum code length.
+     * @return the array of 256 code lengths indexed by the unsigned byte
+     *         value.
+     */
+    static int[] computeCodeLengths(FrequencyTable frequencyTable,
+                                    int maxCodeLength) {
+        long[] keys = new long[FrequencyTable.ALPHABET_SIZE];
+        int numberOfSymbols = 
+                HuffmanCodeBuilder.sortSymbols(frequencyTable.frequencies, 
+                                               keys);
+        int[] codeLengths = new int[FrequencyTable.ALPHABET_SIZE];
+        new PackageMerge().computeCodeLengths(keys,
+                                              numberOfSymbols,
+                                              maxCodeLength,
+                                              codeLengths);
+        return codeLengths;
+    }
+
+    /**
+     * Computes the length-limited code lengths of the symbols in 
+     * {@code keys} into {@code codeLengths}, which must be all zero.
+     *
+     * @param keys            the present symbols sorted as by 
+     *                        {@link HuffmanCodeBuilder#sortSymbols(long[], 
+     *                        long[])}.
+     * @param numberOfSymbols the number of present symbols.
+     * @param maxCodeLength   the maximum code length.
+     * @param codeLengths     the array receiving the code lengths indexed by
+     *                        the unsigned byte value.
+     */
+    void computeCodeLengths(long[] keys,
+                            int numberOfSymbols,
+                            int maxCodeLength,
+                            int[] codeLengths) {
+        if (maxCodeLength < 1 || maxCodeLength > CodeTable.MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException(
+            "The maximum code length must be within [1, " +
+            CodeTable.MAX_CODE_LENGTH + "]. Received " + maxCodeLength +
+            ".");
+        }
+
+        if (numberOfSymbols == 0) {
+            throw new IllegalArgumentException(
+                    "Compressor requires a non-empty text.");
+        }
+
+        if (maxCodeLength < Integer.SIZE - 1
+                && numberOfSymbols > (1 << maxCodeLength)) {
+            throw new IllegalArgumentException(
+            numberOfSymbols + " code words do not fit in " + maxCodeLength +
+            " bits.");
+        }
+
+        if (numberOfSymbols == 1) {
+            codeLengths[symbolOf(keys[0])] = 1;
+            return;
+        }
+
+        // Items 0, ..., n - 1 are the coins of the symbols in the order of
+        // increasing frequency. The packages are appended after them.
+        int listCapacity = 2 * numberOfSymbols - 2;
+        int itemCapacity = numberOfSymbols + maxCodeLength * numberOfSymbols;
+        ensureCapacity(itemCapacity, listCapacity, maxCodeLength + 1);
+        long[] weights = this.weights;
+        int[] firstParts = this.firstParts;
+        int[] secondParts = this.secondParts;
+        int[] list = this.list;
+        int[] nextList = this.nextList;
+        int numberOfItems = numberOfSymbols;
+
+        for (int i = 0; i != numberOfSymbols; ++i) {
+            weights[i] = keys[i] >>> Byte.SIZE;
+        }
+
+        int listSize = 0;
+
+        for (int denomination = 0;
+                denomination != maxCodeLength;
+                ++denomination) {
+            // Merge the coins with the packages made of the previous list.
+            // Only the first 2n - 2 items of a list may ever be selected.
+            int numberOfPackages = listSize / 2;
+            int coinIndex = 0;
+            int packageIndex = 0;
+            int nextListSize = 0;
+
+            while (nextListSize != listCapacity
+                    && (coinIndex != numberOfSymbols
+                        || packageIndex != numberOfPackages)) {
+                long packageWeight = Long.MAX_VALUE;
+
+                if (packageIndex != numberOfPackages) {
+                    packageWeight = weights[list[2 * packageIndex]]
+                                  + weights[list[2 * packageIndex + 1]];
+                }
+
+                if (coinIndex != numberOfSymbols
+                        && weights[coinIndex] <= packageWeight) {
+                    nextList[nextListSize++] = coinIndex++;
+                } else {
+                    weights[numberOfItems] = packageWeight;
+                    firstParts[numberOfItems] = list[2 * packageIndex];
+                    secondParts[numberOfItems] = list[2 * packageIndex + 1];
+                    nextList[nextListSize++] = numberOfItems++;
+                    ++packageIndex;
+                }
+            }
+
+            int[] tmp = list;
+            list = nextList;
+            nextList = tmp;
+            listSize = nextListSize;
+        }
+
+        // Count the coins of each symbol in the selected items:
+        int[] stack = this.stack;
+
+        for (int i = 0; i != listSize; ++i) {
+            int stackSize = 0;
+            stack[stackSize++] = list[i];
+
+            while (stackSize != 0) {
+                int item = stack[--stackSize];
+
+                if (item < numberOfSymbols) {
+                    ++codeLengths[symbolOf(keys[item])];
+                } else {
+                    stack[stackSize++] = firstParts[item];
+                    stack[stackSize++] = secondParts[item];
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int itemCapacity,
+                                int listCapacity,
+                                int stackCapacity) {
+        if (weights.length < itemCapacity) {
+            weights = new long[itemCapacity];
+            firstParts = new int[itemCapacity];
+            secondParts = new int[itemCapacity];
+        }
+
+        if (list.length < listCapacity) {
+            list = new int[listCapacity];
+            nextList = new int[listCapacity];
+        }
+
+        if (stack.length < stackCapacity) {
+            stack = new int[stackCapacity];
+        }
+    }
+
+    private static int symbolOf(long key) {
+        return (int) key & 0xff;
+    }
+}
@@ -0,0 +1,1368 @@
+package net.coderodde.compression.huffman;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class compresses and decompresses the stream format of
+ * {@link HuffmanOutputStream} using several threads. Since the blocks of the
+ * stream are independent, they are coded concurrently on a fork/join pool.
+ * The stream variants read the input on a thread of their own, which hands
+ * the blocks over through a {@link ReadAheadQueue}, while the calling thread
+ * writes the results in the original order, so that the reading, the coding
+ * and the writing overlap. At most a fixed number of blocks per thread is in
+ * flight at any time, so memory usage does not depend on the input size.
+ * <p>
+ * The file channel variants of {@link #compress(FileChannel, FileChannel)}
+ * and {@link #decompress(FileChannel, FileChannel)} map both files into 
+ * memory in windows and code the blocks straight from and into the mappings, 
+ * so the file contents never pass through heap arrays.
+ * <p>
+ * A codec constructed with the block index enabled appends a 
+ * {@link BlockIndex} to the compressed stream, so that
+ * {@link #decompress(FileChannel, long, long, OutputStream)} decodes a range
+ * of the data from the blocks covering it alone.
+ * <p>
+ * Each decoded block is checked against the checksum stored with it, unless
+ * the codec is constructed with the verification disabled.
+ * <p>
+ * {@link #compressArchive(Map, OutputStream)} packs many files into a
+ * {@link HuffmanArchive}, and 
+ * {@link #extract(HuffmanArchive, HuffmanArchive.Entry, OutputStream)}
+ * decodes any of them alone.
+ * <p>
+ * The codec accumulates the {@link CodecStatistics} of its operations once
+ * they are passed to {@link #setStatistics(CodecStatistics)}. Until then the
+ * operations pay nothing for them.
+ * <p>
+ * All the operations of a codec share its pool of worker threads, so that
+ * the code tables and the buffers each worker keeps survive from one call to
+ * the next, which matters most when extracting many small archive members.
+ * The codec should be closed once it is no longer needed in order to shut 
+ * the pool down, and may not be used afterwards.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+public final class ParallelHuffmanCodec implements Closeable {
+
+    /**
+     * The number of blocks per thread being coded or waiting to be written.
+     */
+    private static final int BLOCKS_IN_FLIGHT_PER_THREAD = 2;
+
+    /**
+     * The number of bytes in the stream header.
+     */
+    private static final int STREAM_HEADER_LENGTH = 
+            HuffmanBlockCodec.MAGIC_STREAM.length 
+            + HuffmanBlockCodec.BYTES_PER_STREAM_FLAGS;
+
+    /**
+     * The number of bytes buffered when reading a member of an archive.
+     */
+    private static final int ARCHIVE_READ_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Holds the coding buffers of each worker thread.
+     */
+    private final ThreadLocal<HuffmanBlockCodec> codecs;
+
+    /**
+     * The number of worker threads.
+     */
+    private final int numberOfThreads;
+
+    /**
+     * Runs the coding of the blocks of all the operations.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The number of bytes in an uncompressed block.
+     */
+    private final int blockSize;
+
+    /**
+     * Whether to append a block index to the compressed streams.
+     */
+    private final boolean indexed;
+
+    /**
+     * Whether to check the decoded blocks against their checksums.
+     */
+    private final boolean verifyChecksums;
+
+    /**
+     * The number of bytes in a window of a memory-mapped file.
+     */
+    private final long mappedWindowSize;
+
+    /**
+     * Accumulates the statistics of the operations of this codec, or is 
+     * {@code null} if none are collected.
+     */
+    private volatile CodecStatistics statistics;
+
+    /**
+     * Constructs a codec using all the available processors and the default
+     * block size.
+     */
+    public ParallelHuffmanCodec() {
+        this(builder());
+    }
+
+    /**
+     * Constructs a codec.
+     *
+     * @param numberOfThreads the number of worker threads.
+     * @param blockSize       the number of bytes in an uncompressed block.
+     */
+    public ParallelHuffmanCodec(int numberOfThreads, int blockSize) {
+        this(builder().threads(numberOfThreads).blockSize(blockSize));
+    }
+
+    /**
+     * Constructs a codec with the settings of {@code builder}.
+     */
+    private ParallelHuffmanCodec(Builder builder) {
+        if (builder.numberOfThreads <= 0) {
+            throw new IllegalArgumentException(
+            "The number of threads must be positive. Received " +
+                    builder.numberOfThreads + ".");
+        }
+
+        if (builder.blockSize <= 0 
+                || builder.blockSize > HuffmanBlockCodec.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException(
+            "The block size must be within [1, " +
+            HuffmanBlockCodec.MAX_BLOCK_SIZE + "]. Received " + 
+            builder.blockSize + ".");
+        }
+
+        int maxCodeLength = builder.maxCodeLength;
+        boolean interleaved = builder.interleaved;
+        int samplingInterval = builder.samplingInterval;
+        boolean contextModelled = builder.contextModelled;
+        HuffmanBlockCodec.checkMaxCodeLength(maxCodeLength);
+        HuffmanBlockCodec.checkSamplingInterval(samplingInterval);
+        this.numberOfThreads = builder.numberOfThreads;
+        this.pool = new ForkJoinPool(numberOfThreads);
+        this.blockSize = builder.blockSize;
+        this.codecs = ThreadLocal.withInitial(() -> 
+                new HuffmanBlockCodec(maxCodeLength, 
+                                      interleaved, 
+                                      samplingInterval,
+                                      contextModelled));
+        this.indexed = builder.indexed;
+        this.verifyChecksums = builder.verifyChecksums;
+        this.mappedWindowSize = builder.mappedWindowSize;
+    }
+
+    /**
+     * Returns a builder of a codec, which starts out with all the available 
+     * processors, the default block size and code length limit, exact byte
+     * counts, a single bit stream per block, no context modelling, no block
+     * index and the checksums verified.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * This class collects the settings of a {@link ParallelHuffmanCodec}.
+     * The settings are checked once the codec is built.
+     */
+    public static final class Builder {
+
+        private int numberOfThreads = 
+                Runtime.getRuntime().availableProcessors();
+        private int blockSize = HuffmanBlockCodec.DEFAULT_BLOCK_SIZE;
+        private int maxCodeLength = HuffmanBlockCodec.DEFAULT_MAX_CODE_LENGTH;
+        private boolean interleaved;
+        private int samplingInterval = 1;
+        private boolean contextModelled;
+        private boolean indexed;
+        private boolean verifyChecksums = true;
+        private long mappedWindowSize = MappedFileWindow.DEFAULT_WINDOW_SIZE;
+
+        private Builder() {}
+
+        /**
+         * Sets the number of worker threads.
+         *
+         * @param numberOfThreads the number of worker threads.
+         * @return this builder.
+         */
+        public Builder threads(int numberOfThreads) {
+            this.numberOfThreads = numberOfThreads;
+            return this;
+        }
+
+        /**
+         * Sets the number of bytes in an uncompressed block.
+         *
+         * @param blockSize the number of bytes in an uncompressed block.
+         * @return this builder.
+         */
+        public Builder blockSize(int blockSize) {
+            this.blockSize = blockSize;
+            return this;
+        }
+
+        /**
+         * Limits the code words of the compressed blocks to 
+         * {@code maxCodeLength} bits.
+         *
+         * @param maxCodeLength the maximum code length, at least 8 and at 
+         *                      most 64.
+         * @return this builder.
+         */
+        public Builder maxCodeLength(int maxCodeLength) {
+            this.maxCodeLength = maxCodeLength;
+            return this;
+        }
+
+        /**
+         * Sets whether to split each block coded with a single code into 
+         * four interleaved bit streams, which decode faster.
+         *
+         * @param interleaved whether to split the blocks into interleaved 
+         *                    bit streams.
+         * @return this builder.
+         */
+        public Builder interleaved(boolean interleaved) {
+            this.interleaved = interleaved;
+            return this;
+        }
+
+        /**
+         * Makes the codec build the code of each block from the byte counts 
+         * of every {@code samplingInterval}th chunk of 
+         * {@value ByteCountComputer#SAMPLE_CHUNK_LENGTH} bytes instead of 
+         * all the bytes. This saves most of the counting pass over large 
+         * inputs, especially memory-mapped ones whose unsampled pages are 
+         * read only once, at the cost of a slightly worse compression ratio.
+         * Blocks too small to sample are counted exactly.
+         *
+         * @param samplingInterval the number of chunks per sampled chunk, or
+         *                         one for exact counts.
+         * @return this builder.
+         */
+        public Builder samplingInterval(int samplingInterval) {
+            this.samplingInterval = samplingInterval;
+            return this;
+        }
+
+        /**
+         * Sets whether to code each byte with a code selected by the byte 
+         * preceding it. The preceding bytes are clustered into a few groups
+         * sharing a code, so that the code tables stay small. This shrinks 
+         * text and structured logs noticeably at the cost of a slower 
+         * encoder; each block is still coded with a single code where that
+         * comes out shorter.
+         *
+         * @param contextModelled whether to select the code by the preceding
+         *                        byte.
+         * @return this builder.
+         */
+        public Builder contextModelled(boolean contextModelled) {
+            this.contextModelled = contextModelled;
+            return this;
+        }
+
+        /**
+         * Sets whether to append a block index to the compressed streams. 
+         * The index takes 8 bytes per block and lets
+         * {@link ParallelHuffmanCodec#decompress(FileChannel, long, long, 
+         * OutputStream)} decode any range of the data without decoding the 
+         * blocks before it.
+         *
+         * @param indexed whether to append a block index.
+         * @return this builder.
+         */
+        public Builder indexed(boolean indexed) {
+            this.indexed = indexed;
+            return this;
+        }
+
+        /**
+         * Sets whether to verify the checksums of the decoded blocks. 
+         * Skipping the verification saves a pass over the decompressed data.
+         *
+         * @param verifyChecksums whether to verify the checksums of the 
+         *                        blocks.
+         * @return this builder.
+         */
+        public Builder verifyChecksums(boolean verifyChecksums) {
+            this.verifyChecksums = verifyChecksums;
+            return this;
+        }
+
+        /**
+         * Sets the number of bytes in a window of a memory-mapped file.
+         *
+         * @param mappedWindowSize the number of bytes in a window.
+         * @return this builder.
+         */
+        Builder mappedWindowSize(long mappedWindowSize) {
+            this.mappedWindowSize = mappedWindowSize;
+            return this;
+        }
+
+        /**
+         * Builds a codec with the settings of this builder.
+         *
+         * @return a new codec.
+         * @throws IllegalArgumentException if any of the settings is out of
+         *                                  its range.
+         */
+        public ParallelHuffmanCodec build() {
+            return new ParallelHuffmanCodec(this);
+        }
+    }
+
+    /**
+     * Returns the statistics the operations of this codec are recorded into.
+     *
+     * @return the statistics, or {@code null} if none are collected.
+     */
+    public CodecStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets the statistics to record the operations started from now on into.
+     *
+     * @param statistics the statistics, or {@code null} to stop collecting
+     *                   them.
+     */
+    public void setStatistics(CodecStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Shuts down the worker threads of this codec. The blocks being coded are
+     * finished in the background.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Compresses all the data from {@code in} into {@code out}. Neither of the
+     * streams is closed.
+     *
+     * @param in  the source of the uncompressed data.
+     * @param out the target of the compressed stream.
+     * @throws IOException if the I/O fails.
+     */
+    public void compress(InputStream in, OutputStream out)
+            throws IOException {
+        InputStream input = countReads(in);
+        OutputStream output = countWrites(out);
+        BlockIndex index = new BlockIndex(blockSize);
+        long outputPosition = STREAM_HEADER_LENGTH;
+
+        try (ReadAheadQueue<PendingFrame> pendingFrames =
+                new ReadAheadQueue<>(maximumBlocksInFlight(), 
+                                     recordAllocations(queue -> 
+                                             readBlocks(input, 
+                                                        queue)),
+                                     frame -> frame.frame.cancel(false))) {
+            HuffmanBlockCodec.writeStreamHeader(output, getStreamFlags());
+            PendingFrame pendingFrame;
+
+            while ((pendingFrame = pendingFrames.take()) != null) {
+                outputPosition = 
+                        writeFrame(output,
+                                   outputPosition,
+                                   pendingFrame.frame.join(),
+                                   pendingFrame.blockLength,
+                                   index);
+            }
+
+            output.write(HuffmanBlockCodec.END_OF_STREAM_BLOCK);
+
+            if (indexed) {
+                output.write(index.toByteArray());
+            }
+        }
+    }
+
+    /**
+     * Reads the blocks of the data from {@code in}, submits the encoding of
+     * each to the pool and puts the frames into {@code queue}.
+     */
+    private void readBlocks(InputStream in,
+                            ReadAheadQueue<PendingFrame> queue) 
+            throws IOException {
+        while (true) {
+            byte[] block = new byte[blockSize];
+            int blockLength = readBlock(in, block);
+
+            if (blockLength == 0) {
+                return;
+            }
+
+            queue.put(new PendingFrame(
+                    pool.submit(() -> 
+                            getCodec().encodeBlock(block, 0, blockLength)),
+                    blockLength));
+        }
+    }
+
+    /**
+     * Decompresses the stream from {@code in} into {@code out}. Reading stops
+     * at the end of stream marker, so that a block index is left unread. 
+     * Neither of the streams is closed.
+     *
+     * @param in  the source of the compressed stream.
+     * @param out the target of the uncompressed data.
+     * @throws IOException if the I/O fails.
+     * @throws InvalidFormatException if the stream is malformed.
+     */
+    public void decompress(InputStream in, OutputStream out)
+            throws IOException {
+        InputStream input = countReads(in);
+        OutputStream output = countWrites(out);
+
+        try (ReadAheadQueue<ForkJoinTask<byte[]>> pendingBlocks =
+                new ReadAheadQueue<>(maximumBlocksInFlight(), 
+                                     recordAllocations(queue -> 
+                                             readFrames(input, 
+                                                        queue)),
+                                     block -> block.cancel(false))) {
+            ForkJoinTask<byte[]> pendingBlock;
+
+            while ((pendingBlock = pendingBlocks.take()) != null) {
+                byte[] block = pendingBlock.join();
+                write(output, block, 0, block.length);
+            }
+        }
+    }
+
+    /**
+     * Reads the frames of the stream from {@code in}, submits the decoding of
+     * each to the pool and puts the tasks into {@code queue}.
+     */
+    private void readFrames(InputStream in, 
+                            ReadAheadQueue<ForkJoinTask<byte[]>> queue) 
+            throws IOException {
+        byte[] frameHeaderBuffer =
+                new byte[HuffmanBlockCodec.BYTES_PER_FRAME_HEADER];
+        HuffmanBlockCodec.FrameHeader frameHeader =
+                new HuffmanBlockCodec.FrameHeader();
+        boolean checksummed = 
+                isChecksummed(HuffmanBlockCodec.readStreamHeader(in));
+
+        while (true) {
+            CodecStatistics statistics = this.statistics;
+            CodecStatistics.StageRun run = 
+                    CodecStatistics.startStage(statistics);
+
+            if (!HuffmanBlockCodec.readFrameHeader(in,
+                                                   frameHeaderBuffer,
+                                                   frameHeader)) {
+                CodecStatistics.endStage(statistics, 
+                                         run, 
+                                         CodecStatistics.Stage.READ, 
+                                         1L);
+                return;
+            }
+
+            int blockType = frameHeader.blockType;
+            int uncompressedLength = frameHeader.uncompressedLength;
+            int bodyLength = frameHeader.bodyLength;
+            byte[] body = new byte[bodyLength];
+            InputStreams.readFully(in, body, 0, bodyLength);
+            int checksum = 
+                    checksummed ? 
+                    HuffmanBlockCodec.readChecksum(in, frameHeaderBuffer) :
+                    0;
+            CodecStatistics.endStage(
+                    statistics,
+                    run,
+                    CodecStatistics.Stage.READ,
+                    HuffmanBlockCodec.BYTES_PER_FRAME_HEADER 
+                            + bodyLength
+                            + (checksummed ? 
+                               HuffmanBlockCodec.BYTES_PER_CHECKSUM : 
+                               0));
+
+            queue.put(pool.submit(() -> {
+                byte[] block = new byte[uncompressedLength];
+                HuffmanBlockCodec codec = getCodec();
+                codec.decodeBlockBody(blockType,
+                                      body,
+                                      bodyLength,
+                                      block,
+                                      uncompressedLength);
+
+                if (checksummed && verifyChecksums) {
+                    codec.verifyChecksum(checksum, 
+                                         block, 
+                                         0, 
+                                         uncompressedLength);
+                }
+
+                return block;
+            }));
+        }
+    }
+
+    /**
+     * Compresses the entire file {@code in} into the file {@code out} through
+     * memory mappings. The blocks are encoded straight from the mapped input
+     * and the frames are written straight into the mapped output, which is
+     * truncated to the length of the stream at the end. Neither of the 
+     * channels is closed.
+     *
+     * @param in  the uncompressed file opened for reading.
+     * @param out the target file opened for reading and writing.
+     * @throws IOException if the I/O fails.
+     */
+    public void compress(FileChannel in, FileChannel out) throws IOException {
+        Deque<ForkJoinTask<HuffmanBlockCodec.EncodedBlock>> pendingBlocks =
+                new ArrayDeque<>();
+        MappedFileWindow input = 
+                new MappedFileWindow(in, 
+                                     FileChannel.MapMode.READ_ONLY,
+                                     mappedWindowSize);
+        MappedFileWindow output = 
+                new MappedFileWindow(out,
+                                     FileChannel.MapMode.READ_WRITE,
+                                     mappedWindowSize);
+        BlockIndex index = new BlockIndex(blockSize);
+        long inputSize = in.size();
+        long outputPosition = writeStreamHeader(output, getStreamFlags());
+
+        try {
+            for (long inputPosition = 0L; 
+                    inputPosition < inputSize; 
+                    inputPosition += blockSize) {
+                ByteBuffer block = 
+                        input.slice(inputPosition,
+                                    (int) Math.min(blockSize, 
+                                                   inputSize - inputPosition));
+
+                pendingBlocks.addLast(pool.submit(() ->
+                        getCodec().encodeBlock(block)));
+
+                if (pendingBlocks.size() == maximumBlocksInFlight()) {
+                    outputPosition = 
+                            writeFrame(output,
+                                       outputPosition,
+                                       pendingBlocks.removeFirst().join(),
+                                       index);
+                }
+            }
+
+            while (!pendingBlocks.isEmpty()) {
+                outputPosition = 
+                        writeFrame(output, 
+                                   outputPosition,
+                                   pendingBlocks.removeFirst().join(),
+                                   index);
+            }
+
+            output.slice(outputPosition++, 1)
+                  .put(HuffmanBlockCodec.END_OF_STREAM_BLOCK);
+
+            if (indexed) {
+                int footerLength = index.getFooterLength();
+                index.writeTo(output.slice(outputPosition, footerLength));
+                outputPosition += footerLength;
+            }
+
+            out.truncate(outputPosition);
+            addMappedBytes(inputSize, outputPosition);
+        } finally {
+            cancel(pendingBlocks);
+        }
+    }
+
+    /**
+     * Decompresses the stream in the file {@code in} into the file 
+     * {@code out} through memory mappings. The blocks are decoded straight
+     * from the mapped input into the mapped output, which is truncated to the
+     * length of the decompressed data at the end. Neither of the channels is
+     * closed.
+     *
+     * @param in  the compressed file opened for reading.
+     * @param out the target file opened for reading and writing.
+     * @throws IOException if the I/O fails.
+     * @throws InvalidFormatException if the stream is malformed.
+     */
+    public void decompress(FileChannel in, FileChannel out)
+            throws IOException {
+        Deque<ForkJoinTask<?>> pendingBlocks = new ArrayDeque<>();
+        MappedFileWindow input = 
+                new MappedFileWindow(in, 
+                                     FileChannel.MapMode.READ_ONLY,
+                                     mappedWindowSize);
+        MappedFileWindow output = 
+                new MappedFileWindow(out,
+                                     FileChannel.MapMode.READ_WRITE,
+                                     mappedWindowSize);
+        byte[] frameHeaderBuffer =
+                new byte[HuffmanBlockCodec.BYTES_PER_FRAME_HEADER];
+        HuffmanBlockCodec.FrameHeader frameHeader =
+                new HuffmanBlockCodec.FrameHeader();
+        long inputSize = in.size();
+        long inputPosition = STREAM_HEADER_LENGTH;
+        long outputPosition = 0L;
+        boolean checksummed = 
+                isChecksummed(readStreamHeader(input, inputSize));
+
+        try {
+            while (true) {
+                if (inputPosition == inputSize) {
+                    throw new EOFException("Missing end of stream marker.");
+                }
+
+                int blockType = 
+                        input.slice(inputPosition, 1).get(0) & 0xff;
+
+                if (!HuffmanBlockCodec.checkBlockType(blockType)) {
+                    break;
+                }
+
+                input.slice(inputPosition, 
+                            HuffmanBlockCodec.BYTES_PER_FRAME_HEADER)
+                     .get(frameHeaderBuffer);
+
+                HuffmanBlockCodec.parseFrameHeader(frameHeaderBuffer, 
+                                                   frameHeader);
+
+                inputPosition += HuffmanBlockCodec.BYTES_PER_FRAME_HEADER;
+                ByteBuffer body = input.slice(inputPosition,
+                                              frameHeader.bodyLength);
+                ByteBuffer block = 
+                        output.slice(outputPosition,
+                                     frameHeader.uncompressedLength);
+
+                inputPosition += frameHeader.bodyLength;
+                outputPosition += frameHeader.uncompressedLength;
+                int checksum = readChecksum(input, inputPosition, checksummed);
+
+                if (checksummed) {
+                    inputPosition += HuffmanBlockCodec.BYTES_PER_CHECKSUM;
+                }
+
+                pendingBlocks.addLast(pool.submit(() -> 
+                        decodeBlock(blockType, 
+                                    body, 
+                                    block, 
+                                    checksummed, 
+                                    checksum)));
+
+                if (pendingBlocks.size() == maximumBlocksInFlight()) {
+                    pendingBlocks.removeFirst().join();
+                }
+            }
+
+            while (!pendingBlocks.isEmpty()) {
+                pendingBlocks.removeFirst().join();
+            }
+
+            out.truncate(outputPosition);
+            addMappedBytes(inputPosition, outputPosition);
+        } finally {
+            cancel(pendingBlocks);
+        }
+    }
+
+    /**
+     * Decompresses the {@code length} bytes of data starting at the offset
+     * {@code offset} from the indexed stream in the file {@code in} into 
+     * {@code out}. Only the blocks covering the range are read and decoded.
+     * The range is clipped to the end of the data. Neither {@code in} nor 
+     * {@code out} is closed.
+     *
+     * @param in     the compressed file opened for reading.
+     * @param offset the offset of the first byte in the uncompressed data.
+     * @param length the number of bytes to decompress.
+     * @param out    the target of the uncompressed range.
+     * @throws IOException if the I/O fails.
+     * @throws InvalidFormatException if the stream is malformed or has no 
+     *                                block index.
+     */
+    public void decompress(FileChannel in, 
+                           long offset, 
+                           long length, 
+                           OutputStream out) throws IOException {
+        if (offset < 0L || length < 0L) {
+            throw new IllegalArgumentException(
+            "Bad range: offset " + offset + ", length " + length + ".");
+        }
+
+        MappedFileWindow input = 
+                new MappedFileWindow(in, 
+                                     FileChannel.MapMode.READ_ONLY,
+                                     mappedWindowSize);
+        long inputSize = in.size();
+
+        int flags = readStreamHeader(input, inputSize);
+        boolean checksummed = isChecksummed(flags);
+
+        if ((flags & HuffmanBlockCodec.INDEXED_STREAM) == 0) {
+            throw new InvalidFormatException("The stream has no block index.");
+        }
+
+        BlockIndex index = 
+                BlockIndex.readFrom(input, inputSize, STREAM_HEADER_LENGTH);
+        long end = offset 
+                 + Math.min(length, 
+                            Math.max(index.getUncompressedLength() - offset,
+                                     0L));
+
+        if (offset >= end) {
+            return;
+        }
+
+        OutputStream output = countWrites(out);
+        int indexBlockSize = index.getBlockSize();
+        int firstBlock = (int)(offset / indexBlockSize);
+        int lastBlock = (int)((end - 1) / indexBlockSize);
+        int nextBlockToWrite = firstBlock;
+        Deque<ForkJoinTask<byte[]>> pendingBlocks = new ArrayDeque<>();
+        byte[] frameHeaderBuffer =
+                new byte[HuffmanBlockCodec.BYTES_PER_FRAME_HEADER];
+        HuffmanBlockCodec.FrameHeader frameHeader =
+                new HuffmanBlockCodec.FrameHeader();
+
+        try {
+            for (int block = firstBlock; block <= lastBlock; ++block) {
+                long framePosition = index.getFramePosition(block);
+                input.slice(framePosition, 
+                            HuffmanBlockCodec.BYTES_PER_FRAME_HEADER)
+                     .get(frameHeaderBuffer);
+
+                int blockType = Byte.toUnsignedInt(frameHeaderBuffer[0]);
+
+                if (!HuffmanBlockCodec.checkBlockType(blockType)) {
+                    throw new InvalidFormatException(
+                            "No frame at the indexed position.");
+                }
+
+                HuffmanBlockCodec.parseFrameHeader(frameHeaderBuffer, 
+                                                   frameHeader);
+
+                int uncompressedLength = frameHeader.uncompressedLength;
+
+                if (uncompressedLength != index.getBlockLength(block)) {
+                    throw new InvalidFormatException(
+                    "The block " + block + " has " + uncompressedLength + 
+                    " bytes, expected " + index.getBlockLength(block) + 
+                    ".");
+                }
+
+                long bodyPosition = 
+                        framePosition 
+                        + HuffmanBlockCodec.BYTES_PER_FRAME_HEADER;
+                ByteBuffer body = 
+                        input.slice(bodyPosition, frameHeader.bodyLength);
+                int checksum = 
+                        readChecksum(input, 
+                                     bodyPosition + frameHeader.bodyLength, 
+                                     checksummed);
+
+                pendingBlocks.addLast(pool.submit(() -> {
+                    byte[] data = new byte[uncompressedLength];
+                    decodeBlock(blockType, 
+                                body, 
+                                ByteBuffer.wrap(data), 
+                                checksummed, 
+                                checksum);
+                    return data;
+                }));
+
+                if (pendingBlocks.size() == maximumBlocksInFlight()) {
+                    writeRange(output, 
+                               pendingBlocks.removeFirst().join(),
+                               (long) nextBlockToWrite++ * indexBlockSize,
+                               offset,
+                               end);
+                }
+            }
+
+            while (!pendingBlocks.isEmpty()) {
+                writeRange(output, 
+                           pendingBlocks.removeFirst().join(),
+                           (long) nextBlockToWrite++ * indexBlockSize,
+                           offset,
+                           end);
+            }
+        } finally {
+            cancel(pendingBlocks);
+        }
+    }
+
+    /**
+     * Compresses the files {@code files} into an archive written into 
+     * {@code out}, each file into a stream of its own. The blocks of all the
+     * files go through the same pool in the archive order, so that a large
+     * file is split among all the threads while a run of small files keeps
+     * as many of them busy at once. The stream {@code out} is not closed.
+     *
+     * @param files the files by their names in the archive, in the archive
+     *              order.
+     * @param out   the target of the archive.
+     * @throws IOException if the I/O fails.
+     * @throws IllegalArgumentException if a name is empty or too long.
+     */
+    public void compressArchive(Map<String, Path> files, OutputStream out)
+            throws IOException {
+        for (String name : files.keySet()) {
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException(
+                        "The member name must not be empty.");
+            }
+
+            HuffmanArchive.encodeName(name);
+        }
+
+        try (ReadAheadQueue<ArchiveFrame> pendingFrames =
+                new ReadAheadQueue<>(maximumBlocksInFlight(),
+                                     recordAllocations(queue -> 
+                                             readMembers(files, 
+                                                         queue)),
+                                     ArchiveFrame::cancel)) {
+            ArchiveWriter writer = new ArchiveWriter(countWrites(out));
+            ArchiveFrame pendingFrame;
+
+            while ((pendingFrame = pendingFrames.take()) != null) {
+                writer.write(pendingFrame);
+            }
+
+            writer.writeDirectory();
+        }
+    }
+
+    /**
+     * Reads the files {@code files} block by block, submits the encoding of
+     * each block to the pool and puts the frames into {@code queue}.
+     */
+    private void readMembers(Map<String, Path> files,
+                             ReadAheadQueue<ArchiveFrame> queue) 
+            throws IOException {
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            try (InputStream in = 
+                    countReads(Files.newInputStream(file.getValue()))) {
+                long remaining = Files.size(file.getValue());
+                long memberSize = 0L;
+                boolean firstFrame = true;
+                boolean lastFrame;
+
+                do {
+                    // Allocates no more than the rest of the file, since most
+                    // of the members may be far smaller than a block:
+                    byte[] block = 
+                            new byte[(int) Math.min(blockSize, remaining)];
+                    int blockLength = readBlock(in, block);
+                    remaining -= blockLength;
+                    memberSize += blockLength;
+                    lastFrame = blockLength < block.length 
+                             || remaining == 0L;
+                    ForkJoinTask<byte[]> frame = 
+                            blockLength == 0 ?
+                            null :
+                            pool.submit(() -> 
+                                    getCodec().encodeBlock(block, 
+                                                             0, 
+                                                             blockLength));
+
+                    queue.put(new ArchiveFrame(file.getKey(),
+                                               memberSize,
+                                               frame,
+                                               firstFrame,
+                                               lastFrame));
+                    firstFrame = false;
+                } while (!lastFrame);
+            }
+        }
+    }
+
+    /**
+     * Decompresses the member {@code entry} of the archive {@code archive}
+     * into {@code out}. Only the stream of the member is read. The stream
+     * {@code out} is not closed.
+     *
+     * @param archive the archive.
+     * @param entry   the entry of the member.
+     * @param out     the target of the uncompressed member.
+     * @throws IOException if the I/O fails.
+     * @throws InvalidFormatException if the stream of the member is 
+     *                                malformed.
+     */
+    public void extract(HuffmanArchive archive,
+                        HuffmanArchive.Entry entry,
+                        OutputStream out) throws IOException {
+        decompress(new BufferedInputStream(archive.openStream(entry),
+                                           ARCHIVE_READ_BUFFER_SIZE),
+                   out);
+    }
+
+    /**
+     * Writes the bytes of the decoded block {@code data}, which starts at the
+     * offset {@code blockStart} of the data, falling in the range 
+     * {@code [offset, end)}.
+     */
+    private void writeRange(OutputStream out,
+                            byte[] data,
+                            long blockStart,
+                            long offset,
+                            long end) throws IOException {
+        int from = (int) Math.max(offset - blockStart, 0L);
+        int to = (int) Math.min(end - blockStart, data.length);
+        write(out, data, from, to - from);
+    }
+
+    /**
+     * Decodes the body of a block into {@code block} in the current worker
+     * thread and verifies the checksum of the block if there is one and the
+     * verification is enabled.
+     */
+    private void decodeBlock(int blockType,
+                             ByteBuffer body,
+                             ByteBuffer block,
+                             boolean checksummed,
+                             int checksum) {
+        HuffmanBlockCodec codec = getCodec();
+        codec.decodeBlockBody(blockType, body, block);
+
+        if (checksummed && verifyChecksums) {
+            codec.verifyChecksum(checksum, block);
+        }
+    }
+
+    /**
+     * Reads the checksum at the position {@code position} of the mapped 
+     * input, or returns zero if the stream has no checksums.
+     */
+    private static int readChecksum(MappedFileWindow input, 
+                                    long position, 
+                                    boolean checksummed) throws IOException {
+        return checksummed ?
+               input.slice(position, HuffmanBlockCodec.BYTES_PER_CHECKSUM)
+                    .getInt() :
+               0;
+    }
+
+    private static boolean isChecksummed(int flags) {
+        return (flags & HuffmanBlockCodec.CHECKSUMMED_STREAM) != 0;
+    }
+
+    private int getStreamFlags() {
+        return HuffmanBlockCodec.CHECKSUMMED_STREAM
+             | (indexed ? HuffmanBlockCodec.INDEXED_STREAM : 0);
+    }
+
+    /**
+     * Writes the stream header at the beginning of the mapped output.
+     *
+     * @return the file position past the header.
+     */
+    private static long writeStreamHeader(MappedFileWindow output, int flags)
+            throws IOException {
+        output.slice(0L, STREAM_HEADER_LENGTH)
+              .put(HuffmanBlockCodec.MAGIC_STREAM)
+              .put((byte) flags);
+
+        return STREAM_HEADER_LENGTH;
+    }
+
+    /**
+     * Reads and verifies the stream header at the beginning of the mapped
+     * input.
+     *
+     * @return the stream flags.
+     */
+    private static int readStreamHeader(MappedFileWindow input,
+                                        long inputSize) throws IOException {
+        byte[] header = new byte[STREAM_HEADER_LENGTH];
+
+        if (inputSize < header.length) {
+            throw new InvalidFormatException(
+                    "No stream header. The stream is too short.");
+        }
+
+        input.slice(0L, header.length).get(header);
+        return HuffmanBlockCodec.readStreamHeader(
+                new ByteArrayInputStream(header));
+    }
+
+    /**
+     * Writes the frame of {@code block} into the mapped output and adds the
+     * block to {@code index}.
+     *
+     * @return the file position past the frame.
+     */
+    private static long writeFrame(MappedFileWindow output,
+                                   long outputPosition,
+                                   HuffmanBlockCodec.EncodedBlock block,
+                                   BlockIndex index)
+            throws IOException {
+        int frameLength = block.getFrameLength();
+        block.writeTo(output.slice(outputPosition, frameLength));
+        index.addBlock(outputPosition, block.getUncompressedLength());
+        return outputPosition + frameLength;
+    }
+
+    /**
+     * Writes {@code frame} into {@code out} and adds its block of 
+     * {@code blockLength} bytes to {@code index}.
+     *
+     * @return the stream position past the frame.
+     */
+    private long writeFrame(OutputStream out,
+                            long outputPosition,
+                            byte[] frame,
+                            int blockLength,
+                            BlockIndex index) throws IOException {
+        write(out, frame, 0, frame.length);
+        index.addBlock(outputPosition, blockLength);
+        return outputPosition + frame.length;
+    }
+
+    /**
+     * Returns a producer running {@code producer} and recording the bytes it
+     * allocates.
+     */
+    private <T> ReadAheadQueue.Producer<T> recordAllocations(
+            ReadAheadQueue.Producer<T> producer) {
+        CodecStatistics statistics = this.statistics;
+
+        if (statistics == null) {
+            return producer;
+        }
+
+        return queue -> {
+            long allocatedBefore = CodecStatistics.getThreadAllocatedBytes();
+
+            try {
+                producer.produce(queue);
+            } finally {
+                statistics.addAllocatedBytesSince(allocatedBefore);
+            }
+        };
+    }
+
+    /**
+     * Cancels the tasks of {@code pendingBlocks} not started yet, so that an
+     * operation failing midway leaves no work behind in the pool.
+     */
+    private static void cancel(Deque<? extends ForkJoinTask<?>> pendingBlocks) {
+        for (ForkJoinTask<?> pendingBlock : pendingBlocks) {
+            pendingBlock.cancel(false);
+        }
+    }
+
+    private int maximumBlocksInFlight() {
+        return BLOCKS_IN_FLIGHT_PER_THREAD * numberOfThreads;
+    }
+
+    /**
+     * Reads until {@code block} is full or the stream ends, as a run of 
+     * {@link CodecStatistics.Stage#READ}.
+     *
+     * @return the number of bytes read.
+     */
+    private int readBlock(InputStream in, byte[] block) throws IOException {
+        CodecStatistics statistics = this.statistics;
+        CodecStatistics.StageRun run = CodecStatistics.startStage(statistics);
+        int blockLength = 0;
+
+        while (blockLength < block.length) {
+            int read = in.read(block, blockLength, block.length - blockLength);
+
+            if (read < 0) {
+                break;
+            }
+
+            blockLength += read;
+        }
+
+        CodecStatistics.endStage(statistics, 
+                                 run, 
+                                 CodecStatistics.Stage.READ, 
+                                 blockLength);
+        return blockLength;
+    }
+
+    /**
+     * Writes {@code length} bytes of {@code data} starting at the index
+     * {@code offset} into {@code out} as a run of 
+     * {@link CodecStatistics.Stage#WRITE}.
+     */
+    private void write(OutputStream out, byte[] data, int offset, int length)
+            throws IOException {
+        CodecStatistics statistics = this.statistics;
+        CodecStatistics.StageRun run = CodecStatistics.startStage(statistics);
+        out.write(data, offset, length);
+        CodecStatistics.endStage(statistics, 
+                                 run, 
+                                 CodecStatistics.Stage.WRITE, 
+                                 length);
+    }
+
+    /**
+     * Returns the worker codec of the current thread, recording into the 
+     * current statistics.
+     */
+    private HuffmanBlockCodec getCodec() {
+        HuffmanBlockCodec codec = codecs.get();
+        codec.statistics = statistics;
+        return codec;
+    }
+
+    /**
+     * Returns {@code in} counting the bytes read from it into the 
+     * statistics, or {@code in} itself if no statistics are collected.
+     */
+    private InputStream countReads(InputStream in) {
+        CodecStatistics statistics = this.statistics;
+        return statistics == null ? in : new CountingInputStream(in, 
+                                                                 statistics);
+    }
+
+    /**
+     * Returns {@code out} counting the bytes written into it into the 
+     * statistics, or {@code out} itself if no statistics are collected.
+     */
+    private OutputStream countWrites(OutputStream out) {
+        CodecStatistics statistics = this.statistics;
+        return statistics == null ? out : new CountingOutputStream(out, 
+                                                                   statistics);
+    }
+
+    /**
+     * Counts the bytes read and written by an operation on mapped files.
+     */
+    private void addMappedBytes(long bytesIn, long bytesOut) {
+        CodecStatistics statistics = this.statistics;
+
+        if (statistics != null) {
+            statistics.addBytesIn(bytesIn);
+            statistics.addBytesOut(bytesOut);
+        }
+    }
+
+    /**
+     * A frame waiting for its block to be encoded.
+     */
+    private static final class PendingFrame {
+
+        /**
+         * The task encoding the block.
+         */
+        final ForkJoinTask<byte[]> frame;
+
+        /**
+         * The number of bytes in the block.
+         */
+        final int blockLength;
+
+        PendingFrame(ForkJoinTask<byte[]> frame, int blockLength) {
+            this.frame = frame;
+            this.blockLength = blockLength;
+        }
+    }
+
+    /**
+     * A frame of an archive member waiting for its block to be encoded.
+     */
+    private static final class ArchiveFrame {
+
+        /**
+         * The name of the member.
+         */
+        final String name;
+
+        /**
+         * The number of bytes in the member up to the end of this block.
+         */
+        final long memberSize;
+
+        /**
+         * The task encoding the block, or {@code null} if the member is 
+         * empty.
+         */
+        final ForkJoinTask<byte[]> frame;
+
+        /**
+         * Whether the frame is the first one of the member.
+         */
+        final boolean firstFrame;
+
+        /**
+         * Whether the frame is the last one of the member.
+         */
+        final boolean lastFrame;
+
+        ArchiveFrame(String name,
+                     long memberSize,
+                     ForkJoinTask<byte[]> frame,
+                     boolean firstFrame,
+                     boolean lastFrame) {
+            this.name = name;
+            this.memberSize = memberSize;
+            this.frame = frame;
+            this.firstFrame = firstFrame;
+            this.lastFrame = lastFrame;
+        }
+
+        /**
+         * Cancels the encoding of the block unless it has started.
+         */
+        void cancel() {
+            if (frame != null) {
+                frame.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Writes the member streams of an archive in order and collects their
+     * entries.
+     */
+    private final class ArchiveWriter {
+
+        private final OutputStream out;
+        private final List<HuffmanArchive.Entry> entries = new ArrayList<>();
+        private long position;
+        private long memberPosition;
+
+        ArchiveWriter(OutputStream out) throws IOException {
+            this.out = out;
+            out.write(HuffmanArchive.MAGIC_ARCHIVE);
+            out.write(0);
+            this.position = HuffmanArchive.BYTES_PER_ARCHIVE_HEADER;
+        }
+
+        /**
+         * Writes the frame, preceded by the stream header if it is the first
+         * frame of its member and followed by the end of stream marker if it
+         * is the last one.
+         */
+        void write(ArchiveFrame frame) throws IOException {
+            if (frame.firstFrame) {
+                memberPosition = position;
+                HuffmanBlockCodec.writeStreamHeader(
+                        out, 
+                        HuffmanBlockCodec.CHECKSUMMED_STREAM);
+                position += STREAM_HEADER_LENGTH;
+            }
+
+            if (frame.frame != null) {
+                byte[] bytes = frame.frame.join();
+                ParallelHuffmanCodec.this.write(out, bytes, 0, bytes.length);
+                position += bytes.length;
+            }
+
+            if (frame.lastFrame) {
+                out.write(HuffmanBlockCodec.END_OF_STREAM_BLOCK);
+                position++;
+                entries.add(new HuffmanArchive.Entry(
+                        frame.name,
+                        frame.memberSize,
+                        memberPosition,
+                        position - memberPosition));
+            }
+        }
+
+        void writeDirectory() throws IOException {
+            HuffmanArchive.writeDirectory(out, entries, position);
+        }
+    }
+
+    /**
+     * Counts the bytes read from a stream into {@link CodecStatistics}.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final CodecStatistics statistics;
+
+        CountingInputStream(InputStream in, CodecStatistics statistics) {
+            super(in);
+            this.statistics = statistics;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+
+            if (b >= 0) {
+                statistics.addBytesIn(1L);
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+
+            if (read > 0) {
+                statistics.addBytesIn(read);
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            statistics.addBytesIn(skipped);
+            return skipped;
+        }
+    }
+
+    /**
+     * Counts the bytes written into a stream into {@link CodecStatistics}.
+     */
+    private static final class CountingOutputStream 
+            extends FilterOutputStream {
+
+        private final CodecStatistics statistics;
+
+        CountingOutputStream(OutputStream out, CodecStatistics statistics) {
+            super(out);
+            this.statistics = statistics;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            statistics.addBytesOut(1L);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            statistics.addBytesOut(len);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package net.coderodde.compression.huffman;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class runs the reading stage of a coding pipeline on a thread of its
+ * own. The reading thread runs a {@link Producer}, which typically reads the
+ * blocks of the input and submits each of them to a coding pool, and hands
+ * the results over to the writing thread in order through a bounded queue.
+ * This way the reading, the coding and the writing proceed at once, the wall
+ * time approaching the slowest of them rather than their sum, while the
+ * number of blocks in memory stays bounded by the capacity of the queue.
+ * <p>
+ * An exception thrown by the producer is rethrown by {@link #take()} once the
+ * items put before it are taken. Closing the queue stops the producer if it
+ * is still running and discards the items not taken, so that a consumer 
+ * failing midway leaves neither a thread nor pending work behind.
+ *
+ * @param <T> the type of the items.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.7 (Oct 17, 2026)
+ */
+final class ReadAheadQueue<T> implements AutoCloseable {
+
+    /**
+     * Puts the items of a {@link ReadAheadQueue}.
+     *
+     * @param <T> the type of the items.
+     */
+    interface Producer<T> {
+
+        /**
+         * Puts all the items into {@code queue} and returns.
+         *
+         * @param queue the queue to put the items into.
+         * @throws IOException if the I/O fails.
+         */
+        void produce(ReadAheadQueue<T> queue) throws IOException;
+    }
+
+    /**
+     * Marks the end of the items.
+     */
+    private static final Object END = new Object();
+
+    /**
+     * The number of milliseconds to wait for the producer when closing.
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000L;
+
+    /**
+     * The number of milliseconds between the attempts to put {@link #END}
+     * into a full queue.
+     */
+    private static final long END_OFFER_MILLIS = 100L;
+
+    /**
+     * The items waiting to be taken, followed by {@link #END}.
+     */
+    private final BlockingQueue<Object> queue;
+
+    /**
+     * The thread running the producer.
+     */
+    private final Thread thread;
+
+    /**
+     * Releases the items discarded by {@link #close()} or failing to be put.
+     */
+    private final Consumer<? super T> discarder;
+
+    /**
+     * Whether the queue is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * The exception thrown by the producer, if any.
+     */
+    private volatile Throwable failure;
+
+    /**
+     * Whether {@link #END} has been taken.
+     */
+    private boolean ended;
+
+    /**
+     * Starts running {@code producer} on a new thread.
+     *
+     * @param capacity the maximum number of items waiting to be taken.
+     * @param producer the producer of the items.
+     */
+    ReadAheadQueue(int capacity, Producer<T> producer) {
+        this(capacity, producer, item -> {});
+    }
+
+    /**
+     * Starts running {@code producer} on a new thread.
+     *
+     * @param capacity  the maximum number of items waiting to be taken.
+     * @param producer  the producer of the items.
+     * @param discarder releases the items never taken, such as by cancelling
+     *                  the tasks computing them.
+     */
+    ReadAheadQueue(int capacity, 
+                   Producer<T> producer, 
+                   Consumer<? super T> discarder) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.discarder = discarder;
+        this.thread = new Thread(() -> run(producer), "huffman-reader");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Puts {@code item} into the queue, waiting for room if the queue is
+     * full. Called by the producer only.
+     *
+     * @param item the item to put. It is discarded if the queue is closed.
+     * @throws InterruptedIOException if the queue is closed.
+     */
+    void put(T item) throws InterruptedIOException {
+        try {
+            if (closed) {
+                throw new InterruptedException();
+            }
+
+            queue.put(item);
+        } catch (InterruptedException ex) {
+            discarder.accept(item);
+            throw new InterruptedIOException("The reading was stopped.");
+        }
+    }
+
+    /**
+     * Takes the next item, waiting for it if the queue is empty.
+     *
+     * @return the item or {@code null} if the producer has returned and all
+     *         the items have been taken.
+     * @throws IOException if the producer has failed.
+     */
+    @SuppressWarnings("unchecked")
+    T take() throws IOException {
+        if (ended) {
+            return null;
+        }
+
+        Object item;
+
+        try {
+            item = queue.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(
+                    "Interrupted while waiting for the input.");
+        }
+
+        if (item != END) {
+            return (T) item;
+        }
+
+        ended = true;
+        Throwable failure = this.failure;
+
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+
+        return null;
+    }
+
+    /**
+     * Stops the producer if it is still running, discards the items not
+     * taken and waits for the thread of the producer to exit. A producer 
+     * blocked in a read ignoring interrupts, such as one of a pipe, is not 
+     * waited for longer than {@link #CLOSE_TIMEOUT_MILLIS}; it fails at its
+     * next put, and its thread does not keep the JVM alive.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        discardItems();
+
+        try {
+            thread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void discardItems() {
+        List<Object> items = new ArrayList<>();
+        queue.drainTo(items);
+
+        for (Object item : items) {
+            if (item != END) {
+                discarder.accept((T) item);
+            }
+        }
+    }
+
+    private void run(Producer<T> producer) {
+        try {
+            producer.produce(this);
+        } catch (Throwable t) {
+            failure = t;
+        }
+
+        // A full queue is waited on only as long as it is being taken from:
+        try {
+            while (!closed 
+                    && !queue.offer(END, 
+                                    END_OFFER_MILLIS, 
+                                    TimeUnit.MILLISECONDS)) {
+                // The consumer is behind, retry.
+            }
+        } catch (InterruptedException ex) {
+            // Closed, nobody is taking the items any more.
+        }
+
+        // A put interrupted as it succeeded may have come after the close:
+        if (closed) {
+            discardItems();
+        }
+    }
+}
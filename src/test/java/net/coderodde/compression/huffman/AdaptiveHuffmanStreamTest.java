@@ -0,0 +1,121 @@
+package net.coderodde.compression.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AdaptiveHuffmanStreamTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(17L);
+
+        for (int length : new int[]{ 0, 1, 2, 100, 10_000, 200_000 }) {
+            byte[] text = new byte[length];
+
+            for (int i = 0; i != length; ++i) {
+                // Skewed at first, then every byte value:
+                text[i] = i < length / 2 ?
+                          (byte)('a' + Math.min(random.nextInt(20),
+                                                random.nextInt(20))) :
+                          (byte) random.nextInt(256);
+            }
+
+            byte[] compressed = compress(text);
+            assertArrayEquals(text, decompress(compressed));
+        }
+    }
+
+    @Test
+    public void testCompressesSkewedText() throws IOException {
+        Random random = new Random(1L);
+        byte[] text = new byte[50_000];
+
+        for (int i = 0; i != text.length; ++i) {
+            text[i] = (byte)(random.nextInt(8) == 0 ?
+                             'a' + random.nextInt(26) :
+                             'e');
+        }
+
+        byte[] compressed = compress(text);
+        assertTrue(compressed.length < text.length / 3);
+        assertArrayEquals(text, decompress(compressed));
+    }
+
+    @Test
+    public void testFlushDeliversEverythingWritten() throws IOException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        AdaptiveHuffmanOutputStream out =
+                new AdaptiveHuffmanOutputStream(sink);
+        byte[] first = "first line\n".getBytes();
+        byte[] second = "second line\n".getBytes();
+
+        out.write(first);
+        out.flush();
+        int flushedLength = sink.size();
+        out.write(second);
+        out.flush();
+        out.close();
+
+        // Only the bytes up to the first flush are available, yet the first
+        // line decodes without reaching past them:
+        InputStream in = new AdaptiveHuffmanInputStream(
+                new ByteArrayInputStream(sink.toByteArray(),
+                                         0,
+                                         flushedLength));
+        byte[] buffer = new byte[100];
+        assertEquals(first.length, in.read(buffer));
+        assertArrayEquals(first, Arrays.copyOf(buffer, first.length));
+
+        in = new AdaptiveHuffmanInputStream(
+                new ByteArrayInputStream(sink.toByteArray()));
+        assertEquals(first.length, in.read(buffer));
+        assertEquals(second.length, in.read(buffer));
+        assertArrayEquals(second, Arrays.copyOf(buffer, second.length));
+        assertEquals(-1, in.read(buffer));
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testThrowsOnBadSignature() throws IOException {
+        new AdaptiveHuffmanInputStream(
+                new ByteArrayInputStream(new byte[]{ 1, 2, 3, 4 }));
+    }
+
+    private static byte[] compress(byte[] text) throws IOException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        try (AdaptiveHuffmanOutputStream out =
+                new AdaptiveHuffmanOutputStream(sink)) {
+            out.write(text, 0, text.length / 2);
+
+            for (int i = text.length / 2; i != text.length; ++i) {
+                out.write(text[i]);
+            }
+        }
+
+        return sink.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        try (InputStream in = new AdaptiveHuffmanInputStream(
+                new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[4096];
+            int read;
+
+            while ((read = in.read(buffer)) >= 0) {
+                sink.write(buffer, 0, read);
+            }
+
+            assertEquals(-1, in.read());
+        }
+
+        return sink.toByteArray();
+    }
+}
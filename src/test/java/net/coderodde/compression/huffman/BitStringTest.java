@@ -181,4 +181,68 @@ public class BitStringTest {
             assertEquals((byte) 0b01010101, array[i]);
         }
     }
+
+    @Test
+    public void testAppendBits() {
+        BitString b = new BitString();
+        b.appendBit(true);
+        b.appendBits(0b0110L, 4);
+        b.appendBits(-1L, 64);
+        b.appendBits(0L, 3);
+
+        assertEquals(72, b.length());
+        assertEquals("10110" + repeat('1', 64) + "000", b.toString());
+        assertEquals(0b0110L, b.readBits(1, 4));
+        assertEquals(-1L, b.readBits(5, 64));
+        assertEquals(0b1111L, b.readBits(65, 5));
+    }
+
+    @Test
+    public void testAppendBitsOverwritesRemovedBits() {
+        BitString b = new BitString();
+        b.appendBits(-1L, 10);
+        b.clear();
+        b.appendBits(0L, 10);
+        assertEquals(0L, b.readBits(0, 10));
+    }
+
+    @Test
+    public void testBitsStraddleSegments() {
+        BitString b = new BitString();
+        long segmentBits = (long) BitString.LONGS_PER_SEGMENT * Long.SIZE;
+
+        // Misalign the words so that one of them straddles two segments:
+        b.appendBits(0b101L, 3);
+
+        while (b.length() + Long.SIZE <= segmentBits) {
+            b.appendBits(0L, Long.SIZE);
+        }
+
+        b.appendBits(0x0123456789abcdefL, 64);
+        long index = b.length() - Long.SIZE;
+
+        assertTrue(index < segmentBits);
+        assertTrue(b.length() > segmentBits);
+        assertEquals(2, b.getSegments().length);
+        assertEquals(0x0123456789abcdefL, b.readBits(index, 64));
+        assertEquals(0b101L, b.readBits(0, 3));
+
+        BitString copy = new BitString(b);
+        assertEquals(b.length(), copy.length());
+        assertEquals(0x0123456789abcdefL, copy.readBits(index, 64));
+
+        byte[] bytes = b.toByteArray();
+        assertEquals(b.getNumberOfBytesOccupied(), bytes.length);
+        assertEquals((byte) 0b101, bytes[0]);
+    }
+
+    private static String repeat(char c, int times) {
+        StringBuilder sb = new StringBuilder(times);
+
+        for (int i = 0; i < times; ++i) {
+            sb.append(c);
+        }
+
+        return sb.toString();
+    }
 }
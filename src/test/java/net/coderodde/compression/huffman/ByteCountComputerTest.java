@@ -0,0 +1,53 @@
+package net.coderodde.compression.huffman;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ByteCountComputerTest {
+
+    @Test
+    public void testWeightsMatchNaiveCount() {
+        Random random = new Random(5L);
+        byte[] text = new byte[10_007];
+
+        for (int i = 0; i < text.length; ++i) {
+            text[i] = (byte)(random.nextGaussian() * 30);
+        }
+
+        Map<Byte, Integer> expected = new TreeMap<>();
+
+        for (byte b : text) {
+            expected.put(b, expected.getOrDefault(b, 0) + 1);
+        }
+
+        assertEquals(expected,
+                     new ByteCountComputer().computeCharacterWeights(text));
+    }
+
+    @Test
+    public void testRange() {
+        byte[] text = { 1, 2, 2, 3, 3, 3 };
+        long[] counts = new ByteCountComputer().computeByteCounts(text, 1, 4);
+        assertEquals(0L, counts[1]);
+        assertEquals(2L, counts[2]);
+        assertEquals(2L, counts[3]);
+    }
+
+    @Test
+    public void testParallelCount() {
+        Random random = new Random(6L);
+        byte[] text = new byte[ByteCountComputer.PARALLEL_THRESHOLD * 2 + 13];
+        random.nextBytes(text);
+        long[] expected = new long[256];
+
+        for (byte b : text) {
+            expected[b & 0xff]++;
+        }
+
+        assertArrayEquals(expected,
+                          new ByteCountComputer().computeByteCounts(text));
+    }
+}
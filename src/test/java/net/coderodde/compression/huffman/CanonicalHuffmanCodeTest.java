@@ -0,0 +1,296 @@
+package net.coderodde.compression.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CanonicalHuffmanCodeTest {
+
+    @Test
+    public void testAssignsCanonicalCodeWords() {
+        int[] codeLengths = new int[256];
+        codeLengths['a'] = 2;
+        codeLengths['b'] = 1;
+        codeLengths['c'] = 3;
+        codeLengths['d'] = 3;
+
+        Map<Byte, BitString> map = 
+                new CanonicalHuffmanCode(codeLengths).inferEncodingMap();
+
+        assertEquals("0",   map.get((byte) 'b').toString());
+        assertEquals("10",  map.get((byte) 'a').toString());
+        assertEquals("110", map.get((byte) 'c').toString());
+        assertEquals("111", map.get((byte) 'd').toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThrowsOnOversubscribedCode() {
+        int[] codeLengths = new int[256];
+        codeLengths[0] = 1;
+        codeLengths[1] = 1;
+        codeLengths[2] = 1;
+        new CanonicalHuffmanCode(codeLengths);
+    }
+
+    @Test
+    public void testCanonicalHeaderIsSmaller() {
+        byte[] text = "hello canonical huffman world".getBytes();
+        Map<Byte, Integer> weightMap = 
+                new ByteCountComputer().computeCharacterWeights(text);
+        HuffmanTree tree = new HuffmanTree(weightMap);
+        CanonicalHuffmanCode code = new CanonicalHuffmanCode(tree);
+
+        BitString encodedText = 
+                new HuffmanEncoder().encode(code.inferEncodingMap(), text);
+        byte[] canonicalData = 
+                new HuffmanSerializer().serialize(code, encodedText);
+        byte[] legacyData = 
+                new HuffmanSerializer().serialize(weightMap, encodedText);
+
+        assertTrue(canonicalData.length < legacyData.length);
+
+        HuffmanDeserializer.Result result = 
+                new HuffmanDeserializer().deserialize(canonicalData);
+
+        assertTrue(result.isCanonical());
+        assertArrayEquals(text, new HuffmanDecoder().decode(result));
+    }
+
+    @Test
+    public void testDenseCodeLengthTable() {
+        byte[] text = new byte[1000];
+
+        for (int i = 0; i < text.length; ++i) {
+            text[i] = (byte)(i * i);
+        }
+
+        CanonicalHuffmanCode code = new CanonicalHuffmanCode(
+                new HuffmanTree(
+                        new ByteCountComputer().computeCharacterWeights(text)));
+
+        assertTrue(code.getNumberOfCodeWords() > 
+                   HuffmanSerializer.MAX_SPARSE_CODE_LENGTH_ENTRIES);
+
+        BitString encodedText = 
+                new HuffmanEncoder().encode(code.inferEncodingMap(), text);
+        byte[] data = new HuffmanSerializer().serialize(code, encodedText);
+        HuffmanDeserializer.Result result = 
+                new HuffmanDeserializer().deserialize(data);
+
+        assertArrayEquals(code.getCodeLengths(), 
+                          result.getCanonicalCode().getCodeLengths());
+        assertArrayEquals(text, new HuffmanDecoder().decode(result));
+    }
+
+    @Test
+    public void testLegacyFormatStillDecodes() {
+        byte[] text = "legacy format".getBytes();
+        Map<Byte, Integer> weightMap = 
+                new ByteCountComputer().computeCharacterWeights(text);
+        BitString encodedText = new HuffmanEncoder().encode(
+                new HuffmanTree(weightMap).inferEncodingMap(), text);
+        byte[] data = new HuffmanSerializer().serialize(weightMap, 
+                                                        encodedText);
+        HuffmanDeserializer.Result result = 
+                new HuffmanDeserializer().deserialize(data);
+
+        assertFalse(result.isCanonical());
+        assertArrayEquals(text, new HuffmanDecoder().decode(result));
+    }
+
+    @Test
+    public void testStreamSerializationAcrossSegments() throws IOException {
+        // Enough bytes for the encoded text to span several segments of the
+        // bit string:
+        byte[] text = new byte[10 * BitString.LONGS_PER_SEGMENT];
+        Random random = new Random(7L);
+
+        for (int i = 0; i < text.length; ++i) {
+            text[i] = (byte)(random.nextInt(200) + random.nextInt(56));
+        }
+
+        CanonicalHuffmanCode code = new CanonicalHuffmanCode(
+                new HuffmanTree(
+                        new ByteCountComputer().computeFrequencyTable(text)));
+        BitString encodedText = 
+                new HuffmanEncoder().encode(code.getCodeTable(), text);
+
+        assertTrue(encodedText.getSegments().length > 1);
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        new HuffmanSerializer().serialize(code, encodedText, serialized);
+        byte[] data = serialized.toByteArray();
+
+        assertArrayEquals(
+                new HuffmanSerializer().serialize(code, encodedText), data);
+
+        HuffmanDeserializer.Result result = new HuffmanDeserializer()
+                .deserialize(new ByteArrayInputStream(data));
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+
+        assertEquals(encodedText.length(), 
+                     result.getEncodedText().length());
+        assertEquals(text.length, 
+                     new HuffmanDecoder().decode(result, decoded));
+        assertArrayEquals(text, decoded.toByteArray());
+        assertArrayEquals(text, new HuffmanDecoder().decode(result));
+    }
+
+    @Test
+    public void testLegacyFormatDeserializesFromStream() throws IOException {
+        byte[] text = "legacy format from a stream".getBytes();
+        FrequencyTable frequencyTable = 
+                new ByteCountComputer().computeFrequencyTable(text);
+        BitString encodedText = new HuffmanEncoder().encode(
+                new HuffmanTree(frequencyTable).inferCodeTable(), text);
+        byte[] data = new HuffmanSerializer().serialize(frequencyTable, 
+                                                        encodedText);
+        HuffmanDeserializer.Result result = new HuffmanDeserializer()
+                .deserialize(new ByteArrayInputStream(data));
+
+        assertFalse(result.isCanonical());
+        assertArrayEquals(text, new HuffmanDecoder().decode(result));
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testThrowsOnTruncatedStream() throws IOException {
+        byte[] text = "truncated stream".getBytes();
+        CanonicalHuffmanCode code = new CanonicalHuffmanCode(
+                new HuffmanTree(
+                        new ByteCountComputer().computeFrequencyTable(text)));
+        byte[] data = new HuffmanSerializer().serialize(
+                code,
+                new HuffmanEncoder().encode(code.getCodeTable(), text));
+        new HuffmanDeserializer().deserialize(
+                new ByteArrayInputStream(data, 0, data.length - 1));
+    }
+
+    @Test
+    public void testDeserializesViewOfBuffer() {
+        byte[] text = new byte[50_000];
+        Random random = new Random(11L);
+
+        for (int i = 0; i < text.length; ++i) {
+            text[i] = (byte)(random.nextInt(40) + random.nextInt(40));
+        }
+
+        CanonicalHuffmanCode code = new CanonicalHuffmanCode(
+                new HuffmanTree(
+                        new ByteCountComputer().computeFrequencyTable(text)));
+        BitString encodedText = 
+                new HuffmanEncoder().encode(code.getCodeTable(), text);
+        byte[] data = new HuffmanSerializer().serialize(code, encodedText);
+
+        // Surround the serialized data with bytes that must be ignored:
+        ByteBuffer buffer = ByteBuffer.allocate(data.length + 10);
+        buffer.put(new byte[]{ 1, 2, 3 }).put(data).put(new byte[7]);
+        ((Buffer) buffer).position(3);
+        ((Buffer) buffer).limit(3 + data.length);
+
+        HuffmanDeserializer.Result result = 
+                new HuffmanDeserializer().deserialize(buffer);
+
+        assertEquals(3, buffer.position());
+        assertNotNull(result.getEncodedBits());
+        assertEquals(encodedText.length(), result.getEncodedBits().length());
+        assertArrayEquals(text, new HuffmanDecoder().decode(result));
+        assertEquals(encodedText.length(), 
+                     result.getEncodedText().length());
+
+        for (long i = 0; i < encodedText.length(); i += 997) {
+            assertEquals(encodedText.readBit(i), 
+                         result.getEncodedBits().readBit(i));
+        }
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testThrowsOnTruncatedArray() {
+        byte[] text = "truncated array".getBytes();
+        CanonicalHuffmanCode code = new CanonicalHuffmanCode(
+                new HuffmanTree(
+                        new ByteCountComputer().computeFrequencyTable(text)));
+        byte[] data = new HuffmanSerializer().serialize(
+                code,
+                new HuffmanEncoder().encode(code.getCodeTable(), text));
+        new HuffmanDeserializer().deserialize(
+                Arrays.copyOf(data, data.length - 1));
+    }
+
+    @Test
+    public void testLimitsCodeLengths() {
+        // Fibonacci frequencies yield the deepest possible Huffman tree:
+        FrequencyTable frequencyTable = new FrequencyTable();
+        long a = 1L;
+        long b = 1L;
+
+        for (int symbol = 0; symbol != 40; ++symbol) {
+            frequencyTable.frequencies[symbol] = a;
+            long c = a + b;
+            a = b;
+            b = c;
+        }
+
+        assertEquals(39, new CanonicalHuffmanCode(
+                new HuffmanTree(frequencyTable)).getMaximumCodeLength());
+
+        long previousEncodedLength = Long.MAX_VALUE;
+
+        for (int maxCodeLength : new int[]{ 6, 8, 11, 15, 39, 64 }) {
+            CanonicalHuffmanCode code = 
+                    new CanonicalHuffmanCode(frequencyTable, maxCodeLength);
+            double kraftSum = 0.0;
+
+            for (int codeLength : code.getCodeLengths()) {
+                if (codeLength != 0) {
+                    kraftSum += Math.pow(2.0, -codeLength);
+                }
+            }
+
+            long encodedLength = code.getCodeTable()
+                                     .computeEncodedLength(frequencyTable);
+
+            assertTrue(code.getMaximumCodeLength() <= maxCodeLength);
+            assertEquals(1.0, kraftSum, 0.0);
+            assertTrue(encodedLength <= previousEncodedLength);
+            previousEncodedLength = encodedLength;
+        }
+    }
+
+    @Test
+    public void testLimitedCodeIsOptimal() {
+        FrequencyTable frequencyTable = new FrequencyTable();
+        frequencyTable.frequencies['a'] = 1;
+        frequencyTable.frequencies['b'] = 1;
+        frequencyTable.frequencies['c'] = 2;
+        frequencyTable.frequencies['d'] = 4;
+        frequencyTable.frequencies['e'] = 8;
+
+        CanonicalHuffmanCode code = new CanonicalHuffmanCode(frequencyTable, 3);
+
+        // The lengths 4, 4, 3, 2, 1 cost 30 bits; the best ones within 
+        // three bits are 3, 3, 3, 3, 1 costing 32 bits.
+        assertEquals(3, code.getCodeLength((byte) 'a'));
+        assertEquals(3, code.getCodeLength((byte) 'b'));
+        assertEquals(3, code.getCodeLength((byte) 'c'));
+        assertEquals(3, code.getCodeLength((byte) 'd'));
+        assertEquals(1, code.getCodeLength((byte) 'e'));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThrowsOnTooShortLimit() {
+        FrequencyTable frequencyTable = new FrequencyTable();
+
+        for (int symbol = 0; symbol != 5; ++symbol) {
+            frequencyTable.frequencies[symbol] = symbol + 1;
+        }
+
+        PackageMerge.computeCodeLengths(frequencyTable, 2);
+    }
+}
@@ -0,0 +1,100 @@
+package net.coderodde.compression.huffman;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CodeTableTest {
+
+    private static final byte[] TEXT = 
+            "abracadabra, the primitive code table".getBytes();
+
+    @Test
+    public void testEncodingMapRoundTrip() {
+        HuffmanTree tree = new HuffmanTree(
+                new ByteCountComputer().computeFrequencyTable(TEXT));
+        CodeTable codeTable = tree.inferCodeTable();
+        Map<Byte, BitString> encodingMap = codeTable.toEncodingMap();
+
+        assertEquals(encodingMap.toString(), 
+                     tree.inferEncodingMap().toString());
+        assertArrayEquals(
+                codeTable.getCodeLengths(),
+                CodeTable.fromEncodingMap(encodingMap).getCodeLengths());
+    }
+
+    @Test
+    public void testTableAndMapEncodersAgree() {
+        HuffmanTree tree = new HuffmanTree(
+                new ByteCountComputer().computeFrequencyTable(TEXT));
+        CodeTable codeTable = tree.inferCodeTable();
+        HuffmanEncoder encoder = new HuffmanEncoder();
+
+        BitString fromTable = encoder.encode(codeTable, TEXT);
+        BitString fromMap = encoder.encode(tree.inferEncodingMap(), TEXT);
+
+        assertEquals(fromMap.toString(), fromTable.toString());
+        assertArrayEquals(TEXT, 
+                          new HuffmanDecoder().decode(codeTable, fromTable));
+    }
+
+    @Test
+    public void testFrequencyTableMapAdapters() {
+        Map<Byte, Integer> weightMap = 
+                new ByteCountComputer().computeCharacterWeights(TEXT);
+        FrequencyTable frequencyTable = FrequencyTable.fromMap(weightMap);
+
+        assertEquals(weightMap, frequencyTable.toMap());
+        assertEquals(TEXT.length, frequencyTable.getTotalFrequency());
+        assertEquals(6L, frequencyTable.getFrequency((byte) 'a'));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThrowsOnByteWithoutCodeWord() {
+        CodeTable codeTable = new HuffmanTree(
+                new ByteCountComputer().computeFrequencyTable(TEXT))
+                .inferCodeTable();
+        new HuffmanEncoder().encode(codeTable, new byte[]{ (byte) 'z' });
+    }
+
+    @Test
+    public void testAccumulatorHandlesLongCodeWords() {
+        // The lengths 1, 2, ..., 63, 64, 64 form a complete code:
+        int[] codeLengths = new int[256];
+
+        for (int symbol = 0; symbol != 64; ++symbol) {
+            codeLengths[symbol] = symbol + 1;
+        }
+
+        codeLengths[64] = 64;
+        CodeTable codeTable = new CanonicalHuffmanCode(codeLengths)
+                .getCodeTable();
+        byte[] text = new byte[5000];
+        Random random = new Random(11L);
+
+        for (int i = 0; i < text.length; ++i) {
+            text[i] = (byte) random.nextInt(65);
+        }
+
+        BitString expected = new BitString();
+
+        for (byte b : text) {
+            expected.appendBits(codeTable.getCodeWord(b), 
+                                codeTable.getCodeLength(b));
+        }
+
+        BitString fromArray = new HuffmanEncoder().encode(codeTable, text);
+        BitString fromBuffer = 
+                new HuffmanEncoder().encode(codeTable, ByteBuffer.wrap(text));
+
+        assertEquals(codeTable.computeEncodedLength(
+                        new ByteCountComputer().computeFrequencyTable(text)), 
+                     fromArray.length());
+        assertArrayEquals(expected.toByteArray(), fromArray.toByteArray());
+        assertArrayEquals(expected.toByteArray(), fromBuffer.toByteArray());
+        assertArrayEquals(text, 
+                          new HuffmanDecoder().decode(codeTable, fromArray));
+    }
+}
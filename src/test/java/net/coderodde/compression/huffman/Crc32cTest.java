@@ -0,0 +1,47 @@
+package net.coderodde.compression.huffman;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Checksum;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class Crc32cTest {
+
+    @Test
+    public void testCheckValue() {
+        byte[] data = "123456789".getBytes(StandardCharsets.US_ASCII);
+        Checksum checksum = new Crc32c();
+        checksum.update(data, 0, data.length);
+        assertEquals(0xE3069283L, checksum.getValue());
+    }
+
+    @Test
+    public void testMatchesPlatformChecksum() {
+        Random random = new Random(2L);
+
+        for (int length : new int[]{ 0, 1, 7, 8, 9, 1000, 100_003 }) {
+            byte[] data = new byte[length + 3];
+            random.nextBytes(data);
+            ByteBuffer direct = ByteBuffer.allocateDirect(length);
+            direct.put(data, 3, length);
+            ((Buffer) direct).flip();
+
+            Checksum expected = Crc32c.create();
+            expected.update(data, 3, length);
+
+            Checksum tableDriven = new Crc32c();
+            tableDriven.update(data, 3, length);
+            assertEquals(expected.getValue(), tableDriven.getValue());
+
+            for (Checksum checksum : new Checksum[]{ Crc32c.create(), 
+                                                     new Crc32c() }) {
+                Crc32c.update(checksum, direct);
+                assertEquals(expected.getValue(), checksum.getValue());
+                assertEquals(0, direct.position());
+            }
+        }
+    }
+}
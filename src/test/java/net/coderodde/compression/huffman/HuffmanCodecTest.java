@@ -0,0 +1,163 @@
+package net.coderodde.compression.huffman;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class HuffmanCodecTest {
+
+    private static final int BLOCK_SIZE = 1000;
+
+    @Test
+    public void testSameOutputAsStream() throws IOException {
+        for (boolean interleaved : new boolean[]{ false, true }) {
+            HuffmanCodec codec = new HuffmanCodec(BLOCK_SIZE, 11, interleaved);
+
+            for (int length : new int[]{ 0, 1, 7, BLOCK_SIZE, 3_333 }) {
+                byte[] text = randomText(length, new Random(length));
+                ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+                try (HuffmanOutputStream out =
+                        new HuffmanOutputStream(expected,
+                                                BLOCK_SIZE,
+                                                11,
+                                                interleaved)) {
+                    out.write(text);
+                }
+
+                byte[] compressed = codec.compress(text);
+                assertArrayEquals(expected.toByteArray(), compressed);
+                assertArrayEquals(text, codec.decompress(compressed));
+            }
+        }
+    }
+
+    @Test
+    public void testReusesCodecAcrossMessages() {
+        HuffmanCodec codec = new HuffmanCodec(BLOCK_SIZE, 9);
+        Random random = new Random(11L);
+
+        for (int i = 0; i != 200; ++i) {
+            // Alternate large and tiny messages so that stale state of a
+            // previous message would show up:
+            byte[] text = randomText(i % 2 == 0 ?
+                                     random.nextInt(5_000) :
+                                     random.nextInt(5),
+                                     random);
+            assertArrayEquals(text, codec.decompress(codec.compress(text)));
+
+            if (i % 50 == 0) {
+                codec.reset();
+            }
+        }
+    }
+
+    @Test
+    public void testCodesWithinArrays() {
+        HuffmanCodec codec = new HuffmanCodec();
+        byte[] text = randomText(10_000, new Random(5L));
+        byte[] compressed =
+                new byte[3 + codec.getMaximumCompressedLength(9_000)];
+        int compressedLength = codec.compress(text, 500, 9_000, compressed, 3);
+
+        assertEquals(9_000,
+                     codec.getDecompressedLength(compressed,
+                                                 3,
+                                                 compressedLength));
+
+        byte[] decompressed = new byte[9_002];
+        assertEquals(9_000, codec.decompress(compressed,
+                                             3,
+                                             compressedLength,
+                                             decompressed,
+                                             2));
+        assertArrayEquals(Arrays.copyOfRange(text, 500, 9_500),
+                          Arrays.copyOfRange(decompressed, 2, 9_002));
+    }
+
+    @Test
+    public void testStoresIncompressibleBlocks() throws IOException {
+        Random random = new Random(13L);
+
+        for (boolean interleaved : new boolean[]{ false, true }) {
+            HuffmanCodec codec = new HuffmanCodec(BLOCK_SIZE, 11, interleaved);
+
+            for (int length : new int[]{ 1, 7, BLOCK_SIZE, 3_333 }) {
+                byte[] text = new byte[length];
+                random.nextBytes(text);
+                byte[] compressed = codec.compress(text);
+
+                assertEquals(codec.getMaximumCompressedLength(length),
+                             compressed.length);
+                assertEquals(HuffmanBlockCodec.STORED_BLOCK, compressed[5]);
+                assertArrayEquals(text, codec.decompress(compressed));
+            }
+        }
+    }
+
+    @Test
+    public void testSteadyStateAllocatesNothing() {
+        assumeTrue(ManagementFactory.getThreadMXBean()
+                   instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean)
+                        ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported()
+                   && threadBean.isThreadAllocatedMemoryEnabled());
+
+        HuffmanCodec codec = new HuffmanCodec(BLOCK_SIZE, 11, true);
+        byte[] text = randomText(2 * BLOCK_SIZE + 17, new Random(13L));
+        byte[] compressed =
+                new byte[codec.getMaximumCompressedLength(text.length)];
+        byte[] decompressed = new byte[text.length];
+
+        for (int i = 0; i != 10; ++i) {
+            int length = codec.compress(text, 0, text.length, compressed, 0);
+            codec.decompress(compressed, 0, length, decompressed, 0);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i != 100; ++i) {
+            int length = codec.compress(text, 0, text.length, compressed, 0);
+            codec.decompress(compressed, 0, length, decompressed, 0);
+        }
+
+        long allocated =
+                threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertArrayEquals(text, decompressed);
+        // Leave some slack for the measurement itself:
+        assertTrue("Allocated " + allocated + " bytes.", allocated < 1024);
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testThrowsOnTrailingBytes() {
+        HuffmanCodec codec = new HuffmanCodec();
+        byte[] compressed = codec.compress("abc".getBytes());
+        codec.decompress(Arrays.copyOf(compressed, compressed.length + 1));
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testThrowsOnTruncatedMessage() {
+        HuffmanCodec codec = new HuffmanCodec();
+        byte[] compressed = codec.compress("abcabcabd".getBytes());
+        codec.decompress(Arrays.copyOf(compressed, compressed.length - 2));
+    }
+
+    private static byte[] randomText(int length, Random random) {
+        byte[] text = new byte[length];
+
+        for (int i = 0; i < length; ++i) {
+            text[i] = (byte)('a' + random.nextInt(1 + i % 26));
+        }
+
+        return text;
+    }
+}
@@ -0,0 +1,93 @@
+package net.coderodde.compression.huffman;
+
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HuffmanDecoderTest {
+
+    @Test
+    public void testSingleByteText() {
+        byte[] text = { 7, 7, 7, 7, 7 };
+        assertArrayEquals(text, encodeAndDecode(text));
+    }
+
+    @Test
+    public void testLongCodeWords() {
+        // Fibonacci frequencies produce the deepest possible tree, so the
+        // longest code words need more than one secondary table.
+        ByteList byteList = new ByteList();
+        int a = 1;
+        int b = 1;
+
+        for (int symbol = 0; symbol < 25; ++symbol) {
+            for (int i = 0; i < a; ++i) {
+                byteList.appendByte((byte) symbol);
+            }
+
+            int c = a + b;
+            a = b;
+            b = c;
+        }
+
+        byte[] text = byteList.toByteArray();
+        shuffle(text, new Random(13L));
+        assertArrayEquals(text, encodeAndDecode(text));
+    }
+
+    @Test
+    public void testAgreesWithTreeWalk() {
+        Random random = new Random(100L);
+        byte[] text = new byte[5000];
+
+        for (int i = 0; i < text.length; ++i) {
+            text[i] = (byte)(random.nextGaussian() * 20);
+        }
+
+        HuffmanTree tree = buildTree(text);
+        BitString bits =
+                new HuffmanEncoder().encode(tree.inferEncodingMap(), text);
+        HuffmanTree.IntHolder index = new HuffmanTree.IntHolder();
+        ByteList byteList = new ByteList();
+
+        while (index.value < bits.length()) {
+            byteList.appendByte(tree.decodeBitString(index, bits));
+        }
+
+        assertArrayEquals(byteList.toByteArray(),
+                          new HuffmanDecoder().decode(tree, bits));
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testThrowsOnTruncatedCodeWord() {
+        byte[] text = { 3, 3, 3, 3, 2, 2, 1 };
+        HuffmanTree tree = buildTree(text);
+        BitString bits =
+                new HuffmanEncoder().encode(tree.inferEncodingMap(), text);
+        bits.removeLastBit();
+        new HuffmanDecoder().decode(tree, bits);
+    }
+
+    private static byte[] encodeAndDecode(byte[] text) {
+        HuffmanTree tree = buildTree(text);
+        BitString bits =
+                new HuffmanEncoder().encode(tree.inferEncodingMap(), text);
+        return new HuffmanDecoder().decode(buildTree(text), bits);
+    }
+
+    private static HuffmanTree buildTree(byte[] text) {
+        Map<Byte, Integer> weightMap =
+                new ByteCountComputer().computeCharacterWeights(text);
+        return new HuffmanTree(weightMap);
+    }
+
+    private static void shuffle(byte[] array, Random random) {
+        for (int i = array.length - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            byte tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package net.coderodde.compression.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HuffmanDictionaryTest {
+
+    private static final byte[] SAMPLE =
+            ("{\"user\":\"alice\",\"action\":\"login\",\"ok\":true}\n" +
+             "{\"user\":\"bob\",\"action\":\"logout\",\"ok\":false}\n")
+            .getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void testRoundTrip() {
+        HuffmanDictionary dictionary = HuffmanDictionary.train(7, SAMPLE);
+        HuffmanCodec codec = new HuffmanCodec();
+        Random random = new Random(3L);
+
+        for (int length = 0; length != 300; ++length) {
+            byte[] text = new byte[length];
+
+            for (int i = 0; i != length; ++i) {
+                // Mostly sample bytes, now and then a byte never seen:
+                text[i] = random.nextInt(10) == 0 ?
+                          (byte) random.nextInt(256) :
+                          SAMPLE[random.nextInt(SAMPLE.length)];
+            }
+
+            byte[] compressed = codec.compress(dictionary, text);
+            assertEquals(7, HuffmanDictionary.readId(compressed,
+                                                     0,
+                                                     compressed.length));
+            assertArrayEquals(text, codec.decompress(dictionary, compressed));
+        }
+    }
+
+    @Test
+    public void testShorterThanStreamForSmallMessages() {
+        HuffmanDictionary dictionary = HuffmanDictionary.train(1, SAMPLE);
+        HuffmanCodec codec = new HuffmanCodec();
+        byte[] text = "{\"user\":\"carol\",\"action\":\"login\",\"ok\":true}"
+                      .getBytes(StandardCharsets.US_ASCII);
+
+        assertTrue(codec.compress(dictionary, text).length <
+                   Math.min(text.length, codec.compress(text).length));
+    }
+
+    @Test
+    public void testFileRoundTrip() throws IOException {
+        HuffmanDictionary dictionary =
+                HuffmanDictionary.train(-5,
+                                        new ByteCountComputer()
+                                                .computeFrequencyTable(SAMPLE),
+                                        9);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dictionary.writeTo(out);
+        out.write(42);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        HuffmanDictionary copy = HuffmanDictionary.readFrom(in);
+
+        assertEquals(-5, copy.getId());
+        assertArrayEquals(dictionary.getCodeLengths(), copy.getCodeLengths());
+        assertEquals(42, in.read());
+        assertTrue(Arrays.stream(copy.getCodeLengths())
+                         .allMatch(length -> length >= 1 && length <= 9));
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testThrowsOnUnsupportedVersion() {
+        byte[] data = HuffmanDictionary.train(1, SAMPLE).toByteArray();
+        data[HuffmanDictionary.MAGIC_DICTIONARY.length] = 2;
+        HuffmanDictionary.fromByteArray(data);
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testThrowsOnWrongDictionary() {
+        HuffmanCodec codec = new HuffmanCodec();
+        byte[] compressed =
+                codec.compress(HuffmanDictionary.train(1, SAMPLE), SAMPLE);
+        codec.decompress(HuffmanDictionary.train(2, SAMPLE), compressed);
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testThrowsOnTrailingBytes() {
+        HuffmanDictionary dictionary = HuffmanDictionary.train(1, SAMPLE);
+        HuffmanCodec codec = new HuffmanCodec();
+        byte[] compressed = codec.compress(dictionary, SAMPLE);
+        codec.decompress(dictionary,
+                         Arrays.copyOf(compressed, compressed.length + 1));
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testThrowsOnTruncatedMessage() {
+        HuffmanDictionary dictionary = HuffmanDictionary.train(1, SAMPLE);
+        HuffmanCodec codec = new HuffmanCodec();
+        byte[] compressed = codec.compress(dictionary, SAMPLE);
+        codec.decompress(dictionary,
+                         Arrays.copyOf(compressed, compressed.length - 2));
+    }
+}
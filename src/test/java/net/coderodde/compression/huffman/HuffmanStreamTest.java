@@ -0,0 +1,90 @@
+package net.coderodde.compression.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HuffmanStreamTest {
+
+    @Test
+    public void testMultipleBlocks() throws IOException {
+        Random random = new Random(7L);
+        byte[] text = new byte[10_000];
+
+        for (int i = 0; i < text.length; ++i) {
+            text[i] = (byte)(random.nextGaussian() * 10);
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (HuffmanOutputStream out = new HuffmanOutputStream(baos, 999)) {
+            out.write(text, 0, 5000);
+
+            for (int i = 5000; i < 6000; ++i) {
+                out.write(text[i]);
+            }
+
+            out.write(text, 6000, 4000);
+        }
+
+        assertArrayEquals(text, readAll(baos.toByteArray()));
+    }
+
+    @Test
+    public void testEmptyStream() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new HuffmanOutputStream(baos).close();
+        assertEquals(0, readAll(baos.toByteArray()).length);
+    }
+
+    @Test
+    public void testFlushEndsBlock() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        HuffmanOutputStream out = new HuffmanOutputStream(baos);
+        out.write("abc".getBytes());
+        out.flush();
+        out.flush();
+        out.write("defg".getBytes());
+        out.close();
+        assertArrayEquals("abcdefg".getBytes(), readAll(baos.toByteArray()));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testThrowsOnTruncatedStream() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (HuffmanOutputStream out = new HuffmanOutputStream(baos)) {
+            out.write("truncated stream".getBytes());
+        }
+
+        byte[] data = baos.toByteArray();
+        readAll(Arrays.copyOf(data, data.length - 3));
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testThrowsOnBadSignature() throws IOException {
+        new HuffmanInputStream(new ByteArrayInputStream(new byte[10]));
+    }
+
+    private static byte[] readAll(byte[] data) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (InputStream in = 
+                new HuffmanInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[333];
+            int read;
+
+            while ((read = in.read(buffer)) >= 0) {
+                baos.write(buffer, 0, read);
+            }
+        }
+
+        return baos.toByteArray();
+    }
+}
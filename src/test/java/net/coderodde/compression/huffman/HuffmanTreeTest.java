@@ -1,7 +1,9 @@
 package net.coderodde.compression.huffman;
 
 import java.util.HashMap;
+import java.util.Map;
 import org.junit.Test;
+import static org.junit.Assert.*;
 
 public class HuffmanTreeTest {
 
@@ -9,4 +11,18 @@ public class HuffmanTreeTest {
     public void testThrowsOnEmptyText() {
         new HuffmanTree(new HashMap<>());
     }
+
+    @Test
+    public void testSingleByteEncodingMapIsRepeatable() {
+        Map<Byte, Integer> weightMap = new HashMap<>();
+        weightMap.put((byte) 'a', 10);
+        HuffmanTree tree = new HuffmanTree(weightMap);
+
+        for (int i = 0; i != 2; ++i) {
+            Map<Byte, BitString> map = tree.inferEncodingMap();
+
+            assertEquals(1, map.size());
+            assertEquals("0", map.get((byte) 'a').toString());
+        }
+    }
 }
@@ -0,0 +1,725 @@
+package net.coderodde.compression.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ParallelHuffmanCodecTest {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    @Test
+    public void testSameOutputAsSequentialStream() throws IOException {
+        byte[] text = randomText(100_000, new Random(3L));
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+
+        try (HuffmanOutputStream out = 
+                new HuffmanOutputStream(sequential, BLOCK_SIZE)) {
+            out.write(text);
+        }
+
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+
+        try (ParallelHuffmanCodec codec = 
+                new ParallelHuffmanCodec(4, BLOCK_SIZE)) {
+            codec.compress(new ByteArrayInputStream(text), parallel);
+        }
+
+        assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        try (ParallelHuffmanCodec codec = 
+                new ParallelHuffmanCodec(3, BLOCK_SIZE)) {
+            for (int length : new int[]{ 0, 1, BLOCK_SIZE, 50_001 }) {
+                byte[] text = randomText(length, new Random(length));
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                codec.compress(new ByteArrayInputStream(text), compressed);
+
+                ByteArrayOutputStream decompressed = 
+                        new ByteArrayOutputStream();
+                codec.decompress(
+                        new ByteArrayInputStream(compressed.toByteArray()),
+                        decompressed);
+
+                assertArrayEquals(text, decompressed.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTripWithLimitedCodeLengths() throws IOException {
+        // Byte 'i' occurs about 2^i times, so the Huffman code needs code 
+        // words longer than the limit:
+        byte[] text = new byte[(1 << 18) - 1];
+        int index = 0;
+
+        for (int i = 0; i != 18; ++i) {
+            for (int j = 0; j != 1 << i; ++j) {
+                text[index++] = (byte) i;
+            }
+        }
+
+        for (int maxCodeLength : new int[]{ 8, 11, 64 }) {
+            try (ParallelHuffmanCodec codec = 
+                    ParallelHuffmanCodec.builder()
+                            .threads(2)
+                            .blockSize(1 << 18)
+                            .maxCodeLength(maxCodeLength)
+                            .build()) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                codec.compress(new ByteArrayInputStream(text), compressed);
+
+                ByteArrayOutputStream decompressed = 
+                        new ByteArrayOutputStream();
+                codec.decompress(
+                        new ByteArrayInputStream(compressed.toByteArray()),
+                        decompressed);
+
+                assertArrayEquals(text, decompressed.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testInterleavedRoundTrip() throws IOException {
+        Path compressed = Files.createTempFile("huffman", ".het");
+        Path decompressed = Files.createTempFile("huffman", ".out");
+
+        try {
+            for (int maxCodeLength : new int[]{ 11, 64 }) {
+                try (ParallelHuffmanCodec codec = 
+                        ParallelHuffmanCodec.builder()
+                                .threads(2)
+                                .blockSize(BLOCK_SIZE)
+                                .maxCodeLength(maxCodeLength)
+                                .interleaved(true)
+                                .build()) {
+                    for (int length : 
+                            new int[]{ 0, 1, 3, 5, BLOCK_SIZE, 50_001 }) {
+                        byte[] text = skewedText(length, new Random(length));
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        codec.compress(new ByteArrayInputStream(text), out);
+
+                        ByteArrayOutputStream decoded = 
+                                new ByteArrayOutputStream();
+                        codec.decompress(
+                                new ByteArrayInputStream(out.toByteArray()),
+                                decoded);
+
+                        assertArrayEquals(text, decoded.toByteArray());
+
+                        Files.write(compressed, out.toByteArray());
+
+                        try (FileChannel in = FileChannel.open(compressed);
+                             FileChannel target = 
+                                     openForWriting(decompressed)) {
+                            codec.decompress(in, target);
+                        }
+
+                        assertArrayEquals(text, 
+                                          Files.readAllBytes(decompressed));
+                    }
+                }
+            }
+        } finally {
+            Files.delete(compressed);
+            Files.delete(decompressed);
+        }
+    }
+
+    @Test
+    public void testMappedFilesMatchStreams() throws IOException {
+        // A window smaller than a few blocks makes the frames straddle 
+        // windows:
+        Path source = Files.createTempFile("huffman", ".txt");
+        Path compressed = Files.createTempFile("huffman", ".het");
+        Path decompressed = Files.createTempFile("huffman", ".out");
+
+        try (ParallelHuffmanCodec codec = 
+                ParallelHuffmanCodec.builder()
+                        .threads(2)
+                        .blockSize(BLOCK_SIZE)
+                        .mappedWindowSize(10_000L)
+                        .build()) {
+            for (int length : new int[]{ 0, 1, BLOCK_SIZE, 50_001 }) {
+                byte[] text = randomText(length, new Random(length));
+                Files.write(source, text);
+
+                try (FileChannel in = FileChannel.open(source);
+                     FileChannel out = openForWriting(compressed)) {
+                    codec.compress(in, out);
+                }
+
+                ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                codec.compress(new ByteArrayInputStream(text), expected);
+
+                assertArrayEquals(expected.toByteArray(), 
+                                  Files.readAllBytes(compressed));
+
+                try (FileChannel in = FileChannel.open(compressed);
+                     FileChannel out = openForWriting(decompressed)) {
+                    codec.decompress(in, out);
+                }
+
+                assertArrayEquals(text, Files.readAllBytes(decompressed));
+            }
+        } finally {
+            Files.delete(source);
+            Files.delete(compressed);
+            Files.delete(decompressed);
+        }
+    }
+
+    @Test
+    public void testSampledRoundTrip() throws IOException {
+        int blockSize = 1 << 17;
+        Path source = Files.createTempFile("huffman", ".txt");
+        Path compressed = Files.createTempFile("huffman", ".het");
+
+        // The sampled chunks of the second text hold only the bytes below 
+        // 128 and the others only the bytes above, which get the longest 
+        // code words of the estimated code. Since that code does not fit, 
+        // the blocks fall back to the exact counts:
+        byte[] misleading = new byte[3 * blockSize + 5];
+        Random random = new Random(9L);
+
+        for (int i = 0; i != misleading.length; ++i) {
+            boolean sampled = 
+                    (i / ByteCountComputer.SAMPLE_CHUNK_LENGTH) % 4 == 0;
+            misleading[i] = (byte)(random.nextInt(128) + (sampled ? 0 : 128));
+        }
+
+        try {
+            for (byte[] text : new byte[][]{ 
+                    skewedText(3 * blockSize + 5, new Random(5L)), 
+                    misleading }) {
+                for (boolean interleaved : new boolean[]{ false, true }) {
+                    try (ParallelHuffmanCodec codec = 
+                            ParallelHuffmanCodec.builder()
+                                    .threads(2)
+                                    .blockSize(blockSize)
+                                    .interleaved(interleaved)
+                                    .samplingInterval(4)
+                                    .build()) {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        codec.compress(new ByteArrayInputStream(text), out);
+
+                        ByteArrayOutputStream decoded = 
+                                new ByteArrayOutputStream();
+                        codec.decompress(
+                                new ByteArrayInputStream(out.toByteArray()),
+                                decoded);
+                        assertArrayEquals(text, decoded.toByteArray());
+                        assertTrue(out.size() <= 
+                                   new HuffmanCodec(blockSize, 11, interleaved)
+                                           .getMaximumCompressedLength(
+                                                   text.length));
+
+                        if (text == misleading) {
+                            ByteArrayOutputStream exact = 
+                                    new ByteArrayOutputStream();
+
+                            try (ParallelHuffmanCodec exactCodec = 
+                                    ParallelHuffmanCodec.builder()
+                                            .threads(2)
+                                            .blockSize(blockSize)
+                                            .interleaved(interleaved)
+                                            .build()) {
+                                exactCodec.compress(
+                                        new ByteArrayInputStream(text), 
+                                        exact);
+                            }
+
+                            assertArrayEquals(exact.toByteArray(), 
+                                              out.toByteArray());
+                        }
+
+                        Files.write(source, text);
+
+                        try (FileChannel in = FileChannel.open(source);
+                             FileChannel target = openForWriting(compressed)) {
+                            codec.compress(in, target);
+                        }
+
+                        assertArrayEquals(out.toByteArray(), 
+                                          Files.readAllBytes(compressed));
+                    }
+                }
+            }
+        } finally {
+            Files.delete(source);
+            Files.delete(compressed);
+        }
+    }
+
+    @Test
+    public void testInterleavedContextModelledRoundTrip() throws IOException {
+        int blockSize = 1 << 16;
+
+        for (byte[] text : new byte[][]{ 
+                markovText(3 * blockSize + 100, new Random(9L)),
+                skewedText(2 * blockSize + 100, new Random(10L)) }) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream plain = new ByteArrayOutputStream();
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+
+            try (ParallelHuffmanCodec codec = 
+                    ParallelHuffmanCodec.builder()
+                            .threads(2)
+                            .blockSize(blockSize)
+                            .interleaved(true)
+                            .contextModelled(true)
+                            .build();
+                 ParallelHuffmanCodec plainCodec = 
+                    ParallelHuffmanCodec.builder()
+                            .threads(2)
+                            .blockSize(blockSize)
+                            .interleaved(true)
+                            .build()) {
+                codec.compress(new ByteArrayInputStream(text), out);
+                plainCodec.compress(new ByteArrayInputStream(text), plain);
+                codec.decompress(new ByteArrayInputStream(out.toByteArray()),
+                                 decoded);
+            }
+
+            assertArrayEquals(text, decoded.toByteArray());
+            assertTrue(out.size() <= plain.size());
+        }
+    }
+
+    @Test
+    public void testContextModelledRoundTrip() throws IOException {
+        int blockSize = 1 << 16;
+        Path source = Files.createTempFile("huffman", ".txt");
+        Path compressed = Files.createTempFile("huffman", ".het");
+        Path decompressed = Files.createTempFile("huffman", ".out");
+
+        try {
+            for (int maxCodeLength : new int[]{ 8, 11, 16 }) {
+                // The first text depends on the preceding bytes, the second
+                // one does not:
+                for (byte[] text : new byte[][]{ 
+                        markovText(3 * blockSize + 100, new Random(7L)),
+                        skewedText(2 * blockSize + 100, new Random(8L)) }) {
+                    try (ParallelHuffmanCodec codec = 
+                            ParallelHuffmanCodec.builder()
+                                    .threads(2)
+                                    .blockSize(blockSize)
+                                    .maxCodeLength(maxCodeLength)
+                                    .contextModelled(true)
+                                    .build()) {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        codec.compress(new ByteArrayInputStream(text), out);
+
+                        ByteArrayOutputStream decoded = 
+                                new ByteArrayOutputStream();
+                        codec.decompress(
+                                new ByteArrayInputStream(out.toByteArray()),
+                                decoded);
+                        assertArrayEquals(text, decoded.toByteArray());
+
+                        ByteArrayOutputStream plain = 
+                                new ByteArrayOutputStream();
+
+                        try (ParallelHuffmanCodec plainCodec = 
+                                ParallelHuffmanCodec.builder()
+                                        .threads(2)
+                                        .blockSize(blockSize)
+                                        .maxCodeLength(maxCodeLength)
+                                        .build()) {
+                            plainCodec.compress(new ByteArrayInputStream(text),
+                                                plain);
+                        }
+
+                        if (text.length > 3 * blockSize) {
+                            assertTrue(out.size() < plain.size() * 3 / 4);
+                        } else {
+                            assertArrayEquals(plain.toByteArray(), 
+                                              out.toByteArray());
+                        }
+
+                        Files.write(source, text);
+
+                        try (FileChannel in = FileChannel.open(source);
+                             FileChannel target = openForWriting(compressed)) {
+                            codec.compress(in, target);
+                        }
+
+                        assertArrayEquals(out.toByteArray(), 
+                                          Files.readAllBytes(compressed));
+
+                        try (FileChannel in = FileChannel.open(compressed);
+                             FileChannel target = 
+                                     openForWriting(decompressed)) {
+                            codec.decompress(in, target);
+                        }
+
+                        assertArrayEquals(text, 
+                                          Files.readAllBytes(decompressed));
+                    }
+                }
+            }
+        } finally {
+            Files.delete(source);
+            Files.delete(compressed);
+            Files.delete(decompressed);
+        }
+    }
+
+    @Test
+    public void testIndexedRangeDecompression() throws IOException {
+        Path source = Files.createTempFile("huffman", ".txt");
+        Path compressed = Files.createTempFile("huffman", ".het");
+        Path decompressed = Files.createTempFile("huffman", ".out");
+
+        try (ParallelHuffmanCodec codec = 
+                ParallelHuffmanCodec.builder()
+                        .threads(2)
+                        .blockSize(BLOCK_SIZE)
+                        .indexed(true)
+                        .build()) {
+            byte[] text = randomText(10 * BLOCK_SIZE + 123, new Random(4L));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            codec.compress(new ByteArrayInputStream(text), out);
+            Files.write(source, text);
+
+            try (FileChannel in = FileChannel.open(source);
+                 FileChannel target = openForWriting(compressed)) {
+                codec.compress(in, target);
+            }
+
+            assertArrayEquals(out.toByteArray(), 
+                              Files.readAllBytes(compressed));
+
+            // The index does not disturb the readers of the whole stream:
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            codec.decompress(new ByteArrayInputStream(out.toByteArray()),
+                             decoded);
+            assertArrayEquals(text, decoded.toByteArray());
+
+            try (FileChannel in = FileChannel.open(compressed);
+                 FileChannel target = openForWriting(decompressed)) {
+                codec.decompress(in, target);
+            }
+
+            assertArrayEquals(text, Files.readAllBytes(decompressed));
+
+            long[][] ranges = { 
+                { 0, 0 }, 
+                { 0, text.length }, 
+                { 5, 10 },
+                { BLOCK_SIZE - 3, 7 },
+                { 3 * BLOCK_SIZE, 5 * BLOCK_SIZE + 1 },
+                { text.length - 50, 100 },
+                { text.length + 10, 100 } 
+            };
+
+            try (FileChannel in = FileChannel.open(compressed)) {
+                for (long[] range : ranges) {
+                    int from = (int) Math.min(range[0], text.length);
+                    int to = (int) Math.min(range[0] + range[1], text.length);
+                    ByteArrayOutputStream slice = new ByteArrayOutputStream();
+                    codec.decompress(in, range[0], range[1], slice);
+                    assertArrayEquals(Arrays.copyOfRange(text, from, to),
+                                      slice.toByteArray());
+                }
+            }
+        } finally {
+            Files.delete(source);
+            Files.delete(compressed);
+            Files.delete(decompressed);
+        }
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testRangeDecompressionThrowsWithoutIndex() throws IOException {
+        Path compressed = Files.createTempFile("huffman", ".het");
+
+        try (ParallelHuffmanCodec codec = 
+                new ParallelHuffmanCodec(2, BLOCK_SIZE)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            codec.compress(new ByteArrayInputStream(new byte[100]), out);
+            Files.write(compressed, out.toByteArray());
+
+            try (FileChannel in = FileChannel.open(compressed)) {
+                codec.decompress(in, 0L, 10L, new ByteArrayOutputStream());
+            }
+        } finally {
+            Files.delete(compressed);
+        }
+    }
+
+    @Test
+    public void testDetectsCorruptedBlocks() throws IOException {
+        byte[] text = new byte[3 * BLOCK_SIZE];
+        new Random(6L).nextBytes(text);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (ParallelHuffmanCodec codec = 
+                new ParallelHuffmanCodec(2, BLOCK_SIZE)) {
+            codec.compress(new ByteArrayInputStream(text), out);
+        }
+
+        // The random blocks are stored, so that a flipped bit in the second
+        // block still decodes:
+        byte[] corrupted = out.toByteArray();
+        corrupted[HuffmanBlockCodec.MAGIC_STREAM.length 
+                  + HuffmanBlockCodec.BYTES_PER_STREAM_FLAGS
+                  + HuffmanBlockCodec.getMaximumFrameLength(BLOCK_SIZE)
+                  + 100] ^= 1;
+        Path compressed = Files.createTempFile("huffman", ".het");
+        Path decompressed = Files.createTempFile("huffman", ".out");
+
+        try {
+            Files.write(compressed, corrupted);
+
+            for (boolean verify : new boolean[]{ false, true }) {
+                try (ParallelHuffmanCodec codec = 
+                        ParallelHuffmanCodec.builder()
+                                .threads(2)
+                                .blockSize(BLOCK_SIZE)
+                                .verifyChecksums(verify)
+                                .build()) {
+                    try {
+                        codec.decompress(new ByteArrayInputStream(corrupted),
+                                         new ByteArrayOutputStream());
+                        assertFalse(verify);
+                    } catch (InvalidFormatException ex) {
+                        assertTrue(verify);
+                    }
+
+                    try (FileChannel in = FileChannel.open(compressed);
+                         FileChannel target = openForWriting(decompressed)) {
+                        codec.decompress(in, target);
+                        assertFalse(verify);
+                    } catch (InvalidFormatException ex) {
+                        assertTrue(verify);
+                    }
+                }
+            }
+
+            try (HuffmanInputStream in = 
+                    new HuffmanInputStream(
+                            new ByteArrayInputStream(corrupted))) {
+                while (in.read() >= 0) {}
+                fail();
+            } catch (InvalidFormatException ex) {
+            }
+        } finally {
+            Files.delete(compressed);
+            Files.delete(decompressed);
+        }
+    }
+
+    private static FileChannel openForWriting(Path path) throws IOException {
+        return FileChannel.open(path, 
+                                StandardOpenOption.READ,
+                                StandardOpenOption.WRITE,
+                                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Returns a text whose byte {@code i} occurs about twice as often as the
+     * byte {@code i + 1}, so that the Huffman code has long code words.
+     */
+    private static byte[] skewedText(int length, Random random) {
+        byte[] text = new byte[length];
+
+        for (int i = 0; i < length; ++i) {
+            text[i] = (byte) Integer.numberOfTrailingZeros(
+                    random.nextInt() | Integer.MIN_VALUE);
+        }
+
+        return text;
+    }
+
+    /**
+     * Returns a text in which each byte mostly follows from the byte 
+     * preceding it.
+     */
+    private static byte[] markovText(int length, Random random) {
+        byte[] text = new byte[length];
+        int previous = 0;
+
+        for (int i = 0; i < length; ++i) {
+            previous = random.nextInt(4) == 0 ?
+                       random.nextInt(64) :
+                       (previous * 5 + random.nextInt(3)) % 64;
+            text[i] = (byte)(' ' + previous);
+        }
+
+        return text;
+    }
+
+    @Test
+    public void testArchiveRoundTrip() throws IOException {
+        int[] lengths = { 0, 1, 100, BLOCK_SIZE, 50_001, 7, 0, 3 * BLOCK_SIZE };
+        Map<String, Path> files = new LinkedHashMap<>();
+        byte[][] texts = new byte[lengths.length][];
+        Path archive = Files.createTempFile("huffman", ".hea");
+
+        try (ParallelHuffmanCodec codec = 
+                new ParallelHuffmanCodec(3, BLOCK_SIZE)) {
+            for (int i = 0; i != lengths.length; ++i) {
+                texts[i] = randomText(lengths[i], new Random(i));
+                Path file = Files.createTempFile("huffman", ".txt");
+                Files.write(file, texts[i]);
+                files.put("dir/file" + i, file);
+            }
+
+            try (OutputStream out = Files.newOutputStream(archive)) {
+                codec.compressArchive(files, out);
+            }
+
+            try (FileChannel in = FileChannel.open(archive)) {
+                HuffmanArchive huffmanArchive = new HuffmanArchive(in);
+                assertEquals(lengths.length, 
+                             huffmanArchive.getEntries().size());
+                assertNull(huffmanArchive.getEntry("missing"));
+
+                // Extracts the members in reverse order, each on its own:
+                for (int i = lengths.length - 1; i >= 0; --i) {
+                    HuffmanArchive.Entry entry = 
+                            huffmanArchive.getEntry("dir/file" + i);
+                    assertEquals(huffmanArchive.getEntries().get(i), entry);
+                    assertEquals(lengths[i], entry.getSize());
+
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    codec.extract(huffmanArchive, entry, out);
+                    assertArrayEquals(texts[i], out.toByteArray());
+                }
+            }
+        } finally {
+            Files.delete(archive);
+
+            for (Path file : files.values()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testTruncatedArchiveThrows() throws IOException {
+        Path file = Files.createTempFile("huffman", ".txt");
+        Path archive = Files.createTempFile("huffman", ".hea");
+
+        try (ParallelHuffmanCodec codec = 
+                new ParallelHuffmanCodec(2, BLOCK_SIZE)) {
+            Files.write(file, randomText(10_000, new Random(5L)));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            codec.compressArchive(Collections.singletonMap("file", file), 
+                                  out);
+            byte[] data = out.toByteArray();
+            Files.write(archive, Arrays.copyOf(data, data.length - 1));
+
+            try (FileChannel in = FileChannel.open(archive)) {
+                new HuffmanArchive(in);
+            }
+        } finally {
+            Files.delete(file);
+            Files.delete(archive);
+        }
+    }
+
+    @Test
+    public void testCollectsStatistics() throws IOException {
+        try (ParallelHuffmanCodec codec = 
+                new ParallelHuffmanCodec(2, BLOCK_SIZE)) {
+            assertNull(codec.getStatistics());
+
+            CodecStatistics statistics = new CodecStatistics();
+            codec.setStatistics(statistics);
+            byte[] text = randomText(10 * BLOCK_SIZE + 17, new Random(8L));
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            codec.compress(new ByteArrayInputStream(text), compressed);
+
+            assertEquals(text.length, statistics.getBytesIn());
+            assertEquals(compressed.size(), statistics.getBytesOut());
+            assertEquals(11L, statistics.getBlocks());
+            assertEquals(text.length, statistics.getUncompressedBytes());
+            assertEquals(11L, 
+                         statistics.getCount(CodecStatistics.Stage.ENCODE));
+            assertTrue(statistics.getTablesBuilt() >= 11L);
+            assertTrue(statistics.getBitsPerSymbol() > 0.0);
+            assertTrue(statistics.getBitsPerSymbol() < Byte.SIZE);
+
+            statistics.reset();
+            assertEquals(0L, statistics.getBlocks());
+
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            codec.decompress(new ByteArrayInputStream(compressed.toByteArray()),
+                             decompressed);
+
+            assertArrayEquals(text, decompressed.toByteArray());
+            assertEquals(compressed.size(), statistics.getBytesIn());
+            assertEquals(text.length, statistics.getBytesOut());
+            assertEquals(11L, statistics.getBlocks());
+            assertEquals(11L, 
+                         statistics.getCount(CodecStatistics.Stage.DECODE));
+            assertEquals(0L, statistics.getCount(CodecStatistics.Stage.ENCODE));
+            assertEquals(12L, statistics.getCount(CodecStatistics.Stage.READ));
+            assertEquals(11L, statistics.getCount(CodecStatistics.Stage.WRITE));
+
+            codec.setStatistics(null);
+            codec.compress(new ByteArrayInputStream(text), 
+                           new ByteArrayOutputStream());
+            assertEquals(11L, statistics.getBlocks());
+        }
+    }
+
+    @Test
+    public void testFailingOutputLeavesNoReaderThread() 
+            throws IOException, InterruptedException {
+        byte[] text = randomText(20 * BLOCK_SIZE, new Random(11L));
+        OutputStream failingOutput = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken output.");
+            }
+        };
+
+        try (ParallelHuffmanCodec codec = 
+                new ParallelHuffmanCodec(2, BLOCK_SIZE)) {
+            for (int i = 0; i != 20; ++i) {
+                try {
+                    codec.compress(new ByteArrayInputStream(text), 
+                                   failingOutput);
+                    fail("Expected the failure of the output.");
+                } catch (IOException ex) {
+                    assertEquals("Broken output.", ex.getMessage());
+                }
+            }
+        }
+
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("huffman-reader")) {
+                thread.join(5000L);
+                assertFalse(thread.isAlive());
+            }
+        }
+    }
+
+    private static byte[] randomText(int length, Random random) {
+        byte[] text = new byte[length];
+
+        for (int i = 0; i < length; ++i) {
+            text[i] = (byte)('a' + random.nextInt(1 + i % 26));
+        }
+
+        return text;
+    }
+}
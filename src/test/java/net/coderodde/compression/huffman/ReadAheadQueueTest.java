@@ -0,0 +1,95 @@
+package net.coderodde.compression.huffman;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ReadAheadQueueTest {
+
+    @Test
+    public void testTakesItemsInOrder() throws IOException {
+        List<Integer> items = new ArrayList<>();
+
+        try (ReadAheadQueue<Integer> queue =
+                new ReadAheadQueue<>(3, q -> {
+                    for (int i = 0; i != 1000; ++i) {
+                        q.put(i);
+                    }
+                })) {
+            Integer item;
+
+            while ((item = queue.take()) != null) {
+                items.add(item);
+            }
+
+            assertNull(queue.take());
+        }
+
+        assertEquals(1000, items.size());
+
+        for (int i = 0; i != 1000; ++i) {
+            assertEquals(i, (int) items.get(i));
+        }
+    }
+
+    @Test
+    public void testRethrowsFailureAfterItems() throws IOException {
+        try (ReadAheadQueue<Integer> queue =
+                new ReadAheadQueue<>(2, q -> {
+                    q.put(1);
+                    q.put(2);
+                    throw new IOException("Broken input.");
+                })) {
+            assertEquals(1, (int) queue.take());
+            assertEquals(2, (int) queue.take());
+
+            try {
+                queue.take();
+                fail("Expected the failure of the producer.");
+            } catch (IOException ex) {
+                assertEquals("Broken input.", ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testCloseStopsBlockedProducer() throws InterruptedException {
+        AtomicReference<Thread> producerThread = new AtomicReference<>();
+        AtomicInteger itemsPut = new AtomicInteger();
+        List<Integer> discarded = 
+                Collections.synchronizedList(new ArrayList<>());
+        ReadAheadQueue<Integer> queue =
+                new ReadAheadQueue<>(2, q -> {
+                    producerThread.set(Thread.currentThread());
+
+                    while (true) {
+                        q.put(itemsPut.getAndIncrement());
+                    }
+                }, discarded::add);
+
+        // Waits for the queue to fill up and the producer to block:
+        while (itemsPut.get() < 3) {
+            Thread.sleep(1L);
+        }
+
+        queue.close();
+        producerThread.get().join(5000L);
+        assertFalse(producerThread.get().isAlive());
+
+        // Each item handed to the queue is discarded exactly once:
+        List<Integer> expected = new ArrayList<>();
+
+        for (int i = 0; i != itemsPut.get(); ++i) {
+            expected.add(i);
+        }
+
+        List<Integer> actual = new ArrayList<>(discarded);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+    }
+}